@@ -739,8 +739,8 @@ private String[] handleDeprecation(DeprecationContext deprecations,
     updatePropertiesWithDeprecatedKeys(deprecations, names);
 
     // If there are no overlay values we can return early
-    Properties overlayProperties = getOverlay();
-    if (overlayProperties.isEmpty()) {
+    Properties overlayProperties = getOverlayForRead();
+    if (overlayProperties == null || overlayProperties.isEmpty()) {
       return names;
     }
     // Update properties and overlays with reverse lookup values
@@ -750,7 +750,7 @@ private String[] handleDeprecation(DeprecationContext deprecations,
         String deprecatedValue = overlayProperties.getProperty(deprecatedKey);
         if (deprecatedValue != null) {
           getProps().setProperty(n, deprecatedValue);
-          overlayProperties.setProperty(n, deprecatedValue);
+          getOverlay().setProperty(n, deprecatedValue);
         }
       }
     }
@@ -761,8 +761,8 @@ private void updatePropertiesWithDeprecatedKeys(
       DeprecationContext deprecations, String[] newNames) {
     for (String newName : newNames) {
       String deprecatedKey = deprecations.getReverseDeprecatedKeyMap().get(newName);
-      if (deprecatedKey != null && !getProps().containsKey(newName)) {
-        String deprecatedValue = getProps().getProperty(deprecatedKey);
+      if (deprecatedKey != null && !getPropsForRead().containsKey(newName)) {
+        String deprecatedValue = getPropsForRead().getProperty(deprecatedKey);
         if (deprecatedValue != null) {
           getProps().setProperty(newName, deprecatedValue);
         }
@@ -774,7 +774,7 @@ private void handleDeprecation() {
     LOG.debug("Handling deprecation for all properties in config...");
     DeprecationContext deprecations = deprecationContext.get();
     Set<Object> keys = new HashSet<Object>();
-    keys.addAll(getProps().keySet());
+    keys.addAll(getPropsForRead().keySet());
     for (Object item: keys) {
       LOG.debug("Handling deprecation for " + (String)item);
       handleDeprecation(deprecations, (String)item);
@@ -803,6 +803,13 @@ private void handleDeprecation() {
 
   private Properties properties;
   private Properties overlay;
+  /**
+   * Whether {@link #properties}, {@link #overlay} and
+   * {@link #updatingResource} may be shared with a copy of this
+   * configuration. Shared tables are never modified in place; the first
+   * change made through either configuration copies them.
+   */
+  private boolean propertiesShared;
   private ClassLoader classLoader;
   {
     classLoader = Thread.currentThread().getContextClassLoader();
@@ -841,21 +848,17 @@ public Configuration(Configuration other) {
     synchronized(other) {
       // Make sure we clone a finalized state
       // Resources like input streams can be processed only once
-      other.getProps();
+      other.getPropsForRead();
       this.resources = (ArrayList<Resource>) other.resources.clone();
-      if (other.properties != null) {
-        this.properties = (Properties)other.properties.clone();
-      }
-
-      if (other.overlay!=null) {
-        this.overlay = (Properties)other.overlay.clone();
-      }
+      // The property tables are shared until either side changes them,
+      // so that copying a configuration does not copy every property.
+      this.properties = other.properties;
+      this.overlay = other.overlay;
+      this.updatingResource = other.updatingResource;
+      this.propertiesShared = true;
+      other.propertiesShared = true;
 
       this.restrictSystemProps = other.restrictSystemProps;
-      if (other.updatingResource != null) {
-        this.updatingResource = new ConcurrentHashMap<String, String[]>(
-           other.updatingResource);
-      }
       this.finalParameters = Collections.newSetFromMap(
           new ConcurrentHashMap<String, Boolean>());
       this.finalParameters.addAll(other.finalParameters);
@@ -1221,7 +1224,7 @@ public String get(String name) {
     String[] names = handleDeprecation(deprecationContext.get(), name);
     String result = null;
     for(String n : names) {
-      result = substituteVars(getProps().getProperty(n));
+      result = substituteVars(getPropsForRead().getProperty(n));
     }
     return result;
   }
@@ -1253,7 +1256,7 @@ public void setRestrictSystemProps(boolean val) {
   public boolean onlyKeyExists(String name) {
     String[] names = handleDeprecation(deprecationContext.get(), name);
     for(String n : names) {
-      if ( getProps().getProperty(n,DEFAULT_STRING_CHECK)
+      if ( getPropsForRead().getProperty(n,DEFAULT_STRING_CHECK)
                .equals(DEFAULT_STRING_CHECK) ) {
         return true;
       }
@@ -1313,7 +1316,7 @@ public String getRaw(String name) {
     String[] names = handleDeprecation(deprecationContext.get(), name);
     String result = null;
     for(String n : names) {
-      result = getProps().getProperty(n);
+      result = getPropsForRead().getProperty(n);
     }
     return result;
   }
@@ -1334,7 +1337,7 @@ private String[] getAlternativeNames(String name) {
     if(depKey != null) {
       keyInfo = cur.getDeprecatedKeyMap().get(depKey);
       if(keyInfo.newKeys.length > 0) {
-        if(getProps().containsKey(depKey)) {
+        if(getPropsForRead().containsKey(depKey)) {
           //if deprecated key is previously set explicitly
           List<String> list = new ArrayList<String>();
           list.addAll(Arrays.asList(keyInfo.newKeys));
@@ -1460,12 +1463,42 @@ public synchronized void setIfUnset(String name, String value) {
   }
   
   private synchronized Properties getOverlay() {
+    unshareProperties();
     if (overlay==null){
       overlay=new Properties();
     }
     return overlay;
   }
 
+  /**
+   * Get the overlay, or null if nothing was set, without taking ownership
+   * of a table shared with a copy of this configuration. The returned table
+   * must not be modified.
+   */
+  private synchronized Properties getOverlayForRead() {
+    return overlay;
+  }
+
+  /**
+   * Stop sharing the property tables with copies of this configuration by
+   * copying them, so that they can be modified in place.
+   */
+  private synchronized void unshareProperties() {
+    if (propertiesShared) {
+      if (properties != null) {
+        properties = (Properties) properties.clone();
+      }
+      if (overlay != null) {
+        overlay = (Properties) overlay.clone();
+      }
+      if (updatingResource != null) {
+        updatingResource = new ConcurrentHashMap<String, String[]>(
+            updatingResource);
+      }
+      propertiesShared = false;
+    }
+  }
+
   /** 
    * Get the value of the <code>name</code>. If the key is deprecated,
    * it returns the value of the first key which replaces the deprecated key
@@ -1482,7 +1515,7 @@ public String get(String name, String defaultValue) {
     String[] names = handleDeprecation(deprecationContext.get(), name);
     String result = null;
     for(String n : names) {
-      result = substituteVars(getProps().getProperty(n, defaultValue));
+      result = substituteVars(getPropsForRead().getProperty(n, defaultValue));
     }
     return result;
   }
@@ -2045,7 +2078,7 @@ public synchronized String[] getPropertySources(String name) {
       // If properties is null, it means a resource was newly added
       // but the props were cleared so as to load it upon future
       // requests. So lets force a load by asking a properties list.
-      getProps();
+      getPropsForRead();
     }
     // Return a null right away if our properties still
     // haven't loaded or the resource mapping isn't defined
@@ -2870,8 +2903,25 @@ public Set<String> getFinalParameters() {
     return setFinalParams;
   }
 
+  /**
+   * Get the properties, loading the resources if needed. The returned
+   * table is owned by this configuration and may be modified.
+   *
+   * @return the properties.
+   */
   protected synchronized Properties getProps() {
+    unshareProperties();
+    return getPropsForRead();
+  }
+
+  /**
+   * Get the properties, loading the resources if needed, without taking
+   * ownership of a table shared with a copy of this configuration. The
+   * returned table must not be modified.
+   */
+  private synchronized Properties getPropsForRead() {
     if (properties == null) {
+      unshareProperties();
       properties = new Properties();
       Map<String, String[]> backup = updatingResource != null ?
           new ConcurrentHashMap<String, String[]>(updatingResource) : null;
@@ -2899,7 +2949,7 @@ protected synchronized Properties getProps() {
    * @return number of keys in the configuration.
    */
   public int size() {
-    return getProps().size();
+    return getPropsForRead().size();
   }
 
   /**
@@ -2923,7 +2973,7 @@ public Iterator<Map.Entry<String, String>> iterator() {
     // we could replace properties with a Map<String,String> and get rid of this
     // code.
     Map<String,String> result = new HashMap<String,String>();
-    for(Map.Entry<Object,Object> item: getProps().entrySet()) {
+    for(Map.Entry<Object,Object> item: getPropsForRead().entrySet()) {
       if (item.getKey() instanceof String &&
           item.getValue() instanceof String) {
           result.put((String) item.getKey(), (String) item.getValue());
@@ -2941,7 +2991,7 @@ public Iterator<Map.Entry<String, String>> iterator() {
    * @return mapping of configuration properties with prefix stripped
    */
   public Map<String, String> getPropsWithPrefix(String confPrefix) {
-    Properties props = getProps();
+    Properties props = getPropsForRead();
     Map<String, String> configMap = new HashMap<>();
     for (String name : props.stringPropertyNames()) {
       if (name.startsWith(confPrefix)) {
@@ -3724,7 +3774,7 @@ public static void dumpConfiguration(Configuration config,
     dumpGenerator.flush();
     ConfigRedactor redactor = new ConfigRedactor(config);
     synchronized (config) {
-      for (Map.Entry<Object,Object> item: config.getProps().entrySet()) {
+      for (Map.Entry<Object,Object> item: config.getPropsForRead().entrySet()) {
         appendJSONProperty(dumpGenerator, config, item.getKey().toString(),
             redactor);
       }
@@ -3846,7 +3896,7 @@ public void readFields(DataInput in) throws IOException {
   //@Override
   @Override
   public void write(DataOutput out) throws IOException {
-    Properties props = getProps();
+    Properties props = getPropsForRead();
     WritableUtils.writeVInt(out, props.size());
     for(Map.Entry<Object, Object> item: props.entrySet()) {
       org.apache.hadoop.io.Text.writeString(out, (String) item.getKey());
@@ -3867,13 +3917,13 @@ public Map<String,String> getValByRegex(String regex) {
     Map<String,String> result = new HashMap<String,String>();
     Matcher m;
 
-    for(Map.Entry<Object,Object> item: getProps().entrySet()) {
+    for(Map.Entry<Object,Object> item: getPropsForRead().entrySet()) {
       if (item.getKey() instanceof String && 
           item.getValue() instanceof String) {
         m = p.matcher((String)item.getKey());
         if(m.find()) { // match
           result.put((String) item.getKey(),
-              substituteVars(getProps().getProperty((String) item.getKey())));
+              substituteVars(getPropsForRead().getProperty((String) item.getKey())));
         }
       }
     }
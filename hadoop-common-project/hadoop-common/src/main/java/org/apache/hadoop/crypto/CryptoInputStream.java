@@ -171,6 +171,20 @@ public int read(byte[] b, int off, int len) throws IOException {
       int n = Math.min(len, remaining);
       outBuffer.get(b, off, n);
       return n;
+    } else if (len >= bufferSize &&
+        decryptor.canDecryptInPlace(ByteBuffer.wrap(b))) {
+      /*
+       * A large read, which the decryptor can decrypt in the array of the
+       * caller: read and decrypt it there, rather than in bufferSize chunks
+       * copied through inBuffer and outBuffer.
+       */
+      final int n = in.read(b, off, len);
+      if (n > 0) {
+        streamOffset += n; // Read n bytes
+        padding = decryptInPlace(decryptor, inBuffer, outBuffer, padding,
+            ByteBuffer.wrap(b), off, n, streamOffset, iv);
+      }
+      return n;
     } else {
       int n = 0;
       
@@ -260,6 +274,36 @@ private void decrypt(Decryptor decryptor, ByteBuffer inBuffer,
     }
   }
   
+  /**
+   * Decrypt length bytes of buf from start in place, with a single call to
+   * a decryptor which can, see {@link Decryptor#canDecryptInPlace}.
+   * <p>
+   * The decryptor is positioned at the beginning of the block of the data,
+   * so the padding in inBuffer is decrypted first, to skip its key stream.
+   * Upon return, inBuffer is ready for the next input and outBuffer is
+   * empty.
+   * @return the padding of the next input.
+   */
+  private byte decryptInPlace(Decryptor decryptor, ByteBuffer inBuffer,
+      ByteBuffer outBuffer, byte padding, ByteBuffer buf, int start,
+      int length, long position, byte[] iv) throws IOException {
+    Preconditions.checkState(inBuffer.position() == padding);
+    if (padding > 0) {
+      inBuffer.flip();
+      outBuffer.clear();
+      decryptor.decrypt(inBuffer, outBuffer);
+      inBuffer.clear();
+    }
+    outBuffer.clear();
+    outBuffer.limit(0);
+    final ByteBuffer src = buf.duplicate();
+    src.limit(start + length);
+    src.position(start);
+    final ByteBuffer dst = src.duplicate();
+    decryptor.decrypt(src, dst);
+    return afterDecryption(decryptor, inBuffer, position, iv);
+  }
+
   /**
    * This method is executed immediately after decryption. Check whether 
    * decryptor should be updated and recalculate padding if needed. 
@@ -381,7 +425,14 @@ private void decrypt(long position, byte[] buffer, int offset, int length)
       updateDecryptor(decryptor, position, iv);
       byte padding = getPadding(position);
       localInBuffer.position(padding); // Set proper position for input data.
-      
+
+      final ByteBuffer buf = ByteBuffer.wrap(buffer);
+      if (decryptor.canDecryptInPlace(buf)) {
+        decryptInPlace(decryptor, localInBuffer, localOutBuffer, padding, buf,
+            offset, length, position + length, iv);
+        return;
+      }
+
       int n = 0;
       while (n < length) {
         int toDecrypt = Math.min(length - n, localInBuffer.remaining());
@@ -424,6 +475,11 @@ private void decrypt(long position, byte[] buffer, int offset, int length)
    *   buf is decrypted.
    * </p>
    *
+   * <p>
+   *   If the decryptor can decrypt buf in place, buf is decrypted with a
+   *   single call to it instead, without copies.
+   * </p>
+   *
    * @param filePosition the current position of the file being read
    * @param buf the {@link ByteBuffer} to decrypt
    * @param length the number of bytes in {@code buf} to decrypt
@@ -450,6 +506,12 @@ private void decrypt(long filePosition, ByteBuffer buf, int length, int start)
       // Set proper filePosition for inputdata.
       localInBuffer.position(localPadding);
 
+      if (localDecryptor.canDecryptInPlace(buf)) {
+        decryptInPlace(localDecryptor, localInBuffer, localOutBuffer,
+            localPadding, buf, start, length, filePosition + length, localIV);
+        return;
+      }
+
       while (decryptedBytes < length) {
         buf.position(start + decryptedBytes);
         buf.limit(start + decryptedBytes +
@@ -624,6 +686,11 @@ public int read(ByteBuffer buf) throws IOException {
    */
   private void decrypt(ByteBuffer buf, int length, int start)
       throws IOException {
+    if (decryptor.canDecryptInPlace(buf)) {
+      padding = decryptInPlace(decryptor, inBuffer, outBuffer, padding, buf,
+          start, length, streamOffset, iv);
+      return;
+    }
     buf = buf.duplicate();
     int decryptedBytes = 0;
     while (decryptedBytes < length) {
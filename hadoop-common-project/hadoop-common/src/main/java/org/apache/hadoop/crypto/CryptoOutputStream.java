@@ -155,7 +155,13 @@ public synchronized void write(byte[] b, int off, int len) throws IOException {
     }
     while (len > 0) {
       final int remaining = inBuffer.remaining();
-      if (len < remaining) {
+      if (len >= bufferSize && inBuffer.position() == padding &&
+          encryptor.isHeapBufferSupported()) {
+        // Nothing is buffered: encrypt straight from the array of the caller
+        encrypt(b, off, bufferSize);
+        off += bufferSize;
+        len -= bufferSize;
+      } else if (len < remaining) {
         inBuffer.put(b, off, len);
         len = 0;
       } else {
@@ -212,6 +218,33 @@ private void encrypt() throws IOException {
     }
   }
   
+  /**
+   * Encrypt len bytes of b, from off, into the temporary buffer and write
+   * them to the underlying stream. {@link #inBuffer} must hold no data.
+   */
+  private void encrypt(byte[] b, int off, int len) throws IOException {
+    if (padding > 0) {
+      /*
+       * The encryptor is positioned at the beginning of the block, so
+       * encrypt the padding first to skip its key stream.
+       */
+      inBuffer.flip();
+      outBuffer.clear();
+      encryptor.encrypt(inBuffer, outBuffer);
+      inBuffer.clear();
+      padding = 0;
+    }
+    final byte[] tmp = getTmpBuf();
+    encryptor.encrypt(ByteBuffer.wrap(b, off, len),
+        ByteBuffer.wrap(tmp, 0, len));
+    out.write(tmp, 0, len);
+
+    streamOffset += len;
+    if (encryptor.isContextReset()) {
+      updateEncryptor();
+    }
+  }
+
   /** Update the {@link #encryptor}: calculate counter and {@link #padding}. */
   private void updateEncryptor() throws IOException {
     final long counter =
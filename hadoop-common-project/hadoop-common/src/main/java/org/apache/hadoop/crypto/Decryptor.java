@@ -69,4 +69,20 @@ public interface Decryptor {
    */
   public void decrypt(ByteBuffer inBuffer, ByteBuffer outBuffer) 
       throws IOException;
+
+  /**
+   * Indicate whether the given buffer can be decrypted in place.
+   * <p>
+   * If it can, {@link #decrypt(ByteBuffer, ByteBuffer)} accepts an outBuffer
+   * over the same memory as inBuffer, of that kind of buffer (direct or
+   * not) and of any size, and decrypts all of the input in a single call,
+   * keeping the decryption context. Streams then decrypt the buffers of their
+   * callers as they are, rather than copying them through buffers of their
+   * own.
+   * @param buffer the buffer to decrypt.
+   * @return boolean whether the buffer can be decrypted in place.
+   */
+  default boolean canDecryptInPlace(ByteBuffer buffer) {
+    return false;
+  }
 }
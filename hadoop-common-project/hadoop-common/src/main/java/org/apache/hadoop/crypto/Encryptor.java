@@ -68,4 +68,18 @@ public interface Encryptor {
    */
   public void encrypt(ByteBuffer inBuffer, ByteBuffer outBuffer) 
       throws IOException;
+
+  /**
+   * Indicate whether heap buffers can be encrypted.
+   * <p>
+   * If they can, {@link #encrypt(ByteBuffer, ByteBuffer)} accepts heap
+   * buffers of any size, and encrypts all of the input in a single call,
+   * keeping the encryption context. Streams then encrypt large writes
+   * straight from the arrays of their callers, rather than copying them
+   * through direct buffers.
+   * @return boolean whether heap buffers can be encrypted.
+   */
+  default boolean isHeapBufferSupported() {
+    return false;
+  }
 }
@@ -161,5 +161,19 @@ private void process(ByteBuffer inBuffer, ByteBuffer outBuffer)
     public boolean isContextReset() {
       return contextReset;
     }
+
+    /**
+     * Cipher#update processes any buffer in place, in a single call: heap
+     * buffers without copies, on the AES intrinsics of the JVM.
+     */
+    @Override
+    public boolean canDecryptInPlace(ByteBuffer buffer) {
+      return true;
+    }
+
+    @Override
+    public boolean isHeapBufferSupported() {
+      return true;
+    }
   }
 }
@@ -163,5 +163,13 @@ private void process(ByteBuffer inBuffer, ByteBuffer outBuffer)
     public boolean isContextReset() {
       return contextReset;
     }
+
+    /**
+     * EVP_CipherUpdate of AES-CTR works in place, on direct buffers only.
+     */
+    @Override
+    public boolean canDecryptInPlace(ByteBuffer buffer) {
+      return buffer.isDirect();
+    }
   }
 }
@@ -22,8 +22,11 @@
 import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.IvParameterSpec;
@@ -269,6 +272,32 @@ EncryptedKeyVersion reencryptEncryptedKey(EncryptedKeyVersion ekv)
      */
     void reencryptEncryptedKeys(List<EncryptedKeyVersion> ekvs)
         throws IOException, GeneralSecurityException;
+
+    /**
+     * Batched version of {@link #decryptEncryptedKey(EncryptedKeyVersion)}.
+     * <p>
+     * Decrypts each encrypted key version, and returns the decrypted keys in
+     * the same sequence. All the encrypted key versions must be under the
+     * same key name, but may be under different versions of that key.
+     * <p>
+     * The default implementation decrypts the keys one by one.
+     *
+     * @param  ekvs List containing the EncryptedKeyVersion's
+     * @return     The decrypted KeyVersion's, whose version names are 'EK'
+     * @throws IOException If any EncryptedKeyVersion could not be decrypted
+     * @throws GeneralSecurityException If any EncryptedKeyVersion could not be
+     *                            decrypted because of a cryptographic issue.
+     */
+    default List<KeyVersion> decryptEncryptedKeys(
+        List<EncryptedKeyVersion> ekvs)
+        throws IOException, GeneralSecurityException {
+      Preconditions.checkNotNull(ekvs, "Input list is null");
+      final List<KeyVersion> keys = new ArrayList<>(ekvs.size());
+      for (EncryptedKeyVersion ekv : ekvs) {
+        keys.add(decryptEncryptedKey(ekv));
+      }
+      return keys;
+    }
   }
 
   private static class DefaultCryptoExtension implements CryptoExtension {
@@ -411,6 +440,53 @@ public void reencryptEncryptedKeys(List<EncryptedKeyVersion> ekvs)
       }
     }
 
+    @Override
+    public List<KeyVersion> decryptEncryptedKeys(
+        List<EncryptedKeyVersion> ekvs)
+        throws IOException, GeneralSecurityException {
+      Preconditions.checkNotNull(ekvs, "Input list is null");
+      final List<KeyVersion> keys = new ArrayList<>(ekvs.size());
+      String ekName = null;
+      // most of the keys of a batch are under a few versions
+      final Map<String, KeyVersion> encryptionKeys = new HashMap<>();
+      try (CryptoCodec cc = CryptoCodec.getInstance(keyProvider.getConf())) {
+        final Decryptor decryptor = cc.createDecryptor();
+        for (EncryptedKeyVersion ekv : ekvs) {
+          Preconditions.checkNotNull(ekv, "EncryptedKeyVersion is null");
+          Preconditions.checkNotNull(ekv.getEncryptedKeyVersion(),
+              "EncryptedKeyVersion is null");
+          Preconditions.checkArgument(
+              ekv.getEncryptedKeyVersion().getVersionName()
+                  .equals(KeyProviderCryptoExtension.EEK),
+              "encryptedKey version name must be '%s', but found '%s'",
+              KeyProviderCryptoExtension.EEK,
+              ekv.getEncryptedKeyVersion().getVersionName());
+          if (ekName == null) {
+            ekName = ekv.getEncryptionKeyName();
+          } else {
+            Preconditions.checkArgument(
+                ekName.equals(ekv.getEncryptionKeyName()),
+                "All keys must have the same key name. Expected '%s' "
+                    + "but found '%s'", ekName, ekv.getEncryptionKeyName());
+          }
+
+          final String encryptionKeyVersionName =
+              ekv.getEncryptionKeyVersionName();
+          KeyVersion encryptionKey =
+              encryptionKeys.get(encryptionKeyVersionName);
+          if (encryptionKey == null) {
+            encryptionKey = keyProvider.getKeyVersion(encryptionKeyVersionName);
+            Preconditions.checkNotNull(encryptionKey,
+                "KeyVersion name '%s' does not exist",
+                encryptionKeyVersionName);
+            encryptionKeys.put(encryptionKeyVersionName, encryptionKey);
+          }
+          keys.add(decryptEncryptedKey(decryptor, encryptionKey, ekv));
+        }
+      }
+      return keys;
+    }
+
     private KeyVersion decryptEncryptedKey(final Decryptor decryptor,
         final KeyVersion encryptionKey,
         final EncryptedKeyVersion encryptedKeyVersion)
@@ -585,6 +661,24 @@ public void reencryptEncryptedKeys(List<EncryptedKeyVersion> ekvs)
     getExtension().reencryptEncryptedKeys(ekvs);
   }
 
+  /**
+   * Batched version of {@link #decryptEncryptedKey(EncryptedKeyVersion)}.
+   * <p>
+   * Decrypts each encrypted key version, and returns the decrypted keys in
+   * the same sequence. All the encrypted key versions must be under the same
+   * key name, but may be under different versions of that key.
+   *
+   * @param  ekvs List containing the EncryptedKeyVersion's
+   * @return     The decrypted KeyVersion's, whose version names are 'EK'
+   * @throws IOException If any EncryptedKeyVersion could not be decrypted
+   * @throws GeneralSecurityException If any EncryptedKeyVersion could not be
+   *                            decrypted because of a cryptographic issue.
+   */
+  public List<KeyVersion> decryptEncryptedKeys(List<EncryptedKeyVersion> ekvs)
+      throws IOException, GeneralSecurityException {
+    return getExtension().decryptEncryptedKeys(ekvs);
+  }
+
   /**
    * Creates a <code>KeyProviderCryptoExtension</code> using a given
    * {@link KeyProvider}.
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.crypto.key.kms;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.crypto.key.KeyProvider.KeyVersion;
+import org.apache.hadoop.crypto.key.KeyProviderCryptoExtension.EncryptedKeyVersion;
+import org.apache.hadoop.security.UserGroupInformation;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A client side cache of the keys decrypted by the KMS, so that opening many
+ * files under the same encrypted data encryption keys does not call the KMS
+ * for each of them.
+ * <p>
+ * The keys are cached for the user who decrypted them, as another user may
+ * not be allowed to decrypt them, and for a short time only, so that the
+ * changes to the key ACLs are applied soon enough.
+ */
+@InterfaceAudience.Private
+class DecryptedKeyCache {
+
+  private final Cache<Entry, KeyVersion> cache;
+
+  DecryptedKeyCache(int size, long expiryMs) {
+    Preconditions.checkArgument(size > 0, "size must be positive");
+    Preconditions.checkArgument(expiryMs > 0, "expiry must be positive");
+    cache = CacheBuilder.newBuilder()
+        .maximumSize(size)
+        .expireAfterWrite(expiryMs, TimeUnit.MILLISECONDS)
+        .build();
+  }
+
+  /**
+   * @return the decrypted key of the given encrypted key for the current
+   *         user, or null if it is not cached.
+   */
+  KeyVersion get(EncryptedKeyVersion ekv) throws IOException {
+    return cache.getIfPresent(new Entry(currentUser(), ekv));
+  }
+
+  void put(EncryptedKeyVersion ekv, KeyVersion key) throws IOException {
+    cache.put(new Entry(currentUser(), ekv), key);
+  }
+
+  /**
+   * Drop the decrypted keys of all the versions of the given key.
+   */
+  void invalidate(String keyName) {
+    cache.asMap().keySet().removeIf(e -> e.keyName.equals(keyName));
+  }
+
+  void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  long size() {
+    return cache.size();
+  }
+
+  private static String currentUser() throws IOException {
+    return UserGroupInformation.getCurrentUser().getUserName();
+  }
+
+  /** An encrypted key, as decrypted by a given user. */
+  private static final class Entry {
+    private final String user;
+    private final String keyName;
+    private final String versionName;
+    private final byte[] iv;
+    private final byte[] material;
+    private final int hash;
+
+    Entry(String user, EncryptedKeyVersion ekv) {
+      this.user = user;
+      this.keyName = ekv.getEncryptionKeyName();
+      this.versionName = ekv.getEncryptionKeyVersionName();
+      this.iv = ekv.getEncryptedKeyIv();
+      this.material = ekv.getEncryptedKeyVersion().getMaterial();
+      int h = Objects.hash(user, keyName, versionName);
+      h = 31 * h + Arrays.hashCode(iv);
+      this.hash = 31 * h + Arrays.hashCode(material);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Entry)) {
+        return false;
+      }
+      final Entry other = (Entry) o;
+      return hash == other.hash && user.equals(other.user)
+          && Objects.equals(keyName, other.keyName)
+          && versionName.equals(other.versionName)
+          && Arrays.equals(iv, other.iv)
+          && Arrays.equals(material, other.material);
+    }
+  }
+}
@@ -24,6 +24,7 @@
 import java.net.URI;
 import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -84,6 +85,8 @@ public WrapperException(Throwable cause) {
   private final Text canonicalService; // credentials alias for token.
 
   private RetryPolicy retryPolicy = null;
+  // null unless caching decrypted keys is enabled
+  private final DecryptedKeyCache decryptedKeys;
 
   public LoadBalancingKMSClientProvider(URI providerUri,
       KMSClientProvider[] providers, Configuration conf) {
@@ -133,6 +136,18 @@ private LoadBalancingKMSClientProvider(URI uri,
     this.retryPolicy = RetryPolicies.failoverOnNetworkException(
         RetryPolicies.TRY_ONCE_THEN_FAIL, maxNumRetries, 0, sleepBaseMillis,
         sleepMaxMillis);
+    int decryptedKeyCacheSize = conf.getInt(CommonConfigurationKeysPublic.
+        KMS_CLIENT_DECRYPTED_KEY_CACHE_SIZE,
+        CommonConfigurationKeysPublic.
+            KMS_CLIENT_DECRYPTED_KEY_CACHE_SIZE_DEFAULT);
+    long decryptedKeyCacheExpiryMs = conf.getLong(
+        CommonConfigurationKeysPublic.KMS_CLIENT_DECRYPTED_KEY_CACHE_EXPIRY_MS,
+        CommonConfigurationKeysPublic.
+            KMS_CLIENT_DECRYPTED_KEY_CACHE_EXPIRY_DEFAULT);
+    this.decryptedKeys = decryptedKeyCacheSize > 0
+        ? new DecryptedKeyCache(decryptedKeyCacheSize,
+            decryptedKeyCacheExpiryMs)
+        : null;
     LOG.debug("Created LoadBalancingKMSClientProvider for KMS url: {} with {} "
             + "providers. delegation token service: {}, canonical service: {}",
         uri, providers.length, dtService, canonicalService);
@@ -143,6 +158,11 @@ public KMSClientProvider[] getProviders() {
     return providers;
   }
 
+  @VisibleForTesting
+  DecryptedKeyCache getDecryptedKeyCache() {
+    return decryptedKeys;
+  }
+
   @Override
   public org.apache.hadoop.security.token.Token<? extends TokenIdentifier>
       selectDelegationToken(Credentials creds) {
@@ -320,6 +340,9 @@ public void invalidateCache(String keyName) throws IOException {
     for (KMSClientProvider provider : providers) {
       provider.invalidateCache(keyName);
     }
+    if (decryptedKeys != null) {
+      decryptedKeys.invalidate(keyName);
+    }
   }
 
   @Override
@@ -346,8 +369,15 @@ public EncryptedKeyVersion call(KMSClientProvider provider)
   public KeyVersion
       decryptEncryptedKey(final EncryptedKeyVersion encryptedKeyVersion)
           throws IOException, GeneralSecurityException {
+    KeyVersion key = null;
+    if (decryptedKeys != null) {
+      key = decryptedKeys.get(encryptedKeyVersion);
+      if (key != null) {
+        return key;
+      }
+    }
     try {
-      return doOp(new ProviderCallable<KeyVersion>() {
+      key = doOp(new ProviderCallable<KeyVersion>() {
         @Override
         public KeyVersion call(KMSClientProvider provider)
             throws IOException, GeneralSecurityException {
@@ -360,6 +390,67 @@ public KeyVersion call(KMSClientProvider provider)
       }
       throw new IOException(we.getCause());
     }
+    if (decryptedKeys != null) {
+      decryptedKeys.put(encryptedKeyVersion, key);
+    }
+    return key;
+  }
+
+  /**
+   * Decrypts the given keys with a single call to the KMS. When the decrypted
+   * keys are cached, only the keys missing from the cache are sent, and the
+   * decrypted keys are added to the cache, so that a batch can be used to
+   * prefetch the keys of many files before opening them.
+   */
+  @Override
+  public List<KeyVersion> decryptEncryptedKeys(
+      final List<EncryptedKeyVersion> ekvs)
+      throws IOException, GeneralSecurityException {
+    Preconditions.checkNotNull(ekvs, "ekvs");
+    final List<KeyVersion> keys = new ArrayList<>(ekvs.size());
+    final List<EncryptedKeyVersion> missing;
+    if (decryptedKeys == null) {
+      missing = ekvs;
+    } else {
+      missing = new ArrayList<>();
+      for (EncryptedKeyVersion ekv : ekvs) {
+        final KeyVersion key = decryptedKeys.get(ekv);
+        keys.add(key);
+        if (key == null) {
+          missing.add(ekv);
+        }
+      }
+      if (missing.isEmpty()) {
+        return keys;
+      }
+    }
+    final List<KeyVersion> decrypted;
+    try {
+      decrypted = doOp(new ProviderCallable<List<KeyVersion>>() {
+        @Override
+        public List<KeyVersion> call(KMSClientProvider provider)
+            throws IOException, GeneralSecurityException {
+          return provider.decryptEncryptedKeys(missing);
+        }
+      }, nextIdx(), true);
+    } catch (WrapperException we) {
+      if (we.getCause() instanceof GeneralSecurityException) {
+        throw (GeneralSecurityException) we.getCause();
+      }
+      throw new IOException(we.getCause());
+    }
+    if (decryptedKeys == null) {
+      return decrypted;
+    }
+    int next = 0;
+    for (int i = 0; i < keys.size(); i++) {
+      if (keys.get(i) == null) {
+        final KeyVersion key = decrypted.get(next++);
+        decryptedKeys.put(ekvs.get(i), key);
+        keys.set(i, key);
+      }
+    }
+    return keys;
   }
 
   @Override
@@ -502,6 +593,9 @@ public Void call(KMSClientProvider provider) throws IOException {
         return null;
       }
     }, nextIdx(), false);
+    if (decryptedKeys != null) {
+      decryptedKeys.invalidate(name);
+    }
   }
 
   @Override
@@ -541,6 +635,9 @@ public KeyVersion call(KMSClientProvider provider) throws IOException,
   // Close all providers in the LB group
   @Override
   public void close() throws IOException {
+    if (decryptedKeys != null) {
+      decryptedKeys.invalidateAll();
+    }
     for (KMSClientProvider provider : providers) {
       try {
         provider.close();
@@ -65,6 +65,32 @@ public class CommonConfigurationKeys extends CommonConfigurationKeysPublic {
   /** Default value for IPC_SERVER_RPC_MAX_RESPONSE_SIZE_KEY */
   public static final int     IPC_SERVER_RPC_MAX_RESPONSE_SIZE_DEFAULT =
     1024*1024;
+  /** Whether the RPC server pools its request and response buffers */
+  public static final String  IPC_SERVER_BUFFER_POOL_ENABLED_KEY =
+    "ipc.server.buffer.pool.enabled";
+  /** Default value for IPC_SERVER_BUFFER_POOL_ENABLED_KEY */
+  public static final boolean IPC_SERVER_BUFFER_POOL_ENABLED_DEFAULT = false;
+  /** Buffers larger than this are not pooled */
+  public static final String  IPC_SERVER_BUFFER_POOL_MAX_SIZE_KEY =
+    "ipc.server.buffer.pool.max.buffer.size";
+  /** Default value for IPC_SERVER_BUFFER_POOL_MAX_SIZE_KEY */
+  public static final int     IPC_SERVER_BUFFER_POOL_MAX_SIZE_DEFAULT =
+    1024*1024;
+  /** Number of free buffers kept for each buffer size */
+  public static final String  IPC_SERVER_BUFFER_POOL_CAPACITY_KEY =
+    "ipc.server.buffer.pool.buffers.per.size";
+  /** Default value for IPC_SERVER_BUFFER_POOL_CAPACITY_KEY */
+  public static final int     IPC_SERVER_BUFFER_POOL_CAPACITY_DEFAULT = 128;
+  /** Whether the RPC server reads and writes on Netty event loops */
+  public static final String  IPC_SERVER_NETTY_ENABLED_KEY =
+    "ipc.server.netty.enabled";
+  /** Default value for IPC_SERVER_NETTY_ENABLED_KEY */
+  public static final boolean IPC_SERVER_NETTY_ENABLED_DEFAULT = false;
+  /** Whether the Netty RPC server uses the native epoll transport */
+  public static final String  IPC_SERVER_NETTY_EPOLL_ENABLED_KEY =
+    "ipc.server.netty.epoll.enabled";
+  /** Default value for IPC_SERVER_NETTY_EPOLL_ENABLED_KEY */
+  public static final boolean IPC_SERVER_NETTY_EPOLL_ENABLED_DEFAULT = true;
   /** Number of threads in RPC server reading from the socket */
   public static final String  IPC_SERVER_RPC_READ_THREADS_KEY =
     "ipc.server.read.threadpool.size";
@@ -176,6 +202,25 @@ public class CommonConfigurationKeys extends CommonConfigurationKeysPublic {
   public static final boolean IO_COMPRESSION_CODEC_LZ4_USELZ4HC_DEFAULT =
       false;
 
+  /**
+   * Number of threads compressing the blocks of a stream created by
+   * {@link org.apache.hadoop.io.compress.ParallelCompressorStream#create},
+   * and of a block compressed SequenceFile. 1 compresses on the writer thread.
+   */
+  public static final String IO_COMPRESSION_PARALLEL_THREADS_KEY =
+      "io.compression.parallel.threads";
+
+  /** Default value for IO_COMPRESSION_PARALLEL_THREADS_KEY */
+  public static final int IO_COMPRESSION_PARALLEL_THREADS_DEFAULT = 1;
+
+  /** Size of the blocks compressed independently by parallel streams */
+  public static final String IO_COMPRESSION_PARALLEL_BLOCK_SIZE_KEY =
+      "io.compression.parallel.block.size";
+
+  /** Default value for IO_COMPRESSION_PARALLEL_BLOCK_SIZE_KEY */
+  public static final int IO_COMPRESSION_PARALLEL_BLOCK_SIZE_DEFAULT =
+      4 * 1024 * 1024;
+
 
 
   /**
@@ -367,6 +412,10 @@ public class CommonConfigurationKeys extends CommonConfigurationKeysPublic {
   public static final String RPC_METRICS_QUANTILE_ENABLE =
       "rpc.metrics.quantile.enable";
   public static final boolean RPC_METRICS_QUANTILE_ENABLE_DEFAULT = false;
+  public static final String RPC_METRICS_QUANTILE_HISTOGRAM_ENABLE =
+      "rpc.metrics.quantile.histogram.enable";
+  public static final boolean RPC_METRICS_QUANTILE_HISTOGRAM_ENABLE_DEFAULT =
+      false;
   public static final String  RPC_METRICS_PERCENTILES_INTERVALS_KEY =
       "rpc.metrics.percentiles.intervals";
   
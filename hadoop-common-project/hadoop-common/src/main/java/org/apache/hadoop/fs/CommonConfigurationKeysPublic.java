@@ -72,6 +72,33 @@ public class CommonConfigurationKeysPublic {
   public static final String  FS_DU_INTERVAL_KEY = "fs.du.interval";
   /** Default value for FS_DU_INTERVAL_KEY */
   public static final long    FS_DU_INTERVAL_DEFAULT = 600000;
+  /**
+   * @see
+   * <a href="{@docRoot}/../hadoop-project-dist/hadoop-common/core-default.xml">
+   * core-default.xml</a>
+   */
+  public static final String  FS_GETSPACEUSED_WALK_THREADS_KEY =
+      "fs.getspaceused.walk.threads";
+  /** Default value for FS_GETSPACEUSED_WALK_THREADS_KEY */
+  public static final int     FS_GETSPACEUSED_WALK_THREADS_DEFAULT = 4;
+  /**
+   * @see
+   * <a href="{@docRoot}/../hadoop-project-dist/hadoop-common/core-default.xml">
+   * core-default.xml</a>
+   */
+  public static final String  FS_GETSPACEUSED_VERIFY_INTERVAL_KEY =
+      "fs.getspaceused.verify.interval";
+  /** Default value for FS_GETSPACEUSED_VERIFY_INTERVAL_KEY */
+  public static final long    FS_GETSPACEUSED_VERIFY_INTERVAL_DEFAULT =
+      86400000;
+  /**
+   * @see
+   * <a href="{@docRoot}/../hadoop-project-dist/hadoop-common/core-default.xml">
+   * core-default.xml</a>
+   */
+  public static final String  FS_LISTING_THREADS_KEY = "fs.listing.threads";
+  /** Default value for FS_LISTING_THREADS_KEY */
+  public static final int     FS_LISTING_THREADS_DEFAULT = 1;
   /**
    * @see
    * <a href="{@docRoot}/../hadoop-project-dist/hadoop-common/core-default.xml">
@@ -219,6 +246,33 @@ public class CommonConfigurationKeysPublic {
   public static final String  IO_MAP_INDEX_SKIP_KEY = "io.map.index.skip";
   /** Default value for IO_MAP_INDEX_SKIP_KEY */
   public static final int     IO_MAP_INDEX_SKIP_DEFAULT = 0;
+  /**
+   * @see
+   * <a href="{@docRoot}/../hadoop-project-dist/hadoop-common/core-default.xml">
+   * core-default.xml</a>
+   */
+  public static final String  IO_MAP_INDEX_CACHE_SIZE_KEY =
+    "io.map.index.cache.size";
+  /** Default value for IO_MAP_INDEX_CACHE_SIZE_KEY */
+  public static final long    IO_MAP_INDEX_CACHE_SIZE_DEFAULT = 0;
+  /**
+   * @see
+   * <a href="{@docRoot}/../hadoop-project-dist/hadoop-common/core-default.xml">
+   * core-default.xml</a>
+   */
+  public static final String  IO_READAHEAD_ADAPTIVE_KEY =
+    "io.readahead.adaptive";
+  /** Default value for IO_READAHEAD_ADAPTIVE_KEY */
+  public static final boolean IO_READAHEAD_ADAPTIVE_DEFAULT = false;
+  /**
+   * @see
+   * <a href="{@docRoot}/../hadoop-project-dist/hadoop-common/core-default.xml">
+   * core-default.xml</a>
+   */
+  public static final String  IO_READAHEAD_ADAPTIVE_MAX_MULTIPLIER_KEY =
+    "io.readahead.adaptive.max.multiplier";
+  /** Default value for IO_READAHEAD_ADAPTIVE_MAX_MULTIPLIER_KEY */
+  public static final int     IO_READAHEAD_ADAPTIVE_MAX_MULTIPLIER_DEFAULT = 8;
   /**
    * @see
    * <a href="{@docRoot}/../hadoop-project-dist/hadoop-common/core-default.xml">
@@ -546,6 +600,19 @@ public class CommonConfigurationKeysPublic {
    */
   public static final int
       HADOOP_SECURITY_GROUPS_CACHE_BACKGROUND_RELOAD_THREADS_DEFAULT = 3;
+  /**
+   * @see
+   * <a href="{@docRoot}/../hadoop-project-dist/hadoop-common/core-default.xml">
+   * core-default.xml</a>
+   */
+  public static final String HADOOP_SECURITY_GROUPS_LOOKUP_BATCH_SIZE =
+      "hadoop.security.groups.lookup.batch.size";
+  /**
+   * @see
+   * <a href="{@docRoot}/../hadoop-project-dist/hadoop-common/core-default.xml">
+   * core-default.xml</a>
+   */
+  public static final int HADOOP_SECURITY_GROUPS_LOOKUP_BATCH_SIZE_DEFAULT = 1;
   /**
    * @see
    * <a href="{@docRoot}/../hadoop-project-dist/hadoop-common/core-default.xml">
@@ -794,6 +861,27 @@ public class CommonConfigurationKeysPublic {
   /** Default value for KMS_CLIENT_ENC_KEY_CACHE_EXPIRY (12 hrs)*/
   public static final int KMS_CLIENT_ENC_KEY_CACHE_EXPIRY_DEFAULT = 43200000;
 
+  /**
+   * @see
+   * <a href="{@docRoot}/../hadoop-project-dist/hadoop-common/core-default.xml">
+   * core-default.xml</a>
+   */
+  public static final String KMS_CLIENT_DECRYPTED_KEY_CACHE_SIZE =
+      "hadoop.security.kms.client.decrypted.key.cache.size";
+  /** Default value for KMS_CLIENT_DECRYPTED_KEY_CACHE_SIZE (disabled). */
+  public static final int KMS_CLIENT_DECRYPTED_KEY_CACHE_SIZE_DEFAULT = 0;
+
+  /**
+   * @see
+   * <a href="{@docRoot}/../hadoop-project-dist/hadoop-common/core-default.xml">
+   * core-default.xml</a>
+   */
+  public static final String KMS_CLIENT_DECRYPTED_KEY_CACHE_EXPIRY_MS =
+      "hadoop.security.kms.client.decrypted.key.cache.expiry";
+  /** Default value for KMS_CLIENT_DECRYPTED_KEY_CACHE_EXPIRY_MS (1 min). */
+  public static final long KMS_CLIENT_DECRYPTED_KEY_CACHE_EXPIRY_DEFAULT =
+      60000;
+
   /**
    * @see
    * <a href="{@docRoot}/../hadoop-project-dist/hadoop-common/core-default.xml">
@@ -24,6 +24,7 @@
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.util.DataChecksum;
 import org.apache.hadoop.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -331,6 +332,14 @@ private int readChecksumChunk(byte b[], final int off, final int len)
   private void verifySums(final byte b[], final int off, int read)
     throws ChecksumException
   {
+    if (sum instanceof DataChecksum
+        && ((DataChecksum) sum).getBytesPerChecksum() == maxChunkSize) {
+      // verify all the chunks in one go, with the native or JDK CRC code
+      ((DataChecksum) sum).verifyChunkedSums(b, off, read, checksum, 0,
+          String.valueOf(file), chunkPos);
+      return;
+    }
+
     int leftToVerify = read;
     int verifyOff = 0;
     checksumInts.rewind();
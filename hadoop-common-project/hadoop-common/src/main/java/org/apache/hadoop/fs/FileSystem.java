@@ -44,6 +44,9 @@
 import java.util.Stack;
 import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
@@ -83,6 +86,7 @@
 
 import com.google.common.base.Preconditions;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -192,6 +196,13 @@ public abstract class FileSystem extends Configured
    */
   boolean resolveSymlinks;
 
+  /**
+   * The threads listing the directories of a tree in parallel, created on
+   * first use, if {@link CommonConfigurationKeysPublic#FS_LISTING_THREADS_KEY}
+   * is more than 1.
+   */
+  private ThreadPoolExecutor listingExecutor;
+
   /**
    * This method adds a FileSystem instance to the cache so that it can
    * be retrieved later. It is only for testing.
@@ -2183,6 +2194,10 @@ public RemoteIterator<FileStatus> listStatusIterator(final Path p)
    *   if recursive is true, return files in the subtree rooted at the path.
    * If the path is a file, return the file's status and block locations.
    * </pre>
+   * If {@link CommonConfigurationKeysPublic#FS_LISTING_THREADS_KEY} is more
+   * than 1, the subdirectories are listed that many at a time, and their
+   * files are returned as they are listed.
+   *
    * @param f is the path
    * @param recursive if the subdirectories need to be traversed recursively
    *
@@ -2194,6 +2209,13 @@ public RemoteIterator<FileStatus> listStatusIterator(final Path p)
   public RemoteIterator<LocatedFileStatus> listFiles(
       final Path f, final boolean recursive)
   throws FileNotFoundException, IOException {
+    if (recursive) {
+      ThreadPoolExecutor executor = getListingExecutor();
+      if (executor != null) {
+        return new ParallelListFilesIterator(this, f, executor,
+            executor.getMaximumPoolSize());
+      }
+    }
     return new RemoteIterator<LocatedFileStatus>() {
       private Stack<RemoteIterator<LocatedFileStatus>> itors = new Stack<>();
       private RemoteIterator<LocatedFileStatus> curItor =
@@ -2243,6 +2265,30 @@ public LocatedFileStatus next() throws IOException {
     };
   }
 
+  /**
+   * Get the threads listing the directories of a tree in parallel.
+   * @return the executor, or null if the directories are listed by the
+   * caller, one at a time.
+   */
+  final synchronized ThreadPoolExecutor getListingExecutor() {
+    if (listingExecutor == null) {
+      final Configuration conf = getConf();
+      final int threads = conf == null ? FS_LISTING_THREADS_DEFAULT
+          : conf.getInt(FS_LISTING_THREADS_KEY, FS_LISTING_THREADS_DEFAULT);
+      if (threads <= 1) {
+        return null;
+      }
+      listingExecutor = new ThreadPoolExecutor(threads, threads,
+          60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactoryBuilder().setDaemon(true)
+              .setNameFormat(getClass().getSimpleName() + "-listing-%d")
+              .build());
+      // the threads are only kept while there are directories to list
+      listingExecutor.allowCoreThreadTimeOut(true);
+    }
+    return listingExecutor;
+  }
+
   /** Return the current user's home directory in this FileSystem.
    * The default implementation returns {@code "/user/$USER/"}.
    */
@@ -2504,6 +2550,11 @@ public void close() throws IOException {
     // delete all files that were marked as delete-on-exit.
     processDeleteOnExit();
     CACHE.remove(this.key, this);
+    synchronized (this) {
+      if (listingExecutor != null) {
+        listingExecutor.shutdownNow();
+      }
+    }
   }
 
   /**
@@ -19,9 +19,14 @@
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
@@ -42,6 +47,8 @@ class Globber {
   private final Path pathPattern;
   private final PathFilter filter;
   private final Tracer tracer;
+  /** The threads listing the candidates of a wildcard, or null. */
+  private final ExecutorService executor;
   
   public Globber(FileSystem fs, Path pathPattern, PathFilter filter) {
     this.fs = fs;
@@ -49,6 +56,7 @@ public Globber(FileSystem fs, Path pathPattern, PathFilter filter) {
     this.pathPattern = pathPattern;
     this.filter = filter;
     this.tracer = FsTracer.get(fs.getConf());
+    this.executor = fs.getListingExecutor();
   }
 
   public Globber(FileContext fc, Path pathPattern, PathFilter filter) {
@@ -57,6 +65,7 @@ public Globber(FileContext fc, Path pathPattern, PathFilter filter) {
     this.pathPattern = pathPattern;
     this.filter = filter;
     this.tracer = fc.getTracer();
+    this.executor = null;
   }
 
   private FileStatus getFileStatus(Path path) throws IOException {
@@ -83,6 +92,87 @@ private FileStatus[] listStatus(Path path) throws IOException {
     }
   }
 
+  /**
+   * List the children of a candidate matched against a wildcard.
+   * @return the children, or null if the candidate is not a directory.
+   */
+  private FileStatus[] listCandidate(Path path) throws IOException {
+    FileStatus[] children = listStatus(path);
+    if (children.length == 1) {
+      // If we get back only one result, this could be either a listing
+      // of a directory with one entry, or it could reflect the fact
+      // that what we listed resolved to a file.
+      //
+      // Unfortunately, we can't just compare the returned paths to
+      // figure this out.  Consider the case where you have /a/b, where
+      // b is a symlink to "..".  In that case, listing /a/b will give
+      // back "/a/b" again.  If we just went by returned pathname, we'd
+      // incorrectly conclude that /a/b was a file and should not match
+      // /a/*/*.  So we use getFileStatus of the path we just listed to
+      // disambiguate.
+      FileStatus status = getFileStatus(path);
+      if (status == null) {
+        // null means the file was not found
+        LOG.warn("File/directory {} not found:"
+            + " it may have been deleted."
+            + " If this is an object store, this can be a sign of"
+            + " eventual consistency problems.",
+            path);
+        return null;
+      }
+      if (!status.isDirectory()) {
+        return null;
+      }
+    }
+    return children;
+  }
+
+  /**
+   * List the children of all the candidates, concurrently if the file
+   * system has listing threads.
+   * @return the children of each candidate, in the order of the candidates.
+   */
+  private List<FileStatus[]> listCandidates(List<FileStatus> candidates)
+      throws IOException {
+    List<FileStatus[]> listings = new ArrayList<>(candidates.size());
+    if (executor == null || candidates.size() < 2) {
+      for (FileStatus candidate : candidates) {
+        listings.add(listCandidate(candidate.getPath()));
+      }
+      return listings;
+    }
+    List<Future<FileStatus[]>> futures = new ArrayList<>(candidates.size());
+    try {
+      for (FileStatus candidate : candidates) {
+        final Path path = candidate.getPath();
+        futures.add(executor.submit(() -> listCandidate(path)));
+      }
+      for (Future<FileStatus[]> future : futures) {
+        listings.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw (IOException) new InterruptedIOException(
+          "Interrupted expanding " + pathPattern).initCause(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    } catch (RejectedExecutionException e) {
+      throw new IOException("Cannot expand " + pathPattern
+          + ": the file system is closed", e);
+    } finally {
+      for (Future<FileStatus[]> future : futures) {
+        future.cancel(true);
+      }
+    }
+    return listings;
+  }
+
   private Path fixRelativePart(Path path) {
     if (fs != null) {
       return fs.fixRelativePart(path);
@@ -230,35 +320,13 @@ private FileStatus[] doGlob() throws IOException {
           }
           continue;
         }
-        for (FileStatus candidate : candidates) {
-          if (globFilter.hasPattern()) {
-            FileStatus[] children = listStatus(candidate.getPath());
-            if (children.length == 1) {
-              // If we get back only one result, this could be either a listing
-              // of a directory with one entry, or it could reflect the fact
-              // that what we listed resolved to a file.
-              //
-              // Unfortunately, we can't just compare the returned paths to
-              // figure this out.  Consider the case where you have /a/b, where
-              // b is a symlink to "..".  In that case, listing /a/b will give
-              // back "/a/b" again.  If we just went by returned pathname, we'd
-              // incorrectly conclude that /a/b was a file and should not match
-              // /a/*/*.  So we use getFileStatus of the path we just listed to
-              // disambiguate.
-              Path path = candidate.getPath();
-              FileStatus status = getFileStatus(path);
-              if (status == null) {
-                // null means the file was not found
-                LOG.warn("File/directory {} not found:"
-                    + " it may have been deleted."
-                    + " If this is an object store, this can be a sign of"
-                    + " eventual consistency problems.",
-                    path);
-                continue;
-              }
-              if (!status.isDirectory()) {
-                continue;
-              }
+        if (globFilter.hasPattern()) {
+          List<FileStatus[]> listings = listCandidates(candidates);
+          for (int i = 0; i < candidates.size(); i++) {
+            FileStatus candidate = candidates.get(i);
+            FileStatus[] children = listings.get(i);
+            if (children == null) {
+              continue;
             }
             for (FileStatus child : children) {
               if (componentIdx < components.size() - 1) {
@@ -272,7 +340,9 @@ private FileStatus[] doGlob() throws IOException {
                 newCandidates.add(child);
               }
             }
-          } else {
+          }
+        } else {
+          for (FileStatus candidate : candidates) {
             // When dealing with non-glob components, use getFileStatus 
             // instead of listStatus.  This is an optimization, but it also
             // is necessary for correctness in HDFS, since there are some
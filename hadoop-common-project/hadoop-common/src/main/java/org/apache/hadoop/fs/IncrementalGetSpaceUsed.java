@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.util.Time;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Keeps track of the space used in a directory from the changes reported
+ * through {@link #incDfsUsed(long)}, e.g. by the DataNode as it adds and
+ * removes replicas, rather than by running du on it.
+ *
+ * Every fs.getspaceused.verify.interval, much longer than the refresh
+ * interval, the directory is walked to check that total and correct any
+ * drift; the refreshes in between only rely on the changes reported. The
+ * initial value given to the builder, if any, counts as checked. The walk
+ * runs in-process, on a few threads
+ * (fs.getspaceused.walk.threads): the top levels of the tree are listed in
+ * parallel, and the subtrees below them walked with
+ * {@link Files#walkFileTree}. Like the incremental updates of the DataNode,
+ * it adds up the lengths of the files, rather than the blocks allocated to
+ * them.
+ *
+ * Changes reported while a walk runs are kept on top of its result, so a
+ * file created or deleted during the walk may be counted twice or not at
+ * all until the next walk, as it would have been with du.
+ *
+ * To use set fs.getspaceused.classname
+ * to org.apache.hadoop.fs.IncrementalGetSpaceUsed in your core-site.xml
+ */
+@InterfaceAudience.LimitedPrivate({"HDFS", "MapReduce"})
+@InterfaceStability.Evolving
+public class IncrementalGetSpaceUsed extends CachingGetSpaceUsed {
+  /** Directories above this depth are listed in parallel. */
+  private static final int FORK_DEPTH = 3;
+
+  private final Path root;
+  private final ForkJoinPool pool;
+  private final long verifyInterval;
+  /** Whether the total was checked, and when; guarded by this. */
+  private boolean verified;
+  private long lastVerified;
+  private volatile long lastDrift;
+
+  public IncrementalGetSpaceUsed(Builder builder) throws IOException {
+    super(builder);
+    this.root = Paths.get(getDirPath());
+    final Configuration conf = builder.getConf();
+    final int threads = Math.max(1, conf == null
+        ? CommonConfigurationKeys.FS_GETSPACEUSED_WALK_THREADS_DEFAULT
+        : conf.getInt(CommonConfigurationKeys.FS_GETSPACEUSED_WALK_THREADS_KEY,
+            CommonConfigurationKeys.FS_GETSPACEUSED_WALK_THREADS_DEFAULT));
+    this.pool = new ForkJoinPool(threads);
+    this.verifyInterval = conf == null
+        ? CommonConfigurationKeys.FS_GETSPACEUSED_VERIFY_INTERVAL_DEFAULT
+        : conf.getLong(
+            CommonConfigurationKeys.FS_GETSPACEUSED_VERIFY_INTERVAL_KEY,
+            CommonConfigurationKeys.FS_GETSPACEUSED_VERIFY_INTERVAL_DEFAULT);
+    if (builder.getInitialUsed() >= 0) {
+      verified = true;
+      lastVerified = Time.monotonicNow();
+    }
+  }
+
+  @Override
+  protected synchronized void refresh() {
+    final long start = Time.monotonicNow();
+    if (verified && start - lastVerified < verifyInterval) {
+      // rely on the changes reported until the next check
+      return;
+    }
+    final long before = used.get();
+    final long walked;
+    try {
+      walked = walk();
+    } catch (IOException e) {
+      LOG.warn("Could not get disk usage information for path {}",
+          getDirPath(), e);
+      return;
+    } catch (CancellationException | RejectedExecutionException e) {
+      // closed while walking
+      return;
+    }
+    // keep the changes reported since the walk started
+    lastDrift = walked - before;
+    used.addAndGet(lastDrift);
+    verified = true;
+    lastVerified = start;
+    LOG.debug("Walked {} in {} ms: {} bytes used, {} bytes of drift",
+        getDirPath(), Time.monotonicNow() - start, walked, lastDrift);
+  }
+
+  /**
+   * @return the total length of the files under the directory.
+   */
+  private long walk() throws IOException {
+    if (!Files.isDirectory(root)) {
+      return Files.exists(root) ? Files.size(root) : 0;
+    }
+    try {
+      return pool.invoke(new DirectoryUsage(root, 0));
+    } catch (WalkException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * @return the difference between the last walk and the space used it
+   *         replaced.
+   */
+  @VisibleForTesting
+  long getLastDrift() {
+    return lastDrift;
+  }
+
+  @Override
+  public void close() throws IOException {
+    super.close();
+    pool.shutdownNow();
+  }
+
+  /** Wraps an IOException out of a task. */
+  @SuppressWarnings("serial")
+  private static final class WalkException extends RuntimeException {
+    WalkException(IOException cause) {
+      super(cause);
+    }
+
+    @Override
+    public synchronized IOException getCause() {
+      return (IOException) super.getCause();
+    }
+  }
+
+  /** The total length of the files under a directory. */
+  @SuppressWarnings("serial")
+  private static final class DirectoryUsage extends RecursiveTask<Long> {
+    private final Path dir;
+    private final int depth;
+
+    DirectoryUsage(Path dir, int depth) {
+      this.dir = dir;
+      this.depth = depth;
+    }
+
+    @Override
+    protected Long compute() {
+      try {
+        return depth < FORK_DEPTH ? list() : walk();
+      } catch (NoSuchFileException e) {
+        // deleted since its parent was listed
+        return 0L;
+      } catch (IOException e) {
+        throw new WalkException(e);
+      }
+    }
+
+    private long list() throws IOException {
+      long total = 0;
+      final List<DirectoryUsage> subdirs = new ArrayList<DirectoryUsage>();
+      try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+        for (Path entry : entries) {
+          final BasicFileAttributes attrs;
+          try {
+            attrs = Files.readAttributes(entry, BasicFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS);
+          } catch (NoSuchFileException e) {
+            continue;
+          }
+          if (attrs.isDirectory()) {
+            final DirectoryUsage task = new DirectoryUsage(entry, depth + 1);
+            task.fork();
+            subdirs.add(task);
+          } else {
+            total += attrs.size();
+          }
+        }
+      }
+      for (DirectoryUsage task : subdirs) {
+        total += task.join();
+      }
+      return total;
+    }
+
+    private long walk() throws IOException {
+      final long[] total = new long[1];
+      Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult visitFile(Path file,
+            BasicFileAttributes attrs) {
+          total[0] += attrs.size();
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException e)
+            throws IOException {
+          if (e instanceof NoSuchFileException) {
+            return FileVisitResult.CONTINUE;
+          }
+          throw e;
+        }
+      });
+      return total[0];
+    }
+  }
+}
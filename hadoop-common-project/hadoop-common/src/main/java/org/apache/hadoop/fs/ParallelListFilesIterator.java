@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * Iterates over the files of a tree, listing its directories with several
+ * threads.
+ *
+ * The top directory is listed by the caller. The subdirectories found are
+ * then listed by the threads of an executor, at most a given number at a
+ * time, and the listings are handed back in pages, so that the files of a
+ * large directory are returned while it is still being listed. Only the
+ * caller's thread schedules directories, so the iterator itself is not
+ * shared between threads.
+ *
+ * The files are returned in no particular order. An error listing a
+ * subdirectory is thrown by the call to {@link #hasNext()} reaching it.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Unstable
+class ParallelListFilesIterator implements RemoteIterator<LocatedFileStatus> {
+  /** The number of entries of a directory handed back at a time. */
+  static final int PAGE_SIZE = 1000;
+
+  private final FileSystem fs;
+  private final Path root;
+  private final Executor executor;
+  private final int parallelism;
+
+  /** The directories found but not being listed yet. */
+  private final Deque<Path> pending = new ArrayDeque<>();
+  /** The pages listed by the threads, in the order they were listed. */
+  private final BlockingQueue<Page> pages = new LinkedBlockingQueue<>();
+  /** The number of directories being listed. */
+  private int listing;
+
+  private RemoteIterator<LocatedFileStatus> rootItor;
+  private Iterator<LocatedFileStatus> curPage = Collections.emptyIterator();
+  private LocatedFileStatus curFile;
+
+  ParallelListFilesIterator(FileSystem fs, Path root, Executor executor,
+      int parallelism) throws IOException {
+    this.fs = fs;
+    this.root = root;
+    this.executor = executor;
+    this.parallelism = parallelism;
+    // list the top directory now, so that a missing path fails here
+    this.rootItor = fs.listLocatedStatus(root);
+  }
+
+  /** A part of the listing of a directory. */
+  private static final class Page {
+    private final List<LocatedFileStatus> files;
+    private final List<Path> dirs;
+    private final boolean last;
+    private final Exception error;
+
+    Page(List<LocatedFileStatus> files, List<Path> dirs, boolean last) {
+      this.files = files;
+      this.dirs = dirs;
+      this.last = last;
+      this.error = null;
+    }
+
+    Page(Exception error) {
+      this.files = Collections.emptyList();
+      this.dirs = Collections.emptyList();
+      this.last = true;
+      this.error = error;
+    }
+  }
+
+  @Override
+  public boolean hasNext() throws IOException {
+    while (curFile == null) {
+      if (rootItor != null) {
+        if (rootItor.hasNext()) {
+          handleFileStat(rootItor.next());
+          continue;
+        }
+        rootItor = null;
+      }
+      if (curPage.hasNext()) {
+        curFile = curPage.next();
+      } else if (listing > 0) {
+        nextPage();
+      } else {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void handleFileStat(LocatedFileStatus stat) throws IOException {
+    if (stat.isFile()) {
+      curFile = stat;
+    } else {
+      pending.add(stat.getPath());
+      schedule();
+    }
+  }
+
+  /**
+   * Start listing pending directories, up to the parallelism.
+   */
+  private void schedule() throws IOException {
+    while (listing < parallelism && !pending.isEmpty()) {
+      final Path dir = pending.poll();
+      try {
+        executor.execute(() -> list(dir));
+      } catch (RejectedExecutionException e) {
+        throw new IOException("Cannot list " + dir
+            + ": the file system is closed", e);
+      }
+      listing++;
+    }
+  }
+
+  /**
+   * Wait for the next page listed by the threads.
+   */
+  private void nextPage() throws IOException {
+    final Page page;
+    try {
+      page = pages.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw (IOException) new InterruptedIOException(
+          "Interrupted listing " + root).initCause(e);
+    }
+    if (page.last) {
+      listing--;
+    }
+    if (page.error instanceof IOException) {
+      throw (IOException) page.error;
+    } else if (page.error != null) {
+      throw (RuntimeException) page.error;
+    }
+    pending.addAll(page.dirs);
+    schedule();
+    curPage = page.files.iterator();
+  }
+
+  /**
+   * List a directory, on a thread of the executor.
+   */
+  private void list(Path dir) {
+    try {
+      final RemoteIterator<LocatedFileStatus> itor = fs.listLocatedStatus(dir);
+      List<LocatedFileStatus> files = new ArrayList<>();
+      List<Path> dirs = new ArrayList<>();
+      int count = 0;
+      while (itor.hasNext()) {
+        final LocatedFileStatus stat = itor.next();
+        if (stat.isFile()) {
+          files.add(stat);
+        } else {
+          dirs.add(stat.getPath());
+        }
+        if (++count == PAGE_SIZE) {
+          pages.add(new Page(files, dirs, false));
+          files = new ArrayList<>();
+          dirs = new ArrayList<>();
+          count = 0;
+        }
+      }
+      pages.add(new Page(files, dirs, true));
+    } catch (IOException | RuntimeException e) {
+      pages.add(new Page(e));
+    }
+  }
+
+  @Override
+  public LocatedFileStatus next() throws IOException {
+    if (hasNext()) {
+      LocatedFileStatus result = curFile;
+      curFile = null;
+      return result;
+    }
+    throw new NoSuchElementException("No more entry in " + root);
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.fs.shell;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.util.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A copy command which can copy the files with several threads, given with
+ * the -t option. The main thread lists the sources and creates the target
+ * directories, while the files are copied by a pool of threads, with a
+ * bounded queue: when it is full, the main thread copies the file itself,
+ * which keeps the listing from running too far ahead of the copies.
+ *
+ * The attributes of the target directories are preserved once all the files
+ * are copied, as copying a file into a directory changes its modification
+ * time.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+abstract class CopyCommandWithMultiThread extends CommandWithDestination {
+  private static final Logger LOG =
+      LoggerFactory.getLogger(CopyCommandWithMultiThread.class);
+
+  private static final int MAX_THREADS =
+      Runtime.getRuntime().availableProcessors() * 2;
+  private static final int QUEUE_SIZE = 1024;
+
+  private int numThreads = 1;
+  private ThreadPoolExecutor executor = null;
+
+  /** The target directories to preserve the attributes of after copying. */
+  private final List<DeferredDirectory> deferredDirectories =
+      new ArrayList<DeferredDirectory>();
+
+  private final AtomicLong filesCopied = new AtomicLong();
+  private final AtomicLong bytesCopied = new AtomicLong();
+
+  /**
+   * Set the number of threads copying the files: between 1, the default,
+   * and twice the number of processors.
+   * @param numberThreadsString the value of the -t option, or null
+   */
+  protected void setNumberThreads(String numberThreadsString) {
+    if (numberThreadsString == null) {
+      numThreads = 1;
+    } else {
+      int parsedValue = Integer.parseInt(numberThreadsString);
+      if (parsedValue <= 1) {
+        numThreads = 1;
+      } else if (parsedValue > MAX_THREADS) {
+        numThreads = MAX_THREADS;
+      } else {
+        numThreads = parsedValue;
+      }
+    }
+  }
+
+  @Override
+  protected void processArguments(LinkedList<PathData> args)
+      throws IOException {
+    executor = new ThreadPoolExecutor(numThreads, numThreads, 1,
+        TimeUnit.SECONDS, new ArrayBlockingQueue<>(QUEUE_SIZE),
+        new ThreadFactoryBuilder().setDaemon(true)
+            .setNameFormat(getName() + "-%d").build(),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    final long start = Time.monotonicNow();
+    try {
+      super.processArguments(args);
+    } finally {
+      // issue the command and then wait for it to finish
+      executor.shutdown();
+      try {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        executor.shutdownNow();
+        displayError(e);
+        Thread.currentThread().interrupt();
+      }
+    }
+    for (DeferredDirectory dir : deferredDirectories) {
+      try {
+        super.preserveAttributes(dir.src, dir.target, dir.preserveRawXAttrs);
+      } catch (IOException e) {
+        displayError(e);
+      }
+    }
+    deferredDirectories.clear();
+    if (numThreads > 1) {
+      final long elapsed = Math.max(1, Time.monotonicNow() - start);
+      LOG.info("Copied {} files, {} bytes in {} ms with {} threads: {} MB/s",
+          filesCopied.get(), bytesCopied.get(), elapsed, numThreads,
+          String.format("%.2f",
+              bytesCopied.get() * 1000.0 / elapsed / (1024 * 1024)));
+    }
+  }
+
+  private void copyFile(PathData src, PathData target) throws IOException {
+    super.copyFileToTarget(src, target);
+    filesCopied.incrementAndGet();
+    bytesCopied.addAndGet(src.stat.getLen());
+  }
+
+  @Override
+  protected void copyFileToTarget(PathData src, PathData target)
+      throws IOException {
+    // if number of thread is 1, mimic put and avoid threading overhead
+    if (numThreads == 1 || executor == null) {
+      copyFile(src, target);
+      return;
+    }
+
+    Runnable task = () -> {
+      try {
+        copyFile(src, target);
+      } catch (IOException e) {
+        displayError(e);
+      }
+    };
+    executor.submit(task);
+  }
+
+  @Override
+  protected void preserveAttributes(PathData src, PathData target,
+      boolean preserveRawXAttrs) throws IOException {
+    if (numThreads > 1 && target.stat != null
+        && target.stat.isDirectory()) {
+      // the files of the directory may still be being copied; the
+      // directories are added after their subdirectories
+      deferredDirectories.add(
+          new DeferredDirectory(src, target, preserveRawXAttrs));
+      return;
+    }
+    super.preserveAttributes(src, target, preserveRawXAttrs);
+  }
+
+  /**
+   * The errors of the copies are displayed from the copying threads.
+   */
+  @Override
+  public void displayError(Exception e) {
+    synchronized (this) {
+      super.displayError(e);
+    }
+  }
+
+  @Override
+  public void displayError(String message) {
+    synchronized (this) {
+      super.displayError(message);
+    }
+  }
+
+  private static class DeferredDirectory {
+    private final PathData src;
+    private final PathData target;
+    private final boolean preserveRawXAttrs;
+
+    DeferredDirectory(PathData src, PathData target,
+        boolean preserveRawXAttrs) {
+      this.src = src;
+      this.target = target;
+      this.preserveRawXAttrs = preserveRawXAttrs;
+    }
+  }
+
+  @VisibleForTesting
+  public int getNumThreads() {
+    return numThreads;
+  }
+
+  @VisibleForTesting
+  public ThreadPoolExecutor getExecutor() {
+    return executor;
+  }
+}
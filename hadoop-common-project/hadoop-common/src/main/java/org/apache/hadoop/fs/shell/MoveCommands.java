@@ -48,6 +48,13 @@ public static class MoveFromLocal extends Put {
       "Same as -put, except that the source is " +
       "deleted after it's copied.";
 
+    @Override
+    protected void processOptions(LinkedList<String> args) throws IOException {
+      super.processOptions(args);
+      // the source is deleted once copied, so the files are copied inline
+      setNumberThreads(null);
+    }
+
     @Override
     protected void processPath(PathData src, PathData target) throws IOException {
       // unlike copy, don't merge existing dirs during move
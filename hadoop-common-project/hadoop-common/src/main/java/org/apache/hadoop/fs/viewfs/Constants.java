@@ -78,4 +78,13 @@ public interface Constants {
   FsPermission PERMISSION_555 = new FsPermission((short) 0555);
 
   String CONFIG_VIEWFS_RENAME_STRATEGY = "fs.viewfs.rename.strategy";
+
+  /**
+   * Config variable for the number of paths a mount table caches the
+   * resolution of, for each of the resolutions with and without the last
+   * path component. 0 disables the cache.
+   */
+  String CONFIG_VIEWFS_RESOLVE_CACHE_SIZE = "fs.viewfs.resolve.cache.size";
+
+  int CONFIG_VIEWFS_RESOLVE_CACHE_SIZE_DEFAULT = 1000;
 }
@@ -18,8 +18,12 @@
 package org.apache.hadoop.fs.viewfs;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.UndeclaredThrowableException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
@@ -29,6 +33,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.security.PrivilegedExceptionAction;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
@@ -53,6 +58,11 @@
  * The two main methods are
  * {@link #InodeTree(Configuration, String)} // constructor
  * {@link #resolve(String, boolean)} 
+ *
+ * The file systems of the links are only created when they are first
+ * resolved to, as the user who built the tree, so that building the tree of
+ * a large mount table does not connect to every target. The results of
+ * resolve are cached, up to fs.viewfs.resolve.cache.size paths.
  */
 
 @InterfaceAudience.Private
@@ -71,6 +81,9 @@ enum ResultKind {
   // the homedir for this mount table
   private final String homedirPrefix;
   private List<MountPoint<T>> mountPoints = new ArrayList<MountPoint<T>>();
+  // the resolved paths, and the paths resolved without their last component
+  private final Cache<String, ResolveResult<T>> resolved;
+  private final Cache<String, ResolveResult<T>> resolvedParents;
 
   static class MountPoint<T> {
     String src;
@@ -230,15 +243,20 @@ enum LinkType {
    */
   static class INodeLink<T> extends INode<T> {
     final URI[] targetDirLinkList;
-    final T targetFileSystem;   // file system object created from the link.
+    private final UserGroupInformation ugi;
+    private final TargetFileSystemFactory<T> targetFactory;
+    // file system object created from the link, on first use.
+    private volatile T targetFileSystem;
 
     /**
      * Construct a mergeLink or nfly.
      */
     INodeLink(final String pathToNode, final UserGroupInformation aUgi,
-        final T targetMergeFs, final URI[] aTargetDirLinkList) {
+        final TargetFileSystemFactory<T> targetMergeFs,
+        final URI[] aTargetDirLinkList) {
       super(pathToNode, aUgi);
-      targetFileSystem = targetMergeFs;
+      ugi = aUgi;
+      targetFactory = targetMergeFs;
       targetDirLinkList = aTargetDirLinkList;
     }
 
@@ -246,9 +264,10 @@ enum LinkType {
      * Construct a simple link (i.e. not a mergeLink).
      */
     INodeLink(final String pathToNode, final UserGroupInformation aUgi,
-        final T targetFs, final URI aTargetDirLink) {
+        final TargetFileSystemFactory<T> targetFs, final URI aTargetDirLink) {
       super(pathToNode, aUgi);
-      targetFileSystem = targetFs;
+      ugi = aUgi;
+      targetFactory = targetFs;
       targetDirLinkList = new URI[1];
       targetDirLinkList[0] = aTargetDirLink;
     }
@@ -271,11 +290,59 @@ boolean isInternalDir() {
       return false;
     }
 
-    public T getTargetFileSystem() {
+    /**
+     * Get the file system of the link, creating it on first use.
+     * @throws IOException if the file system could not be created
+     */
+    public T getTargetFileSystem() throws IOException {
+      T fs = targetFileSystem;
+      if (fs == null) {
+        synchronized (this) {
+          fs = targetFileSystem;
+          if (fs == null) {
+            fs = createTargetFileSystem();
+            targetFileSystem = fs;
+          }
+        }
+      }
+      return fs;
+    }
+
+    private T createTargetFileSystem() throws IOException {
+      try {
+        return ugi.doAs(new PrivilegedExceptionAction<T>() {
+          @Override
+          public T run() throws IOException, URISyntaxException {
+            return targetFactory.create();
+          }
+        });
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted creating the file "
+            + "system of " + getTargetLink());
+      } catch (UndeclaredThrowableException e) {
+        throw new IOException("URISyntax exception: " + getTargetLink(),
+            e.getCause());
+      }
+    }
+
+    /**
+     * @return the file system of the link, or null if it was not created
+     *         yet.
+     */
+    synchronized T getTargetFileSystemIfCreated() {
       return targetFileSystem;
     }
   }
 
+  /**
+   * Creates the file system of a link.
+   * @param <T>
+   */
+  interface TargetFileSystemFactory<T> {
+    T create() throws URISyntaxException, IOException;
+  }
+
   private void createLink(final String src, final String target,
       final LinkType linkType, final String settings,
       final UserGroupInformation aUgi,
@@ -332,7 +399,7 @@ private void createLink(final String src, final String target,
     switch (linkType) {
     case SINGLE:
       newLink = new INodeLink<T>(fullPath, aUgi,
-          getTargetFileSystem(new URI(target)), new URI(target));
+          targetFactory(new URI(target)), new URI(target));
       break;
     case SINGLE_FALLBACK:
     case MERGE_SLASH:
@@ -344,7 +411,12 @@ private void createLink(final String src, final String target,
       final URI[] targetUris = StringUtils.stringToURI(
           StringUtils.getStrings(target));
       newLink = new INodeLink<T>(fullPath, aUgi,
-            getTargetFileSystem(settings, targetUris), targetUris);
+            new TargetFileSystemFactory<T>() {
+              @Override
+              public T create() throws URISyntaxException, IOException {
+                return getTargetFileSystem(settings, targetUris);
+              }
+            }, targetUris);
       break;
     default:
       throw new IllegalArgumentException(linkType + ": Infeasible linkType");
@@ -367,6 +439,15 @@ protected abstract T getTargetFileSystem(INodeDir<T> dir)
   protected abstract T getTargetFileSystem(String settings, URI[] mergeFsURIs)
       throws UnsupportedFileSystemException, URISyntaxException, IOException;
 
+  private TargetFileSystemFactory<T> targetFactory(final URI uri) {
+    return new TargetFileSystemFactory<T>() {
+      @Override
+      public T create() throws URISyntaxException, IOException {
+        return getTargetFileSystem(uri);
+      }
+    };
+  }
+
   private INodeDir<T> getRootDir() {
     Preconditions.checkState(root.isInternalDir());
     return (INodeDir<T>)root;
@@ -554,7 +635,7 @@ protected InodeTree(final Configuration config, final String viewName)
     if (isMergeSlashConfigured) {
       Preconditions.checkNotNull(mergeSlashTarget);
       root = new INodeLink<T>(mountTableName, ugi,
-          getTargetFileSystem(new URI(mergeSlashTarget)),
+          targetFactory(new URI(mergeSlashTarget)),
           new URI(mergeSlashTarget));
       mountPoints.add(new MountPoint<T>("/", (INodeLink<T>) root));
       rootFallbackLink = null;
@@ -572,7 +653,7 @@ protected InodeTree(final Configuration config, final String viewName)
                 + "not allowed.");
           }
           fallbackLink = new INodeLink<T>(mountTableName, ugi,
-              getTargetFileSystem(new URI(le.getTarget())),
+              targetFactory(new URI(le.getTarget())),
               new URI(le.getTarget()));
         } else {
           createLink(le.getSrc(), le.getTarget(), le.getLinkType(),
@@ -587,6 +668,18 @@ protected InodeTree(final Configuration config, final String viewName)
           "ViewFs: Cannot initialize: Empty Mount table in config for " +
               "viewfs://" + mountTableName + "/");
     }
+
+    final int cacheSize = config.getInt(
+        Constants.CONFIG_VIEWFS_RESOLVE_CACHE_SIZE,
+        Constants.CONFIG_VIEWFS_RESOLVE_CACHE_SIZE_DEFAULT);
+    if (cacheSize > 0) {
+      resolved = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+      resolvedParents =
+          CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+    } else {
+      resolved = null;
+      resolvedParents = null;
+    }
   }
 
   /**
@@ -626,9 +719,26 @@ boolean isInternalDir() {
    * @param resolveLastComponent
    * @return ResolveResult which allows further resolution of the remaining path
    * @throws FileNotFoundException
+   * @throws IOException if the file system of the link could not be created
    */
   ResolveResult<T> resolve(final String p, final boolean resolveLastComponent)
-      throws FileNotFoundException {
+      throws IOException {
+    final Cache<String, ResolveResult<T>> cache =
+        resolveLastComponent ? resolved : resolvedParents;
+    if (cache == null) {
+      return resolveUncached(p, resolveLastComponent);
+    }
+    ResolveResult<T> res = cache.getIfPresent(p);
+    if (res == null) {
+      // the tree does not change, so neither does the result
+      res = resolveUncached(p, resolveLastComponent);
+      cache.put(p, res);
+    }
+    return res;
+  }
+
+  private ResolveResult<T> resolveUncached(final String p,
+      final boolean resolveLastComponent) throws IOException {
     String[] path = breakIntoPathComponents(p);
     if (path.length <= 1) { // special case for when path is "/"
       T targetFs = root.isInternalDir() ?
@@ -127,6 +127,10 @@ public URI[] getTargetFileSystemURIs() {
   Path homeDir = null;
   // Default to rename within same mountpoint
   private RenameStrategy renameStrategy = RenameStrategy.SAME_MOUNTPOINT;
+  // the checksum settings to apply to the targets created from now on,
+  // or null if they were never set
+  private volatile Boolean verifyChecksum = null;
+  private volatile Boolean writeChecksum = null;
   /**
    * Make the path Absolute and get the path-part of a pathname.
    * Checks that URI matches this file system 
@@ -187,7 +191,7 @@ public void initialize(final URI theUri, final Configuration conf)
         @Override
         protected FileSystem getTargetFileSystem(final URI uri)
           throws URISyntaxException, IOException {
-            return new ChRootedFileSystem(uri, config);
+            return applyChecksumSettings(new ChRootedFileSystem(uri, config));
         }
 
         @Override
@@ -199,7 +203,8 @@ protected FileSystem getTargetFileSystem(final INodeDir<FileSystem> dir)
         @Override
         protected FileSystem getTargetFileSystem(final String settings,
             final URI[] uris) throws URISyntaxException, IOException {
-          return NflyFSystem.createFileSystem(uris, config, settings);
+          return applyChecksumSettings(
+              NflyFSystem.createFileSystem(uris, config, settings));
         }
       };
       workingDir = this.getHomeDirectory();
@@ -681,12 +686,33 @@ public void removeXAttr(Path path, String name) throws IOException {
     res.targetFileSystem.removeXAttr(res.remainingPath, name);
   }
 
+  /**
+   * Apply the checksum settings set so far to the file system of a link
+   * created on first use.
+   */
+  private FileSystem applyChecksumSettings(FileSystem fs) {
+    final Boolean verify = verifyChecksum;
+    if (verify != null) {
+      fs.setVerifyChecksum(verify);
+    }
+    final Boolean write = writeChecksum;
+    if (write != null) {
+      fs.setWriteChecksum(write);
+    }
+    return fs;
+  }
+
   @Override
   public void setVerifyChecksum(final boolean verifyChecksum) { 
+    this.verifyChecksum = verifyChecksum;
     List<InodeTree.MountPoint<FileSystem>> mountPoints = 
         fsState.getMountPoints();
     for (InodeTree.MountPoint<FileSystem> mount : mountPoints) {
-      mount.target.targetFileSystem.setVerifyChecksum(verifyChecksum);
+      // the others get it when created
+      FileSystem targetFs = mount.target.getTargetFileSystemIfCreated();
+      if (targetFs != null) {
+        targetFs.setVerifyChecksum(verifyChecksum);
+      }
     }
   }
   
@@ -713,6 +739,9 @@ public long getDefaultBlockSize(Path f) {
       return res.targetFileSystem.getDefaultBlockSize(res.remainingPath);
     } catch (FileNotFoundException e) {
       throw new NotInMountpointException(f, "getDefaultBlockSize"); 
+    } catch (IOException e) {
+      throw new RuntimeException("Cannot create the file system of " + f
+          + " in getDefaultBlockSize", e);
     }
   }
 
@@ -724,6 +753,9 @@ public short getDefaultReplication(Path f) {
       return res.targetFileSystem.getDefaultReplication(res.remainingPath);
     } catch (FileNotFoundException e) {
       throw new NotInMountpointException(f, "getDefaultReplication"); 
+    } catch (IOException e) {
+      throw new RuntimeException("Cannot create the file system of " + f
+          + " in getDefaultReplication", e);
     }
   }
 
@@ -756,8 +788,12 @@ public QuotaUsage getQuotaUsage(Path f) throws IOException {
   public void setWriteChecksum(final boolean writeChecksum) { 
     List<InodeTree.MountPoint<FileSystem>> mountPoints = 
         fsState.getMountPoints();
+    this.writeChecksum = writeChecksum;
     for (InodeTree.MountPoint<FileSystem> mount : mountPoints) {
-      mount.target.targetFileSystem.setWriteChecksum(writeChecksum);
+      FileSystem targetFs = mount.target.getTargetFileSystemIfCreated();
+      if (targetFs != null) {
+        targetFs.setWriteChecksum(writeChecksum);
+      }
     }
   }
 
@@ -767,7 +803,14 @@ public FileSystem[] getChildFileSystems() {
         fsState.getMountPoints();
     Set<FileSystem> children = new HashSet<FileSystem>();
     for (InodeTree.MountPoint<FileSystem> mountPoint : mountPoints) {
-      FileSystem targetFs = mountPoint.target.targetFileSystem;
+      final FileSystem targetFs;
+      try {
+        targetFs = mountPoint.target.getTargetFileSystem();
+      } catch (IOException e) {
+        // a partial list would leave out the tokens of that mount point
+        throw new RuntimeException("Cannot create the file system of "
+            + mountPoint.src + " in getChildFileSystems", e);
+      }
       children.addAll(Arrays.asList(targetFs.getChildFileSystems()));
     }
     return children.toArray(new FileSystem[]{});
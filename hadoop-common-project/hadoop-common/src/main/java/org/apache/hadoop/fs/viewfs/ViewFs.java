@@ -622,7 +622,8 @@ public List<Token<?>> getDelegationTokens(String renewer) throws IOException {
     List<Token<?>> result = new ArrayList<Token<?>>(initialListSize);
     for ( int i = 0; i < mountPoints.size(); ++i ) {
       List<Token<?>> tokens = 
-        mountPoints.get(i).target.targetFileSystem.getDelegationTokens(renewer);
+        mountPoints.get(i).target.getTargetFileSystem()
+            .getDelegationTokens(renewer);
       if (tokens != null) {
         result.addAll(tokens);
       }
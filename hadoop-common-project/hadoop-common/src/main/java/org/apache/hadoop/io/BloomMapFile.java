@@ -237,17 +237,32 @@ public Reader(FileSystem fs, String dirName, WritableComparator comparator,
     private void initBloomFilter(Path dirName, 
                                  Configuration conf) {
       
-      DataInputStream in = null;
       try {
-        FileSystem fs = dirName.getFileSystem(conf);
-        in = fs.open(new Path(dirName, BLOOM_FILE_NAME));
-        bloomFilter = new DynamicBloomFilter();
-        bloomFilter.readFields(in);
-        in.close();
-        in = null;
+        final FileSystem fs = dirName.getFileSystem(conf);
+        final Path bloomFile = new Path(dirName, BLOOM_FILE_NAME);
+        MapFileIndexCache cache = MapFileIndexCache.get(conf);
+        if (cache == null) {
+          bloomFilter = readBloomFilter(fs, bloomFile);
+        } else {
+          bloomFilter = cache.get(fs, bloomFile, "bloom",
+              () -> readBloomFilter(fs, bloomFile));
+        }
       } catch (IOException ioe) {
         LOG.warn("Can't open BloomFilter: " + ioe + " - fallback to MapFile.");
         bloomFilter = null;
+      }
+    }
+
+    private static DynamicBloomFilter readBloomFilter(FileSystem fs,
+        Path bloomFile) throws IOException {
+      DataInputStream in = null;
+      try {
+        in = fs.open(bloomFile);
+        DynamicBloomFilter filter = new DynamicBloomFilter();
+        filter.readFields(in);
+        in.close();
+        in = null;
+        return filter;
       } finally {
         IOUtils.closeStream(in);
       }
@@ -289,6 +304,10 @@ public synchronized Writable get(WritableComparable key, Writable val)
     
     /**
      * Retrieve the Bloom filter used by this instance of the Reader.
+     * When the index cache is enabled with
+     * {@link org.apache.hadoop.fs.CommonConfigurationKeysPublic#IO_MAP_INDEX_CACHE_SIZE_KEY},
+     * the filter is shared by the readers of the file, and must not be
+     * modified.
      * @return a Bloom filter (see {@link Filter})
      */
     public Filter getBloomFilter() {
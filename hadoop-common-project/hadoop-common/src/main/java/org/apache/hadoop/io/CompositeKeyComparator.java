@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * A raw comparator for keys serialized as a sequence of fields, built from
+ * the list of the types of the fields, so that composite keys can be
+ * compared without deserializing them, and without writing a comparator for
+ * each key class.
+ *
+ * <p>The fields are compared in order, each with the ordering of the
+ * matching {@link Writable}: signed for the numbers, and lexicographic for
+ * the contents of {@link Text} and {@link BytesWritable}. A field may be
+ * compared in descending order. Any bytes after the last field of the
+ * schema are compared lexicographically, so a schema may only describe the
+ * prefix of a key, e.g. the partition number of a key followed by opaque
+ * bytes.
+ *
+ * <p>Comparing serialized keys allocates nothing, and the comparison of
+ * keys as objects serializes them into buffers kept by each thread.
+ * To use it for a key class:
+ * <pre>
+ * WritableComparator.define(MyKey.class,
+ *     new CompositeKeyComparator.Builder(MyKey.class)
+ *         .add(CompositeKeyComparator.Field.INT)
+ *         .add(CompositeKeyComparator.Field.TEXT)
+ *         .addDescending(CompositeKeyComparator.Field.LONG)
+ *         .build());
+ * </pre>
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public final class CompositeKeyComparator extends WritableComparator {
+
+  /** The types of fields, with their serialized form. */
+  public enum Field {
+    /** A boolean, as written by {@link BooleanWritable}. */
+    BOOLEAN,
+    /** A byte, as written by {@link ByteWritable}. */
+    BYTE,
+    /** A short, as written by {@link ShortWritable}. */
+    SHORT,
+    /** An int, as written by {@link IntWritable}. */
+    INT,
+    /** A long, as written by {@link LongWritable}. */
+    LONG,
+    /** A float, as written by {@link FloatWritable}. */
+    FLOAT,
+    /** A double, as written by {@link DoubleWritable}. */
+    DOUBLE,
+    /** A variable length int, as written by {@link VIntWritable}. */
+    VINT,
+    /** A variable length long, as written by {@link VLongWritable}. */
+    VLONG,
+    /** A string, as written by {@link Text}. */
+    TEXT,
+    /** Bytes prefixed by their int length, as written by
+     * {@link BytesWritable}. */
+    BYTES
+  }
+
+  private final Field[] fields;
+  private final boolean[] descending;
+
+  /** The buffers the keys are serialized into, to compare them as objects. */
+  private static final ThreadLocal<DataOutputBuffer[]> BUFFERS =
+      ThreadLocal.withInitial(
+          () -> new DataOutputBuffer[] {
+              new DataOutputBuffer(), new DataOutputBuffer()});
+
+  private CompositeKeyComparator(
+      Class<? extends WritableComparable> keyClass, Field[] fields,
+      boolean[] descending) {
+    super(keyClass, null, false);
+    this.fields = fields;
+    this.descending = descending;
+  }
+
+  /** Builds a {@link CompositeKeyComparator} from the fields of a key. */
+  public static class Builder {
+    private final Class<? extends WritableComparable> keyClass;
+    private final List<Field> fields = new ArrayList<>();
+    private final List<Boolean> descending = new ArrayList<>();
+
+    /**
+     * @param keyClass the class of the keys, used to compare them as
+     * objects; may be null if the comparator only compares serialized keys.
+     */
+    public Builder(Class<? extends WritableComparable> keyClass) {
+      this.keyClass = keyClass;
+    }
+
+    /** Add a field compared in ascending order. */
+    public Builder add(Field field) {
+      fields.add(Preconditions.checkNotNull(field));
+      descending.add(false);
+      return this;
+    }
+
+    /** Add a field compared in descending order. */
+    public Builder addDescending(Field field) {
+      fields.add(Preconditions.checkNotNull(field));
+      descending.add(true);
+      return this;
+    }
+
+    public CompositeKeyComparator build() {
+      boolean[] desc = new boolean[descending.size()];
+      for (int i = 0; i < desc.length; i++) {
+        desc[i] = descending.get(i);
+      }
+      return new CompositeKeyComparator(keyClass,
+          fields.toArray(new Field[0]), desc);
+    }
+  }
+
+  @Override
+  public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+    final int end1 = s1 + l1;
+    final int end2 = s2 + l2;
+    int p1 = s1;
+    int p2 = s2;
+    try {
+      for (int i = 0; i < fields.length; i++) {
+        int c;
+        int n1;
+        int n2;
+        switch (fields[i]) {
+        case BOOLEAN:
+        case BYTE:
+          c = Byte.compare(b1[p1], b2[p2]);
+          n1 = n2 = 1;
+          break;
+        case SHORT:
+          c = Short.compare((short) readUnsignedShort(b1, p1),
+              (short) readUnsignedShort(b2, p2));
+          n1 = n2 = 2;
+          break;
+        case INT:
+          c = Integer.compare(readInt(b1, p1), readInt(b2, p2));
+          n1 = n2 = 4;
+          break;
+        case LONG:
+          c = Long.compare(readLong(b1, p1), readLong(b2, p2));
+          n1 = n2 = 8;
+          break;
+        case FLOAT:
+          c = Float.compare(readFloat(b1, p1), readFloat(b2, p2));
+          n1 = n2 = 4;
+          break;
+        case DOUBLE:
+          c = Double.compare(readDouble(b1, p1), readDouble(b2, p2));
+          n1 = n2 = 8;
+          break;
+        case VINT:
+        case VLONG:
+          c = Long.compare(readVLong(b1, p1), readVLong(b2, p2));
+          n1 = WritableUtils.decodeVIntSize(b1[p1]);
+          n2 = WritableUtils.decodeVIntSize(b2[p2]);
+          break;
+        case TEXT: {
+          final int h1 = WritableUtils.decodeVIntSize(b1[p1]);
+          final int h2 = WritableUtils.decodeVIntSize(b2[p2]);
+          final int len1 = readVInt(b1, p1);
+          final int len2 = readVInt(b2, p2);
+          c = compareBytes(b1, p1 + h1, len1, b2, p2 + h2, len2);
+          n1 = h1 + len1;
+          n2 = h2 + len2;
+          break;
+        }
+        case BYTES: {
+          final int len1 = readInt(b1, p1);
+          final int len2 = readInt(b2, p2);
+          c = compareBytes(b1, p1 + 4, len1, b2, p2 + 4, len2);
+          n1 = 4 + len1;
+          n2 = 4 + len2;
+          break;
+        }
+        default:
+          throw new IllegalStateException("Unexpected field " + fields[i]);
+        }
+        if (c != 0) {
+          return descending[i] ? -c : c;
+        }
+        p1 += n1;
+        p2 += n2;
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+    // the rest of the keys, past the fields of the schema
+    return compareBytes(b1, p1, end1 - p1, b2, p2, end2 - p2);
+  }
+
+  /**
+   * Compare two keys with the same ordering as their serialized forms.
+   */
+  @Override
+  public int compare(WritableComparable a, WritableComparable b) {
+    final DataOutputBuffer[] buffers = BUFFERS.get();
+    try {
+      buffers[0].reset();
+      a.write(buffers[0]);
+      buffers[1].reset();
+      b.write(buffers[1]);
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+    return compare(buffers[0].getData(), 0, buffers[0].getLength(),
+        buffers[1].getData(), 0, buffers[1].getLength());
+  }
+}
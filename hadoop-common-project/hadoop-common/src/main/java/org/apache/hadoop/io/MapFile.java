@@ -23,6 +23,7 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 
+import com.google.common.annotations.VisibleForTesting;
 import org.apache.hadoop.HadoopIllegalArgumentException;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
@@ -343,6 +344,32 @@ private void checkKey(WritableComparable key) throws IOException {
 
   }
   
+  /**
+   * An index held as the serialized keys, one after the other in a single
+   * array, so that it takes little more memory than its content and can be
+   * searched without deserializing the keys. It is immutable, so it can be
+   * shared by the readers of the same file.
+   */
+  static final class SerializedIndex implements MapFileIndexCache.Sized {
+    private final byte[] keyData;
+    /** The offset of each key in keyData, and the end of the last one. */
+    private final int[] offsets;
+    private final long[] positions;
+    private final int count;
+
+    SerializedIndex(byte[] keyData, int[] offsets, long[] positions) {
+      this.keyData = keyData;
+      this.offsets = offsets;
+      this.positions = positions;
+      this.count = positions.length;
+    }
+
+    @Override
+    public int getMemorySize() {
+      return keyData.length + 4 * offsets.length + 8 * positions.length;
+    }
+  }
+
   /** Provide access to an existing map. */
   public static class Reader implements java.io.Closeable {
       
@@ -370,6 +397,14 @@ public static class Reader implements java.io.Closeable {
     private WritableComparable[] keys;
     private long[] positions;
 
+    // or, if the comparator compares serialized keys, the serialized index,
+    // searched with the serialized key sought
+    private SerializedIndex serializedIndex;
+    private final DataOutputBuffer searchKey = new DataOutputBuffer();
+
+    private Path indexFile;
+    private Configuration conf;
+
     /** Returns the class of keys in this file. */
     public Class<?> getKeyClass() { return data.getKeyClass(); }
 
@@ -442,6 +477,8 @@ protected synchronized void open(Path dir,
       }
 
       // open the index
+      this.indexFile = indexFile;
+      this.conf = conf;
       SequenceFile.Reader.Option[] indexOptions =
         Options.prependOptions(options, SequenceFile.Reader.file(indexFile));
       this.index = new SequenceFile.Reader(conf, indexOptions);
@@ -462,8 +499,12 @@ protected synchronized void open(Path dir,
 
     private void readIndex() throws IOException {
       // read the index entirely into memory
-      if (this.keys != null)
+      if (this.keys != null || this.serializedIndex != null)
         return;
+      if (hasRawComparison(comparator)) {
+        readSerializedIndex();
+        return;
+      }
       this.count = 0;
       this.positions = new long[1024];
 
@@ -516,6 +557,151 @@ private void readIndex() throws IOException {
       }
     }
 
+    /**
+     * @return whether the comparator compares serialized keys, rather than
+     * deserializing them.
+     */
+    private static boolean hasRawComparison(WritableComparator comparator) {
+      try {
+        return comparator.getClass().getMethod("compare", byte[].class,
+            int.class, int.class, byte[].class, int.class, int.class)
+            .getDeclaringClass() != WritableComparator.class;
+      } catch (NoSuchMethodException e) {
+        return false;
+      }
+    }
+
+    /**
+     * Read the index as serialized keys, or get it from the
+     * {@link MapFileIndexCache} if it is enabled.
+     */
+    private void readSerializedIndex() throws IOException {
+      try {
+        MapFileIndexCache cache = MapFileIndexCache.get(conf);
+        if (cache == null) {
+          serializedIndex = loadSerializedIndex();
+        } else {
+          serializedIndex = cache.get(indexFile.getFileSystem(conf),
+              indexFile, "index:" + INDEX_SKIP + ":"
+                  + comparator.getClass().getName(),
+              this::loadSerializedIndex);
+        }
+      } finally {
+        indexClosed = true;
+        index.close();
+      }
+      count = serializedIndex.count;
+      positions = serializedIndex.positions;
+    }
+
+    private SerializedIndex loadSerializedIndex() throws IOException {
+      DataOutputBuffer keyData = new DataOutputBuffer();
+      int[] offsets = new int[1025];
+      long[] indexPositions = new long[1024];
+      int n = 0;
+
+      DataOutputBuffer key = new DataOutputBuffer();
+      DataOutputBuffer lastKey = new DataOutputBuffer();
+      boolean hasLastKey = false;
+      DataOutputBuffer value = new DataOutputBuffer();
+      SequenceFile.ValueBytes rawValue = index.createValueBytes();
+      try {
+        int skip = INDEX_SKIP;
+        long lastIndex = -1;
+        while (true) {
+          key.reset();
+          if (index.nextRaw(key, rawValue) < 0) {
+            break;
+          }
+          value.reset();
+          rawValue.writeUncompressedBytes(value);
+          long position = WritableComparator.readLong(value.getData(), 0);
+
+          // check order to make sure comparator is compatible
+          if (hasLastKey && comparator.compare(
+              lastKey.getData(), 0, lastKey.getLength(),
+              key.getData(), 0, key.getLength()) > 0) {
+            throw new IOException("key out of order: " + toKey(key)
+                + " after " + toKey(lastKey));
+          }
+          DataOutputBuffer tmp = lastKey;
+          lastKey = key;
+          key = tmp;
+          hasLastKey = true;
+          if (skip > 0) {
+            skip--;
+            continue;                             // skip this entry
+          } else {
+            skip = INDEX_SKIP;                    // reset skip
+          }
+
+          // don't read an index that is the same as the previous one
+          if (position == lastIndex) {
+            continue;
+          }
+
+          if (n == indexPositions.length) {
+            indexPositions = Arrays.copyOf(indexPositions, n * 2);
+            offsets = Arrays.copyOf(offsets, n * 2 + 1);
+          }
+          offsets[n] = keyData.getLength();
+          keyData.write(lastKey.getData(), 0, lastKey.getLength());
+          indexPositions[n] = position;
+          n++;
+        }
+      } catch (EOFException e) {
+        LOG.warn("Unexpected EOF reading " + index +
+            " at entry #" + n + ".  Ignoring.");
+      }
+      offsets[n] = keyData.getLength();
+      return new SerializedIndex(
+          Arrays.copyOf(keyData.getData(), keyData.getLength()),
+          Arrays.copyOf(offsets, n + 1), Arrays.copyOf(indexPositions, n));
+    }
+
+    private WritableComparable toKey(DataOutputBuffer serialized)
+        throws IOException {
+      return toKey(serialized.getData(), 0, serialized.getLength());
+    }
+
+    private WritableComparable toKey(byte[] data, int offset, int length)
+        throws IOException {
+      DataInputBuffer in = new DataInputBuffer();
+      in.reset(data, offset, length);
+      WritableComparable key = comparator.newKey();
+      key.readFields(in);
+      return key;
+    }
+
+    /** @return the key of an entry of the index. */
+    private WritableComparable indexKey(int i) throws IOException {
+      if (serializedIndex == null) {
+        return keys[i];
+      }
+      final int offset = serializedIndex.offsets[i];
+      return toKey(serializedIndex.keyData, offset,
+          serializedIndex.offsets[i + 1] - offset);
+    }
+
+    /**
+     * Compare an entry of the index to the key sought, which must have been
+     * written to {@link #searchKey} if the index is serialized.
+     */
+    private int compareIndexKey(int i, WritableComparable key) {
+      if (serializedIndex == null) {
+        return comparator.compare(keys[i], key);
+      }
+      final int offset = serializedIndex.offsets[i];
+      return comparator.compare(serializedIndex.keyData, offset,
+          serializedIndex.offsets[i + 1] - offset,
+          searchKey.getData(), 0, searchKey.getLength());
+    }
+
+    @VisibleForTesting
+    SerializedIndex getSerializedIndex() {
+      return serializedIndex;
+    }
+
     /** Re-positions the reader before its first key. */
     public synchronized void reset() throws IOException {
       data.seek(firstPosition);
@@ -531,7 +717,7 @@ public synchronized WritableComparable midKey() throws IOException {
         return null;
       }
     
-      return keys[(count - 1) / 2];
+      return indexKey((count - 1) / 2);
     }
     
     /** Reads the final key from the file.
@@ -593,10 +779,14 @@ private synchronized int seekInternal(WritableComparable key,
         final boolean before)
       throws IOException {
       readIndex();                                // make sure index is read
+      if (serializedIndex != null) {
+        searchKey.reset();
+        key.write(searchKey);
+      }
 
       if (seekIndex != -1                         // seeked before
           && seekIndex+1 < count           
-          && comparator.compare(key, keys[seekIndex+1])<0 // before next indexed
+          && compareIndexKey(seekIndex+1, key)>0  // before next indexed
           && comparator.compare(key, nextKey)
           >= 0) {                                 // but after last seeked
         // do nothing
@@ -656,8 +846,7 @@ private int binarySearch(WritableComparable key) {
 
       while (low <= high) {
         int mid = (low + high) >>> 1;
-        WritableComparable midVal = keys[mid];
-        int cmp = comparator.compare(midVal, key);
+        int cmp = compareIndexKey(mid, key);
 
         if (cmp < 0)
           low = mid + 1;
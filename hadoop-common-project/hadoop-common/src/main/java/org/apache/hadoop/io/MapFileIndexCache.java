@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.io;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.IO_MAP_INDEX_CACHE_SIZE_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.IO_MAP_INDEX_CACHE_SIZE_KEY;
+
+/**
+ * A cache of the indexes and Bloom filters of the {@link MapFile}s opened in
+ * this process, shared by their readers, so that opening a file again does
+ * not read them again.
+ *
+ * The entries are keyed by the path, length and modification time of the
+ * file they are read from, so a rewritten file is read again. The cache is
+ * bounded by the approximate memory size of the entries, set by
+ * {@link org.apache.hadoop.fs.CommonConfigurationKeysPublic#IO_MAP_INDEX_CACHE_SIZE_KEY}
+ * in the configuration of the first reader using it: with the default, 0,
+ * there is no cache.
+ */
+@InterfaceAudience.Private
+final class MapFileIndexCache {
+  private static MapFileIndexCache instance;
+
+  private final Cache<Key, Object> cache;
+
+  private MapFileIndexCache(long maxSize) {
+    cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxSize)
+        .<Key, Object>weigher((key, value) -> value instanceof Sized
+            ? ((Sized) value).getMemorySize()
+            : (int) Math.min(Integer.MAX_VALUE, key.length))
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Get the cache.
+   * @param conf the configuration of the reader.
+   * @return the cache, or null if it is disabled.
+   */
+  static synchronized MapFileIndexCache get(Configuration conf) {
+    if (instance == null) {
+      final long size = conf.getLong(IO_MAP_INDEX_CACHE_SIZE_KEY,
+          IO_MAP_INDEX_CACHE_SIZE_DEFAULT);
+      if (size <= 0) {
+        return null;
+      }
+      instance = new MapFileIndexCache(size);
+    }
+    return instance;
+  }
+
+  @VisibleForTesting
+  static synchronized void reset() {
+    if (instance != null) {
+      instance.cache.invalidateAll();
+      instance = null;
+    }
+  }
+
+  /** A cached value reporting its size. */
+  interface Sized {
+    /** @return the approximate memory size, in bytes. */
+    int getMemorySize();
+  }
+
+  /**
+   * Get the value read from a file, reading it if it is not cached.
+   *
+   * @param fs the file system of the file.
+   * @param file the file.
+   * @param variant what is read from the file, and how.
+   * @param loader reads the value.
+   * @return the value.
+   * @throws IOException if the file cannot be read.
+   */
+  @SuppressWarnings("unchecked")
+  <T> T get(FileSystem fs, Path file, String variant, Callable<T> loader)
+      throws IOException {
+    final FileStatus status = fs.getFileStatus(file);
+    final Key key = new Key(status.getPath(), status.getLen(),
+        status.getModificationTime(), variant);
+    try {
+      return (T) cache.get(key, loader);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  @VisibleForTesting
+  long getHitCount() {
+    return cache.stats().hitCount();
+  }
+
+  private static final class Key {
+    private final Path path;
+    private final long length;
+    private final long modificationTime;
+    private final String variant;
+
+    Key(Path path, long length, long modificationTime, String variant) {
+      this.path = path;
+      this.length = length;
+      this.modificationTime = modificationTime;
+      this.variant = variant;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return length == other.length
+          && modificationTime == other.modificationTime
+          && path.equals(other.path) && variant.equals(other.variant);
+    }
+
+    @Override
+    public int hashCode() {
+      return (path.hashCode() * 31 + variant.hashCode()) * 31
+          + Long.hashCode(modificationTime);
+    }
+  }
+}
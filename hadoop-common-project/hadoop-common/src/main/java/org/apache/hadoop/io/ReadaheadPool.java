@@ -25,10 +25,20 @@
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
 import org.apache.hadoop.io.nativeio.NativeIO;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+import org.apache.hadoop.metrics2.lib.Interns;
+import org.apache.hadoop.metrics2.lib.MetricsRegistry;
+import org.apache.hadoop.metrics2.lib.MutableCounterLong;
 
 import static org.apache.hadoop.io.nativeio.NativeIO.POSIX.POSIX_FADV_WILLNEED;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
@@ -36,6 +46,21 @@
 
 /**
  * Manages a pool of threads which can issue readahead requests on file descriptors.
+ *
+ * When io.readahead.adaptive is true, the readahead of a stream adapts to
+ * the way it is read. The requests returned by
+ * {@link #readaheadStream(String, FileDescriptor, long, long, long,
+ * ReadaheadRequest)} carry the position and window of their stream: the
+ * window starts at the requested readahead length, and doubles, up to
+ * io.readahead.adaptive.max.multiplier times that length, each time a
+ * sequential reader gets halfway through what was read ahead. A stream
+ * skipping more than its window, or going backwards, twice in a row is
+ * considered random, and reads nothing ahead until it reads sequentially
+ * again. The windows always start at the position of the reader, so they
+ * never cover the data its caller dropped behind it.
+ *
+ * The requests, the bytes read ahead and the part of them that was read are
+ * reported as the ReadaheadPool metrics.
  */
 @InterfaceAudience.Private
 @InterfaceStability.Evolving
@@ -44,7 +69,13 @@ public class ReadaheadPool {
   private static final int POOL_SIZE = 4;
   private static final int MAX_POOL_SIZE = 16;
   private static final int CAPACITY = 1024;
+  /** Reads out of the window in a row turning off readahead. */
+  @VisibleForTesting
+  static final int RANDOM_READS = 2;
   private final ThreadPoolExecutor pool;
+  private final boolean adaptive;
+  private final int maxMultiplier;
+  private final ReadaheadMetrics metrics = new ReadaheadMetrics();
   
   private static ReadaheadPool instance;
 
@@ -54,13 +85,23 @@ public class ReadaheadPool {
   public static ReadaheadPool getInstance() {
     synchronized (ReadaheadPool.class) {
       if (instance == null && NativeIO.isAvailable()) {
-        instance = new ReadaheadPool();
+        instance = new ReadaheadPool(new Configuration());
+        DefaultMetricsSystem.instance().register("ReadaheadPool",
+            "Readahead statistics", instance.metrics);
       }
       return instance;
     }
   }
   
-  private ReadaheadPool() {
+  @VisibleForTesting
+  ReadaheadPool(Configuration conf) {
+    adaptive = conf.getBoolean(
+        CommonConfigurationKeysPublic.IO_READAHEAD_ADAPTIVE_KEY,
+        CommonConfigurationKeysPublic.IO_READAHEAD_ADAPTIVE_DEFAULT);
+    maxMultiplier = Math.max(1, conf.getInt(
+        CommonConfigurationKeysPublic.IO_READAHEAD_ADAPTIVE_MAX_MULTIPLIER_KEY,
+        CommonConfigurationKeysPublic
+            .IO_READAHEAD_ADAPTIVE_MAX_MULTIPLIER_DEFAULT));
     pool = new ThreadPoolExecutor(POOL_SIZE, MAX_POOL_SIZE, 3L, TimeUnit.SECONDS,
         new ArrayBlockingQueue<Runnable>(CAPACITY));
     pool.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardOldestPolicy());
@@ -77,7 +118,8 @@ private ReadaheadPool() {
    * messages (e.g. the file name)
    * @param fd the file descriptor to read ahead
    * @param curPos the current offset at which reads are being issued
-   * @param readaheadLength the configured length to read ahead
+   * @param readaheadLength the configured length to read ahead, i.e. the
+   *        initial window of an adaptive readahead
    * @param maxOffsetToRead the maximum offset that will be readahead
    *        (useful if, for example, only some segment of the file is
    *        requested by the user). Pass {@link Long#MAX_VALUE} to allow
@@ -103,6 +145,17 @@ public ReadaheadRequest readaheadStream(
     if (readaheadLength <= 0) {
       return null;
     }
+
+    if (adaptive) {
+      if (lastReadahead instanceof ReadaheadRequestImpl
+          || lastReadahead == null) {
+        return adaptiveReadahead(identifier, fd, curPos, readaheadLength,
+            maxOffsetToRead, (ReadaheadRequestImpl) lastReadahead);
+      }
+      lastReadahead.cancel();
+      return adaptiveReadahead(identifier, fd, curPos, readaheadLength,
+          maxOffsetToRead, null);
+    }
     
     long lastOffset = Long.MIN_VALUE;
     
@@ -136,6 +189,68 @@ public ReadaheadRequest readaheadStream(
       return lastReadahead;
     }
   }
+
+  private ReadaheadRequest adaptiveReadahead(String identifier,
+      FileDescriptor fd, long curPos, long readaheadLength,
+      long maxOffsetToRead, ReadaheadRequestImpl last) {
+    long window = readaheadLength;
+    int randomReads = 0;
+    long readAheadTo = curPos;
+    boolean trigger = true;
+    if (last != null) {
+      final long end = last.off + last.len;
+      if (curPos >= last.pos && curPos - last.pos <= last.window) {
+        // the bytes read since the last call which had been read ahead
+        final long hit = Math.min(curPos, end) - Math.max(last.pos, last.off);
+        if (hit > 0) {
+          metrics.hitBytes.incr(hit);
+        }
+        window = last.window;
+        readAheadTo = Math.max(curPos, end);
+        // as in the fixed size case, read ahead again once halfway through
+        trigger = curPos >= last.off + last.len / 2;
+        if (trigger && last.len > 0) {
+          window = Math.min(window * 2, readaheadLength * maxMultiplier);
+        }
+      } else {
+        randomReads = Math.min(last.randomReads + 1, RANDOM_READS);
+        if (last.randomReads == RANDOM_READS - 1) {
+          metrics.randomStreams.incr();
+        }
+        trigger = randomReads < RANDOM_READS;
+      }
+      if (!trigger && randomReads == 0) {
+        last.pos = curPos;
+        return last;
+      }
+      last.cancel();
+    }
+
+    final long length = Math.min(window, maxOffsetToRead - curPos);
+    if (length <= 0) {
+      // we've reached the end of the stream
+      return null;
+    }
+    final ReadaheadRequestImpl req = new ReadaheadRequestImpl(
+        identifier, fd, curPos, trigger ? length : 0);
+    req.pos = curPos;
+    req.window = window;
+    req.randomReads = randomReads;
+    if (trigger) {
+      metrics.requests.incr();
+      metrics.bytes.incr(Math.max(0, curPos + length - readAheadTo));
+      pool.execute(req);
+      if (LOG.isTraceEnabled()) {
+        LOG.trace("submit readahead: " + req);
+      }
+    }
+    return req;
+  }
+
+  @VisibleForTesting
+  ReadaheadMetrics getMetrics() {
+    return metrics;
+  }
       
   /**
    * Submit a request to readahead on the given file descriptor.
@@ -188,6 +303,10 @@ private static class ReadaheadRequestImpl implements Runnable, ReadaheadRequest
     private final FileDescriptor fd;
     private final long off, len;
     private volatile boolean canceled = false;
+    // adaptive readahead state of the stream, only used by its reader
+    private long pos;
+    private long window;
+    private int randomReads;
     
     private ReadaheadRequestImpl(String identifier, FileDescriptor fd, long off, long len) {
       this.identifier = identifier;
@@ -198,7 +317,7 @@ private ReadaheadRequestImpl(String identifier, FileDescriptor fd, long off, lon
     
     @Override
     public void run() {
-      if (canceled) return;
+      if (canceled || len == 0) return;
       // There's a very narrow race here that the file will close right at
       // this instant. But if that happens, we'll likely receive an EBADF
       // error below, and see that it's canceled, ignoring the error.
@@ -244,4 +363,37 @@ public String toString() {
           + ", off=" + off + ", len=" + len + "]";
     }
   }
+
+  /** The ReadaheadPool metrics. */
+  @VisibleForTesting
+  static final class ReadaheadMetrics implements MetricsSource {
+    private final MetricsRegistry registry =
+        new MetricsRegistry("ReadaheadPool").setContext("io");
+    final MutableCounterLong requests = registry.newCounter(
+        "ReadaheadRequests", "Readahead requests issued", 0L);
+    final MutableCounterLong bytes = registry.newCounter(
+        "ReadaheadBytes", "Bytes read ahead", 0L);
+    final MutableCounterLong hitBytes = registry.newCounter(
+        "ReadaheadHitBytes", "Bytes read after being read ahead", 0L);
+    final MutableCounterLong randomStreams = registry.newCounter(
+        "ReadaheadRandomStreams",
+        "Streams which stopped reading ahead for random reads", 0L);
+
+    /**
+     * @return the percentage of the bytes read ahead which were then read.
+     */
+    float getHitPercent() {
+      final long total = bytes.value();
+      return total == 0 ? 0 : 100f * Math.min(hitBytes.value(), total) / total;
+    }
+
+    @Override
+    public void getMetrics(MetricsCollector collector, boolean all) {
+      MetricsRecordBuilder rb = collector.addRecord(registry.info());
+      registry.snapshot(rb, all);
+      rb.addGauge(Interns.info("ReadaheadHitPercent",
+          "Percentage of the bytes read ahead which were then read"),
+          getHitPercent());
+    }
+  }
 }
@@ -23,6 +23,9 @@
 import java.util.*;
 import java.rmi.server.UID;
 import java.security.MessageDigest;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import com.google.common.annotations.VisibleForTesting;
 import org.apache.hadoop.util.Options;
@@ -36,6 +39,7 @@
 import org.apache.hadoop.io.compress.Decompressor;
 import org.apache.hadoop.io.compress.DefaultCodec;
 import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.io.compress.ParallelCompressorStream;
 import org.apache.hadoop.io.compress.zlib.ZlibFactory;
 import org.apache.hadoop.io.serializer.Deserializer;
 import org.apache.hadoop.io.serializer.Serializer;
@@ -53,6 +57,8 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_COMPRESSION_PARALLEL_THREADS_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_COMPRESSION_PARALLEL_THREADS_KEY;
 import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.IO_FILE_BUFFER_SIZE_DEFAULT;
 import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.IO_FILE_BUFFER_SIZE_KEY;
 import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.IO_SEQFILE_COMPRESS_BLOCKSIZE_DEFAULT;
@@ -1534,7 +1540,17 @@ public synchronized void appendRaw(byte[] keyData, int keyOffset,
     
   } // RecordCompressionWriter
 
-  /** Write compressed key/value blocks to a sequence-format file. */
+  /**
+   * Write compressed key/value blocks to a sequence-format file.
+   *
+   * With {@link CommonConfigurationKeys#IO_COMPRESSION_PARALLEL_THREADS_KEY}
+   * set to more than 1, full blocks are compressed on the threads of
+   * {@link ParallelCompressorStream#getExecutor()} while the next blocks are
+   * appended, and written out in order as they complete. {@link #sync()},
+   * {@link #hflush()}, {@link #hsync()} and {@link #close()} wait for all the
+   * blocks to be written; {@link #getLength()} does not count the blocks
+   * still being compressed.
+   */
   static class BlockCompressWriter extends Writer {
     
     private int noBufferedRecords = 0;
@@ -1546,6 +1562,16 @@ static class BlockCompressWriter extends Writer {
     private DataOutputBuffer valBuffer = new DataOutputBuffer();
 
     private final int compressionBlockSize;
+
+    private final int compressionThreads;
+    // blocks being compressed, in file order
+    private final ArrayDeque<Future<PendingBlock>> pendingBlocks =
+        new ArrayDeque<Future<PendingBlock>>();
+    // blocks written out, to be reused
+    private final ArrayDeque<PendingBlock> freeBlocks =
+        new ArrayDeque<PendingBlock>();
+    // all the blocks, to return their compressors on close
+    private final List<PendingBlock> allBlocks = new ArrayList<PendingBlock>();
     
     BlockCompressWriter(Configuration conf,
                         Option... options) throws IOException {
@@ -1554,6 +1580,8 @@ static class BlockCompressWriter extends Writer {
         conf.getInt(IO_SEQFILE_COMPRESS_BLOCKSIZE_KEY,
             IO_SEQFILE_COMPRESS_BLOCKSIZE_DEFAULT
         );
+      compressionThreads = conf.getInt(IO_COMPRESSION_PARALLEL_THREADS_KEY,
+          IO_COMPRESSION_PARALLEL_THREADS_DEFAULT);
       keySerializer.close();
       keySerializer.open(keyBuffer);
       uncompressedValSerializer.close();
@@ -1575,9 +1603,156 @@ void writeBuffer(DataOutputBuffer uncompressedDataBuffer)
       out.write(buffer.getData(), 0, buffer.getLength());
     }
     
+    /**
+     * A block of records copied out of the writer, compressed on another
+     * thread with a compressor of its own.
+     */
+    private final class PendingBlock implements Callable<PendingBlock> {
+      private int records;
+      private final DataOutputBuffer keyLens = new DataOutputBuffer();
+      private final DataOutputBuffer keys = new DataOutputBuffer();
+      private final DataOutputBuffer valLens = new DataOutputBuffer();
+      private final DataOutputBuffer vals = new DataOutputBuffer();
+      // the lengths and data of the four compressed buffers
+      private final DataOutputBuffer compressed = new DataOutputBuffer();
+      private final DataOutputBuffer scratch = new DataOutputBuffer();
+      private final Compressor blockCompressor;
+      private final CompressionOutputStream blockFilter;
+
+      PendingBlock() throws IOException {
+        blockCompressor = CodecPool.getCompressor(codec);
+        blockFilter = codec.createOutputStream(scratch, blockCompressor);
+      }
+
+      private void copy(DataOutputBuffer from, DataOutputBuffer to)
+          throws IOException {
+        to.reset();
+        to.write(from.getData(), 0, from.getLength());
+      }
+
+      private void compress(DataOutputBuffer uncompressed)
+          throws IOException {
+        blockFilter.resetState();
+        scratch.reset();
+        blockFilter.write(uncompressed.getData(), 0, uncompressed.getLength());
+        blockFilter.finish();
+        WritableUtils.writeVInt(compressed, scratch.getLength());
+        compressed.write(scratch.getData(), 0, scratch.getLength());
+      }
+
+      @Override
+      public PendingBlock call() throws IOException {
+        compressed.reset();
+        compress(keyLens);
+        compress(keys);
+        compress(valLens);
+        compress(vals);
+        return this;
+      }
+    }
+
+    /**
+     * Queue the buffered records to be compressed in the background, and
+     * write the blocks compressed already.
+     */
+    private void queueBlock() throws IOException {
+      if (noBufferedRecords == 0) {
+        return;
+      }
+      PendingBlock block = freeBlocks.poll();
+      if (block == null) {
+        block = new PendingBlock();
+        allBlocks.add(block);
+      }
+      block.records = noBufferedRecords;
+      block.copy(keyLenBuffer, block.keyLens);
+      block.copy(keyBuffer, block.keys);
+      block.copy(valLenBuffer, block.valLens);
+      block.copy(valBuffer, block.vals);
+      pendingBlocks.add(ParallelCompressorStream.getExecutor().submit(block));
+
+      keyLenBuffer.reset();
+      keyBuffer.reset();
+      valLenBuffer.reset();
+      valBuffer.reset();
+      noBufferedRecords = 0;
+
+      while (pendingBlocks.size() > compressionThreads
+          || (!pendingBlocks.isEmpty() && pendingBlocks.peek().isDone())) {
+        writeBlock();
+      }
+    }
+
+    /** Wait for the oldest queued block to be compressed, and write it. */
+    private void writeBlock() throws IOException {
+      final PendingBlock block;
+      try {
+        block = pendingBlocks.peek().get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw (IOException) new InterruptedIOException(
+            "Interrupted while compressing a block").initCause(e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException(e.getCause());
+      }
+      pendingBlocks.poll();
+      super.sync();
+      WritableUtils.writeVInt(out, block.records);
+      out.write(block.compressed.getData(), 0, block.compressed.getLength());
+      freeBlocks.add(block);
+    }
+
+    /** Write all the queued blocks. */
+    private void writeBlocks() throws IOException {
+      while (!pendingBlocks.isEmpty()) {
+        writeBlock();
+      }
+    }
+
+    /** Compress the buffered records, in the background if parallel. */
+    private void compressBlock() throws IOException {
+      if (compressionThreads > 1) {
+        queueBlock();
+      } else {
+        sync();
+      }
+    }
+
+    /** Wait for the queued blocks and return their compressors. */
+    private void releaseBlocks() {
+      for (Future<PendingBlock> f : pendingBlocks) {
+        try {
+          f.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          // a compressor still in use is better not returned
+          return;
+        } catch (ExecutionException e) {
+          // reported when writing the block, if ever
+        }
+      }
+      pendingBlocks.clear();
+      freeBlocks.clear();
+      for (PendingBlock block : allBlocks) {
+        CodecPool.returnCompressor(block.blockCompressor);
+      }
+      allBlocks.clear();
+    }
+
     /** Compress and flush contents to dfs */
     @Override
     public synchronized void sync() throws IOException {
+      if (compressionThreads > 1) {
+        queueBlock();
+        if (!pendingBlocks.isEmpty()) {
+          writeBlocks();
+          out.flush();
+        }
+        return;
+      }
       if (noBufferedRecords > 0) {
         super.sync();
         
@@ -1608,12 +1783,32 @@ public synchronized void sync() throws IOException {
     /** Close the file. */
     @Override
     public synchronized void close() throws IOException {
-      if (out != null) {
-        sync();
+      try {
+        if (out != null) {
+          sync();
+        }
+      } finally {
+        releaseBlocks();
       }
       super.close();
     }
 
+    @Override
+    public synchronized void hsync() throws IOException {
+      if (out != null) {
+        writeBlocks();
+      }
+      super.hsync();
+    }
+
+    @Override
+    public synchronized void hflush() throws IOException {
+      if (out != null) {
+        writeBlocks();
+      }
+      super.hflush();
+    }
+
     /** Append a key/value pair. */
     @Override
     @SuppressWarnings("unchecked")
@@ -1643,7 +1838,7 @@ public synchronized void append(Object key, Object val)
       // Compress and flush?
       int currentBlockSize = keyBuffer.getLength() + valBuffer.getLength();
       if (currentBlockSize >= compressionBlockSize) {
-        sync();
+        compressBlock();
       }
     }
     
@@ -1669,7 +1864,7 @@ public synchronized void appendRaw(byte[] keyData, int keyOffset,
       // Compress and flush?
       int currentBlockSize = keyBuffer.getLength() + valBuffer.getLength(); 
       if (currentBlockSize >= compressionBlockSize) {
-        sync();
+        compressBlock();
       }
     }
   
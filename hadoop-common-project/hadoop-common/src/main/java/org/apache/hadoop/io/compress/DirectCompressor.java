@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.compress;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * Compresses direct {@link ByteBuffer}s provided by the caller, without
+ * copying them through buffers of its own.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public interface DirectCompressor {
+  /**
+   * Compress all the remaining bytes of src into dst, as a single block of
+   * the codec, which a {@link DirectDecompressor} of the same codec
+   * decompresses in one call.
+   *
+   * The operation is modelled around dst.put(src): it moves src.position()
+   * to src.limit(), and dst.position() by the bytes written. It does not
+   * modify src.limit() or dst.limit().
+   *
+   * @param src Source direct {@link ByteBuffer} to compress.
+   *
+   * @param dst Destination direct {@link ByteBuffer} for storing the result.
+   * It needs at least {@link #maxCompressedLength(int)} bytes remaining.
+   *
+   * @throws IOException if compression fails, or dst is too small
+   */
+  void compress(ByteBuffer src, ByteBuffer dst) throws IOException;
+
+  /**
+   * @param uncompressedLength the length of the data to compress.
+   * @return the largest size the data can take once compressed.
+   */
+  int maxCompressedLength(int uncompressedLength);
+}
@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.io.compress;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
+import org.apache.hadoop.io.DataOutputBuffer;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A {@link CompressionOutputStream} compressing its data on several threads.
+ *
+ * The data is split into blocks, each compressed independently as a complete
+ * stream of the codec, e.g. a gzip member, a zstd frame or the blocks of a
+ * {@link BlockCompressorStream}, on a shared pool of threads. The compressed
+ * blocks are written in order, so the output is the concatenation of the
+ * compressed streams of the blocks, which the decompressor streams of the
+ * codecs read back as a single stream.
+ *
+ * At most as many blocks as threads are compressed at the same time: writing
+ * a block beyond that waits for the oldest one to be compressed.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class ParallelCompressorStream extends CompressionOutputStream {
+
+  private static final ExecutorService EXECUTOR =
+      Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+          .setDaemon(true)
+          .setNameFormat("Parallel Compressor #%d")
+          .build());
+
+  private final CompressionCodec codec;
+  private final Configuration conf;
+  private final int threads;
+  private final int blockSize;
+
+  /** The blocks being compressed, in the order they are written. */
+  private final ArrayDeque<Future<Block>> pending =
+      new ArrayDeque<Future<Block>>();
+  /** The blocks written out, to be reused. */
+  private final ArrayDeque<Block> free = new ArrayDeque<Block>();
+  /** The block being filled. */
+  private Block current;
+  /** Whether no block was compressed yet. */
+  private boolean empty = true;
+  private final byte[] oneByte = new byte[1];
+
+  /**
+   * Create a stream compressing blocks of <code>blockSize</code> bytes on
+   * up to <code>threads</code> threads.
+   *
+   * @param out the stream to write the compressed data to.
+   * @param codec the codec compressing each block.
+   * @param conf the configuration used to get the compressors.
+   * @param threads the number of blocks compressed at the same time.
+   * @param blockSize the size of the uncompressed blocks.
+   */
+  public ParallelCompressorStream(OutputStream out, CompressionCodec codec,
+      Configuration conf, int threads, int blockSize) {
+    super(out);
+    Preconditions.checkArgument(threads > 0, "threads must be positive");
+    Preconditions.checkArgument(blockSize > 0, "blockSize must be positive");
+    this.codec = codec;
+    this.conf = conf;
+    this.threads = threads;
+    this.blockSize = blockSize;
+  }
+
+  /**
+   * Create a compressed output stream, compressing on several threads if
+   * {@link CommonConfigurationKeys#IO_COMPRESSION_PARALLEL_THREADS_KEY} is
+   * more than 1.
+   *
+   * @param codec the codec to compress with.
+   * @param conf the configuration.
+   * @param out the stream to write the compressed data to.
+   * @return a {@link ParallelCompressorStream}, or the stream created by
+   *         the codec when compressing on the writer thread.
+   * @throws IOException if the stream of the codec cannot be created.
+   */
+  public static CompressionOutputStream create(CompressionCodec codec,
+      Configuration conf, OutputStream out) throws IOException {
+    final int threads = conf.getInt(
+        CommonConfigurationKeys.IO_COMPRESSION_PARALLEL_THREADS_KEY,
+        CommonConfigurationKeys.IO_COMPRESSION_PARALLEL_THREADS_DEFAULT);
+    if (threads <= 1) {
+      return codec.createOutputStream(out);
+    }
+    return new ParallelCompressorStream(out, codec, conf, threads,
+        conf.getInt(
+            CommonConfigurationKeys.IO_COMPRESSION_PARALLEL_BLOCK_SIZE_KEY,
+            CommonConfigurationKeys.IO_COMPRESSION_PARALLEL_BLOCK_SIZE_DEFAULT));
+  }
+
+  /**
+   * @return the pool of daemon threads compressing the blocks of parallel
+   *         compressed streams.
+   */
+  @InterfaceAudience.Private
+  public static ExecutorService getExecutor() {
+    return EXECUTOR;
+  }
+
+  /** A block of data, and its compressed form. */
+  private final class Block implements Callable<Block> {
+    private final byte[] data = new byte[blockSize];
+    private int length;
+    private final DataOutputBuffer compressed = new DataOutputBuffer();
+
+    @Override
+    public Block call() throws IOException {
+      compressed.reset();
+      final Compressor compressor = CodecPool.getCompressor(codec, conf);
+      try {
+        final CompressionOutputStream stream =
+            codec.createOutputStream(compressed, compressor);
+        stream.write(data, 0, length);
+        // closing a stream over a buffer only releases its resources
+        stream.close();
+      } finally {
+        CodecPool.returnCompressor(compressor);
+      }
+      return this;
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    oneByte[0] = (byte) (b & 0xff);
+    write(oneByte, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    if ((off | len | (off + len) | (b.length - (off + len))) < 0) {
+      throw new IndexOutOfBoundsException();
+    }
+    while (len > 0) {
+      if (current == null) {
+        newBlock();
+      }
+      final int n = Math.min(len, blockSize - current.length);
+      System.arraycopy(b, off, current.data, current.length, n);
+      current.length += n;
+      off += n;
+      len -= n;
+      if (current.length == blockSize) {
+        submit();
+      }
+    }
+  }
+
+  private void newBlock() {
+    current = free.isEmpty() ? new Block() : free.poll();
+    current.length = 0;
+  }
+
+  /** Queue the current block, and write the blocks compressed already. */
+  private void submit() throws IOException {
+    pending.add(EXECUTOR.submit(current));
+    current = null;
+    empty = false;
+    while (pending.size() > threads
+        || (!pending.isEmpty() && pending.peek().isDone())) {
+      writeOldest();
+    }
+  }
+
+  private void writeOldest() throws IOException {
+    final Block block;
+    try {
+      block = pending.peek().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw (IOException) new InterruptedIOException(
+          "Interrupted while compressing").initCause(e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException("Failed to compress a block", cause);
+    }
+    pending.poll();
+    out.write(block.compressed.getData(), 0, block.compressed.getLength());
+    free.add(block);
+  }
+
+  /**
+   * Compress the buffered data, and wait for all the blocks to be compressed
+   * and written, without closing the underlying stream.
+   */
+  @Override
+  public void finish() throws IOException {
+    if (current != null && current.length > 0) {
+      submit();
+    } else if (empty) {
+      // compress nothing, as the codec would, so the output can be read
+      newBlock();
+      submit();
+    }
+    while (!pending.isEmpty()) {
+      writeOldest();
+    }
+  }
+
+  /**
+   * Each block is compressed from scratch, so there is no state to reset.
+   */
+  @Override
+  public void resetState() throws IOException {
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      super.close();
+    } finally {
+      for (Future<Block> f : pending) {
+        f.cancel(false);
+      }
+      pending.clear();
+      free.clear();
+      current = null;
+    }
+  }
+}
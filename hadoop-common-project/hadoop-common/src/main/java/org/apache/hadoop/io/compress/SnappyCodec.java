@@ -26,6 +26,7 @@
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.compress.snappy.SnappyCompressor;
 import org.apache.hadoop.io.compress.snappy.SnappyDecompressor;
+import org.apache.hadoop.io.compress.snappy.SnappyCompressor.SnappyDirectCompressor;
 import org.apache.hadoop.io.compress.snappy.SnappyDecompressor.SnappyDirectDecompressor;
 import org.apache.hadoop.fs.CommonConfigurationKeys;
 import org.apache.hadoop.util.NativeCodeLoader;
@@ -33,7 +34,8 @@
 /**
  * This class creates snappy compressors/decompressors.
  */
-public class SnappyCodec implements Configurable, CompressionCodec, DirectDecompressionCodec {
+public class SnappyCodec implements Configurable, CompressionCodec,
+    DirectCompressionCodec, DirectDecompressionCodec {
   Configuration conf;
 
   /**
@@ -210,6 +212,14 @@ public Decompressor createDecompressor() {
     return new SnappyDecompressor(bufferSize);
   }
   
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public DirectCompressor createDirectCompressor() {
+    return isNativeCodeLoaded() ? new SnappyDirectCompressor() : null;
+  }
+
   /**
    * {@inheritDoc}
    */
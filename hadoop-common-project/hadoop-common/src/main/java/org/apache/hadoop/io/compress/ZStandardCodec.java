@@ -35,8 +35,8 @@
 /**
  * This class creates zstd compressors/decompressors.
  */
-public class ZStandardCodec implements
-    Configurable, CompressionCodec, DirectDecompressionCodec  {
+public class ZStandardCodec implements Configurable, CompressionCodec,
+    DirectCompressionCodec, DirectDecompressionCodec  {
   private Configuration conf;
 
   /**
@@ -233,6 +233,13 @@ public String getDefaultExtension() {
     return ".zst";
   }
 
+  @Override
+  public DirectCompressor createDirectCompressor() {
+    checkNativeCodeLoaded();
+    return new ZStandardCompressor.ZStandardDirectCompressor(
+        getCompressionLevel(conf));
+  }
+
   @Override
   public DirectDecompressor createDirectDecompressor() {
     return new ZStandardDecompressor.ZStandardDirectDecompressor(
@@ -24,6 +24,7 @@
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.DirectCompressor;
 import org.apache.hadoop.util.NativeCodeLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -308,5 +309,76 @@ public synchronized void end() {
 
   private native int compressBytesDirectHC();
 
+  int compressDirect(ByteBuffer src, ByteBuffer dst) throws IOException {
+    assert (this instanceof Lz4DirectCompressor);
+
+    Buffer originalCompressed = compressedDirectBuf;
+    Buffer originalUncompressed = uncompressedDirectBuf;
+    int originalBufferSize = directBufferSize;
+    uncompressedDirectBuf = src.slice();
+    uncompressedDirectBufLen = src.remaining();
+    compressedDirectBuf = dst.slice();
+    directBufferSize = dst.remaining();
+    int n = 0;
+    try {
+      n = useLz4HC ? compressBytesDirectHC() : compressBytesDirect();
+      dst.position(dst.position() + n);
+      bytesRead += src.remaining();
+      bytesWritten += n;
+      // LZ4 always consumes the whole buffer or throws an exception
+      src.position(src.limit());
+    } finally {
+      compressedDirectBuf = originalCompressed;
+      uncompressedDirectBuf = originalUncompressed;
+      uncompressedDirectBufLen = 0;
+      directBufferSize = originalBufferSize;
+    }
+    return n;
+  }
+
   public native static String getLibraryName();
+
+  /**
+   * A {@link DirectCompressor} for LZ4, compressing each buffer as one lz4
+   * block. It does not allocate buffers of its own.
+   */
+  public static class Lz4DirectCompressor extends Lz4Compressor
+      implements DirectCompressor {
+
+    public Lz4DirectCompressor(boolean useLz4HC) {
+      super(0, useLz4HC);
+    }
+
+    @Override
+    public void compress(ByteBuffer src, ByteBuffer dst) throws IOException {
+      assert dst.isDirect() : "dst.isDirect()";
+      assert src.isDirect() : "src.isDirect()";
+      // LZ4_compress does not check the room left in dst
+      if (dst.remaining() < maxCompressedLength(src.remaining())) {
+        throw new IOException("Not enough space to compress "
+            + src.remaining() + " bytes: " + dst.remaining() + " remaining");
+      }
+      compressDirect(src, dst);
+    }
+
+    /**
+     * The bound of LZ4_compressBound.
+     */
+    @Override
+    public int maxCompressedLength(int uncompressedLength) {
+      return uncompressedLength + uncompressedLength / 255 + 16;
+    }
+
+    @Override
+    public void setInput(byte[] b, int off, int len) {
+      throw new UnsupportedOperationException(
+          "byte[] arrays are not supported for DirectCompressor");
+    }
+
+    @Override
+    public int compress(byte[] b, int off, int len) {
+      throw new UnsupportedOperationException(
+          "byte[] arrays are not supported for DirectCompressor");
+    }
+  }
 }
@@ -24,6 +24,7 @@
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.DirectCompressor;
 import org.apache.hadoop.util.NativeCodeLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -295,5 +296,75 @@ public void end() {
 
   private native int compressBytesDirect();
 
+  int compressDirect(ByteBuffer src, ByteBuffer dst) throws IOException {
+    assert (this instanceof SnappyDirectCompressor);
+
+    Buffer originalCompressed = compressedDirectBuf;
+    Buffer originalUncompressed = uncompressedDirectBuf;
+    int originalBufferSize = directBufferSize;
+    uncompressedDirectBuf = src.slice();
+    uncompressedDirectBufLen = src.remaining();
+    compressedDirectBuf = dst.slice();
+    directBufferSize = dst.remaining();
+    int n = 0;
+    try {
+      n = compressBytesDirect();
+      dst.position(dst.position() + n);
+      bytesRead += src.remaining();
+      bytesWritten += n;
+      // SNAPPY always consumes the whole buffer or throws an exception
+      src.position(src.limit());
+    } finally {
+      compressedDirectBuf = originalCompressed;
+      uncompressedDirectBuf = originalUncompressed;
+      uncompressedDirectBufLen = 0;
+      directBufferSize = originalBufferSize;
+    }
+    return n;
+  }
+
   public native static String getLibraryName();
+
+  /**
+   * A {@link DirectCompressor} for Snappy, compressing each buffer as one
+   * snappy block. It does not allocate buffers of its own.
+   */
+  public static class SnappyDirectCompressor extends SnappyCompressor
+      implements DirectCompressor {
+
+    public SnappyDirectCompressor() {
+      super(0);
+    }
+
+    @Override
+    public void compress(ByteBuffer src, ByteBuffer dst) throws IOException {
+      assert dst.isDirect() : "dst.isDirect()";
+      assert src.isDirect() : "src.isDirect()";
+      if (dst.remaining() < maxCompressedLength(src.remaining())) {
+        throw new IOException("Not enough space to compress "
+            + src.remaining() + " bytes: " + dst.remaining() + " remaining");
+      }
+      compressDirect(src, dst);
+    }
+
+    /**
+     * The bound of snappy::MaxCompressedLength.
+     */
+    @Override
+    public int maxCompressedLength(int uncompressedLength) {
+      return 32 + uncompressedLength + uncompressedLength / 6;
+    }
+
+    @Override
+    public void setInput(byte[] b, int off, int len) {
+      throw new UnsupportedOperationException(
+          "byte[] arrays are not supported for DirectCompressor");
+    }
+
+    @Override
+    public int compress(byte[] b, int off, int len) {
+      throw new UnsupportedOperationException(
+          "byte[] arrays are not supported for DirectCompressor");
+    }
+  }
 }
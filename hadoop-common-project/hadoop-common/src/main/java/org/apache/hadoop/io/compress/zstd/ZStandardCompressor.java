@@ -23,6 +23,7 @@
 import org.apache.hadoop.fs.CommonConfigurationKeys;
 import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
 import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.DirectCompressor;
 import org.apache.hadoop.io.compress.ZStandardCodec;
 import org.apache.hadoop.util.NativeCodeLoader;
 import org.slf4j.Logger;
@@ -49,7 +50,7 @@ public class ZStandardCompressor implements Compressor {
   private int uncompressedDirectBufOff = 0, uncompressedDirectBufLen = 0;
   private boolean keepUncompressedBuf = false;
   private ByteBuffer compressedDirectBuf = null;
-  private boolean finished;
+  private boolean finish, finished;
   private long bytesRead = 0;
   private long bytesWritten = 0;
 
@@ -180,6 +181,7 @@ public boolean needsInput() {
 
   @Override
   public void finish() {
+    finish = true;
   }
 
   @Override
@@ -265,6 +267,7 @@ public long getBytesRead() {
   public void reset() {
     checkStream();
     init(level, stream);
+    finish = false;
     finished = false;
     bytesRead = 0;
     bytesWritten = 0;
@@ -300,4 +303,80 @@ private native int deflateBytesDirect(ByteBuffer src, int srcOffset,
   private native static void end(long strm);
   private native static void initIDs();
   public native static String getLibraryName();
+
+  int compressDirect(ByteBuffer src, ByteBuffer dst) throws IOException {
+    assert (this instanceof ZStandardDirectCompressor);
+
+    // each buffer is compressed into a frame of its own
+    reset();
+    finish = true;
+    try {
+      int srcPosition = src.position();
+      while (!finished) {
+        ByteBuffer out = dst.slice();
+        int n = deflateBytesDirect(src, srcPosition, src.limit(), out,
+            out.remaining());
+        srcPosition = uncompressedDirectBufOff;
+        dst.position(dst.position() + n);
+        if (n == 0 && !finished) {
+          throw new IOException("Not enough space to end the zstd frame: "
+              + dst.remaining() + " remaining");
+        }
+      }
+      src.position(srcPosition);
+    } finally {
+      finish = false;
+      uncompressedDirectBufOff = 0;
+      uncompressedDirectBufLen = 0;
+    }
+    return (int) bytesWritten;
+  }
+
+  /**
+   * A {@link DirectCompressor} for ZStandard, compressing each buffer into a
+   * zstd frame, as read by
+   * {@link ZStandardDecompressor.ZStandardDirectDecompressor}. It does not
+   * allocate buffers of its own.
+   */
+  public static class ZStandardDirectCompressor extends ZStandardCompressor
+      implements DirectCompressor {
+
+    public ZStandardDirectCompressor(int level) {
+      super(level, 0, 0);
+    }
+
+    @Override
+    public void compress(ByteBuffer src, ByteBuffer dst) throws IOException {
+      assert dst.isDirect() : "dst.isDirect()";
+      assert src.isDirect() : "src.isDirect()";
+      if (dst.remaining() < maxCompressedLength(src.remaining())) {
+        throw new IOException("Not enough space to compress "
+            + src.remaining() + " bytes: " + dst.remaining() + " remaining");
+      }
+      compressDirect(src, dst);
+    }
+
+    /**
+     * The bound of ZSTD_compressBound.
+     */
+    @Override
+    public int maxCompressedLength(int uncompressedLength) {
+      final int blockSize = 128 * 1024;
+      return uncompressedLength + (uncompressedLength >> 8)
+          + (uncompressedLength < blockSize
+          ? (blockSize - uncompressedLength) >> 11 : 0);
+    }
+
+    @Override
+    public void setInput(byte[] b, int off, int len) {
+      throw new UnsupportedOperationException(
+          "byte[] arrays are not supported for DirectCompressor");
+    }
+
+    @Override
+    public int compress(byte[] b, int off, int len) {
+      throw new UnsupportedOperationException(
+          "byte[] arrays are not supported for DirectCompressor");
+    }
+  }
 }
@@ -1133,7 +1133,7 @@ public void run() {
                       + " " + call.rpcRequest);
                 }
                 // RpcRequestHeader + RpcRequest
-                ipcStreams.sendRequest(buf.toByteArray());
+                ipcStreams.sendRequest(buf);
                 ipcStreams.flush();
               }
             } catch (IOException e) {
@@ -1890,6 +1890,11 @@ public void sendRequest(byte[] buf) throws IOException {
       out.write(buf);
     }
 
+    /** Write the framed request straight from the buffer, without a copy. */
+    public void sendRequest(ResponseBuffer buf) throws IOException {
+      buf.writeTo(out);
+    }
+
     @Override
     public void flush() throws IOException {
       out.flush();
@@ -23,6 +23,7 @@
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Timer;
@@ -129,14 +130,27 @@ public class DecayRpcScheduler implements RpcScheduler,
       "decay-scheduler.metrics.top.user.count";
   public static final int DECAYSCHEDULER_METRICS_TOP_USER_COUNT_DEFAULT = 10;
 
+  // Specifies the cost each identity may spend per second before its calls
+  // are backed off, 0 to disable. The cost is the one computed by the
+  // CostProvider, e.g. weighted nanoseconds for WeightedTimeCostProvider.
+  public static final String IPC_DECAYSCHEDULER_USER_COST_RATE_KEY =
+      "decay-scheduler.user-cost-rate";
+  public static final long IPC_DECAYSCHEDULER_USER_COST_RATE_DEFAULT = 0;
+
+  // Specifies the cost an idle identity may spend at once, defaults to one
+  // second worth of decay-scheduler.user-cost-rate
+  public static final String IPC_DECAYSCHEDULER_USER_COST_BURST_KEY =
+      "decay-scheduler.user-cost-burst";
+
   public static final Logger LOG =
       LoggerFactory.getLogger(DecayRpcScheduler.class);
 
   private static final ObjectWriter WRITER = new ObjectMapper().writer();
 
   // Track the decayed and raw (no decay) number of calls for each schedulable
-  // identity from all previous decay windows: idx 0 for decayed call cost and
-  // idx 1 for the raw call cost
+  // identity from all previous decay windows: idx 0 for decayed call cost,
+  // idx 1 for the raw call cost, idx 2 for the decayed processing time and
+  // idx 3 for the decayed lock hold time, in nanoseconds
   private final ConcurrentHashMap<Object, List<AtomicLong>> callCosts =
       new ConcurrentHashMap<Object, List<AtomicLong>>();
 
@@ -154,6 +168,11 @@ public class DecayRpcScheduler implements RpcScheduler,
   private final AtomicDoubleArray responseTimeAvgInLastWindow;
   private final AtomicLongArray responseTimeCountInLastWindow;
 
+  // Cost still allowed for each identity, when rate limiting is enabled
+  private final ConcurrentHashMap<Object, CostBucket> costBuckets =
+      new ConcurrentHashMap<Object, CostBucket>();
+  private final AtomicLong rateLimitedCalls = new AtomicLong();
+
   // Pre-computed scheduling decisions during the decay sweep are
   // atomically swapped in as a read-only map
   private final AtomicReference<Map<Object, Integer>> scheduleCacheRef =
@@ -172,6 +191,8 @@ public class DecayRpcScheduler implements RpcScheduler,
   private static final double PRECISION = 0.0001;
   private MetricsProxy metricsProxy;
   private final CostProvider costProvider;
+  private final long userCostRate; // cost per second, 0 when disabled
+  private final long userCostBurst;
 
   /**
    * This TimerTask will call decayCurrentCosts until
@@ -223,6 +244,13 @@ public DecayRpcScheduler(int numLevels, String ns, Configuration conf) {
         conf);
     this.backOffResponseTimeThresholds =
         parseBackOffResponseTimeThreshold(ns, conf, numLevels);
+    this.userCostRate = conf.getLong(ns + "." +
+        IPC_DECAYSCHEDULER_USER_COST_RATE_KEY,
+        IPC_DECAYSCHEDULER_USER_COST_RATE_DEFAULT);
+    this.userCostBurst = conf.getLong(ns + "." +
+        IPC_DECAYSCHEDULER_USER_COST_BURST_KEY, userCostRate);
+    Preconditions.checkArgument(userCostRate >= 0 && userCostBurst >= 0,
+        "the user cost rate and burst must not be negative");
 
     // Setup response time metrics
     responseTimeTotalInCurrWindow = new AtomicLongArray(numLevels);
@@ -425,6 +453,8 @@ private void decayCurrentCosts() {
         Map.Entry<Object, List<AtomicLong>> entry = it.next();
         AtomicLong decayedCost = entry.getValue().get(0);
         AtomicLong rawCost = entry.getValue().get(1);
+        decay(entry.getValue().get(2));
+        decay(entry.getValue().get(3));
 
 
         // Compute the next value by reducing it by the decayFactor
@@ -447,6 +477,15 @@ private void decayCurrentCosts() {
         }
       }
 
+      // Forget the identities which are back to a full budget
+      final long now = System.nanoTime();
+      Iterator<CostBucket> buckets = costBuckets.values().iterator();
+      while (buckets.hasNext()) {
+        if (buckets.next().isFull(now)) {
+          buckets.remove();
+        }
+      }
+
       // Update the total so that we remain in sync
       totalDecayedCallCost.set(totalDecayedCost);
       totalRawCallCost.set(totalRawCost);
@@ -465,6 +504,10 @@ private void decayCurrentCosts() {
     }
   }
 
+  private void decay(AtomicLong value) {
+    value.set((long) (value.get() * decayFactor));
+  }
+
   /**
    * Update the scheduleCache to match current conditions in callCosts.
    */
@@ -490,15 +533,21 @@ private void recomputeScheduleCache() {
    *
    * @param identity the identity of the user whose cost should be adjusted
    * @param costDelta the cost to add for the given identity
+   * @param processingNanos the processing time to add for the identity
+   * @param lockNanos the lock hold time to add for the identity
    */
-  private void addCost(Object identity, long costDelta) {
+  private void addCost(Object identity, long costDelta, long processingNanos,
+      long lockNanos) {
     // We will increment the cost, or create it if no such cost exists
     List<AtomicLong> cost = this.callCosts.get(identity);
     if (cost == null) {
       // Create the costs since no such cost exists.
       // idx 0 for decayed call cost
       // idx 1 for the raw call cost
-      cost = new ArrayList<AtomicLong>(2);
+      // idx 2 and 3 for the decayed processing and lock hold times
+      cost = new ArrayList<AtomicLong>(4);
+      cost.add(new AtomicLong(0));
+      cost.add(new AtomicLong(0));
       cost.add(new AtomicLong(0));
       cost.add(new AtomicLong(0));
 
@@ -518,6 +567,8 @@ private void addCost(Object identity, long costDelta) {
     // we have.
     cost.get(1).getAndAdd(costDelta);
     cost.get(0).getAndAdd(costDelta);
+    cost.get(2).getAndAdd(processingNanos);
+    cost.get(3).getAndAdd(lockNanos);
   }
 
   /**
@@ -590,6 +641,9 @@ public int getPriorityLevel(Schedulable obj) {
 
   @Override
   public boolean shouldBackOff(Schedulable obj) {
+    if (userCostRate > 0 && isOverCostRate(obj)) {
+      return true;
+    }
     Boolean backOff = false;
     if (backOffByResponseTimeEnabled) {
       int priorityLevel = obj.getPriorityLevel();
@@ -615,12 +669,54 @@ public boolean shouldBackOff(Schedulable obj) {
     return backOff;
   }
 
+  /**
+   * Whether the identity of a call spent more than its cost budget.
+   * The cost of a call is only known once it was processed, so an identity
+   * may overdraw its budget, and is then backed off until the budget has
+   * been refilled.
+   */
+  private boolean isOverCostRate(Schedulable obj) {
+    String identity = identityProvider.makeIdentity(obj);
+    if (identity == null) {
+      identity = DECAYSCHEDULER_UNKNOWN_IDENTITY;
+    }
+    CostBucket bucket = costBuckets.get(identity);
+    if (bucket == null || bucket.hasBudget(System.nanoTime())) {
+      return false;
+    }
+    rateLimitedCalls.incrementAndGet();
+    LOG.debug("Backing off call from {} over the cost rate {}", identity,
+        userCostRate);
+    return true;
+  }
+
+  private void chargeCostBucket(Object identity, long cost) {
+    CostBucket bucket = costBuckets.get(identity);
+    if (bucket == null) {
+      bucket = new CostBucket(userCostRate, userCostBurst, System.nanoTime());
+      CostBucket other = costBuckets.putIfAbsent(identity, bucket);
+      if (other != null) {
+        bucket = other;
+      }
+    }
+    bucket.charge(cost, System.nanoTime());
+  }
+
   @Override
   public void addResponseTime(String callName, Schedulable schedulable,
       ProcessingDetails details) {
     String user = identityProvider.makeIdentity(schedulable);
+    if (user == null) {
+      user = DECAYSCHEDULER_UNKNOWN_IDENTITY;
+    }
     long processingCost = costProvider.getCost(details);
-    addCost(user, processingCost);
+    addCost(user, processingCost,
+        details.get(Timing.PROCESSING, TimeUnit.NANOSECONDS),
+        details.get(Timing.LOCKSHARED, TimeUnit.NANOSECONDS)
+            + details.get(Timing.LOCKEXCLUSIVE, TimeUnit.NANOSECONDS));
+    if (userCostRate > 0) {
+      chargeCostBucket(user, processingCost);
+    }
 
     int priorityLevel = schedulable.getPriorityLevel();
     long queueTime = details.get(Timing.QUEUE, TimeUnit.MILLISECONDS);
@@ -699,6 +795,11 @@ Map<Object, Long> getCallCostSnapshot() {
     return Collections.unmodifiableMap(snapshot);
   }
 
+  @VisibleForTesting
+  long getRateLimitedCallCount() {
+    return rateLimitedCalls.get();
+  }
+
   @VisibleForTesting
   long getTotalCallSnapshot() {
     return totalDecayedCallCost.get();
@@ -815,6 +916,16 @@ public double[] getAverageResponseTime() {
       }
     }
 
+    @Override
+    public String getCallTimeSummary() {
+      DecayRpcScheduler scheduler = delegate.get();
+      if (scheduler == null) {
+        return "No Active Scheduler";
+      } else {
+        return scheduler.getCallTimeSummary();
+      }
+    }
+
     public long[] getResponseTimeCountInLastWindow() {
       DecayRpcScheduler scheduler = delegate.get();
       if (scheduler == null) {
@@ -874,6 +985,7 @@ public void getMetrics(MetricsCollector collector, boolean all) {
       addAvgResponseTimePerPriority(rb);
       addCallVolumePerPriority(rb);
       addRawCallVolume(rb);
+      addRateLimitedCalls(rb);
     } catch (Exception e) {
       LOG.warn("Exception thrown while metric collection. Exception : "
           + e.getMessage());
@@ -897,6 +1009,12 @@ private void addRawCallVolume(MetricsRecordBuilder rb) {
         "incoming Call Volume"), getTotalRawCallVolume());
   }
 
+  // Key: RateLimitedCalls
+  private void addRateLimitedCalls(MetricsRecordBuilder rb) {
+    rb.addCounter(Interns.info("RateLimitedCalls", "Calls backed off for " +
+        "exceeding the user cost rate"), rateLimitedCalls.get());
+  }
+
   // Key: Priority.0.CompletedCallVolume
   private void addCallVolumePerPriority(MetricsRecordBuilder rb) {
     for (int i = 0; i < responseTimeCountInLastWindow.length(); i++) {
@@ -972,6 +1090,30 @@ public String getCallVolumeSummary() {
     }
   }
 
+  /**
+   * @return the decayed processing and lock hold times of each identity,
+   *         in milliseconds, as JSON.
+   */
+  public String getCallTimeSummary() {
+    Map<Object, Map<String, Long>> times = new HashMap<>(callCosts.size());
+    for (Map.Entry<Object, List<AtomicLong>> entry : callCosts.entrySet()) {
+      long processingNanos = entry.getValue().get(2).get();
+      if (processingNanos > 0) {
+        Map<String, Long> userTimes = new LinkedHashMap<>(2);
+        userTimes.put("ProcessingTimeMs",
+            TimeUnit.NANOSECONDS.toMillis(processingNanos));
+        userTimes.put("LockHoldTimeMs",
+            TimeUnit.NANOSECONDS.toMillis(entry.getValue().get(3).get()));
+        times.put(entry.getKey(), userTimes);
+      }
+    }
+    try {
+      return WRITER.writeValueAsString(times);
+    } catch (Exception e) {
+      return "Error: " + e.getMessage();
+    }
+  }
+
   private Map<Object, Long> getDecayedCallCosts() {
     Map<Object, Long> decayedCallCosts = new HashMap<>(callCosts.size());
     Iterator<Map.Entry<Object, List<AtomicLong>>> it =
@@ -987,6 +1129,46 @@ private Map<Object, Long> getDecayedCallCosts() {
     return decayedCallCosts;
   }
 
+  /**
+   * Token bucket of the cost an identity may still spend. It is refilled at
+   * the configured rate up to the burst, and goes negative when calls cost
+   * more than what was left.
+   */
+  private static final class CostBucket {
+    private final double costPerNano;
+    private final long burst;
+    private double available;
+    private long lastRefillNanos;
+
+    CostBucket(long costPerSecond, long burst, long now) {
+      this.costPerNano = costPerSecond / (double) TimeUnit.SECONDS.toNanos(1);
+      this.burst = burst;
+      this.available = burst;
+      this.lastRefillNanos = now;
+    }
+
+    private void refill(long now) {
+      available = Math.min(burst,
+          available + (now - lastRefillNanos) * costPerNano);
+      lastRefillNanos = now;
+    }
+
+    synchronized boolean hasBudget(long now) {
+      refill(now);
+      return available > 0;
+    }
+
+    synchronized boolean isFull(long now) {
+      refill(now);
+      return available >= burst;
+    }
+
+    synchronized void charge(long cost, long now) {
+      refill(now);
+      available -= cost;
+    }
+  }
+
   @Override
   public void stop() {
     metricsProxy.unregisterSource(namespace);
@@ -29,4 +29,6 @@ public interface DecayRpcSchedulerMXBean {
   long getTotalCallVolume();
   double[] getAverageResponseTime();
   long[] getResponseTimeCountInLastWindow();
+  // Get the decayed processing and lock hold times of each caller.
+  String getCallTimeSummary();
 }
\ No newline at end of file
@@ -54,6 +54,9 @@
   @Deprecated
   public static final String IPC_CALLQUEUE_PRIORITY_LEVELS_KEY =
     "faircallqueue.priority-levels";
+  public static final String IPC_CALLQUEUE_LOCK_FREE_KEY =
+    "faircallqueue.lock-free";
+  public static final boolean IPC_CALLQUEUE_LOCK_FREE_DEFAULT = false;
 
   public static final Logger LOG = LoggerFactory.getLogger(FairCallQueue.class);
 
@@ -84,7 +87,9 @@ private void signalNotEmpty() {
    * @param conf the configuration to read from
    * Notes: Each sub-queue has a capacity of `capacity / numSubqueues`.
    * The first or the highest priority sub-queue has an excess capacity
-   * of `capacity % numSubqueues`
+   * of `capacity % numSubqueues`. The sub-queues are
+   * {@link LockFreeCallQueue}s if IPC_CALLQUEUE_LOCK_FREE_KEY is set, and
+   * LinkedBlockingQueues otherwise.
    */
   public FairCallQueue(int priorityLevels, int capacity, String ns,
       Configuration conf) {
@@ -93,7 +98,10 @@ public FairCallQueue(int priorityLevels, int capacity, String ns,
           "at least 1");
     }
     int numQueues = priorityLevels;
+    boolean lockFree = conf.getBoolean(ns + "." +
+        IPC_CALLQUEUE_LOCK_FREE_KEY, IPC_CALLQUEUE_LOCK_FREE_DEFAULT);
     LOG.info("FairCallQueue is in use with " + numQueues +
+        (lockFree ? " lock-free" : "") +
         " queues with total capacity of " + capacity);
 
     this.queues = new ArrayList<BlockingQueue<E>>(numQueues);
@@ -101,10 +109,11 @@ public FairCallQueue(int priorityLevels, int capacity, String ns,
     int queueCapacity = capacity / numQueues;
     int capacityForFirstQueue = queueCapacity + (capacity % numQueues);
     for(int i=0; i < numQueues; i++) {
-      if (i == 0) {
-        this.queues.add(new LinkedBlockingQueue<E>(capacityForFirstQueue));
+      int subQueueCapacity = (i == 0) ? capacityForFirstQueue : queueCapacity;
+      if (lockFree) {
+        this.queues.add(new LockFreeCallQueue<E>(subQueueCapacity));
       } else {
-        this.queues.add(new LinkedBlockingQueue<E>(queueCapacity));
+        this.queues.add(new LinkedBlockingQueue<E>(subQueueCapacity));
       }
       this.overflowedCalls.add(new AtomicLong(0));
     }
@@ -0,0 +1,313 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.ipc;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.base.Preconditions;
+import org.apache.commons.lang3.NotImplementedException;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * A bounded, lock-free, multi-producer multi-consumer call queue.
+ *
+ * The calls are kept in a ring of slots, each with a sequence number telling
+ * whether it is ready to be filled or to be drained for a given position.
+ * Producers and consumers claim positions with a single compare-and-set on
+ * the tail and head counters, so neither side takes a lock, and readers do
+ * not contend with handlers.
+ *
+ * Threads only block when the queue is empty or full: they then register as
+ * waiters, and the other side releases a permit only while there are
+ * waiters, so an uncontended put or take never touches a semaphore.
+ *
+ * Like {@link FairCallQueue}, poll provides no strict consistency, and may
+ * return null while a producer is still publishing a call.
+ *
+ * It can be used with ipc.&lt;port&gt;.callqueue.impl, or as the sub-queues
+ * of a {@link FairCallQueue}.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class LockFreeCallQueue<E> extends AbstractQueue<E>
+    implements BlockingQueue<E> {
+  private static final int SPIN_POLLS = 64;
+
+  private final int capacity;
+  private final AtomicReferenceArray<E> elements;
+  private final AtomicLongArray sequences;
+  /* Next position to fill. */
+  private final AtomicLong tail = new PaddedAtomicLong();
+  /* Next position to drain. */
+  private final AtomicLong head = new PaddedAtomicLong();
+
+  /* Consumers blocked on an empty queue, and their permits. */
+  private final AtomicInteger waiters = new AtomicInteger();
+  private final Semaphore notEmpty = new Semaphore(0);
+  /* Producers blocked on a full queue, and their permits. */
+  private final AtomicInteger fullWaiters = new AtomicInteger();
+  private final Semaphore notFull = new Semaphore(0);
+
+  public LockFreeCallQueue(int capacity) {
+    Preconditions.checkArgument(capacity > 0, "capacity must be positive");
+    this.capacity = capacity;
+    this.elements = new AtomicReferenceArray<E>(capacity);
+    this.sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, free(i));
+    }
+  }
+
+  private int index(long position) {
+    return (int) (position % capacity);
+  }
+
+  /* Sequence of a slot ready to be filled for the given position. */
+  private static long free(long position) {
+    return 2 * position;
+  }
+
+  /* Sequence of a slot holding the call of the given position. */
+  private static long published(long position) {
+    return 2 * position + 1;
+  }
+
+  @Override
+  public boolean offer(E e) {
+    Preconditions.checkNotNull(e);
+    long position = tail.get();
+    int index;
+    while (true) {
+      index = index(position);
+      final long diff = sequences.get(index) - free(position);
+      if (diff == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          break;
+        }
+        position = tail.get();
+      } else if (diff < 0) {
+        // the slot still holds the call of the previous round
+        return false;
+      } else {
+        position = tail.get();
+      }
+    }
+    elements.set(index, e);
+    sequences.set(index, published(position));
+    signal(waiters, notEmpty);
+    return true;
+  }
+
+  @Override
+  public E poll() {
+    long position = head.get();
+    int index;
+    while (true) {
+      index = index(position);
+      final long diff = sequences.get(index) - published(position);
+      if (diff == 0) {
+        if (head.compareAndSet(position, position + 1)) {
+          break;
+        }
+        position = head.get();
+      } else if (diff < 0) {
+        // empty, or the producer of this slot is still publishing
+        return null;
+      } else {
+        position = head.get();
+      }
+    }
+    final E e = elements.get(index);
+    elements.lazySet(index, null);
+    sequences.set(index, free(position + capacity));
+    signal(fullWaiters, notFull);
+    return e;
+  }
+
+  /**
+   * Wake up a waiter, unless the pending permits already cover them all.
+   */
+  private static void signal(AtomicInteger waiting, Semaphore permits) {
+    if (waiting.get() > permits.availablePermits()) {
+      permits.release();
+    }
+  }
+
+  @Override
+  public E peek() {
+    final long position = head.get();
+    final int index = index(position);
+    if (sequences.get(index) != published(position)) {
+      return null;
+    }
+    return elements.get(index);
+  }
+
+  @Override
+  public void put(E e) throws InterruptedException {
+    while (!offer(e)) {
+      // register before trying again, so that a consumer draining a call
+      // after that attempt sees the waiter and hands out a permit
+      fullWaiters.incrementAndGet();
+      try {
+        if (offer(e)) {
+          return;
+        }
+        notFull.acquire();
+      } finally {
+        fullWaiters.decrementAndGet();
+      }
+    }
+  }
+
+  @Override
+  public boolean offer(E e, long timeout, TimeUnit unit)
+      throws InterruptedException {
+    final long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (!offer(e)) {
+      final long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return false;
+      }
+      fullWaiters.incrementAndGet();
+      try {
+        if (offer(e)) {
+          return true;
+        }
+        notFull.tryAcquire(remaining, TimeUnit.NANOSECONDS);
+      } finally {
+        fullWaiters.decrementAndGet();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Poll a few times before blocking, as a call often comes in while a
+   * handler would be going to sleep.
+   */
+  private E spinPoll() {
+    for (int i = 0; i < SPIN_POLLS; i++) {
+      final E e = poll();
+      if (e != null) {
+        return e;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public E take() throws InterruptedException {
+    E e = spinPoll();
+    while (e == null) {
+      // register before checking again, so that a producer publishing a
+      // call after that check sees the waiter and hands out a permit
+      waiters.incrementAndGet();
+      try {
+        e = poll();
+        if (e == null) {
+          notEmpty.acquire();
+          e = poll();
+        }
+      } finally {
+        waiters.decrementAndGet();
+      }
+    }
+    return e;
+  }
+
+  @Override
+  public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+    final long deadline = System.nanoTime() + unit.toNanos(timeout);
+    E e = spinPoll();
+    while (e == null) {
+      final long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return null;
+      }
+      waiters.incrementAndGet();
+      try {
+        e = poll();
+        if (e == null && notEmpty.tryAcquire(remaining, TimeUnit.NANOSECONDS)) {
+          e = poll();
+        }
+      } finally {
+        waiters.decrementAndGet();
+      }
+    }
+    return e;
+  }
+
+  /**
+   * Size counts the calls being published as well, so it never reports an
+   * empty queue while a call is being added.
+   * Note: size provides no strict consistency.
+   */
+  @Override
+  public int size() {
+    final long size = tail.get() - head.get();
+    return (int) Math.max(0, Math.min(capacity, size));
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return capacity - size();
+  }
+
+  /**
+   * Iterator is not implemented, as it is not needed.
+   */
+  @Override
+  public Iterator<E> iterator() {
+    throw new NotImplementedException("Code is not implemented");
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> c, int maxElements) {
+    int drained = 0;
+    E e;
+    while (drained < maxElements && (e = poll()) != null) {
+      c.add(e);
+      drained++;
+    }
+    return drained;
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  /** An AtomicLong alone on its cache line. */
+  @SuppressWarnings("serial")
+  private static final class PaddedAtomicLong extends AtomicLong {
+    @SuppressWarnings("unused")
+    private long p1, p2, p3, p4, p5, p6, p7;
+  }
+}
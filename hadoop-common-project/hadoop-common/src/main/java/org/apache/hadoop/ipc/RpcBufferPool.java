@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.ipc;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A pool of heap byte arrays used by the RPC server to read requests and to
+ * serialize responses.
+ *
+ * Arrays are grouped in power of two size classes, from
+ * {@link #MIN_BUFFER_SIZE} up to the configured maximum buffer size, and each
+ * size class keeps at most a fixed number of free arrays. Requests larger
+ * than the maximum size are served with unpooled arrays.
+ *
+ * The arrays are handed out wrapped in reference counted {@link Buffer}s, and
+ * go back to the pool when the last reference is released. A buffer which is
+ * never released is simply garbage collected.
+ */
+@InterfaceAudience.Private
+class RpcBufferPool {
+  static final int MIN_BUFFER_SIZE = 512;
+
+  private final int maxBufferSize;
+  private final ArrayBlockingQueue<byte[]>[] sizeClasses;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicInteger outstanding = new AtomicInteger();
+
+  @SuppressWarnings("unchecked")
+  RpcBufferPool(int maxBufferSize, int buffersPerSizeClass) {
+    Preconditions.checkArgument(maxBufferSize >= MIN_BUFFER_SIZE,
+        "maxBufferSize must be at least " + MIN_BUFFER_SIZE);
+    Preconditions.checkArgument(buffersPerSizeClass > 0,
+        "buffersPerSizeClass must be positive");
+    this.maxBufferSize = roundUp(maxBufferSize);
+    final int numSizeClasses = sizeClass(this.maxBufferSize) + 1;
+    this.sizeClasses = new ArrayBlockingQueue[numSizeClasses];
+    for (int i = 0; i < numSizeClasses; i++) {
+      sizeClasses[i] = new ArrayBlockingQueue<>(buffersPerSizeClass);
+    }
+  }
+
+  /** @return the smallest size class which can hold the given size. */
+  private static int roundUp(int size) {
+    if (size <= MIN_BUFFER_SIZE) {
+      return MIN_BUFFER_SIZE;
+    }
+    return Integer.highestOneBit(size - 1) << 1;
+  }
+
+  private static int sizeClass(int roundedSize) {
+    return Integer.numberOfTrailingZeros(roundedSize)
+        - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+  }
+
+  /**
+   * Get a buffer of the given length. The returned buffer holds one
+   * reference, to be released with {@link Buffer#release()}.
+   */
+  Buffer acquire(int length) {
+    outstanding.incrementAndGet();
+    if (length > maxBufferSize) {
+      misses.incrementAndGet();
+      return new Buffer(new byte[length], length, null);
+    }
+    final int size = roundUp(length);
+    final ArrayBlockingQueue<byte[]> queue = sizeClasses[sizeClass(size)];
+    byte[] array = queue.poll();
+    if (array != null) {
+      hits.incrementAndGet();
+    } else {
+      misses.incrementAndGet();
+      array = new byte[size];
+    }
+    return new Buffer(array, length, queue);
+  }
+
+  long getHits() {
+    return hits.get();
+  }
+
+  long getMisses() {
+    return misses.get();
+  }
+
+  /** @return the number of buffers acquired and not released yet. */
+  int getOutstanding() {
+    return outstanding.get();
+  }
+
+  /** A reference counted view of a pooled array. */
+  final class Buffer {
+    private final byte[] array;
+    private final int length;
+    private final ArrayBlockingQueue<byte[]> queue;
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    private Buffer(byte[] array, int length,
+        ArrayBlockingQueue<byte[]> queue) {
+      this.array = array;
+      this.length = length;
+      this.queue = queue;
+    }
+
+    /** @return the backing array, which may be longer than the buffer. */
+    byte[] array() {
+      return array;
+    }
+
+    int length() {
+      return length;
+    }
+
+    /** @return a new ByteBuffer over the first length bytes of the array. */
+    ByteBuffer getByteBuffer() {
+      return ByteBuffer.wrap(array, 0, length);
+    }
+
+    Buffer retain() {
+      final int count = refCount.getAndIncrement();
+      Preconditions.checkState(count > 0, "Buffer already released");
+      return this;
+    }
+
+    void release() {
+      final int count = refCount.decrementAndGet();
+      Preconditions.checkState(count >= 0, "Buffer released too many times");
+      if (count == 0) {
+        outstanding.decrementAndGet();
+        if (queue != null) {
+          queue.offer(array);
+        }
+      }
+    }
+  }
+}
@@ -64,7 +64,10 @@
 import java.util.TimerTask;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -124,12 +127,30 @@
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+
 /** An abstract IPC service.  IPC calls take a single {@link Writable} as a
  * parameter, and return a {@link Writable} as their value.  A service runs on
  * a port and is defined by a parameter class and a value class.
@@ -469,6 +490,8 @@ protected ResponseBuffer initialValue() {
   };
   private int socketSendBufferSize;
   private final int maxDataLength;
+  /** Pool of the request and response buffers, null if disabled. */
+  private final RpcBufferPool bufferPool;
   private final boolean tcpNoDelay; // if T then disable Nagle's Algorithm
 
   volatile private boolean running = true;         // true while server runs
@@ -477,6 +500,8 @@ protected ResponseBuffer initialValue() {
   // maintains the set of client connections and handles idle timeouts
   private ConnectionManager connectionManager;
   private Listener listener = null;
+  // used instead of the listener when the server runs on Netty
+  private NettyListener nettyListener = null;
   // Auxiliary listeners maintained as in a map, to allow
   // arbitrary number of of auxiliary listeners. A map from
   // the port to the listener binding to it.
@@ -930,6 +955,9 @@ private class RpcCall extends Call {
     final Connection connection;  // connection to client
     final Writable rpcRequest;    // Serialized Rpc request from client
     ByteBuffer rpcResponse;       // the response for this call
+    // pooled buffers backing the request and the response, if any
+    private RpcBufferPool.Buffer requestBuffer;
+    private RpcBufferPool.Buffer responseBuffer;
 
     private ResponseParams responseParams; // the response params
     private Writable rv;                   // the byte response
@@ -940,6 +968,15 @@ private class RpcCall extends Call {
       this.rpcRequest = call.rpcRequest;
       this.rv = call.rv;
       this.responseParams = call.responseParams;
+      // the clone takes over the pooled buffers, the original call is
+      // discarded. The response buffer of the original is released when
+      // the clone sets its own response.
+      synchronized (call) {
+        this.requestBuffer = call.requestBuffer;
+        call.requestBuffer = null;
+        this.responseBuffer = call.responseBuffer;
+        call.responseBuffer = null;
+      }
     }
 
     RpcCall(Connection connection, int id) {
@@ -962,7 +999,7 @@ private class RpcCall extends Call {
 
     @Override
     boolean isOpen() {
-      return connection.channel.isOpen();
+      return connection.isOpen();
     }
 
     void setResponseFields(Writable returnValue,
@@ -988,8 +1025,9 @@ public InetAddress getHostInetAddress() {
 
     @Override
     public Void run() throws Exception {
-      if (!connection.channel.isOpen()) {
+      if (!connection.isOpen()) {
         Server.LOG.info(Thread.currentThread().getName() + ": skipped " + this);
+        releaseBuffers();
         return null;
       }
 
@@ -1058,7 +1096,42 @@ private void populateResponseParamsOnError(Throwable t,
     }
 
     void setResponse(ByteBuffer response) throws IOException {
+      setResponse(response, null);
+    }
+
+    /**
+     * Set the response, backed by the given pooled buffer if not null. Any
+     * previous pooled response buffer is released.
+     */
+    synchronized void setResponse(ByteBuffer response,
+        RpcBufferPool.Buffer pooled) {
+      if (responseBuffer != null) {
+        responseBuffer.release();
+      }
       this.rpcResponse = response;
+      this.responseBuffer = pooled;
+    }
+
+    /** Hold a reference to the pooled buffer the request was read into. */
+    synchronized void setRequestBuffer(RpcBufferPool.Buffer buffer) {
+      if (buffer != null) {
+        requestBuffer = buffer.retain();
+      }
+    }
+
+    /**
+     * Return the pooled request and response buffers, once the response has
+     * been written or will never be.
+     */
+    synchronized void releaseBuffers() {
+      if (requestBuffer != null) {
+        requestBuffer.release();
+        requestBuffer = null;
+      }
+      if (responseBuffer != null) {
+        responseBuffer.release();
+        responseBuffer = null;
+      }
     }
 
     @Override
@@ -1446,6 +1519,378 @@ Reader getReader() {
     }
   }
 
+  /**
+   * The channel of a {@link Connection} that is not served by the
+   * {@link Listener}. It keeps Netty out of the connection and the
+   * {@link Responder}, so Netty is only loaded when the server runs on it.
+   */
+  private interface ConnectionChannel {
+    boolean isOpen();
+
+    void close();
+
+    /**
+     * Write the response of a call. Once written, the buffers of the call
+     * are released and the rpc count of its connection is decremented.
+     */
+    void write(RpcCall call, ByteBuffer response);
+
+    /**
+     * Queue a call read from this channel, without blocking the thread
+     * reading the channel when the call queue is full.
+     */
+    void queueCall(RpcCall call) throws IOException, InterruptedException;
+  }
+
+  /**
+   * Accepts connections and reads their requests on Netty event loops, in
+   * place of the {@link Listener} and its readers. The native epoll
+   * transport is used when it is available.
+   *
+   * The bytes received on a channel are parsed by its {@link Connection}
+   * exactly as with the {@link Listener}, so the wire protocol, SASL and
+   * the call queue are unchanged.
+   *
+   * An event loop never blocks. A channel stops being read while the
+   * responses written to it are above the Netty write buffer high water
+   * mark, or while one of its calls waits for room in a full call queue.
+   * That wait is done by a separate thread.
+   *
+   * Netty is an optional dependency, so the Netty classes are only loaded
+   * once this listener is created, when ipc.server.netty.enabled is set.
+   */
+  private class NettyListener {
+    private final InetSocketAddress address;
+    private final EventLoopGroup acceptGroup;
+    private final EventLoopGroup readGroup;
+    private final Channel acceptChannel;
+    private final int listenPort;
+    // queues the calls that did not fit in the call queue, in order
+    private final ExecutorService callQueueFeeder;
+
+    NettyListener(int port) throws IOException {
+      address = new InetSocketAddress(bindAddress, port);
+      final boolean epoll = conf.getBoolean(
+          CommonConfigurationKeys.IPC_SERVER_NETTY_EPOLL_ENABLED_KEY,
+          CommonConfigurationKeys.IPC_SERVER_NETTY_EPOLL_ENABLED_DEFAULT)
+          && Epoll.isAvailable();
+      final ThreadFactory acceptThreads = new ThreadFactoryBuilder()
+          .setDaemon(true)
+          .setNameFormat("IPC Server listener on " + port)
+          .build();
+      final ThreadFactory readerThreads = new ThreadFactoryBuilder()
+          .setDaemon(true)
+          .setNameFormat("Socket Reader #%d for port " + port)
+          .build();
+      final ServerBootstrap bootstrap = new ServerBootstrap();
+      if (epoll) {
+        acceptGroup = new EpollEventLoopGroup(1, acceptThreads);
+        readGroup = new EpollEventLoopGroup(readThreads, readerThreads);
+        bootstrap.channel(EpollServerSocketChannel.class);
+      } else {
+        acceptGroup = new NioEventLoopGroup(1, acceptThreads);
+        readGroup = new NioEventLoopGroup(readThreads, readerThreads);
+        bootstrap.channel(NioServerSocketChannel.class);
+      }
+      bootstrap.group(acceptGroup, readGroup)
+          .option(ChannelOption.SO_BACKLOG, conf.getInt(
+              CommonConfigurationKeysPublic.IPC_SERVER_LISTEN_QUEUE_SIZE_KEY,
+              CommonConfigurationKeysPublic
+                  .IPC_SERVER_LISTEN_QUEUE_SIZE_DEFAULT))
+          .option(ChannelOption.SO_REUSEADDR, conf.getBoolean(
+              CommonConfigurationKeysPublic.IPC_SERVER_REUSEADDR_KEY,
+              CommonConfigurationKeysPublic.IPC_SERVER_REUSEADDR_DEFAULT))
+          // connections are only accepted once the server is started
+          .option(ChannelOption.AUTO_READ, false)
+          .childOption(ChannelOption.SO_KEEPALIVE, true)
+          .childHandler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+              ch.config().setOption(ChannelOption.TCP_NODELAY, tcpNoDelay);
+              ch.pipeline().addLast(new ConnectionHandler());
+            }
+          });
+      try {
+        acceptChannel = bind(bootstrap);
+      } catch (IOException e) {
+        acceptGroup.shutdownGracefully();
+        readGroup.shutdownGracefully();
+        throw e;
+      }
+      listenPort = getAddress().getPort();
+      callQueueFeeder = Executors.newSingleThreadExecutor(
+          new ThreadFactoryBuilder()
+              .setDaemon(true)
+              .setNameFormat("IPC Server call queue feeder on " + listenPort)
+              .build());
+      LOG.info("Listening on " + getAddress() + " with the "
+          + (epoll ? "epoll" : "NIO") + " Netty transport");
+    }
+
+    /** Bind to the configured address, or to a port of the range. */
+    private Channel bind(ServerBootstrap bootstrap) throws IOException {
+      IntegerRanges range = null;
+      if (portRangeConfig != null) {
+        range = conf.getRange(portRangeConfig, "");
+      }
+      if (range == null || range.isEmpty() || (address.getPort() != 0)) {
+        return bind(bootstrap, address);
+      }
+      for (Integer port : range) {
+        try {
+          return bind(bootstrap,
+              new InetSocketAddress(address.getAddress(), port));
+        } catch (IOException e) {
+          //Ignored
+        }
+      }
+      throw new BindException("Could not find a free port in " + range);
+    }
+
+    private Channel bind(ServerBootstrap bootstrap, InetSocketAddress addr)
+        throws IOException {
+      final ChannelFuture future = bootstrap.bind(addr).awaitUninterruptibly();
+      if (future.isSuccess()) {
+        return future.channel();
+      }
+      // the native transport does not report bind failures as such
+      SocketException e;
+      if (future.cause() instanceof SocketException) {
+        e = (SocketException) future.cause();
+      } else {
+        e = new BindException(future.cause().getMessage());
+        e.initCause(future.cause());
+      }
+      throw NetUtils.wrapException(null, 0, addr.getHostName(),
+          addr.getPort(), e);
+    }
+
+    InetSocketAddress getAddress() {
+      return (InetSocketAddress) acceptChannel.localAddress();
+    }
+
+    void start() {
+      connectionManager.startIdleScan();
+      acceptChannel.config().setAutoRead(true);
+    }
+
+    void doStop() {
+      acceptChannel.close().awaitUninterruptibly();
+      connectionManager.stopIdleScan();
+      connectionManager.closeAll();
+      acceptGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+      readGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+      callQueueFeeder.shutdownNow();
+    }
+
+    /** Feeds the bytes received on a channel to its {@link Connection}. */
+    private class ConnectionHandler extends ChannelInboundHandlerAdapter {
+      private final ByteBufChannel in = new ByteBufChannel();
+      private NettyConnectionChannel connectionChannel;
+      private Connection connection;
+
+      @Override
+      public void channelActive(ChannelHandlerContext ctx) {
+        final Channel channel = ctx.channel();
+        if (socketSendBufferSize != 0 && !channel.config().setOption(
+            ChannelOption.SO_SNDBUF, socketSendBufferSize)) {
+          LOG.warn("Connection: unable to set socket send buffer size to " +
+                   socketSendBufferSize);
+        }
+        connectionChannel = new NettyConnectionChannel(channel);
+        connection = connectionManager.register(connectionChannel, in,
+            (InetSocketAddress) channel.remoteAddress(), listenPort);
+        // If the connectionManager can't take it, close the connection.
+        if (connection == null) {
+          connectionManager.droppedConnections.getAndIncrement();
+          ctx.close();
+        }
+      }
+
+      @Override
+      public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        final ByteBuf buf = (ByteBuf) msg;
+        if (connection == null) {
+          buf.release();
+          return;
+        }
+        connection.setLastContact(Time.now());
+        in.buf = buf;
+        int count = 0;
+        try {
+          // readAndProcess returns after each request, so call it until
+          // all the received bytes have been consumed
+          while (count >= 0 && buf.isReadable() && !connection.shouldClose()) {
+            final int readerIndex = buf.readerIndex();
+            count = connection.readAndProcess();
+            if (buf.readerIndex() == readerIndex) {
+              break;
+            }
+          }
+        } catch (Exception e) {
+          // Any exceptions that reach here are fatal unexpected internal
+          // errors that could not be sent to the client.
+          LOG.info(Thread.currentThread().getName() +
+              ": readAndProcess from client " + connection +
+              " threw exception [" + e + "]", e);
+          count = -1;
+        } finally {
+          in.buf = null;
+          buf.release();
+        }
+        // setupResponse will signal the connection should be closed when a
+        // fatal response is sent.
+        if (count < 0 || connection.shouldClose()) {
+          closeConnection(connection);
+        } else {
+          connection.setLastContact(Time.now());
+        }
+      }
+
+      @Override
+      public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        if (connectionChannel != null) {
+          connectionChannel.updateAutoRead();
+        }
+        ctx.fireChannelWritabilityChanged();
+      }
+
+      @Override
+      public void channelInactive(ChannelHandlerContext ctx) {
+        if (connection != null) {
+          closeConnection(connection);
+        }
+      }
+
+      @Override
+      public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        LOG.debug(Thread.currentThread().getName() + ": error on connection "
+            + connection, cause);
+        if (connection != null) {
+          closeConnection(connection);
+        } else {
+          ctx.close();
+        }
+      }
+    }
+
+    /** Writes the responses of a connection to its Netty channel. */
+    private class NettyConnectionChannel implements ConnectionChannel {
+      private final Channel channel;
+      // calls handed to the call queue feeder and not queued yet
+      private final AtomicInteger pendingCalls = new AtomicInteger();
+
+      NettyConnectionChannel(Channel channel) {
+        this.channel = channel;
+      }
+
+      @Override
+      public void queueCall(final RpcCall call)
+          throws IOException, InterruptedException {
+        // the calls of a connection stay in order behind a pending one
+        if (pendingCalls.get() == 0 && offerCall(call)) {
+          return;
+        }
+        // Blocking on the full call queue would stall every channel of the
+        // event loop. Stop reading this channel instead, and let the feeder
+        // wait for room in the call queue.
+        pendingCalls.incrementAndGet();
+        updateAutoRead();
+        callQueueFeeder.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              internalQueueCall(call);
+            } catch (IOException | InterruptedException e) {
+              LOG.info(Thread.currentThread().getName() + ", call " + call
+                  + ": failed to queue the call " + e);
+              call.releaseBuffers();
+              call.connection.decRpcCount();
+              closeConnection(call.connection);
+            } finally {
+              if (pendingCalls.decrementAndGet() == 0) {
+                updateAutoRead();
+              }
+            }
+          }
+        });
+      }
+
+      /**
+       * Read the channel only while it is writable and none of its calls
+       * waits for room in the call queue.
+       */
+      void updateAutoRead() {
+        if (!channel.eventLoop().inEventLoop()) {
+          channel.eventLoop().execute(new Runnable() {
+            @Override
+            public void run() {
+              updateAutoRead();
+            }
+          });
+          return;
+        }
+        channel.config().setAutoRead(
+            channel.isWritable() && pendingCalls.get() == 0);
+      }
+
+      @Override
+      public boolean isOpen() {
+        return channel.isOpen();
+      }
+
+      @Override
+      public void close() {
+        channel.close();
+      }
+
+      @Override
+      public void write(final RpcCall call, ByteBuffer response) {
+        final int length = response.remaining();
+        // Netty keeps the writes of a channel in order
+        channel.writeAndFlush(Unpooled.wrappedBuffer(response)).addListener(
+            new ChannelFutureListener() {
+              @Override
+              public void operationComplete(ChannelFuture future) {
+                call.releaseBuffers();
+                call.connection.decRpcCount();
+                if (future.isSuccess()) {
+                  rpcMetrics.incrSentBytes(length);
+                } else {
+                  LOG.warn(Thread.currentThread().getName() + ", call " + call
+                      + ": output error " + future.cause());
+                  closeConnection(call.connection);
+                }
+              }
+            });
+      }
+    }
+
+    /** A channel reading from the buffer a Netty channel received last. */
+    private class ByteBufChannel implements ReadableByteChannel {
+      private ByteBuf buf;
+
+      @Override
+      public int read(ByteBuffer dst) {
+        final int n = Math.min(dst.remaining(), buf.readableBytes());
+        final int limit = dst.limit();
+        dst.limit(dst.position() + n);
+        buf.readBytes(dst);
+        dst.limit(limit);
+        return n;
+      }
+
+      @Override
+      public boolean isOpen() {
+        return true;
+      }
+
+      @Override
+      public void close() {
+      }
+    }
+  }
+
   private final static long PURGE_INTERVAL_NANOS = TimeUnit.NANOSECONDS.convert(
       15, TimeUnit.MINUTES);
 
@@ -1630,6 +2075,7 @@ private boolean processResponse(LinkedList<RpcCall> responseQueue,
           if (!call.rpcResponse.hasRemaining()) {
             //Clear out the response buffer so it can be collected
             call.rpcResponse = null;
+            call.releaseBuffers();
             call.connection.decRpcCount();
             if (numElements == 1) {    // last call fully processes.
               done = true;             // no more data for this channel.
@@ -1691,6 +2137,10 @@ void doRespond(RpcCall call) throws IOException {
         if (call.connection.useWrap) {
           wrapWithSasl(call);
         }
+        if (call.connection.connectionChannel != null) {
+          doChannelRespond(call);
+          return;
+        }
         call.connection.responseQueue.addLast(call);
         if (call.connection.responseQueue.size() == 1) {
           processResponse(call.connection.responseQueue, true);
@@ -1698,6 +2148,19 @@ void doRespond(RpcCall call) throws IOException {
       }
     }
 
+    /**
+     * Hand a response to the {@link ConnectionChannel} of its connection,
+     * which writes it asynchronously.
+     */
+    private void doChannelRespond(RpcCall call) {
+      final ByteBuffer response = call.rpcResponse;
+      call.rpcResponse = null;
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(Thread.currentThread().getName() + ": responding to " + call);
+      }
+      call.connection.connectionChannel.write(call, response);
+    }
+
     private synchronized void incPending() {   // call waiting to be enqueued.
       pending++;
     }
@@ -1771,7 +2234,15 @@ public class Connection {
                                             //follows connection header is read
 
     private SocketChannel channel;
+    // set instead of channel when the connection is served by Netty
+    private ConnectionChannel connectionChannel;
+    // the channel requests are read from
+    private ReadableByteChannel readChannel;
     private ByteBuffer data;
+    // pooled buffer backing data, if any
+    private RpcBufferPool.Buffer dataBuffer;
+    // pooled buffer of the request being processed, if any
+    private RpcBufferPool.Buffer requestBuffer;
     private ByteBuffer dataLengthBuffer;
     private LinkedList<RpcCall> responseQueue;
     // number of outstanding rpcs
@@ -1811,7 +2282,35 @@ public class Connection {
     
     public Connection(SocketChannel channel, long lastContact,
         int ingressPort) {
+      this(lastContact, ingressPort, channel.socket().getInetAddress(),
+          channel.socket().getPort());
       this.channel = channel;
+      this.readChannel = channel;
+      this.socket = channel.socket();
+      if (socketSendBufferSize != 0) {
+        try {
+          socket.setSendBufferSize(socketSendBufferSize);
+        } catch (IOException e) {
+          LOG.warn("Connection: unable to set socket send buffer size to " +
+                   socketSendBufferSize);
+        }
+      }
+    }
+
+    /**
+     * Create a connection served by the {@link NettyListener}. Requests are
+     * read from the given channel, which hands out the bytes received by
+     * the Netty channel.
+     */
+    Connection(ConnectionChannel channel, ReadableByteChannel in,
+        InetSocketAddress remote, long lastContact, int ingressPort) {
+      this(lastContact, ingressPort, remote.getAddress(), remote.getPort());
+      this.connectionChannel = channel;
+      this.readChannel = in;
+    }
+
+    private Connection(long lastContact, int ingressPort, InetAddress addr,
+        int remotePort) {
       this.lastContact = lastContact;
       this.data = null;
       
@@ -1820,25 +2319,21 @@ public Connection(SocketChannel channel, long lastContact,
       this.dataLengthBuffer = ByteBuffer.allocate(4);
       this.unwrappedData = null;
       this.unwrappedDataLengthBuffer = ByteBuffer.allocate(4);
-      this.socket = channel.socket();
-      this.addr = socket.getInetAddress();
+      this.addr = addr;
       this.ingressPort = ingressPort;
       if (addr == null) {
         this.hostAddress = "*Unknown*";
       } else {
         this.hostAddress = addr.getHostAddress();
       }
-      this.remotePort = socket.getPort();
+      this.remotePort = remotePort;
       this.responseQueue = new LinkedList<RpcCall>();
-      if (socketSendBufferSize != 0) {
-        try {
-          socket.setSendBufferSize(socketSendBufferSize);
-        } catch (IOException e) {
-          LOG.warn("Connection: unable to set socket send buffer size to " +
-                   socketSendBufferSize);
-        }
-      }
-    }   
+    }
+
+    boolean isOpen() {
+      return connectionChannel != null ? connectionChannel.isOpen()
+          : channel.isOpen();
+    }
 
     @Override
     public String toString() {
@@ -2207,7 +2702,7 @@ public int readAndProcess() throws IOException, InterruptedException {
         // dataLengthBuffer is used to read "hrpc" or the rpc-packet length
         int count = -1;
         if (dataLengthBuffer.remaining() > 0) {
-          count = channelRead(channel, dataLengthBuffer);       
+          count = channelRead(readChannel, dataLengthBuffer);       
           if (count < 0 || dataLengthBuffer.remaining() > 0) 
             return count;
         }
@@ -2219,7 +2714,7 @@ public int readAndProcess() throws IOException, InterruptedException {
             // for the bytes that follow "hrpc", in the connection header
             connectionHeaderBuf = ByteBuffer.allocate(HEADER_LEN_AFTER_HRPC_PART);
           }
-          count = channelRead(channel, connectionHeaderBuf);
+          count = channelRead(readChannel, connectionHeaderBuf);
           if (count < 0 || connectionHeaderBuf.remaining() > 0) {
             return count;
           }
@@ -2267,18 +2762,33 @@ public int readAndProcess() throws IOException, InterruptedException {
           dataLength = dataLengthBuffer.getInt();
           checkDataLength(dataLength);
           // Set buffer for reading EXACTLY the RPC-packet length and no more.
-          data = ByteBuffer.allocate(dataLength);
+          if (bufferPool != null) {
+            dataBuffer = bufferPool.acquire(dataLength);
+            data = dataBuffer.getByteBuffer();
+          } else {
+            data = ByteBuffer.allocate(dataLength);
+          }
         }
         // Now read the RPC packet
-        count = channelRead(channel, data);
+        count = channelRead(readChannel, data);
         
         if (data.remaining() == 0) {
           dataLengthBuffer.clear(); // to read length of future rpc packets
           data.flip();
           ByteBuffer requestData = data;
           data = null; // null out in case processOneRpc throws.
+          requestBuffer = dataBuffer;
+          dataBuffer = null;
           boolean isHeaderRead = connectionContextRead;
-          processOneRpc(requestData);
+          try {
+            processOneRpc(requestData);
+          } finally {
+            // a queued call holds its own reference to the buffer
+            if (requestBuffer != null) {
+              requestBuffer.release();
+              requestBuffer = null;
+            }
+          }
           // the last rpc-request we processed could have simply been the
           // connectionContext; if so continue to read the first RPC.
           if (!isHeaderRead) {
@@ -2654,6 +3164,8 @@ private void processRpcRequest(RpcRequestHeaderProto header,
           header.getRetryCount(), rpcRequest,
           ProtoUtil.convert(header.getRpcKind()),
           header.getClientId().toByteArray(), traceScope, callerContext);
+      // the request may be deserialized lazily by the handler
+      call.setRequestBuffer(requestBuffer);
 
       // Save the priority level assignment by the scheduler
       call.setPriorityLevel(callQueue.getPriorityLevel(call));
@@ -2684,10 +3196,16 @@ private void processRpcRequest(RpcRequestHeaderProto header,
       }
 
       try {
-        internalQueueCall(call);
+        if (connectionChannel != null) {
+          connectionChannel.queueCall(call);
+        } else {
+          internalQueueCall(call);
+        }
       } catch (RpcServerException rse) {
+        call.releaseBuffers();
         throw rse;
       } catch (IOException ioe) {
+        call.releaseBuffers();
         throw new FatalRpcServerException(
             RpcErrorCodeProto.ERROR_RPC_SERVER, ioe);
       }
@@ -2809,7 +3327,21 @@ public void setServiceClass(int serviceClass) {
     private synchronized void close() {
       disposeSasl();
       data = null;
+      if (dataBuffer != null) {
+        dataBuffer.release();
+        dataBuffer = null;
+      }
+      // the responses which are still queued will never be sent
+      synchronized (responseQueue) {
+        for (RpcCall call : responseQueue) {
+          call.releaseBuffers();
+        }
+      }
       dataLengthBuffer = null;
+      if (connectionChannel != null) {
+        connectionChannel.close();
+        return;
+      }
       if (!channel.isOpen())
         return;
       try {socket.shutdownOutput();} catch(Exception e) {
@@ -2845,9 +3377,7 @@ private void internalQueueCall(Call call, boolean blocking)
       } else {
         callQueue.add(call);
       }
-      long deltaNanos = Time.monotonicNowNanos() - call.timestampNanos;
-      call.getProcessingDetails().set(Timing.ENQUEUE, deltaNanos,
-          TimeUnit.NANOSECONDS);
+      setEnqueueTime(call);
     } catch (CallQueueOverflowException cqe) {
       // If rpc scheduler indicates back off based on performance degradation
       // such as response time or rpc queue is full, we will ask the client
@@ -2861,6 +3391,31 @@ private void internalQueueCall(Call call, boolean blocking)
     }
   }
 
+  /**
+   * Queue a call if that can be done without blocking.
+   *
+   * @return false if the call queue is full and the call was not queued.
+   */
+  private boolean offerCall(Call call)
+      throws IOException, InterruptedException {
+    if (callQueue.isClientBackoffEnabled()) {
+      // the client is asked to back off instead of waiting
+      internalQueueCall(call);
+      return true;
+    }
+    if (!callQueue.offer(call)) {
+      return false;
+    }
+    setEnqueueTime(call);
+    return true;
+  }
+
+  private void setEnqueueTime(Call call) {
+    long deltaNanos = Time.monotonicNowNanos() - call.timestampNanos;
+    call.getProcessingDetails().set(Timing.ENQUEUE, deltaNanos,
+        TimeUnit.NANOSECONDS);
+  }
+
   /** Handles queued calls . */
   private class Handler extends Thread {
     public Handler(int instanceNumber) {
@@ -3041,6 +3596,19 @@ protected Server(String bindAddress, int port,
     this.maxRespSize = conf.getInt(
         CommonConfigurationKeys.IPC_SERVER_RPC_MAX_RESPONSE_SIZE_KEY,
         CommonConfigurationKeys.IPC_SERVER_RPC_MAX_RESPONSE_SIZE_DEFAULT);
+    if (conf.getBoolean(
+        CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_ENABLED_KEY,
+        CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_ENABLED_DEFAULT)) {
+      this.bufferPool = new RpcBufferPool(
+          conf.getInt(
+              CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_MAX_SIZE_KEY,
+              CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_MAX_SIZE_DEFAULT),
+          conf.getInt(
+              CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_CAPACITY_KEY,
+              CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_CAPACITY_DEFAULT));
+    } else {
+      this.bufferPool = null;
+    }
     if (numReaders != -1) {
       this.readThreads = numReaders;
     } else {
@@ -3068,9 +3636,21 @@ protected Server(String bindAddress, int port,
     this.negotiateResponse = buildNegotiateResponse(enabledAuthMethods);
     
     // Start the listener here and let it bind to the port
-    listener = new Listener(port);
-    // set the server port to the default listener port.
-    this.port = listener.getAddress().getPort();
+    if (conf.getBoolean(CommonConfigurationKeys.IPC_SERVER_NETTY_ENABLED_KEY,
+        CommonConfigurationKeys.IPC_SERVER_NETTY_ENABLED_DEFAULT)) {
+      try {
+        nettyListener = new NettyListener(port);
+      } catch (NoClassDefFoundError e) {
+        throw new IOException("Netty is not on the classpath, but "
+            + CommonConfigurationKeys.IPC_SERVER_NETTY_ENABLED_KEY
+            + " is set", e);
+      }
+      this.port = nettyListener.getAddress().getPort();
+    } else {
+      listener = new Listener(port);
+      // set the server port to the default listener port.
+      this.port = listener.getAddress().getPort();
+    }
     connectionManager = new ConnectionManager();
     this.rpcMetrics = RpcMetrics.create(this, conf);
     this.rpcDetailedMetrics = RpcDetailedMetrics.create(this.port);
@@ -3219,7 +3799,11 @@ private void setupResponse(
   private void setupResponse(RpcCall call,
       RpcResponseHeaderProto header, Writable rv) throws IOException {
     final byte[] response;
-    if (rv == null || (rv instanceof RpcWritable.ProtobufWrapper)) {
+    if (bufferPool != null
+        && (rv == null || (rv instanceof RpcWritable.ProtobufWrapper))) {
+      setupPooledResponseForProtobuf(call, header, rv);
+      return;
+    } else if (rv == null || (rv instanceof RpcWritable.ProtobufWrapper)) {
       response = setupResponseForProtobuf(header, rv);
     } else {
       response = setupResponseForWritable(header, rv);
@@ -3261,7 +3845,40 @@ private byte[] setupResponseForProtobuf(
       length += getDelimitedLength(payload);
     }
     byte[] buf = new byte[length + 4];
-    CodedOutputStream cos = CodedOutputStream.newInstance(buf);
+    writeProtobufResponse(CodedOutputStream.newInstance(buf), length,
+        header, payload);
+    return buf;
+  }
+
+  // same as setupResponseForProtobuf, but serializes into a pooled buffer
+  // released once the response has been sent.
+  private void setupPooledResponseForProtobuf(RpcCall call,
+      RpcResponseHeaderProto header, Writable rv) throws IOException {
+    Message payload = (rv != null)
+        ? ((RpcWritable.ProtobufWrapper)rv).getMessage() : null;
+    int length = getDelimitedLength(header);
+    if (payload != null) {
+      length += getDelimitedLength(payload);
+    }
+    if (length + 4 > maxRespSize) {
+      LOG.warn("Large response size " + (length + 4) + " for call "
+          + call.toString());
+    }
+    final RpcBufferPool.Buffer buf = bufferPool.acquire(length + 4);
+    try {
+      writeProtobufResponse(
+          CodedOutputStream.newInstance(buf.array(), 0, length + 4), length,
+          header, payload);
+    } catch (IOException | RuntimeException e) {
+      buf.release();
+      throw e;
+    }
+    call.setResponse(buf.getByteBuffer(), buf);
+  }
+
+  private static void writeProtobufResponse(CodedOutputStream cos,
+      int length, RpcResponseHeaderProto header, Message payload)
+      throws IOException {
     // the stream only supports little endian ints
     cos.writeRawByte((byte)((length >>> 24) & 0xFF));
     cos.writeRawByte((byte)((length >>> 16) & 0xFF));
@@ -3273,7 +3890,6 @@ private byte[] setupResponseForProtobuf(
       cos.writeRawVarint32(payload.getSerializedSize());
       payload.writeTo(cos);
     }
-    return buf;
   }
 
   private static int getDelimitedLength(Message message) {
@@ -3310,11 +3926,14 @@ private void setupResponseOldVersionFatal(ByteArrayOutputStream response,
 
   private void wrapWithSasl(RpcCall call) throws IOException {
     if (call.connection.saslServer != null) {
-      byte[] token = call.rpcResponse.array();
+      final ByteBuffer response = call.rpcResponse;
+      byte[] token;
       // synchronization may be needed since there can be multiple Handler
       // threads using saslServer to wrap responses.
       synchronized (call.connection.saslServer) {
-        token = call.connection.saslServer.wrap(token, 0, token.length);
+        token = call.connection.saslServer.wrap(response.array(),
+            response.arrayOffset() + response.position(),
+            response.remaining());
       }
       if (LOG.isDebugEnabled())
         LOG.debug("Adding saslServer wrapped token of size " + token.length
@@ -3346,7 +3965,11 @@ public void setTracer(Tracer t) {
   /** Starts the service.  Must be called before any calls will be handled. */
   public synchronized void start() {
     responder.start();
-    listener.start();
+    if (nettyListener != null) {
+      nettyListener.start();
+    } else {
+      listener.start();
+    }
     if (auxiliaryListenerMap != null && auxiliaryListenerMap.size() > 0) {
       for (Listener newListener : auxiliaryListenerMap.values()) {
         newListener.start();
@@ -3372,8 +3995,12 @@ public synchronized void stop() {
         }
       }
     }
-    listener.interrupt();
-    listener.doStop();
+    if (nettyListener != null) {
+      nettyListener.doStop();
+    } else {
+      listener.interrupt();
+      listener.doStop();
+    }
     if (auxiliaryListenerMap != null && auxiliaryListenerMap.size() > 0) {
       for (Listener newListener : auxiliaryListenerMap.values()) {
         newListener.interrupt();
@@ -3401,6 +4028,9 @@ public synchronized void join() throws InterruptedException {
    * @return the socket (ip+port) on which the RPC server is listening to.
    */
   public synchronized InetSocketAddress getListenerAddress() {
+    if (nettyListener != null) {
+      return nettyListener.getAddress();
+    }
     return listener.getAddress();
   }
 
@@ -3501,6 +4131,21 @@ public long getNumDroppedConnections() {
 
   }
 
+  /** @return the number of RPC buffers served from the buffer pool. */
+  public long getBufferPoolHits() {
+    return bufferPool != null ? bufferPool.getHits() : 0;
+  }
+
+  /** @return the number of RPC buffers allocated outside of the pool. */
+  public long getBufferPoolMisses() {
+    return bufferPool != null ? bufferPool.getMisses() : 0;
+  }
+
+  /** @return the number of pooled RPC buffers not released yet. */
+  public int getBufferPoolOutstanding() {
+    return bufferPool != null ? bufferPool.getOutstanding() : 0;
+  }
+
   /**
    * The number of rpc calls in the queue.
    * @return The number of rpc calls in the queue.
@@ -3728,7 +4373,19 @@ Connection register(SocketChannel channel, int ingressPort) {
       if (isFull()) {
         return null;
       }
-      Connection connection = new Connection(channel, Time.now(), ingressPort);
+      return register(new Connection(channel, Time.now(), ingressPort));
+    }
+
+    Connection register(ConnectionChannel channel, ReadableByteChannel in,
+        InetSocketAddress remote, int ingressPort) {
+      if (isFull()) {
+        return null;
+      }
+      return register(
+          new Connection(channel, in, remote, Time.now(), ingressPort));
+    }
+
+    private Connection register(Connection connection) {
       add(connection);
       if (LOG.isDebugEnabled()) {
         LOG.debug("Server connection from " + connection +
@@ -48,6 +48,7 @@ public class RpcMetrics {
   final MetricsRegistry registry;
   final String name;
   final boolean rpcQuantileEnable;
+  final boolean rpcQuantileHistogram;
   /** The time unit used when storing/accessing time durations. */
   public final static TimeUnit TIMEUNIT = TimeUnit.MILLISECONDS;
   
@@ -63,6 +64,9 @@ public class RpcMetrics {
     rpcQuantileEnable = (intervals.length > 0) && conf.getBoolean(
         CommonConfigurationKeys.RPC_METRICS_QUANTILE_ENABLE,
         CommonConfigurationKeys.RPC_METRICS_QUANTILE_ENABLE_DEFAULT);
+    rpcQuantileHistogram = conf.getBoolean(
+        CommonConfigurationKeys.RPC_METRICS_QUANTILE_HISTOGRAM_ENABLE,
+        CommonConfigurationKeys.RPC_METRICS_QUANTILE_HISTOGRAM_ENABLE_DEFAULT);
     if (rpcQuantileEnable) {
       rpcQueueTimeQuantiles =
           new MutableQuantiles[intervals.length];
@@ -74,18 +78,18 @@ public class RpcMetrics {
           new MutableQuantiles[intervals.length];
       for (int i = 0; i < intervals.length; i++) {
         int interval = intervals[i];
-        rpcQueueTimeQuantiles[i] = registry.newQuantiles("rpcQueueTime"
+        rpcQueueTimeQuantiles[i] = newQuantiles("rpcQueueTime"
             + interval + "s", "rpc queue time in " + TIMEUNIT, "ops",
             "latency", interval);
-        rpcLockWaitTimeQuantiles[i] = registry.newQuantiles(
+        rpcLockWaitTimeQuantiles[i] = newQuantiles(
             "rpcLockWaitTime" + interval + "s",
             "rpc lock wait time in " + TIMEUNIT, "ops",
             "latency", interval);
-        rpcProcessingTimeQuantiles[i] = registry.newQuantiles(
+        rpcProcessingTimeQuantiles[i] = newQuantiles(
             "rpcProcessingTime" + interval + "s",
             "rpc processing time in " + TIMEUNIT, "ops",
             "latency", interval);
-        deferredRpcProcessingTimeQuantiles[i] = registry.newQuantiles(
+        deferredRpcProcessingTimeQuantiles[i] = newQuantiles(
             "deferredRpcProcessingTime" + interval + "s",
             "deferred rpc processing time in " + TIMEUNIT, "ops",
             "latency", interval);
@@ -94,6 +98,15 @@ public class RpcMetrics {
     LOG.debug("Initialized " + registry);
   }
 
+  private MutableQuantiles newQuantiles(String name, String desc,
+      String sampleName, String valueName, int interval) {
+    if (rpcQuantileHistogram) {
+      return registry.newHistogramQuantiles(name, desc, sampleName, valueName,
+          interval);
+    }
+    return registry.newQuantiles(name, desc, sampleName, valueName, interval);
+  }
+
   public String name() { return name; }
 
   public static RpcMetrics create(Server server, Configuration conf) {
@@ -141,6 +154,21 @@ public String numOpenConnectionsPerUser() {
     return server.getNumDroppedConnections();
   }
 
+  @Metric("Number of RPC buffers served from the buffer pool")
+  public long rpcBufferPoolHits() {
+    return server.getBufferPoolHits();
+  }
+
+  @Metric("Number of RPC buffers allocated because the pool had none")
+  public long rpcBufferPoolMisses() {
+    return server.getBufferPoolMisses();
+  }
+
+  @Metric("Number of RPC buffers in use")
+  public int rpcBufferPoolOutstanding() {
+    return server.getBufferPoolOutstanding();
+  }
+
   // Public instrumentation methods that could be extracted to an
   // abstract class if we decide to do custom instrumentation classes a la
   // JobTrackerInstrumentation. The methods with //@Override comment are
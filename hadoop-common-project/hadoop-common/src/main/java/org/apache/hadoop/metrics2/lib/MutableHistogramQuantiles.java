@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metrics2.lib;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.metrics2.util.Quantile;
+import org.apache.hadoop.metrics2.util.QuantileEstimator;
+import org.apache.hadoop.metrics2.util.StripedHistogram;
+
+/**
+ * A {@link MutableQuantiles} backed by a {@link StripedHistogram} rather than
+ * by a {@link org.apache.hadoop.metrics2.util.SampleQuantiles}. Adding a value
+ * takes no lock, so it can be used on hot paths updated by many threads, and
+ * the percentiles are reported within 1/64 (about 1.6%) of their actual
+ * value, which allows reporting the 99.9th and 99.99th percentiles as well,
+ * as 999thPercentile and 9999thPercentile.
+ *
+ * Two histograms are used in turns: values are added to one of them while
+ * the other one is read and cleared at rollover. An estimator set with
+ * {@link #setEstimator(QuantileEstimator)} replaces both: it is then read and
+ * cleared in place at rollover, and values are added to it under the lock of
+ * this metric unless it is a {@link StripedHistogram}.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class MutableHistogramQuantiles extends MutableQuantiles {
+
+  public static final Quantile[] HISTOGRAM_QUANTILES = {
+      new Quantile(0.50, 0), new Quantile(0.75, 0), new Quantile(0.90, 0),
+      new Quantile(0.95, 0), new Quantile(0.99, 0), new Quantile(0.999, 0),
+      new Quantile(0.9999, 0) };
+
+  private final AtomicReference<QuantileEstimator> current;
+  /** The histogram swapped in at rollover, null once an estimator is set. */
+  private StripedHistogram spare;
+
+  /**
+   * Instantiates a new {@link MutableHistogramQuantiles} for a metric that
+   * rolls itself over on the specified time interval.
+   *
+   * @param name
+   *          of the metric
+   * @param description
+   *          long-form textual description of the metric
+   * @param sampleName
+   *          type of items in the stream (e.g., "Ops")
+   * @param valueName
+   *          type of the values
+   * @param interval
+   *          rollover interval (in seconds) of the estimator
+   */
+  public MutableHistogramQuantiles(String name, String description,
+      String sampleName, String valueName, int interval) {
+    this(name, description, sampleName, valueName, interval,
+        new StripedHistogram(HISTOGRAM_QUANTILES));
+  }
+
+  private MutableHistogramQuantiles(String name, String description,
+      String sampleName, String valueName, int interval,
+      StripedHistogram histogram) {
+    super(name, description, sampleName, valueName, interval,
+        HISTOGRAM_QUANTILES, histogram);
+    current = new AtomicReference<QuantileEstimator>(histogram);
+    spare = new StripedHistogram(HISTOGRAM_QUANTILES);
+  }
+
+  @Override
+  public void add(long value) {
+    final QuantileEstimator estimator = current.get();
+    if (estimator instanceof StripedHistogram) {
+      estimator.insert(value);
+    } else {
+      // an estimator set by the caller may not be thread safe
+      synchronized (this) {
+        current.get().insert(value);
+      }
+    }
+  }
+
+  @Override
+  synchronized void rollover() {
+    if (spare == null) {
+      final QuantileEstimator estimator = current.get();
+      setPrevious(estimator.getCount(), estimator.snapshot());
+      estimator.clear();
+      return;
+    }
+    final StripedHistogram last = (StripedHistogram) current.getAndSet(spare);
+    setPrevious(last.getCount(), last.snapshot());
+    last.clear();
+    spare = last;
+  }
+
+  @Override
+  public synchronized QuantileEstimator getEstimator() {
+    return current.get();
+  }
+
+  /**
+   * Replace the histograms of this metric. The estimator must report the
+   * {@link #HISTOGRAM_QUANTILES}.
+   */
+  @Override
+  public synchronized void setEstimator(QuantileEstimator quantileEstimator) {
+    super.setEstimator(quantileEstimator);
+    current.set(quantileEstimator);
+    spare = null;
+  }
+}
@@ -87,6 +87,10 @@ MutableMetric newForField(Field field, Metric annotation,
       return registry.newQuantiles(info.name(), annotation.about(),
           annotation.sampleName(), annotation.valueName(), annotation.interval());
     }
+    if (cls == MutableHistogramQuantiles.class) {
+      return registry.newHistogramQuantiles(info.name(), annotation.about(),
+          annotation.sampleName(), annotation.valueName(), annotation.interval());
+    }
     throw new MetricsException("Unsupported metric field "+ field.getName() +
                                " of type "+ field.getType().getName());
   }
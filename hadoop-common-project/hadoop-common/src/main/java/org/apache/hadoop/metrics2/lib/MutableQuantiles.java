@@ -20,6 +20,7 @@
 
 import static org.apache.hadoop.metrics2.lib.Interns.info;
 
+import java.math.BigDecimal;
 import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -52,6 +53,7 @@ public class MutableQuantiles extends MutableMetric {
       new Quantile(0.75, 0.025), new Quantile(0.90, 0.010),
       new Quantile(0.95, 0.005), new Quantile(0.99, 0.001) };
 
+  private final Quantile[] reportedQuantiles;
   private final MetricsInfo numInfo;
   private final MetricsInfo[] quantileInfos;
   private final int interval;
@@ -84,6 +86,18 @@ public class MutableQuantiles extends MutableMetric {
    */
   public MutableQuantiles(String name, String description, String sampleName,
       String valueName, int interval) {
+    this(name, description, sampleName, valueName, interval, quantiles,
+        new SampleQuantiles(quantiles));
+  }
+
+  /**
+   * Instantiates a new {@link MutableQuantiles} reporting the given quantiles
+   * of the given estimator, and rolling it over on the specified time
+   * interval.
+   */
+  protected MutableQuantiles(String name, String description,
+      String sampleName, String valueName, int interval,
+      Quantile[] reportedQuantiles, QuantileEstimator estimator) {
     String ucName = StringUtils.capitalize(name);
     String usName = StringUtils.capitalize(sampleName);
     String uvName = StringUtils.capitalize(valueName);
@@ -94,17 +108,22 @@ public MutableQuantiles(String name, String description, String sampleName,
     numInfo = info(ucName + "Num" + usName, String.format(
         "Number of %s for %s with %ds interval", lsName, desc, interval));
     // Construct the MetricsInfos for the quantiles, converting to percentiles
-    quantileInfos = new MetricsInfo[quantiles.length];
-    String nameTemplate = ucName + "%dthPercentile" + uvName;
-    String descTemplate = "%d percentile " + lvName + " with " + interval
+    this.reportedQuantiles = reportedQuantiles;
+    quantileInfos = new MetricsInfo[reportedQuantiles.length];
+    String nameTemplate = ucName + "%sthPercentile" + uvName;
+    String descTemplate = "%s percentile " + lvName + " with " + interval
         + " second interval for " + desc;
-    for (int i = 0; i < quantiles.length; i++) {
-      int percentile = (int) (100 * quantiles[i].quantile);
-      quantileInfos[i] = info(String.format(nameTemplate, percentile),
+    for (int i = 0; i < reportedQuantiles.length; i++) {
+      // e.g. 99 for the 0.99 quantile, and 99.9 for the 0.999 one, which is
+      // named 999thPercentile
+      String percentile = BigDecimal.valueOf(reportedQuantiles[i].quantile)
+          .movePointRight(2).stripTrailingZeros().toPlainString();
+      quantileInfos[i] = info(
+          String.format(nameTemplate, percentile.replace(".", "")),
           String.format(descTemplate, percentile));
     }
 
-    estimator = new SampleQuantiles(quantiles);
+    this.estimator = estimator;
 
     this.interval = interval;
     scheduledTask = scheduler.scheduleWithFixedDelay(new RolloverSample(this),
@@ -115,11 +134,11 @@ public MutableQuantiles(String name, String description, String sampleName,
   public synchronized void snapshot(MetricsRecordBuilder builder, boolean all) {
     if (all || changed()) {
       builder.addGauge(numInfo, previousCount);
-      for (int i = 0; i < quantiles.length; i++) {
+      for (int i = 0; i < reportedQuantiles.length; i++) {
         long newValue = 0;
         // If snapshot is null, we failed to update since the window was empty
         if (previousSnapshot != null) {
-          newValue = previousSnapshot.get(quantiles[i]);
+          newValue = previousSnapshot.get(reportedQuantiles[i]);
         }
         builder.addGauge(quantileInfos[i], newValue);
       }
@@ -158,9 +177,26 @@ public synchronized void setEstimator(QuantileEstimator quantileEstimator) {
     this.estimator = quantileEstimator;
   }
 
+  /**
+   * Publish the statistics of the last interval, and start a new one.
+   */
+  synchronized void rollover() {
+    previousCount = estimator.getCount();
+    previousSnapshot = estimator.snapshot();
+    estimator.clear();
+  }
+
+  /**
+   * Set the statistics of the last interval.
+   */
+  synchronized void setPrevious(long count, Map<Quantile, Long> snapshot) {
+    previousCount = count;
+    previousSnapshot = snapshot;
+  }
+
   /**
    * Runnable used to periodically roll over the internal
-   * {@link SampleQuantiles} every interval.
+   * {@link QuantileEstimator} every interval.
    */
   private static class RolloverSample implements Runnable {
 
@@ -172,11 +208,7 @@ public RolloverSample(MutableQuantiles parent) {
 
     @Override
     public void run() {
-      synchronized (parent) {
-        parent.previousCount = parent.estimator.getCount();
-        parent.previousSnapshot = parent.estimator.snapshot();
-        parent.estimator.clear();
-      }
+      parent.rollover();
       parent.setChanged();
     }
 
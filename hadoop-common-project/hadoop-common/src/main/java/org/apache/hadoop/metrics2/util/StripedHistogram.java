@@ -0,0 +1,224 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metrics2.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * A histogram of non-negative long values with log-linear buckets, in the
+ * spirit of HdrHistogram: values below 128 have a bucket each, and each
+ * power of two range above is split in 64 buckets, so a quantile is reported
+ * within 1/64 of its actual value, however large.
+ *
+ * Recording a value is a single atomic increment without locking. The
+ * buckets are striped by thread, so that threads recording concurrently
+ * mostly update different cache lines. As each stripe takes about 30KB, there
+ * are at most 4 of them, and each one is only allocated once a thread records
+ * a value in it, so a histogram updated rarely or by a single thread stays
+ * small. Snapshots and clearing are not atomic with respect to concurrent
+ * inserts: a value recorded while the histogram is being cleared may be
+ * lost.
+ */
+@InterfaceAudience.Private
+public class StripedHistogram implements QuantileEstimator {
+
+  private static final int SUB_BUCKET_BITS = 7;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+  @VisibleForTesting
+  static final int BUCKET_COUNT = index(Long.MAX_VALUE) + 1;
+  private static final int MAX_STRIPES = 4;
+
+  private final Quantile[] quantiles;
+  /** The counts of the buckets by stripe, allocated on first use. */
+  private final AtomicReferenceArray<AtomicLongArray> stripes;
+  private final int stripeMask;
+
+  /**
+   * Create a histogram reporting the given quantiles, with as many stripes as
+   * processors, up to 4.
+   */
+  public StripedHistogram(Quantile[] quantiles) {
+    this(quantiles, Math.min(MAX_STRIPES,
+        Runtime.getRuntime().availableProcessors()));
+  }
+
+  @VisibleForTesting
+  StripedHistogram(Quantile[] quantiles, int minStripes) {
+    this.quantiles = quantiles.clone();
+    int count = Integer.highestOneBit(Math.max(1, minStripes));
+    if (count < minStripes) {
+      count <<= 1;
+    }
+    stripes = new AtomicReferenceArray<AtomicLongArray>(count);
+    stripeMask = count - 1;
+  }
+
+  /**
+   * @return the bucket of a value.
+   */
+  @VisibleForTesting
+  static int index(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) Math.max(0, value);
+    }
+    final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+    // the shift leaving the 7 highest bits, i.e. a sub-bucket in [64, 128)
+    final int shift = magnitude - (SUB_BUCKET_BITS - 1);
+    return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF
+        + (int) (value >>> shift) - SUB_BUCKET_HALF;
+  }
+
+  /**
+   * @return the largest value of a bucket.
+   */
+  @VisibleForTesting
+  static long highestValue(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+    final long subBucket =
+        (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+    // for the last bucket, this wraps around to Long.MAX_VALUE
+    return ((subBucket + 1) << shift) - 1;
+  }
+
+  @Override
+  public void insert(long value) {
+    final int i = (int) Thread.currentThread().getId() & stripeMask;
+    AtomicLongArray stripe = stripes.get(i);
+    if (stripe == null) {
+      stripe = new AtomicLongArray(BUCKET_COUNT);
+      if (!stripes.compareAndSet(i, null, stripe)) {
+        // allocated by another thread meanwhile
+        stripe = stripes.get(i);
+      }
+    }
+    stripe.incrementAndGet(index(value));
+  }
+
+  /**
+   * @return the counts of all the stripes, added up.
+   */
+  private long[] mergedCounts() {
+    final long[] counts = new long[BUCKET_COUNT];
+    for (int s = 0; s < stripes.length(); s++) {
+      final AtomicLongArray stripe = stripes.get(s);
+      if (stripe != null) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+          counts[i] += stripe.get(i);
+        }
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * Get the estimated value of each quantile: the largest value of the bucket
+   * holding the sample of that rank.
+   *
+   * @return a map of quantile to value, or null if no value was inserted.
+   */
+  @Override
+  public Map<Quantile, Long> snapshot() {
+    final long[] counts = mergedCounts();
+    long total = 0;
+    for (long c : counts) {
+      total += c;
+    }
+    if (total == 0) {
+      return null;
+    }
+    Map<Quantile, Long> values = new TreeMap<Quantile, Long>();
+    int bucket = 0;
+    long seen = counts[0];
+    // quantiles are looked up in increasing order, in a single pass
+    Quantile[] sorted = quantiles.clone();
+    Arrays.sort(sorted);
+    for (Quantile q : sorted) {
+      final long rank = Math.max(1, (long) Math.ceil(q.quantile * total));
+      while (seen < rank && bucket < BUCKET_COUNT - 1) {
+        seen += counts[++bucket];
+      }
+      values.put(q, highestValue(bucket));
+    }
+    return values;
+  }
+
+  @Override
+  public long getCount() {
+    long total = 0;
+    for (int s = 0; s < stripes.length(); s++) {
+      final AtomicLongArray stripe = stripes.get(s);
+      if (stripe != null) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+          total += stripe.get(i);
+        }
+      }
+    }
+    return total;
+  }
+
+  @Override
+  public void clear() {
+    // the stripes in use are kept, to be reused
+    for (int s = 0; s < stripes.length(); s++) {
+      final AtomicLongArray stripe = stripes.get(s);
+      if (stripe != null) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+          stripe.set(i, 0);
+        }
+      }
+    }
+  }
+
+  @VisibleForTesting
+  int getStripeCount() {
+    return stripes.length();
+  }
+
+  /**
+   * @return the number of stripes allocated so far.
+   */
+  @VisibleForTesting
+  int getAllocatedStripeCount() {
+    int allocated = 0;
+    for (int s = 0; s < stripes.length(); s++) {
+      if (stripes.get(s) != null) {
+        allocated++;
+      }
+    }
+    return allocated;
+  }
+
+  @Override
+  public String toString() {
+    Map<Quantile, Long> data = snapshot();
+    return data == null ? "[no samples]" : data.toString();
+  }
+}
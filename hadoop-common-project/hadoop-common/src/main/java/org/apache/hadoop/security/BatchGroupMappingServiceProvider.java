@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.security;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * A {@link GroupMappingServiceProvider} able to look up the groups of several
+ * users at once, e.g. with a single directory query. {@link Groups} batches
+ * the concurrent lookups of such a provider when
+ * hadoop.security.groups.lookup.batch.size is more than 1.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public interface BatchGroupMappingServiceProvider
+    extends GroupMappingServiceProvider {
+
+  /**
+   * Get the group memberships of several users.
+   * @param users the names of the users
+   * @return the group memberships of each user; users without groups map to
+   *         an empty list, or are missing
+   * @throws IOException
+   */
+  Map<String, List<String>> getGroupsForUsers(Collection<String> users)
+      throws IOException;
+}
@@ -27,28 +27,35 @@
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.htrace.core.TraceScope;
 import org.apache.htrace.core.Tracer;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 import com.google.common.base.Ticker;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 import org.apache.hadoop.HadoopIllegalArgumentException;
 import org.apache.hadoop.classification.InterfaceAudience;
@@ -69,6 +76,12 @@
  * of a given user via the {@link #getGroups(String)} call, thus ensuring 
  * a consistent user-to-groups mapping and protects against vagaries of 
  * different mappings on servers and clients in a Hadoop cluster. 
+ *
+ * The group lists are de-duplicated and shared between the users with the
+ * same groups, so that the cache stays compact with many users. When the
+ * mapping implements {@link BatchGroupMappingServiceProvider}, the concurrent
+ * lookups can be batched, see
+ * {@link CommonConfigurationKeys#HADOOP_SECURITY_GROUPS_LOOKUP_BATCH_SIZE}.
  */
 @InterfaceAudience.LimitedPrivate({"HDFS", "MapReduce"})
 @InterfaceStability.Evolving
@@ -78,7 +91,13 @@ public class Groups {
   
   private final GroupMappingServiceProvider impl;
 
-  private final LoadingCache<String, List<String>> cache;
+  /** Shares the group names and lists between the cached users. */
+  private static final Interner<String> GROUP_NAMES =
+      Interners.newWeakInterner();
+  private static final Interner<List<String>> GROUP_LISTS =
+      Interners.newWeakInterner();
+
+  private final LoadingCache<String, CachedGroups> cache;
   private final AtomicReference<Map<String, List<String>>> staticMapRef =
       new AtomicReference<>();
   private final long cacheTimeout;
@@ -88,6 +107,8 @@ public class Groups {
   private Set<String> negativeCache;
   private final boolean reloadGroupsInBackground;
   private final int reloadGroupsThreadCount;
+  private final int lookupBatchSize;
+  private final GroupLookupBatcher batcher;
 
   private final AtomicLong backgroundRefreshSuccess =
       new AtomicLong(0);
@@ -130,9 +151,20 @@ public Groups(Configuration conf, final Timer timer) {
               HADOOP_SECURITY_GROUPS_CACHE_BACKGROUND_RELOAD_THREADS,
           CommonConfigurationKeys.
               HADOOP_SECURITY_GROUPS_CACHE_BACKGROUND_RELOAD_THREADS_DEFAULT);
+    lookupBatchSize =
+      conf.getInt(
+          CommonConfigurationKeys.HADOOP_SECURITY_GROUPS_LOOKUP_BATCH_SIZE,
+          CommonConfigurationKeys.
+              HADOOP_SECURITY_GROUPS_LOOKUP_BATCH_SIZE_DEFAULT);
     parseStaticMapping(conf);
 
     this.timer = timer;
+    if (lookupBatchSize > 1
+        && impl instanceof BatchGroupMappingServiceProvider) {
+      batcher = new GroupLookupBatcher((BatchGroupMappingServiceProvider) impl);
+    } else {
+      batcher = null;
+    }
     this.cache = CacheBuilder.newBuilder()
       .refreshAfterWrite(cacheTimeout, TimeUnit.MILLISECONDS)
       .ticker(new TimerToTickerAdapter(timer))
@@ -150,7 +182,8 @@ public Groups(Configuration conf, final Timer timer) {
     if(LOG.isDebugEnabled())
       LOG.debug("Group mapping impl=" + impl.getClass().getName() + 
           "; cacheTimeout=" + cacheTimeout + "; warningDeltaMs=" +
-          warningDeltaMs);
+          warningDeltaMs + "; lookupBatchSize=" +
+          (batcher == null ? 1 : lookupBatchSize));
   }
   
   @VisibleForTesting
@@ -225,7 +258,7 @@ public List<String> getGroups(final String user) throws IOException {
     }
 
     try {
-      return cache.get(user);
+      return cache.get(user).groups;
     } catch (ExecutionException e) {
       throw (IOException)e.getCause();
     }
@@ -264,10 +297,154 @@ public long read() {
     }
   }
 
+  /** The groups of a user, and when they were looked up. */
+  private static final class CachedGroups {
+    private final List<String> groups;
+    private final long loadTimeMs;
+
+    CachedGroups(List<String> groups, long loadTimeMs) {
+      this.groups = groups;
+      this.loadTimeMs = loadTimeMs;
+    }
+  }
+
+  /**
+   * @return the de-duplicated groups as a shared immutable list.
+   */
+  private static List<String> intern(List<String> groups) {
+    final List<String> names = new ArrayList<>(new LinkedHashSet<>(groups));
+    names.replaceAll(GROUP_NAMES::intern);
+    return GROUP_LISTS.intern(Collections.unmodifiableList(names));
+  }
+
+  /**
+   * Wait for the groups looked up by the batcher.
+   */
+  private static List<String> getGroups(ListenableFuture<List<String>> future)
+      throws IOException {
+    try {
+      return Uninterruptibles.getUninterruptibly(future);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), IOException.class);
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Queries impl for the groups of several users at once.
+   */
+  private Map<String, List<String>> fetchGroupLists(
+      BatchGroupMappingServiceProvider provider, Collection<String> users)
+      throws IOException {
+    long startMs = timer.monotonicNow();
+    Map<String, List<String>> groups = provider.getGroupsForUsers(users);
+    long deltaMs = timer.monotonicNow() - startMs;
+    UserGroupInformation.metrics.addGetGroups(deltaMs);
+    UserGroupInformation.metrics.addGetGroupsBatch(users.size());
+    if (deltaMs > warningDeltaMs) {
+      LOG.warn("Potential performance problem: getGroupsForUsers(" +
+          users.size() + " users) took " + deltaMs + " milliseconds.");
+    }
+    return groups;
+  }
+
+  /** A user queued to the batcher. */
+  private static final class PendingLookup {
+    private final String user;
+    private final boolean refresh;
+    private final SettableFuture<List<String>> future = SettableFuture.create();
+
+    PendingLookup(String user, boolean refresh) {
+      this.user = user;
+      this.refresh = refresh;
+    }
+  }
+
+  /**
+   * Looks up the groups of the users queued by concurrent cache loads and
+   * refreshes together, on a single thread: the users queued while a lookup
+   * is running are looked up with the next one, up to lookupBatchSize users
+   * at a time.
+   */
+  private class GroupLookupBatcher implements Runnable {
+    private final BatchGroupMappingServiceProvider provider;
+    private final ConcurrentLinkedQueue<PendingLookup> queue =
+        new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final ThreadPoolExecutor executor;
+
+    GroupLookupBatcher(BatchGroupMappingServiceProvider provider) {
+      this.provider = provider;
+      executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<>(),
+          new ThreadFactoryBuilder()
+              .setNameFormat("Group-Lookup-Batcher")
+              .setDaemon(true)
+              .build());
+      executor.allowCoreThreadTimeOut(true);
+    }
+
+    ListenableFuture<List<String>> submit(String user, boolean refresh) {
+      PendingLookup lookup = new PendingLookup(user, refresh);
+      queue.add(lookup);
+      if (scheduled.compareAndSet(false, true)) {
+        executor.execute(this);
+      }
+      return lookup.future;
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        List<PendingLookup> batch = new ArrayList<>();
+        Set<String> users = new LinkedHashSet<>();
+        PendingLookup lookup;
+        while (users.size() < lookupBatchSize
+            && (lookup = queue.poll()) != null) {
+          batch.add(lookup);
+          users.add(lookup.user);
+        }
+        if (batch.isEmpty()) {
+          scheduled.set(false);
+          // carry on with the users queued before the flag was cleared,
+          // unless they scheduled another run
+          if (queue.isEmpty() || !scheduled.compareAndSet(false, true)) {
+            return;
+          }
+          continue;
+        }
+        lookup(batch, users);
+      }
+    }
+
+    private void lookup(List<PendingLookup> batch, Set<String> users) {
+      for (PendingLookup lookup : batch) {
+        if (lookup.refresh) {
+          backgroundRefreshQueued.decrementAndGet();
+          backgroundRefreshRunning.incrementAndGet();
+        }
+      }
+      Map<String, List<String>> groups;
+      try {
+        groups = fetchGroupLists(provider, users);
+      } catch (Throwable t) {
+        for (PendingLookup lookup : batch) {
+          lookup.future.setException(t);
+        }
+        return;
+      }
+      for (PendingLookup lookup : batch) {
+        List<String> userGroups = groups.get(lookup.user);
+        lookup.future.set(userGroups == null ?
+            Collections.<String>emptyList() : userGroups);
+      }
+    }
+  }
+
   /**
    * Deals with loading data into the cache.
    */
-  private class GroupCacheLoader extends CacheLoader<String, List<String>> {
+  private class GroupCacheLoader extends CacheLoader<String, CachedGroups> {
 
     private ListeningExecutorService executorService;
 
@@ -308,7 +485,7 @@ private class GroupCacheLoader extends CacheLoader<String, List<String>> {
      * @throws IOException to prevent caching negative entries
      */
     @Override
-    public List<String> load(String user) throws Exception {
+    public CachedGroups load(String user) throws Exception {
       LOG.debug("GroupCacheLoader - load.");
       TraceScope scope = null;
       Tracer tracer = Tracer.curThreadTracer();
@@ -318,13 +495,21 @@ public List<String> load(String user) throws Exception {
       }
       List<String> groups = null;
       try {
-        groups = fetchGroupList(user);
+        if (batcher != null) {
+          groups = getGroups(batcher.submit(user, false));
+        } else {
+          groups = fetchGroupList(user);
+        }
       } finally {
         if (scope != null) {
           scope.close();
         }
       }
+      return toCachedGroups(user, groups);
+    }
 
+    private CachedGroups toCachedGroups(String user, List<String> groups)
+        throws IOException {
       if (groups.isEmpty()) {
         if (isNegativeCacheEnabled()) {
           negativeCache.add(user);
@@ -335,8 +520,7 @@ public List<String> load(String user) throws Exception {
       }
 
       // return immutable de-duped list
-      return Collections.unmodifiableList(
-          new ArrayList<>(new LinkedHashSet<>(groups)));
+      return new CachedGroups(intern(groups), timer.monotonicNow());
     }
 
     /**
@@ -345,8 +529,8 @@ public List<String> load(String user) throws Exception {
      * implementation, otherwise is arranges for the cache to be updated later
      */
     @Override
-    public ListenableFuture<List<String>> reload(final String key,
-                                                 List<String> oldValue)
+    public ListenableFuture<CachedGroups> reload(final String key,
+                                                 final CachedGroups oldValue)
         throws Exception {
       LOG.debug("GroupCacheLoader - reload (async).");
       if (!reloadGroupsInBackground) {
@@ -354,21 +538,32 @@ public ListenableFuture<List<String>> reload(final String key,
       }
 
       backgroundRefreshQueued.incrementAndGet();
-      ListenableFuture<List<String>> listenableFuture =
-          executorService.submit(new Callable<List<String>>() {
+      final long queuedMs = timer.monotonicNow();
+      ListenableFuture<CachedGroups> listenableFuture;
+      if (batcher != null) {
+        listenableFuture = Futures.transformAsync(batcher.submit(key, true),
+            groups -> Futures.immediateFuture(toCachedGroups(key, groups)),
+            MoreExecutors.directExecutor());
+      } else {
+        listenableFuture =
+          executorService.submit(new Callable<CachedGroups>() {
             @Override
-            public List<String> call() throws Exception {
+            public CachedGroups call() throws Exception {
               backgroundRefreshQueued.decrementAndGet();
               backgroundRefreshRunning.incrementAndGet();
-              List<String> results = load(key);
+              CachedGroups results = load(key);
               return results;
             }
           });
-      Futures.addCallback(listenableFuture, new FutureCallback<List<String>>() {
+      }
+      Futures.addCallback(listenableFuture, new FutureCallback<CachedGroups>() {
         @Override
-        public void onSuccess(List<String> result) {
+        public void onSuccess(CachedGroups result) {
           backgroundRefreshSuccess.incrementAndGet();
           backgroundRefreshRunning.decrementAndGet();
+          UserGroupInformation.metrics.addGetGroupsRefresh(
+              result.loadTimeMs - queuedMs,
+              result.loadTimeMs - oldValue.loadTimeMs);
         }
         @Override
         public void onFailure(Throwable t) {
@@ -25,12 +25,16 @@
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.HashSet;
 import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.naming.AuthenticationException;
 import javax.naming.Context;
@@ -50,6 +54,7 @@
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -79,11 +84,15 @@
  * If the limit is 0, in order to be considered a member of a group,
  * the user must be an explicit member in LDAP.  Otherwise, it will traverse the
  * group hierarchy n levels up.
+ *
+ * When the groups are read from the memberOf attribute of the users, without
+ * going up the hierarchy, the groups of several users are looked up with a
+ * single query by {@link #getGroupsForUsers(Collection)}.
  */
 @InterfaceAudience.LimitedPrivate({"HDFS", "MapReduce"})
 @InterfaceStability.Evolving
 public class LdapGroupsMapping
-    implements GroupMappingServiceProvider, Configurable {
+    implements BatchGroupMappingServiceProvider, Configurable {
   
   public static final String LDAP_CONFIG_PREFIX = "hadoop.security.group.mapping.ldap";
 
@@ -281,6 +290,10 @@
     SEARCH_CONTROLS.setSearchScope(SearchControls.SUBTREE_SCOPE);
   }
 
+  /** The assertion of the user search filter on the name of the user. */
+  private static final Pattern USER_NAME_ASSERTION =
+      Pattern.compile("\\(([^()=~<>:]+)=\\{0\\}\\)");
+
   private DirContext ctx;
   private Configuration conf;
 
@@ -312,6 +325,9 @@
   private String posixGidAttr;
   private boolean isPosix;
   private boolean useOneQuery;
+  /** The attribute of the user name, if lookups can be batched. */
+  private String userNameAttr;
+  private SearchControls batchSearchControls;
   private int numAttempts;
   private int numAttemptsBeforeFailover;
   private String ldapCtxFactoryClassName;
@@ -362,6 +378,95 @@ public synchronized List<String> getGroups(String user) {
     return Collections.emptyList();
   }
 
+  /**
+   * Returns the groups of several users. If the groups are read from the
+   * memberOf attribute of the users, without going up the group hierarchy,
+   * the users are looked up with a single query, matching the user search
+   * filter of any of them; the users found without groups, and all of them
+   * if that query fails, are looked up one by one.
+   *
+   * @param users get groups for these users
+   * @return the groups of each user
+   */
+  @Override
+  public synchronized Map<String, List<String>> getGroupsForUsers(
+      Collection<String> users) {
+    Map<String, List<String>> groups = new HashMap<>();
+    if (userNameAttr != null && users.size() > 1) {
+      try {
+        doGetGroupsForUsers(users, groups);
+      } catch (NamingException e) {
+        LOG.warn("Failed to get groups for {} users in one query using {}. " +
+            "Looking them up one by one. Exception: ", users.size(),
+            currentLdapUrl, e);
+        groups.clear();
+        // Reset ctx so that new DirContext can be created with new connection
+        this.ctx = null;
+      }
+    }
+    for (String user : users) {
+      if (!groups.containsKey(user)) {
+        groups.put(user, getGroups(user));
+      }
+    }
+    return groups;
+  }
+
+  /**
+   * Look up the users in a single query, adding the groups of the users
+   * found with groups, and an empty list for the users not found.
+   */
+  private void doGetGroupsForUsers(Collection<String> users,
+      Map<String, List<String>> groups) throws NamingException {
+    DirContext c = getDirContext();
+    Object[] names = users.toArray();
+    StringBuilder filter = new StringBuilder("(|");
+    Map<String, String> byName = new HashMap<>();
+    for (int i = 0; i < names.length; i++) {
+      filter.append(userSearchFilter.replace("{0}", "{" + i + "}"));
+      byName.put(StringUtils.toLowerCase((String) names[i]), (String) names[i]);
+    }
+    filter.append(")");
+
+    Set<String> found = new HashSet<>();
+    NamingEnumeration<SearchResult> results = c.search(userbaseDN,
+        filter.toString(), names, batchSearchControls);
+    while (results.hasMoreElements()) {
+      SearchResult result = results.nextElement();
+      Attribute nameAttr = result.getAttributes().get(userNameAttr);
+      if (nameAttr == null) {
+        throw new NamingException("The user object does not have '" +
+            userNameAttr + "' attribute. Returned user object: " + result);
+      }
+      String user = byName.get(StringUtils.toLowerCase(
+          nameAttr.get().toString()));
+      // only the first result of each user is considered, as in doGetGroups
+      if (user == null || !found.add(user)) {
+        continue;
+      }
+      Attribute groupDNAttr = result.getAttributes().get(memberOfAttr);
+      if (groupDNAttr == null) {
+        continue;
+      }
+      List<String> userGroups = new ArrayList<>();
+      NamingEnumeration groupEnumeration = groupDNAttr.getAll();
+      while (groupEnumeration.hasMore()) {
+        String groupDN = groupEnumeration.next().toString();
+        userGroups.add(getRelativeDistinguishedName(groupDN));
+      }
+      if (!userGroups.isEmpty()) {
+        groups.put(user, userGroups);
+      }
+    }
+    for (String user : users) {
+      if (!found.contains(user)) {
+        LOG.debug("doGetGroupsForUsers returned no groups for {} because " +
+            "the user is not found.", user);
+        groups.put(user, new ArrayList<>());
+      }
+    }
+  }
+
   /**
    * A helper method to get the Relative Distinguished Name (RDN) from
    * Distinguished name (DN). According to Active Directory documentation,
@@ -755,6 +860,20 @@ public synchronized void setConf(Configuration conf) {
     }
     SEARCH_CONTROLS.setReturningAttributes(returningAttributes);
 
+    // The groups of several users can be looked up in one query if they are
+    // read from the user objects, which can be matched back to the users.
+    userNameAttr = null;
+    batchSearchControls = null;
+    Matcher nameAssertion = USER_NAME_ASSERTION.matcher(userSearchFilter);
+    if (useOneQuery && groupHierarchyLevels == 0 && nameAssertion.find()) {
+      userNameAttr = nameAssertion.group(1).trim();
+      batchSearchControls = new SearchControls();
+      batchSearchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+      batchSearchControls.setTimeLimit(dirSearchTimeout);
+      batchSearchControls.setReturningAttributes(
+          new String[] {userNameAttr, memberOfAttr});
+    }
+
     // LDAP_CTX_FACTORY_CLASS_DEFAULT is not open to unnamed modules
     // in Java 11+, so the default value is set to null to avoid
     // creating the instance for now.
@@ -84,6 +84,7 @@
 import org.apache.hadoop.metrics2.lib.MutableGaugeLong;
 import org.apache.hadoop.metrics2.lib.MutableQuantiles;
 import org.apache.hadoop.metrics2.lib.MutableRate;
+import org.apache.hadoop.metrics2.lib.MutableStat;
 import org.apache.hadoop.security.SaslRpcServer.AuthMethod;
 import org.apache.hadoop.security.authentication.util.KerberosUtil;
 import org.apache.hadoop.security.token.Token;
@@ -140,6 +141,14 @@ static class UgiMetrics {
     MutableRate loginFailure;
     @Metric("GetGroups") MutableRate getGroups;
     MutableQuantiles[] getGroupsQuantiles;
+    @Metric("Time from queueing a background refresh of the groups of a " +
+        "user to its completion (milliseconds)")
+    MutableRate getGroupsRefresh;
+    @Metric("Age of the groups of a user when refreshed (milliseconds)")
+    MutableRate getGroupsStaleness;
+    @Metric(value = {"GetGroupsBatch", "Users per batched group lookup"},
+        sampleName = "Batches", valueName = "Users")
+    MutableStat getGroupsBatch;
     @Metric("Renewal failures since startup")
     private MutableGaugeLong renewalFailuresTotal;
     @Metric("Renewal failures since last successful login")
@@ -162,6 +171,15 @@ void addGetGroups(long latency) {
       }
     }
 
+    void addGetGroupsRefresh(long latency, long staleness) {
+      getGroupsRefresh.add(latency);
+      getGroupsStaleness.add(staleness);
+    }
+
+    void addGetGroupsBatch(int users) {
+      getGroupsBatch.add(users);
+    }
+
     MutableGaugeInt getRenewalFailures() {
       return renewalFailures;
     }
@@ -25,8 +25,12 @@
 import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -54,6 +58,8 @@
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.security.token.Token;
 import org.apache.hadoop.security.token.delegation.web.DelegationTokenManager;
+import org.apache.hadoop.util.Daemon;
+import org.apache.hadoop.util.Time;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.KeeperException.NoNodeException;
@@ -61,6 +67,7 @@
 import org.apache.zookeeper.client.ZooKeeperSaslClient;
 import org.apache.zookeeper.data.ACL;
 import org.apache.zookeeper.data.Id;
+import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -73,6 +80,14 @@
  * be used by HA (Highly available) services that consists of multiple nodes.
  * This class ensures that Identifiers and Keys are replicated to all nodes of
  * the service.
+ *
+ * By default each token is stored in its own znode, and written synchronously.
+ * With {@link #ZK_DTSM_SHARDED_TOKEN_STORE} set, the tokens are instead stored
+ * in shards of {@link #ZK_DTSM_TOKENS_PER_SHARD} consecutive sequence
+ * numbers, one znode per shard, and the changes are written in batches by a
+ * background thread: see {@link ShardedTokenStore}. All the instances sharing
+ * the same znodes must use the same mode. On startup, the sharded store moves
+ * the tokens written one per znode, before the switch, into the shards.
  */
 @InterfaceAudience.Private
 public abstract class ZKDelegationTokenSecretManager<TokenIdent extends AbstractDelegationTokenIdentifier>
@@ -98,11 +113,24 @@
   public static final String ZK_DTSM_ZK_KERBEROS_PRINCIPAL = ZK_CONF_PREFIX
       + "kerberos.principal";
 
+  public static final String ZK_DTSM_SHARDED_TOKEN_STORE = ZK_CONF_PREFIX
+      + "shardedTokenStore";
+  public static final String ZK_DTSM_TOKENS_PER_SHARD = ZK_CONF_PREFIX
+      + "tokensPerShard";
+  public static final String ZK_DTSM_TOKEN_FLUSH_INTERVAL = ZK_CONF_PREFIX
+      + "tokenFlushInterval";
+  public static final String ZK_DTSM_TOKEN_SYNC_WRITES = ZK_CONF_PREFIX
+      + "tokenSyncWrites";
+
   public static final int ZK_DTSM_ZK_NUM_RETRIES_DEFAULT = 3;
   public static final int ZK_DTSM_ZK_SESSION_TIMEOUT_DEFAULT = 10000;
   public static final int ZK_DTSM_ZK_CONNECTION_TIMEOUT_DEFAULT = 10000;
   public static final int ZK_DTSM_ZK_SHUTDOWN_TIMEOUT_DEFAULT = 10000;
   public static final String ZK_DTSM_ZNODE_WORKING_PATH_DEAFULT = "zkdtsm";
+  public static final boolean ZK_DTSM_SHARDED_TOKEN_STORE_DEFAULT = false;
+  public static final int ZK_DTSM_TOKENS_PER_SHARD_DEFAULT = 128;
+  public static final long ZK_DTSM_TOKEN_FLUSH_INTERVAL_DEFAULT = 0;
+  public static final boolean ZK_DTSM_TOKEN_SYNC_WRITES_DEFAULT = true;
 
   private static Logger LOG = LoggerFactory
       .getLogger(ZKDelegationTokenSecretManager.class);
@@ -115,9 +143,12 @@
   private static final String ZK_DTSM_KEYID_ROOT = "/ZKDTSMKeyIdRoot";
   private static final String ZK_DTSM_TOKENS_ROOT = "/ZKDTSMTokensRoot";
   private static final String ZK_DTSM_MASTER_KEY_ROOT = "/ZKDTSMMasterKeyRoot";
+  private static final String ZK_DTSM_TOKEN_SHARDS_ROOT =
+      "/ZKDTSMTokenShardsRoot";
 
   private static final String DELEGATION_KEY_PREFIX = "DK_";
   private static final String DELEGATION_TOKEN_PREFIX = "DT_";
+  private static final String DELEGATION_TOKEN_SHARD_PREFIX = "DTS_";
 
   private static final ThreadLocal<CuratorFramework> CURATOR_TL =
       new ThreadLocal<CuratorFramework>();
@@ -132,6 +163,8 @@ public static void setCurator(CuratorFramework curator) {
   private SharedCount keyIdSeqCounter;
   private PathChildrenCache keyCache;
   private PathChildrenCache tokenCache;
+  private PathChildrenCache tokenShardCache;
+  private final ShardedTokenStore tokenStore;
   private ExecutorService listenerThreadPool;
   private final long shutdownTimeout;
 
@@ -146,6 +179,20 @@ public ZKDelegationTokenSecretManager(Configuration conf) {
             DelegationTokenManager.REMOVAL_SCAN_INTERVAL_DEFAULT) * 1000);
     shutdownTimeout = conf.getLong(ZK_DTSM_ZK_SHUTDOWN_TIMEOUT,
         ZK_DTSM_ZK_SHUTDOWN_TIMEOUT_DEFAULT);
+    if (conf.getBoolean(ZK_DTSM_SHARDED_TOKEN_STORE,
+        ZK_DTSM_SHARDED_TOKEN_STORE_DEFAULT)) {
+      tokenStore = new ShardedTokenStore(
+          conf.getInt(ZK_DTSM_TOKENS_PER_SHARD,
+              ZK_DTSM_TOKENS_PER_SHARD_DEFAULT),
+          conf.getLong(ZK_DTSM_TOKEN_FLUSH_INTERVAL,
+              ZK_DTSM_TOKEN_FLUSH_INTERVAL_DEFAULT),
+          conf.getBoolean(ZK_DTSM_TOKEN_SYNC_WRITES,
+              ZK_DTSM_TOKEN_SYNC_WRITES_DEFAULT),
+          conf.getInt(ZK_DTSM_ZK_SESSION_TIMEOUT,
+              ZK_DTSM_ZK_SESSION_TIMEOUT_DEFAULT));
+    } else {
+      tokenStore = null;
+    }
     if (CURATOR_TL.get() != null) {
       zkClient =
           CURATOR_TL.get().usingNamespace(
@@ -333,7 +380,8 @@ public void startThreads() throws IOException {
     }
     try {
       createPersistentNode(ZK_DTSM_MASTER_KEY_ROOT);
-      createPersistentNode(ZK_DTSM_TOKENS_ROOT);
+      createPersistentNode(tokenStore != null ? ZK_DTSM_TOKEN_SHARDS_ROOT
+          : ZK_DTSM_TOKENS_ROOT);
     } catch (Exception e) {
       throw new RuntimeException("Could not create ZK paths");
     }
@@ -366,6 +414,13 @@ public void childEvent(CuratorFramework client,
     } catch (Exception e) {
       throw new IOException("Could not start PathChildrenCache for keys", e);
     }
+    if (tokenStore != null) {
+      startTokenShardCache();
+      tokenStore.start();
+      moveUnshardedTokens();
+      super.startThreads();
+      return;
+    }
     try {
       tokenCache = new PathChildrenCache(zkClient, ZK_DTSM_TOKENS_ROOT, true);
       if (tokenCache != null) {
@@ -398,6 +453,123 @@ public void childEvent(CuratorFramework client,
     super.startThreads();
   }
 
+  /**
+   * Start watching the token shards, and load them.
+   */
+  private void startTokenShardCache() throws IOException {
+    try {
+      tokenShardCache =
+          new PathChildrenCache(zkClient, ZK_DTSM_TOKEN_SHARDS_ROOT, true);
+      tokenShardCache.start(StartMode.BUILD_INITIAL_CACHE);
+      tokenShardCache.getListenable().addListener(
+          new PathChildrenCacheListener() {
+            @Override
+            public void childEvent(CuratorFramework client,
+                PathChildrenCacheEvent event) throws Exception {
+              switch (event.getType()) {
+              case CHILD_ADDED:
+              case CHILD_UPDATED:
+                tokenStore.processShard(event.getData(), false);
+                break;
+              case CHILD_REMOVED:
+                tokenStore.processShard(event.getData(), true);
+                break;
+              default:
+                break;
+              }
+            }
+          }, listenerThreadPool);
+      LOG.info("Starting to load token shards.");
+      int count = 0;
+      for (ChildData child : tokenShardCache.getCurrentData()) {
+        try {
+          tokenStore.processShard(child, false);
+        } catch (Exception e) {
+          LOG.info("Ignoring node {} because it failed to load.",
+              child.getPath());
+          LOG.debug("Failure exception:", e);
+          ++count;
+        }
+      }
+      if (count > 0) {
+        LOG.warn("Ignored {} nodes while loading token shards.", count);
+      }
+      LOG.info("Loaded token shards.");
+    } catch (Exception e) {
+      throw new IOException("Could not start PathChildrenCache for token"
+          + " shards", e);
+    }
+  }
+
+  /**
+   * Move the tokens stored one per znode, by the secret managers run before
+   * switching to the sharded token store, into the shards. The tokens found in
+   * a shard already keep their version there. The znode of a token is only
+   * removed once the token is written to its shard, so that a secret manager
+   * stopped while moving the tokens leaves the rest to the next one started.
+   */
+  private void moveUnshardedTokens() throws IOException {
+    final List<String> children;
+    try {
+      children = zkClient.getChildren().forPath(ZK_DTSM_TOKENS_ROOT);
+    } catch (KeeperException.NoNodeException e) {
+      return;
+    } catch (Exception e) {
+      throw new IOException("Could not list the tokens in "
+          + ZK_DTSM_TOKENS_ROOT, e);
+    }
+    if (children.isEmpty()) {
+      return;
+    }
+    LOG.info("Starting to move {} tokens to the token shards.",
+        children.size());
+    final Map<String, Integer> moved = new LinkedHashMap<String, Integer>();
+    int count = 0;
+    for (String child : children) {
+      final String path = getNodePath(ZK_DTSM_TOKENS_ROOT, child);
+      try {
+        DataInputStream din = new DataInputStream(
+            new ByteArrayInputStream(zkClient.getData().forPath(path)));
+        TokenIdent ident = createIdentifier();
+        ident.readFields(din);
+        long renewDate = din.readLong();
+        byte[] password = new byte[din.readInt()];
+        din.readFully(password);
+        final boolean inShard;
+        synchronized (this) {
+          inShard = currentTokens.containsKey(ident);
+        }
+        if (!inShard) {
+          tokenStore.put(ident,
+              new DelegationTokenInformation(renewDate, password));
+        }
+        moved.put(path, ident.getSequenceNumber());
+      } catch (KeeperException.NoNodeException e) {
+        LOG.debug("Token {} already moved by another secret manager", path);
+      } catch (Exception e) {
+        LOG.info("Ignoring node {} because it failed to load.", path);
+        LOG.debug("Failure exception:", e);
+        ++count;
+      }
+    }
+    for (Map.Entry<String, Integer> m : moved.entrySet()) {
+      tokenStore.awaitFlushed(m.getValue());
+      try {
+        zkClient.delete().forPath(m.getKey());
+      } catch (KeeperException.NoNodeException e) {
+        LOG.debug("Node already deleted by peer " + m.getKey());
+      } catch (Exception e) {
+        throw new IOException("Could not remove the moved token "
+            + m.getKey(), e);
+      }
+    }
+    if (count > 0) {
+      LOG.warn("Ignored {} nodes while moving tokens to the token shards.",
+          count);
+    }
+    LOG.info("Moved {} tokens to the token shards.", moved.size());
+  }
+
   /**
    * Load the PathChildrenCache into the in-memory map. Possible caches to be
    * loaded are keyCache and tokenCache.
@@ -494,6 +666,9 @@ private void processTokenRemoved(ChildData data) throws IOException {
   @Override
   public void stopThreads() {
     super.stopThreads();
+    if (tokenStore != null) {
+      tokenStore.stop();
+    }
     try {
       if (tokenCache != null) {
         tokenCache.close();
@@ -501,6 +676,13 @@ public void stopThreads() {
     } catch (Exception e) {
       LOG.error("Could not stop Delegation Token Cache", e);
     }
+    try {
+      if (tokenShardCache != null) {
+        tokenShardCache.close();
+      }
+    } catch (Exception e) {
+      LOG.error("Could not stop Delegation Token Shard Cache", e);
+    }
     try {
       if (delTokSeqCounter != null) {
         delTokSeqCounter.close();
@@ -656,7 +838,15 @@ protected DelegationTokenInformation getTokenInfo(TokenIdent ident) {
     // First check if I have this..
     DelegationTokenInformation tokenInfo = currentTokens.get(ident);
     // Then query ZK
-    if (tokenInfo == null) {
+    if (tokenInfo == null && tokenStore != null) {
+      try {
+        tokenStore.loadShard(ident.getSequenceNumber());
+        tokenInfo = currentTokens.get(ident);
+      } catch (IOException e) {
+        LOG.error("Error retrieving the shard of tokenInfo ["
+            + ident.getSequenceNumber() + "] from ZK", e);
+      }
+    } else if (tokenInfo == null) {
       try {
         tokenInfo = getTokenInfoFromZK(ident);
         if (tokenInfo != null) {
@@ -805,6 +995,10 @@ protected void removeStoredMasterKey(DelegationKey key) {
   @Override
   protected void storeToken(TokenIdent ident,
       DelegationTokenInformation tokenInfo) throws IOException {
+    if (tokenStore != null) {
+      tokenStore.put(ident, tokenInfo);
+      return;
+    }
     try {
       addOrUpdateToken(ident, tokenInfo, false);
     } catch (Exception e) {
@@ -815,6 +1009,10 @@ protected void storeToken(TokenIdent ident,
   @Override
   protected void updateToken(TokenIdent ident,
       DelegationTokenInformation tokenInfo) throws IOException {
+    if (tokenStore != null) {
+      tokenStore.put(ident, tokenInfo);
+      return;
+    }
     String nodeRemovePath =
         getNodePath(ZK_DTSM_TOKENS_ROOT, DELEGATION_TOKEN_PREFIX
             + ident.getSequenceNumber());
@@ -834,6 +1032,10 @@ protected void updateToken(TokenIdent ident,
   @Override
   protected void removeStoredToken(TokenIdent ident)
       throws IOException {
+    if (tokenStore != null) {
+      tokenStore.remove(ident);
+      return;
+    }
     String nodeRemovePath =
         getNodePath(ZK_DTSM_TOKENS_ROOT, DELEGATION_TOKEN_PREFIX
             + ident.getSequenceNumber());
@@ -864,16 +1066,62 @@ protected void removeStoredToken(TokenIdent ident)
     }
   }
 
+  /**
+   * With the sharded token store, the token is only known to be written to
+   * ZooKeeper once this returns, but the lock of the secret manager is not
+   * held while waiting, so that the tokens created meanwhile are written
+   * with it.
+   */
+  @Override
+  protected byte[] createPassword(TokenIdent identifier) {
+    byte[] password = super.createPassword(identifier);
+    if (tokenStore != null) {
+      try {
+        tokenStore.awaitWritten(identifier.getSequenceNumber());
+      } catch (IOException e) {
+        throw new RuntimeException("Could not store token "
+            + "ZKDTSMDelegationToken_" + identifier.getSequenceNumber(), e);
+      }
+    }
+    return password;
+  }
+
+  @Override
+  public long renewToken(Token<TokenIdent> token, String renewer)
+      throws IOException {
+    long renewTime = super.renewToken(token, renewer);
+    if (tokenStore != null) {
+      tokenStore.awaitWritten(readIdentifier(token).getSequenceNumber());
+    }
+    return renewTime;
+  }
+
   @Override
-  public synchronized TokenIdent cancelToken(Token<TokenIdent> token,
+  public TokenIdent cancelToken(Token<TokenIdent> token,
       String canceller) throws IOException {
+    TokenIdent id = readIdentifier(token);
+    TokenIdent cancelled;
+    synchronized (this) {
+      if (tokenStore != null) {
+        tokenStore.loadShard(id.getSequenceNumber());
+      } else {
+        syncLocalCacheWithZk(id);
+      }
+      cancelled = super.cancelToken(token, canceller);
+    }
+    if (tokenStore != null) {
+      tokenStore.awaitWritten(id.getSequenceNumber());
+    }
+    return cancelled;
+  }
+
+  private TokenIdent readIdentifier(Token<TokenIdent> token)
+      throws IOException {
     ByteArrayInputStream buf = new ByteArrayInputStream(token.getIdentifier());
     DataInputStream in = new DataInputStream(buf);
     TokenIdent id = createIdentifier();
     id.readFields(in);
-
-    syncLocalCacheWithZk(id);
-    return super.cancelToken(token, canceller);
+    return id;
   }
 
   private void addOrUpdateToken(TokenIdent ident,
@@ -881,28 +1129,547 @@ private void addOrUpdateToken(TokenIdent ident,
     String nodeCreatePath =
         getNodePath(ZK_DTSM_TOKENS_ROOT, DELEGATION_TOKEN_PREFIX
             + ident.getSequenceNumber());
+    if (LOG.isDebugEnabled()) {
+      LOG.debug((isUpdate ? "Updating " : "Storing ")
+          + "ZKDTSMDelegationToken_" +
+          ident.getSequenceNumber());
+    }
+    if (isUpdate) {
+      zkClient.setData().forPath(nodeCreatePath, toBytes(ident, info))
+          .setVersion(-1);
+    } else {
+      zkClient.create().withMode(CreateMode.PERSISTENT)
+          .forPath(nodeCreatePath, toBytes(ident, info));
+    }
+  }
 
+  /**
+   * @return the identifier, renew date and password of a token, as stored in
+   *         ZooKeeper.
+   */
+  private static byte[] toBytes(AbstractDelegationTokenIdentifier ident,
+      DelegationTokenInformation info) throws IOException {
     try (ByteArrayOutputStream tokenOs = new ByteArrayOutputStream();
          DataOutputStream tokenOut = new DataOutputStream(tokenOs)) {
       ident.write(tokenOut);
       tokenOut.writeLong(info.getRenewDate());
       tokenOut.writeInt(info.getPassword().length);
       tokenOut.write(info.getPassword());
-      if (LOG.isDebugEnabled()) {
-        LOG.debug((isUpdate ? "Updating " : "Storing ")
-            + "ZKDTSMDelegationToken_" +
-            ident.getSequenceNumber());
+      tokenOut.flush();
+      return tokenOs.toByteArray();
+    }
+  }
+
+  /**
+   * Stores the tokens in shards of consecutive sequence numbers, with one
+   * znode per shard rather than one per token, so that the secret managers
+   * only watch the shards, and writes the tokens asynchronously.
+   *
+   * The changes to the tokens are queued, and a flusher thread merges all the
+   * changes of a shard queued since its last write into a single versioned
+   * update of the znode of the shard, retried on conflicts with the updates
+   * of the other secret managers. With sync writes, the callers then wait for
+   * their change to be written, out of the lock of the secret manager: the
+   * changes made meanwhile are written together, so that the writes to
+   * ZooKeeper grow with the number of shards changed, not with the number of
+   * tokens. Without sync writes, the callers do not wait, and a token may be
+   * lost, or not known to the other secret managers yet, until the next
+   * flush.
+   *
+   * The tokens in memory are also indexed by sequence number, in an array
+   * per shard, to find the tokens of a shard when it changes. A change read
+   * from ZooKeeper is not applied to the tokens with changes not written
+   * yet, nor if it is older than the last version of the shard known.
+   */
+  private final class ShardedTokenStore implements Runnable {
+    /** Marks a removed token in the queued changes. */
+    private final byte[] removed = new byte[0];
+
+    private final int tokensPerShard;
+    private final long flushInterval;
+    private final boolean syncWrites;
+    private final long syncTimeout;
+
+    /** The shards known, guarded by the secret manager. */
+    private final Map<Integer, TokenShard> shards =
+        new HashMap<Integer, TokenShard>();
+
+    /** The changes not written yet, by shard and sequence number. */
+    private Map<Integer, Map<Integer, byte[]>> pending =
+        new HashMap<Integer, Map<Integer, byte[]>>();
+    /** The changes being written. */
+    private Map<Integer, Map<Integer, byte[]>> writing =
+        Collections.emptyMap();
+    /**
+     * The last shard written by the flusher, usually the next one to write,
+     * as the new tokens go to the last shard.
+     */
+    private ChildData lastWritten;
+    private boolean stopped;
+    private Thread flusher;
+
+    ShardedTokenStore(int tokensPerShard, long flushInterval,
+        boolean syncWrites, long syncTimeout) {
+      Preconditions.checkArgument(tokensPerShard > 0,
+          ZK_DTSM_TOKENS_PER_SHARD + " must be positive");
+      this.tokensPerShard = tokensPerShard;
+      this.flushInterval = flushInterval;
+      this.syncWrites = syncWrites;
+      this.syncTimeout = syncTimeout;
+    }
+
+    private int shardOf(int seqNum) {
+      return Math.floorDiv(seqNum, tokensPerShard);
+    }
+
+    private String shardPath(int shard) {
+      return getNodePath(ZK_DTSM_TOKEN_SHARDS_ROOT,
+          DELEGATION_TOKEN_SHARD_PREFIX + shard);
+    }
+
+    synchronized void start() {
+      flusher = new Daemon(this);
+      flusher.setName("ZKDTSM token flusher");
+      flusher.start();
+    }
+
+    /**
+     * Stop the flusher, once it wrote the changes queued, or after the
+     * shutdown timeout.
+     */
+    void stop() {
+      Thread t;
+      synchronized (this) {
+        stopped = true;
+        notifyAll();
+        t = flusher;
       }
-      if (isUpdate) {
-        zkClient.setData().forPath(nodeCreatePath, tokenOs.toByteArray())
-            .setVersion(-1);
-      } else {
-        zkClient.create().withMode(CreateMode.PERSISTENT)
-            .forPath(nodeCreatePath, tokenOs.toByteArray());
+      if (t == null) {
+        return;
+      }
+      try {
+        t.join(shutdownTimeout);
+        if (t.isAlive()) {
+          LOG.error("Forcing the token flusher to stop, with changes not "
+              + "written !!");
+          t.interrupt();
+          t.join();
+        }
+      } catch (InterruptedException ie) {
+        t.interrupt();
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /** Add or update a token. */
+    void put(TokenIdent ident, DelegationTokenInformation info)
+        throws IOException {
+      final byte[] data = toBytes(ident, info);
+      synchronized (ZKDelegationTokenSecretManager.this) {
+        currentTokens.put(ident, info);
+        getShard(shardOf(ident.getSequenceNumber())).set(ident);
+      }
+      enqueue(ident.getSequenceNumber(), data);
+    }
+
+    /** Remove a token. */
+    void remove(TokenIdent ident) {
+      synchronized (ZKDelegationTokenSecretManager.this) {
+        currentTokens.remove(ident);
+        TokenShard shard = shards.get(shardOf(ident.getSequenceNumber()));
+        if (shard != null) {
+          shard.clear(ident.getSequenceNumber());
+        }
+      }
+      enqueue(ident.getSequenceNumber(), removed);
+    }
+
+    private synchronized void enqueue(int seqNum, byte[] data) {
+      final int shard = shardOf(seqNum);
+      Map<Integer, byte[]> changes = pending.get(shard);
+      if (changes == null) {
+        changes = new HashMap<Integer, byte[]>();
+        pending.put(shard, changes);
+      }
+      changes.put(seqNum, data);
+      notifyAll();
+    }
+
+    private synchronized boolean isPending(int seqNum) {
+      final int shard = shardOf(seqNum);
+      Map<Integer, byte[]> changes = pending.get(shard);
+      if (changes != null && changes.containsKey(seqNum)) {
+        return true;
+      }
+      changes = writing.get(shard);
+      return changes != null && changes.containsKey(seqNum);
+    }
+
+    /** @return the sequence numbers of a shard with changes not written. */
+    private synchronized Set<Integer> getPending(int shard) {
+      Set<Integer> seqNums = new HashSet<Integer>();
+      Map<Integer, byte[]> changes = pending.get(shard);
+      if (changes != null) {
+        seqNums.addAll(changes.keySet());
+      }
+      changes = writing.get(shard);
+      if (changes != null) {
+        seqNums.addAll(changes.keySet());
+      }
+      return seqNums;
+    }
+
+    /**
+     * Wait for the changes to a token to be written, with sync writes.
+     *
+     * @throws IOException if they are not written in time.
+     */
+    void awaitWritten(int seqNum) throws IOException {
+      if (syncWrites) {
+        awaitFlushed(seqNum);
+      }
+    }
+
+    /**
+     * Wait for the changes to a token to be written, whether the writes are
+     * sync or not.
+     *
+     * @throws IOException if they are not written in time.
+     */
+    synchronized void awaitFlushed(int seqNum) throws IOException {
+      final long deadline = Time.monotonicNow() + syncTimeout;
+      try {
+        while (isPending(seqNum)) {
+          final long remaining = deadline - Time.monotonicNow();
+          if (remaining <= 0) {
+            throw new IOException("Timed out writing token "
+                + "ZKDTSMDelegationToken_" + seqNum + " to ZK");
+          }
+          wait(remaining);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted writing token "
+            + "ZKDTSMDelegationToken_" + seqNum + " to ZK", e);
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          final Map<Integer, Map<Integer, byte[]>> changes;
+          synchronized (this) {
+            while (pending.isEmpty() && !stopped) {
+              wait();
+            }
+            if (pending.isEmpty()) {
+              return;
+            }
+            if (flushInterval > 0 && !stopped) {
+              // let more changes come in, to be written together
+              wait(flushInterval);
+            }
+            changes = pending;
+            writing = changes;
+            pending = new HashMap<Integer, Map<Integer, byte[]>>();
+          }
+          boolean failed = false;
+          for (Map.Entry<Integer, Map<Integer, byte[]>> e
+              : changes.entrySet()) {
+            try {
+              writeShard(e.getKey(), e.getValue());
+              e.setValue(null);
+            } catch (InterruptedException ie) {
+              throw ie;
+            } catch (Exception ex) {
+              LOG.error("Could not write token shard " + e.getKey()
+                  + " to ZK", ex);
+              failed = true;
+            }
+          }
+          synchronized (this) {
+            boolean stopping = stopped;
+            // queue the changes not written again, unless changed since
+            for (Map.Entry<Integer, Map<Integer, byte[]>> e
+                : changes.entrySet()) {
+              if (e.getValue() != null) {
+                Map<Integer, byte[]> queued = pending.get(e.getKey());
+                if (queued == null) {
+                  pending.put(e.getKey(), e.getValue());
+                } else {
+                  for (Map.Entry<Integer, byte[]> c
+                      : e.getValue().entrySet()) {
+                    if (!queued.containsKey(c.getKey())) {
+                      queued.put(c.getKey(), c.getValue());
+                    }
+                  }
+                }
+              }
+            }
+            writing = Collections.emptyMap();
+            notifyAll();
+            if (failed && stopping) {
+              LOG.error("Dropping the token changes not written to ZK");
+              return;
+            }
+            if (failed) {
+              // do not retry right away against a failing ZK
+              wait(Math.max(flushInterval, 1000));
+            }
+          }
+        }
+      } catch (InterruptedException ie) {
+        LOG.debug("Token flusher interrupted");
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /**
+     * Apply the changes to a shard, starting from the last version known,
+     * and from the version in ZK on conflicts.
+     */
+    private void writeShard(int shard, Map<Integer, byte[]> changes)
+        throws Exception {
+      final String path = shardPath(shard);
+      ChildData base = tokenShardCache.getCurrentData(path);
+      if (lastWritten != null && lastWritten.getPath().equals(path)
+          && (base == null || lastWritten.getStat().getMzxid()
+              > base.getStat().getMzxid())) {
+        // the cache did not get the last write yet
+        base = lastWritten;
+      }
+      while (true) {
+        TreeMap<Integer, byte[]> records =
+            readRecords(base == null ? null : base.getData());
+        for (Map.Entry<Integer, byte[]> c : changes.entrySet()) {
+          if (c.getValue() == removed) {
+            records.remove(c.getKey());
+          } else {
+            records.put(c.getKey(), c.getValue());
+          }
+        }
+        try {
+          if (base == null) {
+            if (records.isEmpty()) {
+              return;
+            }
+            final byte[] data = writeRecords(records);
+            zkClient.create().withMode(CreateMode.PERSISTENT)
+                .forPath(path, data);
+            // the version created, or a later one
+            Stat stat = zkClient.checkExists().forPath(path);
+            if (stat != null) {
+              shardWritten(shard, new ChildData(path, stat,
+                  stat.getVersion() == 0 ? data : null));
+            }
+          } else if (records.isEmpty()) {
+            zkClient.delete().withVersion(base.getStat().getVersion())
+                .forPath(path);
+            lastWritten = null;
+          } else {
+            final byte[] data = writeRecords(records);
+            Stat stat = zkClient.setData()
+                .withVersion(base.getStat().getVersion()).forPath(path, data);
+            shardWritten(shard, new ChildData(path, stat, data));
+          }
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("Wrote " + changes.size() + " changes to token shard "
+                + shard);
+          }
+          return;
+        } catch (KeeperException.BadVersionException
+            | KeeperException.NodeExistsException
+            | KeeperException.NoNodeException e) {
+          // another secret manager changed the shard
+          LOG.debug("Conflict writing token shard {}, retrying", shard);
+          Stat stat = new Stat();
+          try {
+            byte[] data = zkClient.getData().storingStatIn(stat).forPath(path);
+            base = new ChildData(path, stat, data);
+          } catch (KeeperException.NoNodeException nne) {
+            base = null;
+          }
+        }
+      }
+    }
+
+    /** Record the version of a shard written. */
+    private void shardWritten(int shard, ChildData data) {
+      lastWritten = data.getData() != null ? data : null;
+      synchronized (ZKDelegationTokenSecretManager.this) {
+        TokenShard s = getShard(shard);
+        s.zxid = Math.max(s.zxid, data.getStat().getMzxid());
+      }
+    }
+
+    /** Read a shard from ZK, and apply it to the tokens in memory. */
+    void loadShard(int seqNum) throws IOException {
+      final String path = shardPath(shardOf(seqNum));
+      Stat stat = new Stat();
+      byte[] data;
+      try {
+        data = zkClient.getData().storingStatIn(stat).forPath(path);
+      } catch (KeeperException.NoNodeException e) {
+        return;
+      } catch (Exception e) {
+        throw new IOException(e);
+      }
+      processShard(new ChildData(path, stat, data), false);
+    }
+
+    /**
+     * Apply a version of a shard, or its removal, to the tokens in memory.
+     */
+    void processShard(ChildData data, boolean isRemoved) throws IOException {
+      final String path = data.getPath();
+      final int shard = Integer.parseInt(
+          path.substring(path.lastIndexOf('_') + 1));
+      if (isRemoved) {
+        // A removal carries the last version of the shard seen by the cache,
+        // which may be older than a version written or read since, so it
+        // cannot be ordered by version. Apply the shard as it is now instead.
+        final Stat stat;
+        try {
+          stat = zkClient.checkExists().forPath(path);
+        } catch (Exception e) {
+          throw new IOException(e);
+        }
+        if (stat != null) {
+          // the shard was written again since
+          loadShard(shard * tokensPerShard);
+          return;
+        }
+      }
+      final TreeMap<Integer, byte[]> records = isRemoved
+          ? new TreeMap<Integer, byte[]>() : readRecords(data.getData());
+      final long zxid = data.getStat().getMzxid();
+      synchronized (ZKDelegationTokenSecretManager.this) {
+        TokenShard s = getShard(shard);
+        if (!isRemoved) {
+          if (zxid < s.zxid) {
+            // older than a version written or read already
+            return;
+          }
+          s.zxid = zxid;
+        }
+        final Set<Integer> changed = getPending(shard);
+        for (int i = 0; i < tokensPerShard; i++) {
+          TokenIdent ident = s.get(i);
+          if (ident != null
+              && !records.containsKey(ident.getSequenceNumber())
+              && !changed.contains(ident.getSequenceNumber())) {
+            currentTokens.remove(ident);
+            s.clear(ident.getSequenceNumber());
+          }
+        }
+        for (Map.Entry<Integer, byte[]> r : records.entrySet()) {
+          if (changed.contains(r.getKey())) {
+            continue;
+          }
+          DataInputStream din =
+              new DataInputStream(new ByteArrayInputStream(r.getValue()));
+          TokenIdent ident = createIdentifier();
+          ident.readFields(din);
+          long renewDate = din.readLong();
+          byte[] password = new byte[din.readInt()];
+          din.readFully(password);
+          currentTokens.put(ident,
+              new DelegationTokenInformation(renewDate, password));
+          s.set(ident);
+        }
+        // The cancel task might be waiting
+        ZKDelegationTokenSecretManager.this.notifyAll();
+      }
+    }
+
+    private TokenShard getShard(int shard) {
+      TokenShard s = shards.get(shard);
+      if (s == null) {
+        s = new TokenShard(shard * tokensPerShard);
+        shards.put(shard, s);
+      }
+      return s;
+    }
+
+    /** The tokens in memory of a shard, by sequence number. */
+    private final class TokenShard {
+      private final int firstSeqNum;
+      /** The last version of the shard applied. */
+      private long zxid = -1;
+      private Object[] tokens;
+      private int count;
+
+      TokenShard(int firstSeqNum) {
+        this.firstSeqNum = firstSeqNum;
+      }
+
+      @SuppressWarnings("unchecked")
+      TokenIdent get(int slot) {
+        return tokens == null ? null : (TokenIdent) tokens[slot];
+      }
+
+      void set(TokenIdent ident) {
+        if (tokens == null) {
+          tokens = new Object[tokensPerShard];
+        }
+        final int slot = ident.getSequenceNumber() - firstSeqNum;
+        if (tokens[slot] == null) {
+          count++;
+        }
+        tokens[slot] = ident;
+      }
+
+      void clear(int seqNum) {
+        final int slot = seqNum - firstSeqNum;
+        if (tokens != null && tokens[slot] != null) {
+          tokens[slot] = null;
+          // the empty shards only keep their version
+          if (--count == 0) {
+            tokens = null;
+          }
+        }
       }
     }
   }
 
+  /**
+   * Read the tokens of a shard: their count, then the sequence number, the
+   * length and the data of each token.
+   *
+   * @return the data of the tokens by sequence number.
+   */
+  private static TreeMap<Integer, byte[]> readRecords(byte[] data)
+      throws IOException {
+    TreeMap<Integer, byte[]> records = new TreeMap<Integer, byte[]>();
+    if (data == null || data.length == 0) {
+      return records;
+    }
+    DataInputStream din = new DataInputStream(new ByteArrayInputStream(data));
+    for (int count = din.readInt(); count > 0; count--) {
+      final int seqNum = din.readInt();
+      final byte[] record = new byte[din.readInt()];
+      din.readFully(record);
+      records.put(seqNum, record);
+    }
+    return records;
+  }
+
+  private static byte[] writeRecords(Map<Integer, byte[]> records)
+      throws IOException {
+    try (ByteArrayOutputStream os = new ByteArrayOutputStream();
+         DataOutputStream out = new DataOutputStream(os)) {
+      out.writeInt(records.size());
+      for (Map.Entry<Integer, byte[]> r : records.entrySet()) {
+        out.writeInt(r.getKey());
+        out.writeInt(r.getValue().length);
+        out.write(r.getValue());
+      }
+      out.flush();
+      return os.toByteArray();
+    }
+  }
+
   /**
    * Simple implementation of an {@link ACLProvider} that simply returns an ACL
    * that gives all permissions only to a single principal.
@@ -939,6 +1706,12 @@ public ExecutorService getListenerThreadPool() {
     return listenerThreadPool;
   }
 
+  @VisibleForTesting
+  void processTokenShard(ChildData data, boolean isRemoved)
+      throws IOException {
+    tokenStore.processShard(data, isRemoved);
+  }
+
   @VisibleForTesting
   DelegationTokenInformation getTokenInfoFromMemory(TokenIdent ident) {
     return currentTokens.get(ident);
@@ -344,16 +344,8 @@ public void verifyChunkedSums(ByteBuffer data, ByteBuffer checksums,
     if (data.hasArray() && checksums.hasArray()) {
       final int dataOffset = data.arrayOffset() + data.position();
       final int crcsOffset = checksums.arrayOffset() + checksums.position();
-
-      if (NativeCrc32.isAvailable()) {
-        NativeCrc32.verifyChunkedSumsByteArray(bytesPerChecksum, type.id,
-                checksums.array(), crcsOffset, data.array(), dataOffset,
-                data.remaining(), fileName, basePos);
-      } else {
-        verifyChunked(type, summer, data.array(), dataOffset, data.remaining(),
-                bytesPerChecksum, checksums.array(), crcsOffset, fileName,
-                basePos);
-      }
+      verifyChunkedSums(data.array(), dataOffset, data.remaining(),
+          checksums.array(), crcsOffset, fileName, basePos);
       return;
     }
     if (NativeCrc32.isAvailable() && data.isDirect()) {
@@ -365,10 +357,38 @@ public void verifyChunkedSums(ByteBuffer data, ByteBuffer checksums,
     }
   }
 
+  /**
+   * Verify that the given checksums match the given data, held in byte
+   * arrays.
+   *
+   * @param data the array holding the data to verify.
+   * @param dataOffset the offset of the data in the array.
+   * @param dataLength the length of the data.
+   * @param checksums the array holding a series of stored checksums.
+   * @param checksumsOffset the offset of the checksums in the array.
+   * @param fileName the name of the file being read, for error-reporting
+   * @param basePos the file position to which the start of 'data' corresponds
+   * @throws ChecksumException if the checksums do not match
+   */
+  public void verifyChunkedSums(byte[] data, int dataOffset, int dataLength,
+      byte[] checksums, int checksumsOffset, String fileName, long basePos)
+      throws ChecksumException {
+    if (type.size == 0) return;
+
+    if (NativeCrc32.isAvailable()) {
+      NativeCrc32.verifyChunkedSumsByteArray(bytesPerChecksum, type.id,
+          checksums, checksumsOffset, data, dataOffset, dataLength,
+          fileName, basePos);
+    } else {
+      verifyChunked(type, summer, data, dataOffset, dataLength,
+          bytesPerChecksum, checksums, checksumsOffset, fileName, basePos);
+    }
+  }
+
   static void verifyChunked(final Type type, final Checksum algorithm,
       final ByteBuffer data, final int bytesPerCrc, final ByteBuffer crcs,
       final String filename, final long basePos) throws ChecksumException {
-    final byte[] bytes = new byte[bytesPerCrc];
+    final byte[] bytes = readsBuffers(algorithm) ? null : new byte[bytesPerCrc];
     final int dataOffset = data.position();
     final int dataLength = data.remaining();
     data.mark();
@@ -377,9 +397,8 @@ static void verifyChunked(final Type type, final Checksum algorithm,
     try {
       int i = 0;
       for(final int n = dataLength - bytesPerCrc + 1; i < n; i += bytesPerCrc) {
-        data.get(bytes);
         algorithm.reset();
-        algorithm.update(bytes, 0, bytesPerCrc);
+        update(algorithm, data, bytesPerCrc, bytes);
         final int computed = (int)algorithm.getValue();
         final int expected = crcs.getInt();
 
@@ -392,9 +411,8 @@ static void verifyChunked(final Type type, final Checksum algorithm,
 
       final int remainder = dataLength - i;
       if (remainder > 0) {
-        data.get(bytes, 0, remainder);
         algorithm.reset();
-        algorithm.update(bytes, 0, remainder);
+        update(algorithm, data, remainder, bytes);
         final int computed = (int)algorithm.getValue();
         final int expected = crcs.getInt();
 
@@ -488,12 +506,11 @@ public void calculateChunkedSums(ByteBuffer data, ByteBuffer checksums) {
     data.mark();
     checksums.mark();
     try {
-      byte[] buf = new byte[bytesPerChecksum];
+      byte[] buf = readsBuffers(summer) ? null : new byte[bytesPerChecksum];
       while (data.remaining() > 0) {
         int n = Math.min(data.remaining(), bytesPerChecksum);
-        data.get(buf, 0, n);
         summer.reset();
-        summer.update(buf, 0, n);
+        update(summer, data, n, buf);
         checksums.putInt((int)summer.getValue());
       }
     } finally {
@@ -532,6 +549,43 @@ public void calculateChunkedSums(
     }
   }
 
+  /**
+   * @return whether the algorithm can read a ByteBuffer, including a direct
+   *     one, without copying it to the heap first. This is the case of the
+   *     JDK CRC32 and CRC32C, which use the CPU CRC instructions.
+   */
+  private static boolean readsBuffers(Checksum algorithm) {
+    return algorithm instanceof CRC32
+        || (useJava9Crc32C && Java9Crc32CFactory.isInstance(algorithm));
+  }
+
+  /**
+   * Update the checksum with the next len bytes of a buffer, moving its
+   * position past them.
+   *
+   * @param scratch a buffer of at least len bytes, to copy the data through
+   *     for the algorithms which cannot read a ByteBuffer. Ignored otherwise.
+   */
+  private static void update(Checksum algorithm, ByteBuffer data, int len,
+      byte[] scratch) {
+    if (scratch != null) {
+      data.get(scratch, 0, len);
+      algorithm.update(scratch, 0, len);
+      return;
+    }
+    final int limit = data.limit();
+    data.limit(data.position() + len);
+    try {
+      if (algorithm instanceof CRC32) {
+        ((CRC32) algorithm).update(data);
+      } else {
+        Java9Crc32CFactory.update(algorithm, data);
+      }
+    } finally {
+      data.limit(limit);
+    }
+  }
+
   @Override
   public boolean equals(Object other) {
     if (!(other instanceof DataChecksum)) {
@@ -577,21 +631,47 @@ public void update(int b) {}
    * Holds constructor handle to let it be initialized on demand.
    */
   private static class Java9Crc32CFactory {
+    private static final Class<?> CRC32C_CLASS;
     private static final MethodHandle NEW_CRC32C_MH;
+    private static final MethodHandle UPDATE_BUFFER_MH;
 
     static {
+      Class<?> crc32C = null;
       MethodHandle newCRC32C = null;
+      MethodHandle updateBuffer = null;
       try {
+        crc32C = Class.forName("java.util.zip.CRC32C");
         newCRC32C = MethodHandles.publicLookup()
             .findConstructor(
-                Class.forName("java.util.zip.CRC32C"),
+                crc32C,
                 MethodType.methodType(void.class)
             );
+        updateBuffer = MethodHandles.publicLookup()
+            .findVirtual(crc32C, "update",
+                MethodType.methodType(void.class, ByteBuffer.class))
+            .asType(MethodType.methodType(void.class, Checksum.class,
+                ByteBuffer.class));
       } catch (ReflectiveOperationException e) {
         // Should not reach here.
         throw new RuntimeException(e);
       }
+      CRC32C_CLASS = crc32C;
       NEW_CRC32C_MH = newCRC32C;
+      UPDATE_BUFFER_MH = updateBuffer;
+    }
+
+    static boolean isInstance(Checksum checksum) {
+      return checksum.getClass() == CRC32C_CLASS;
+    }
+
+    /** Update a java.util.zip.CRC32C with the remaining bytes of data. */
+    static void update(Checksum checksum, ByteBuffer data) {
+      try {
+        UPDATE_BUFFER_MH.invokeExact(checksum, data);
+      } catch (Throwable t) {
+        throw (t instanceof RuntimeException) ? (RuntimeException) t
+            : new RuntimeException(t);
+      }
     }
 
     public static Checksum createChecksum() {
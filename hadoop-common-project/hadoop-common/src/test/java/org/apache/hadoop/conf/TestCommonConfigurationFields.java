@@ -98,6 +98,7 @@ public void initializeMemberVariables() {
     xmlPropsToSkipCompare.add("nfs3.mountd.port");
     xmlPropsToSkipCompare.add("nfs3.server.port");
     xmlPropsToSkipCompare.add("fs.viewfs.rename.strategy");
+    xmlPropsToSkipCompare.add("fs.viewfs.resolve.cache.size");
 
     // S3A properties are in a different subtree.
     xmlPrefixToSkipCompare.add("fs.s3a.");
@@ -135,6 +136,12 @@ public void initializeMemberVariables() {
     xmlPropsToSkipCompare.add("fs.azure.saskey.usecontainersaskeyforallaccess");
     xmlPropsToSkipCompare.add("fs.azure.user.agent.prefix");
 
+    // ZooKeeper delegation token secret manager properties are in a
+    // different class
+    // - org.apache.hadoop.security.token.delegation
+    //     .ZKDelegationTokenSecretManager
+    xmlPrefixToSkipCompare.add("zk-dt-secret-manager.");
+
     // Deprecated properties.  These should eventually be removed from the
     // class.
     configurationPropsToSkipCompare
@@ -1756,6 +1756,43 @@ public void testClassLoader() {
     assertTrue(other.getClassLoader() instanceof Fake_ClassLoader);
   }
 
+  @Test
+  public void testCopiesAreIndependent() {
+    final String oldKey = "test.copy.old.key";
+    final String newKey = "test.copy.new.key";
+    Configuration.addDeprecation(oldKey, newKey);
+    Configuration conf = new Configuration(false);
+    conf.set("a", "1");
+    conf.set(oldKey, "old");
+    Configuration copy = new Configuration(conf);
+    Configuration copyOfCopy = new Configuration(copy);
+
+    conf.set("a", "2");
+    conf.set("b", "3");
+    assertEquals("1", copy.get("a"));
+    assertNull(copy.get("b"));
+    assertEquals("old", copy.get(newKey));
+
+    copy.unset("a");
+    copy.set(newKey, "new");
+    assertEquals("2", conf.get("a"));
+    assertEquals("old", conf.get(newKey));
+    assertEquals("1", copyOfCopy.get("a"));
+    assertEquals("old", copyOfCopy.get(oldKey));
+    assertArrayEquals(new String[] {"programmatically"},
+        copyOfCopy.getPropertySources("a"));
+
+    copyOfCopy.clear();
+    assertEquals(0, copyOfCopy.size());
+    assertEquals("2", conf.get("a"));
+    assertEquals("new", copy.get(oldKey));
+
+    // A reload of the copy keeps the properties it was copied with.
+    copy.reloadConfiguration();
+    assertEquals("new", copy.get(newKey));
+    assertEquals("2", conf.get("a"));
+  }
+
   static class JsonConfiguration {
     JsonProperty[] properties;
 
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.crypto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * An AES-CTR codec whose ciphers are those of another codec, except that
+ * they neither decrypt in place nor encrypt heap buffers, so that the crypto
+ * streams copy the data through their buffers, as they do for codecs without
+ * these capabilities.
+ */
+class CopyingAesCtrCryptoCodec extends AesCtrCryptoCodec {
+  private final CryptoCodec codec;
+
+  CopyingAesCtrCryptoCodec(CryptoCodec codec) {
+    this.codec = codec;
+  }
+
+  @Override
+  public Configuration getConf() {
+    return codec.getConf();
+  }
+
+  @Override
+  public void setConf(Configuration conf) {
+    codec.setConf(conf);
+  }
+
+  @Override
+  public void generateSecureRandom(byte[] bytes) {
+    codec.generateSecureRandom(bytes);
+  }
+
+  @Override
+  public void close() throws IOException {
+    codec.close();
+  }
+
+  @Override
+  public Encryptor createEncryptor() throws GeneralSecurityException {
+    final Encryptor encryptor = codec.createEncryptor();
+    return new Encryptor() {
+      @Override
+      public void init(byte[] key, byte[] iv) throws IOException {
+        encryptor.init(key, iv);
+      }
+
+      @Override
+      public boolean isContextReset() {
+        return encryptor.isContextReset();
+      }
+
+      @Override
+      public void encrypt(ByteBuffer inBuffer, ByteBuffer outBuffer)
+          throws IOException {
+        encryptor.encrypt(inBuffer, outBuffer);
+      }
+    };
+  }
+
+  @Override
+  public Decryptor createDecryptor() throws GeneralSecurityException {
+    final Decryptor decryptor = codec.createDecryptor();
+    return new Decryptor() {
+      @Override
+      public void init(byte[] key, byte[] iv) throws IOException {
+        decryptor.init(key, iv);
+      }
+
+      @Override
+      public boolean isContextReset() {
+        return decryptor.isContextReset();
+      }
+
+      @Override
+      public void decrypt(ByteBuffer inBuffer, ByteBuffer outBuffer)
+          throws IOException {
+        decryptor.decrypt(inBuffer, outBuffer);
+      }
+    };
+  }
+}
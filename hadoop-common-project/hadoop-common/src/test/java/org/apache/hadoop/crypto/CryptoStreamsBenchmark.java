@@ -0,0 +1,307 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.crypto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.ByteBufferReadable;
+import org.apache.hadoop.fs.Seekable;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Benchmark of the crypto streams: for each read and write size, the
+ * throughput of writing from heap arrays, reading into heap arrays and
+ * reading into direct buffers, with the ciphers of the codec decrypting the
+ * buffers of the caller in place, and with the same ciphers when the data is
+ * copied through the buffers of the streams.
+ * Run with --help option for usage.
+ */
+public class CryptoStreamsBenchmark implements Tool {
+  private static final int MB = 1024 * 1024;
+  private static final byte[] KEY = new byte[16];
+  private static final byte[] IV = new byte[16];
+
+  private Configuration conf;
+
+  private static class MyOptions {
+    private boolean failed = false;
+    private int[] sizes = {4 * 1024, 64 * 1024, 1024 * 1024};
+    private int dataSize = 8 * MB;
+    private int streamBufferSize = 8192;
+    private int secondsToRun = 2;
+
+    private MyOptions(String[] args) {
+      try {
+        Options opts = buildOptions();
+        CommandLineParser parser = new GnuParser();
+        CommandLine line = parser.parse(opts, args, true);
+        processOptions(line, opts);
+      } catch (ParseException e) {
+        System.err.println(e.getMessage());
+        System.err.println("Try \"--help\" option for details.");
+        failed = true;
+      }
+    }
+
+    @SuppressWarnings("static-access")
+    private Options buildOptions() {
+      Options opts = new Options();
+      opts.addOption(
+          OptionBuilder.withLongOpt("sizes").hasArg(true)
+          .withArgName("bytes,...")
+          .withDescription("comma separated sizes of the reads and writes")
+          .create("s"));
+      opts.addOption(
+          OptionBuilder.withLongOpt("dataSize").hasArg(true)
+          .withArgName("bytes")
+          .withDescription("size of the data read or written per operation")
+          .create("d"));
+      opts.addOption(
+          OptionBuilder.withLongOpt("bufferSize").hasArg(true)
+          .withArgName("bytes")
+          .withDescription("buffer size of the streams")
+          .create("b"));
+      opts.addOption(
+          OptionBuilder.withLongOpt("time").hasArg(true)
+          .withArgName("seconds")
+          .withDescription("number of seconds to run each measurement for")
+          .create("t"));
+      opts.addOption(
+          OptionBuilder.withLongOpt("help")
+          .withDescription("show this screen")
+          .create('?'));
+      return opts;
+    }
+
+    private void processOptions(CommandLine line, Options opts)
+        throws ParseException {
+      if (line.hasOption("help") || line.hasOption('?')) {
+        HelpFormatter formatter = new HelpFormatter();
+        System.out.println("Benchmark for the crypto streams");
+        formatter.printHelp(100,
+            "java ... CryptoStreamsBenchmark [options]",
+            "\nSupported options:", opts, "");
+        failed = true;
+        return;
+      }
+      if (line.hasOption('s')) {
+        String[] values = line.getOptionValue('s').split(",");
+        sizes = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+          sizes[i] = Integer.parseInt(values[i].trim());
+        }
+      }
+      if (line.hasOption('d')) {
+        dataSize = Integer.parseInt(line.getOptionValue('d'));
+      }
+      if (line.hasOption('b')) {
+        streamBufferSize = Integer.parseInt(line.getOptionValue('b'));
+      }
+      if (line.hasOption('t')) {
+        secondsToRun = Integer.parseInt(line.getOptionValue('t'));
+      }
+      if (secondsToRun <= 0) {
+        throw new ParseException("Time must be > 0");
+      }
+      if (dataSize <= 0) {
+        throw new ParseException("Data size must be > 0");
+      }
+    }
+  }
+
+  /** An in memory stream, which supports the reads into ByteBuffers. */
+  private static class MemoryInputStream extends ByteArrayInputStream
+      implements ByteBufferReadable, Seekable {
+    MemoryInputStream(byte[] data) {
+      super(data);
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) {
+      final int n = Math.min(dst.remaining(), count - pos);
+      if (n <= 0) {
+        return -1;
+      }
+      dst.put(buf, pos, n);
+      pos += n;
+      return n;
+    }
+
+    @Override
+    public synchronized void seek(long newPos) {
+      pos = (int) newPos;
+    }
+
+    @Override
+    public synchronized long getPos() {
+      return pos;
+    }
+
+    @Override
+    public boolean seekToNewSource(long targetPos) {
+      return false;
+    }
+  }
+
+  /** An output stream discarding the data. */
+  private static class NullOutputStream extends OutputStream {
+    @Override
+    public void write(int b) {
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+    }
+  }
+
+  /** One operation to measure, on the whole data. */
+  private interface Op {
+    void run() throws IOException;
+  }
+
+  /** @return the throughput of the operation in MB per second. */
+  private static double measure(Op op, int dataSize, int seconds)
+      throws IOException {
+    // warm up
+    final long warmupEnd = System.nanoTime() + 200_000_000L;
+    while (System.nanoTime() < warmupEnd) {
+      op.run();
+    }
+    final long start = System.nanoTime();
+    final long end = start + seconds * 1_000_000_000L;
+    long ops = 0;
+    long now;
+    do {
+      op.run();
+      ops++;
+      now = System.nanoTime();
+    } while (now < end);
+    return (double) ops * dataSize / MB / ((now - start) / 1e9);
+  }
+
+  /**
+   * @return the throughput in MB/s of writing, reading into an array and
+   *         reading into a direct buffer, in chunks of the given size.
+   */
+  private double[] run(MyOptions opts, CryptoCodec codec, byte[] data,
+      byte[] encrypted, int size) throws IOException {
+    final int t = opts.secondsToRun;
+    final int dataSize = data.length;
+    final double[] results = new double[3];
+
+    final CryptoOutputStream out = new CryptoOutputStream(
+        new NullOutputStream(), codec, opts.streamBufferSize, KEY, IV);
+    results[0] = measure(() -> {
+      for (int off = 0; off < dataSize; off += size) {
+        out.write(data, off, Math.min(size, dataSize - off));
+      }
+      out.flush();
+    }, dataSize, t);
+    out.close();
+
+    final CryptoInputStream in = new CryptoInputStream(
+        new MemoryInputStream(encrypted), codec, opts.streamBufferSize, KEY,
+        IV);
+    final byte[] array = new byte[size];
+    results[1] = measure(() -> {
+      in.seek(0);
+      while (in.read(array, 0, size) > 0) {
+        // keep reading
+      }
+    }, dataSize, t);
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+    results[2] = measure(() -> {
+      in.seek(0);
+      do {
+        buffer.clear();
+      } while (in.read(buffer) > 0);
+    }, dataSize, t);
+    in.close();
+    return results;
+  }
+
+  @Override
+  public int run(String[] args) throws Exception {
+    MyOptions opts = new MyOptions(args);
+    if (opts.failed) {
+      return -1;
+    }
+    final CryptoCodec codec = CryptoCodec.getInstance(conf);
+    // the same ciphers, without decrypting in place
+    final CryptoCodec copyingCodec =
+        new CopyingAesCtrCryptoCodec(CryptoCodec.getInstance(conf));
+
+    final byte[] data = new byte[opts.dataSize];
+    new Random(0).nextBytes(data);
+    final ByteArrayOutputStream bytes =
+        new ByteArrayOutputStream(opts.dataSize);
+    try (CryptoOutputStream out = new CryptoOutputStream(bytes, codec,
+        opts.streamBufferSize, KEY, IV, 0, false)) {
+      out.write(data);
+    }
+    final byte[] encrypted = bytes.toByteArray();
+
+    System.out.println("Codec: " + codec.getClass().getSimpleName()
+        + ", stream buffer size: " + opts.streamBufferSize);
+    System.out.println("Throughput in MB/s, of copying the data through the"
+        + " stream buffers / of working on the caller buffers");
+    System.out.println("|     size |     write copy/in place |"
+        + "      read copy/in place | read direct copy/in place |");
+    for (int size : opts.sizes) {
+      final double[] copying =
+          run(opts, copyingCodec, data, encrypted, size);
+      final double[] inPlace =
+          run(opts, codec, data, encrypted, size);
+      System.out.printf("| %8d | %10.1f / %9.1f | %10.1f / %9.1f |"
+          + " %12.1f / %9.1f |%n", size, copying[0], inPlace[0],
+          copying[1], inPlace[1], copying[2], inPlace[2]);
+    }
+    codec.close();
+    copyingCodec.close();
+    return 0;
+  }
+
+  @Override
+  public void setConf(Configuration conf) {
+    this.conf = conf;
+  }
+
+  @Override
+  public Configuration getConf() {
+    return conf;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int rc = ToolRunner.run(new CryptoStreamsBenchmark(), args);
+    System.exit(rc);
+  }
+}
@@ -23,7 +23,9 @@
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.Random;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.ByteBufferPositionedReadable;
@@ -42,6 +44,7 @@
 import org.apache.hadoop.io.DataInputBuffer;
 import org.apache.hadoop.io.DataOutputBuffer;
 import org.junit.AfterClass;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -442,6 +445,69 @@ public int read() throws IOException {
    * This tests {@link StreamCapabilities#hasCapability(String)} for the
    * the underlying streams.
    */
+  /**
+   * Test large reads and writes of a stream starting in the middle of a
+   * block, with direct and heap buffers.
+   */
+  @Test(timeout = 120000)
+  public void testUnalignedLargeReadWrite() throws Exception {
+    final int offset = 5;
+    final int len = 3 * defaultBufferSize + 7;
+    final byte[] plain = new byte[offset + len];
+    new Random(len).nextBytes(plain);
+
+    // encrypted from the beginning of the stream, the reference
+    DataOutputBuffer expected = new DataOutputBuffer();
+    try (CryptoOutputStream out = new CryptoOutputStream(expected, codec,
+        defaultBufferSize, key, iv)) {
+      out.write(plain, 0, plain.length);
+    }
+    // encrypted from the offset, in a single large write
+    DataOutputBuffer encrypted = new DataOutputBuffer();
+    try (CryptoOutputStream out = new CryptoOutputStream(encrypted, codec,
+        defaultBufferSize, key, iv, offset)) {
+      out.write(plain, offset, len);
+    }
+    Assert.assertEquals(len, encrypted.getLength());
+    Assert.assertArrayEquals(
+        Arrays.copyOfRange(expected.getData(), offset, offset + len),
+        Arrays.copyOf(encrypted.getData(), len));
+
+    final byte[] decrypted = new byte[len];
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(encrypted.getData(), len);
+    try (CryptoInputStream cin = new CryptoInputStream(in, codec,
+        defaultBufferSize, key, iv, offset)) {
+      int n = 0;
+      while (n < len) {
+        final int read = cin.read(decrypted, n, len - n);
+        Assert.assertTrue("Unexpected end of stream", read > 0);
+        n += read;
+      }
+    }
+    Assert.assertArrayEquals(
+        Arrays.copyOfRange(plain, offset, offset + len), decrypted);
+
+    // the ByteBuffer reads, on a stream which supports them
+    for (boolean direct : new boolean[] {true, false}) {
+      final ByteBuffer buffer = direct ?
+          ByteBuffer.allocateDirect(len) : ByteBuffer.allocate(len);
+      in.reset(encrypted.getData(), len);
+      try (CryptoInputStream cin = new CryptoInputStream(
+          new FakeInputStream(in), codec, defaultBufferSize, key, iv,
+          offset)) {
+        while (buffer.hasRemaining() && cin.read(buffer) > 0) {
+          // keep reading
+        }
+      }
+      buffer.flip();
+      final byte[] read = new byte[len];
+      buffer.get(read);
+      Assert.assertArrayEquals(
+          Arrays.copyOfRange(plain, offset, offset + len), read);
+    }
+  }
+
   @Test(timeout = 120000)
   public void testHasCapability() throws Exception {
     // verify hasCapability returns what FakeOutputStream is set up for
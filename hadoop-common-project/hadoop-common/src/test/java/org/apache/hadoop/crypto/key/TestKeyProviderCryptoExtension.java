@@ -293,6 +293,33 @@ public void testReencryptEncryptedKeys() throws Exception {
     }
   }
 
+  @Test
+  public void testDecryptEncryptedKeys() throws Exception {
+    // a key of its own, as the other tests expect fooKey not to be rolled
+    final String keyName = "batchDecryptKey";
+    kp.createKey(keyName, SecureRandom.getSeed(16), options);
+    List<EncryptedKeyVersion> ekvs = new ArrayList<>(4);
+    ekvs.add(kpExt.generateEncryptedKey(keyName));
+    ekvs.add(kpExt.generateEncryptedKey(keyName));
+    // Roll the EK, so that the batch holds EEKs of 2 versions
+    kpExt.rollNewVersion(keyName);
+    ekvs.add(kpExt.generateEncryptedKey(keyName));
+    ekvs.add(ekvs.get(0));
+
+    List<KeyVersion> kvs = kpExt.decryptEncryptedKeys(ekvs);
+    assertEquals(ekvs.size(), kvs.size());
+    for (int i = 0; i < ekvs.size(); ++i) {
+      final KeyVersion kv = kvs.get(i);
+      assertEquals(KeyProviderCryptoExtension.EK, kv.getVersionName());
+      assertArrayEquals("Batch and single decryption should be the same",
+          kpExt.decryptEncryptedKey(ekvs.get(i)).getMaterial(),
+          kv.getMaterial());
+    }
+    assertFalse(Arrays.equals(kvs.get(0).getMaterial(),
+        kvs.get(1).getMaterial()));
+    assertTrue(kpExt.decryptEncryptedKeys(new ArrayList<>()).isEmpty());
+  }
+
   @Test
   public void testNonDefaultCryptoExtensionSelectionWithCachingKeyProvider()
           throws Exception {
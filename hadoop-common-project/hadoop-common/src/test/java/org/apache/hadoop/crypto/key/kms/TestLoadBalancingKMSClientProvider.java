@@ -136,6 +136,73 @@ public void testLoadBalancing() throws Exception {
     assertEquals("p1", kp.createKey("test4", new Options(conf)).getName());
   }
 
+  @Test
+  public void testDecryptedKeyCache() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setInt(
+        CommonConfigurationKeysPublic.KMS_CLIENT_DECRYPTED_KEY_CACHE_SIZE, 10);
+    final KeyProvider.KeyVersion dek1 =
+        new KMSClientProvider.KMSKeyVersion("k1", "EK", new byte[] {1});
+    final KeyProvider.KeyVersion dek2 =
+        new KMSClientProvider.KMSKeyVersion("k1", "EK", new byte[] {2});
+    final EncryptedKeyVersion ekv1 = EncryptedKeyVersion
+        .createForDecryption("k1", "k1@0", new byte[] {1}, new byte[] {1});
+    final EncryptedKeyVersion ekv2 = EncryptedKeyVersion
+        .createForDecryption("k1", "k1@0", new byte[] {2}, new byte[] {2});
+    KMSClientProvider p1 = mock(KMSClientProvider.class);
+    when(p1.decryptEncryptedKey(Mockito.any(EncryptedKeyVersion.class)))
+        .thenReturn(dek1);
+    when(p1.decryptEncryptedKeys(Mockito.anyList()))
+        .thenReturn(Arrays.asList(dek2));
+    final LoadBalancingKMSClientProvider kp =
+        new LoadBalancingKMSClientProvider(
+            new KMSClientProvider[] {p1}, 0, conf);
+
+    assertEquals(dek1, kp.decryptEncryptedKey(ekv1));
+    assertEquals(dek1, kp.decryptEncryptedKey(ekv1));
+    verify(p1, Mockito.times(1)).decryptEncryptedKey(ekv1);
+
+    // only the keys missing from the cache are sent in a batch
+    List<KeyProvider.KeyVersion> keys =
+        kp.decryptEncryptedKeys(Arrays.asList(ekv1, ekv2));
+    assertEquals(Arrays.asList(dek1, dek2), keys);
+    verify(p1).decryptEncryptedKeys(Arrays.asList(ekv2));
+    assertEquals(dek2, kp.decryptEncryptedKey(ekv2));
+    verify(p1, Mockito.never()).decryptEncryptedKey(ekv2);
+    assertEquals(2, kp.getDecryptedKeyCache().size());
+
+    // the keys are cached for the user who decrypted them only
+    UserGroupInformation.createRemoteUser("other").doAs(
+        new PrivilegedExceptionAction<Void>() {
+          @Override
+          public Void run() throws Exception {
+            assertEquals(dek1, kp.decryptEncryptedKey(ekv1));
+            return null;
+          }
+        });
+    verify(p1, Mockito.times(2)).decryptEncryptedKey(ekv1);
+
+    kp.invalidateCache("k1");
+    assertEquals(0, kp.getDecryptedKeyCache().size());
+    kp.decryptEncryptedKey(ekv1);
+    verify(p1, Mockito.times(3)).decryptEncryptedKey(ekv1);
+  }
+
+  @Test
+  public void testDecryptedKeyCacheDisabled() throws Exception {
+    Configuration conf = new Configuration();
+    KMSClientProvider p1 = mock(KMSClientProvider.class);
+    final EncryptedKeyVersion ekv = EncryptedKeyVersion
+        .createForDecryption("k1", "k1@0", new byte[] {1}, new byte[] {1});
+    final LoadBalancingKMSClientProvider kp =
+        new LoadBalancingKMSClientProvider(
+            new KMSClientProvider[] {p1}, 0, conf);
+    assertEquals(null, kp.getDecryptedKeyCache());
+    kp.decryptEncryptedKey(ekv);
+    kp.decryptEncryptedKey(ekv);
+    verify(p1, Mockito.times(2)).decryptEncryptedKey(ekv);
+  }
+
   @Test
   public void testLoadBalancingWithFailure() throws Exception {
     Configuration conf = new Configuration();
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.fs;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestIncrementalGetSpaceUsed {
+  private static final File DIR =
+      GenericTestUtils.getTestDir("TestIncrementalGetSpaceUsed");
+
+  @Before
+  public void setUp() {
+    FileUtil.fullyDelete(DIR);
+    assertTrue(DIR.mkdirs());
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtil.fullyDelete(DIR);
+  }
+
+  private static void createFile(File file, int length) throws IOException {
+    assertTrue(file.getParentFile().isDirectory()
+        || file.getParentFile().mkdirs());
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(new byte[length]);
+    }
+  }
+
+  /**
+   * Create files at all depths, below and past the directories listed in
+   * parallel.
+   * @return the total length of the files.
+   */
+  private static long createTree() throws IOException {
+    long total = 0;
+    int length = 1;
+    File dir = DIR;
+    for (int depth = 0; depth < 6; depth++) {
+      for (int i = 0; i < 3; i++) {
+        createFile(new File(dir, "file" + i), length);
+        total += length;
+        length += 1000;
+      }
+      createFile(new File(new File(dir, "sibling"), "file"), length);
+      total += length;
+      dir = new File(dir, "subdir" + depth);
+    }
+    return total;
+  }
+
+  private static IncrementalGetSpaceUsed build(long initialUsed, int threads)
+      throws IOException {
+    return build(initialUsed, threads, 0);
+  }
+
+  private static IncrementalGetSpaceUsed build(long initialUsed, int threads,
+      long verifyInterval) throws IOException {
+    Configuration conf = new Configuration();
+    conf.setInt(CommonConfigurationKeys.FS_GETSPACEUSED_WALK_THREADS_KEY,
+        threads);
+    conf.setLong(CommonConfigurationKeys.FS_GETSPACEUSED_VERIFY_INTERVAL_KEY,
+        verifyInterval);
+    return (IncrementalGetSpaceUsed) new GetSpaceUsed.Builder()
+        .setPath(DIR)
+        .setInterval(0)
+        .setInitialUsed(initialUsed)
+        .setKlass(IncrementalGetSpaceUsed.class)
+        .setConf(conf)
+        .build();
+  }
+
+  @Test
+  public void testInitialWalk() throws Exception {
+    final long total = createTree();
+    for (int threads : new int[] {1, 4}) {
+      try (IncrementalGetSpaceUsed instance = build(-1, threads)) {
+        assertFalse(instance.running());
+        assertEquals(total, instance.getUsed());
+      }
+    }
+  }
+
+  @Test
+  public void testIncrementalUpdates() throws Exception {
+    final long total = createTree();
+    try (IncrementalGetSpaceUsed instance = build(total, 2)) {
+      assertEquals(total, instance.getUsed());
+      // reported changes are not checked until the next walk
+      createFile(new File(DIR, "added"), 5000);
+      instance.incDfsUsed(5000);
+      assertEquals(total + 5000, instance.getUsed());
+      instance.refresh();
+      assertEquals(0, instance.getLastDrift());
+      assertEquals(total + 5000, instance.getUsed());
+
+      // unreported changes are corrected by the walk
+      createFile(new File(new File(DIR, "subdir0"), "unreported"), 300);
+      assertTrue(new File(DIR, "added").delete());
+      instance.refresh();
+      assertEquals(300 - 5000, instance.getLastDrift());
+      assertEquals(total + 300, instance.getUsed());
+    }
+  }
+
+  @Test
+  public void testVerifyInterval() throws Exception {
+    final long total = createTree();
+    try (IncrementalGetSpaceUsed instance = build(-1, 2, 500)) {
+      // walked when there is no initial value
+      assertEquals(total, instance.getUsed());
+
+      // then only the reported changes count until the next check
+      createFile(new File(DIR, "unreported"), 300);
+      instance.refresh();
+      assertEquals(total, instance.getUsed());
+      instance.incDfsUsed(-1);
+      instance.refresh();
+      assertEquals(total - 1, instance.getUsed());
+
+      GenericTestUtils.waitFor(() -> {
+        instance.refresh();
+        return instance.used.get() == total + 300;
+      }, 100, 10000);
+      assertEquals(301, instance.getLastDrift());
+    }
+  }
+
+  @Test
+  public void testMissingPath() throws Exception {
+    FileUtil.fullyDelete(DIR);
+    try (IncrementalGetSpaceUsed instance = build(-1, 2)) {
+      assertEquals(0, instance.getUsed());
+    }
+  }
+}
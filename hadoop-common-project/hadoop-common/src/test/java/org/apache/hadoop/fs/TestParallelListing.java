@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.fs;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.test.LambdaTestUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.FS_LISTING_THREADS_KEY;
+import static org.junit.Assert.*;
+
+/**
+ * Test listing a tree and expanding globs with several listing threads.
+ */
+public class TestParallelListing {
+  private static final Path TEST_DIR =
+      new Path(GenericTestUtils.getTempPath("testparallellisting"));
+  private static final int WIDTH = 3;
+  private static final int DEPTH = 3;
+  private static final int FILES = 2;
+
+  private static FileSystem fs;
+  private static FileSystem parallelFs;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    fs = FileSystem.getLocal(new Configuration());
+    fs.delete(TEST_DIR, true);
+    createTree(new Path(TEST_DIR, "tree"), DEPTH);
+    // a directory listed in several pages
+    Path large = new Path(TEST_DIR, "large");
+    for (int i = 0; i <= ParallelListFilesIterator.PAGE_SIZE; i++) {
+      fs.create(new Path(large, "file" + i)).close();
+    }
+    fs.mkdirs(new Path(large, "sub"));
+    fs.create(new Path(large, "sub/file")).close();
+
+    Configuration conf = new Configuration();
+    conf.setInt(FS_LISTING_THREADS_KEY, 4);
+    parallelFs = FileSystem.newInstance(fs.getUri(), conf);
+  }
+
+  @AfterClass
+  public static void tearDown() throws Exception {
+    if (parallelFs != null) {
+      parallelFs.close();
+    }
+    fs.delete(TEST_DIR, true);
+  }
+
+  private static void createTree(Path dir, int depth) throws IOException {
+    for (int i = 0; i < FILES; i++) {
+      fs.create(new Path(dir, "file" + i)).close();
+    }
+    if (depth > 0) {
+      for (int i = 0; i < WIDTH; i++) {
+        createTree(new Path(dir, "dir" + i), depth - 1);
+      }
+    }
+  }
+
+  private static Set<Path> listFiles(FileSystem fileSys, Path path,
+      boolean recursive) throws IOException {
+    Set<Path> paths = new HashSet<>();
+    RemoteIterator<LocatedFileStatus> itor =
+        fileSys.listFiles(path, recursive);
+    while (itor.hasNext()) {
+      LocatedFileStatus stat = itor.next();
+      assertTrue(stat.isFile());
+      assertTrue("Duplicate " + stat.getPath(), paths.add(stat.getPath()));
+    }
+    assertFalse(itor.hasNext());
+    return paths;
+  }
+
+  @Test
+  public void testListFiles() throws Exception {
+    assertNotNull(parallelFs.getListingExecutor());
+    assertNull(fs.getListingExecutor());
+
+    Path tree = new Path(TEST_DIR, "tree");
+    Set<Path> expected = listFiles(fs, tree, true);
+    int files = 0;
+    for (int level = 0, dirs = 1; level <= DEPTH; level++, dirs *= WIDTH) {
+      files += dirs * FILES;
+    }
+    assertEquals(files, expected.size());
+    assertEquals(expected, listFiles(parallelFs, tree, true));
+    assertEquals(listFiles(fs, tree, false),
+        listFiles(parallelFs, tree, false));
+
+    Path large = new Path(TEST_DIR, "large");
+    Set<Path> largeFiles = listFiles(parallelFs, large, true);
+    assertEquals(ParallelListFilesIterator.PAGE_SIZE + 2, largeFiles.size());
+    assertEquals(listFiles(fs, large, true), largeFiles);
+
+    Path file = new Path(tree, "file0");
+    assertEquals(listFiles(fs, file, true), listFiles(parallelFs, file, true));
+  }
+
+  @Test
+  public void testListMissingPath() throws Exception {
+    LambdaTestUtils.intercept(FileNotFoundException.class,
+        () -> parallelFs.listFiles(new Path(TEST_DIR, "missing"), true));
+  }
+
+  @Test
+  public void testGlob() throws Exception {
+    for (String pattern : new String[] {"tree/*/*/file*", "tree/dir*/dir1/*",
+        "tree/*/{dir0,dir2}/*/file1", "tree/*/missing/*", "tree/dir0/file0",
+        "large/*"}) {
+      Path glob = new Path(TEST_DIR, pattern);
+      FileStatus[] expected = fs.globStatus(glob);
+      FileStatus[] actual = parallelFs.globStatus(glob);
+      assertArrayEquals(pattern, paths(expected), paths(actual));
+    }
+    assertEquals(WIDTH * WIDTH * FILES,
+        parallelFs.globStatus(new Path(TEST_DIR, "tree/*/*/file*")).length);
+  }
+
+  private static Path[] paths(FileStatus[] stats) {
+    return stats == null ? null
+        : Arrays.stream(stats).map(FileStatus::getPath).toArray(Path[]::new);
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.fs.shell;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileSystemTestHelper;
+import org.apache.hadoop.fs.LocalFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.shell.CopyCommands.Cp;
+import org.apache.hadoop.fs.shell.CopyCommands.Get;
+import org.apache.hadoop.fs.shell.CopyCommands.Put;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for cp, get and put with several threads.
+ */
+public class TestCopyWithThreads {
+  private static final int NUM_DIRS = 3;
+  private static final int NUM_FILES = 20;
+  private static final long MTIME = 1000000000000L;
+
+  private static FileSystem fs;
+  private static Path testDir;
+  private static Configuration conf;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    conf = new Configuration(false);
+    conf.set("fs.file.impl", LocalFileSystem.class.getName());
+    fs = FileSystem.getLocal(conf);
+    testDir = new FileSystemTestHelper().getTestRootPath(fs);
+    // don't want scheme on the path, just an absolute path
+    testDir = new Path(fs.makeQualified(testDir).toUri().getPath());
+
+    FileSystem.setDefaultUri(conf, fs.getUri());
+    fs.setWorkingDirectory(testDir);
+  }
+
+  @AfterClass
+  public static void cleanup() throws Exception {
+    fs.delete(testDir, true);
+    fs.close();
+  }
+
+  /**
+   * Create a tree of files, with the modification time of all the files and
+   * directories set in the past.
+   */
+  private static Path createTree() throws Exception {
+    Path dir = new Path("dir" + RandomStringUtils.randomNumeric(4));
+    Path src = new Path(dir, "src");
+    for (int d = 0; d < NUM_DIRS; d++) {
+      Path subDir = new Path(src, "subdir" + d);
+      fs.mkdirs(subDir);
+      for (int f = 0; f < NUM_FILES; f++) {
+        Path file = new Path(subDir, "file" + f);
+        try (FSDataOutputStream out = fs.create(file)) {
+          for (int i = 0; i <= f * 100; i++) {
+            out.writeInt(i);
+          }
+        }
+        fs.setTimes(file, MTIME, -1);
+      }
+      fs.setTimes(subDir, MTIME, -1);
+    }
+    fs.setTimes(src, MTIME, -1);
+    return dir;
+  }
+
+  private static void run(CopyCommandWithMultiThread cmd, int threads,
+      String... args) {
+    cmd.setConf(conf);
+    assertEquals(0, cmd.run(args));
+    assertEquals(threads, cmd.getNumThreads());
+    assertTrue(cmd.getExecutor().isTerminated());
+  }
+
+  /**
+   * Check the copy has all the files, and that the modification times of
+   * its files and directories are the ones of the source.
+   */
+  private static void verifyCopy(Path src, Path dst) throws Exception {
+    FileStatus srcStatus = fs.getFileStatus(src);
+    FileStatus dstStatus = fs.getFileStatus(dst);
+    assertEquals(dst.toString(), srcStatus.isDirectory(),
+        dstStatus.isDirectory());
+    assertEquals(dst.toString(), srcStatus.getModificationTime(),
+        dstStatus.getModificationTime());
+    if (srcStatus.isDirectory()) {
+      FileStatus[] children = fs.listStatus(src);
+      assertEquals(dst.toString(), children.length,
+          fs.listStatus(dst).length);
+      for (FileStatus child : children) {
+        verifyCopy(child.getPath(),
+            new Path(dst, child.getPath().getName()));
+      }
+    } else {
+      assertEquals(dst.toString(), srcStatus.getLen(), dstStatus.getLen());
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testCpWithThreads() throws Exception {
+    Path dir = createTree();
+    Path src = new Path(dir, "src");
+    Path dst = new Path(dir, "dst");
+    run(new Cp(), 2, "-p", "-t", "2", src.toString(), dst.toString());
+    verifyCopy(src, dst);
+  }
+
+  @Test(timeout = 30000)
+  public void testGetWithThreads() throws Exception {
+    Path dir = createTree();
+    Path src = new Path(dir, "src");
+    Path dst = new Path(dir, "dst");
+    run(new Get(), 2, "-p", "-t", "2", src.toString(), dst.toString());
+    verifyCopy(src, dst);
+  }
+
+  @Test(timeout = 30000)
+  public void testPutWithThreads() throws Exception {
+    Path dir = createTree();
+    Path src = new Path(dir, "src");
+    Path dst = new Path(dir, "dst");
+    run(new Put(), 2, "-p", "-t", "2", src.toString(), dst.toString());
+    verifyCopy(src, dst);
+  }
+
+  @Test(timeout = 30000)
+  public void testMoveFromLocalIgnoresThreads() throws Exception {
+    Path dir = createTree();
+    Path src = new Path(dir, "src");
+    Path dst = new Path(dir, "dst");
+    run(new MoveCommands.MoveFromLocal(), 1, "-t", "2",
+        src.toString(), dst.toString());
+    assertEquals(NUM_DIRS, fs.listStatus(dst).length);
+  }
+}
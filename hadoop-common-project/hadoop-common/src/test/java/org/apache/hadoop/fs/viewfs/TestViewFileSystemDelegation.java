@@ -132,8 +132,11 @@ public void testAclMethods() throws Exception {
     verify(mockFs2).getAclStatus(mockFsPath2);
   }
 
-  void checkVerifyChecksum(boolean flag) {
+  void checkVerifyChecksum(boolean flag) throws IOException {
     viewFs.setVerifyChecksum(flag);
+    // the file systems of the mount points are created on first use
+    viewFs.exists(new Path("/mounts/fs1"));
+    viewFs.exists(new Path("/mounts/fs2"));
     assertEquals(flag, fs1.getVerifyChecksum());
     assertEquals(flag, fs2.getVerifyChecksum());
   }
@@ -110,8 +110,10 @@ public void testNflyInvalidMinReplication() throws Exception {
     final Configuration conf = new Configuration();
     ConfigUtil.addLinkNfly(conf, "mt", "/nflyroot", "minReplication=4",
         testUris);
+    final FileSystem fsView = FileSystem.get(URI.create("viewfs://mt/"), conf);
     try {
-      FileSystem.get(URI.create("viewfs://mt/"), conf);
+      // the nfly file system is created on first use
+      fsView.exists(new Path("/nflyroot/file"));
       fail("Expected bad minReplication exception.");
     } catch (IOException ioe) {
       assertTrue("No minReplication message",
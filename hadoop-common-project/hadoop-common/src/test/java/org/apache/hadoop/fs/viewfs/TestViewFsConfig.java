@@ -17,13 +17,23 @@
  */
 package org.apache.hadoop.fs.viewfs;
 
+import static org.junit.Assert.*;
+
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FsConstants;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.UnsupportedFileSystemException;
+import org.apache.hadoop.fs.viewfs.InodeTree.ResolveResult;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.test.LambdaTestUtils;
 import org.junit.Test;
 
 public class TestViewFsConfig {
@@ -60,4 +70,95 @@ protected Foo getTargetFileSystem(final String settings,
     };
   }
 
+  /** An InodeTree recording the targets it creates. */
+  private static class CountingTree extends InodeTree<URI> {
+    private final List<URI> created;
+
+    CountingTree(Configuration conf, List<URI> created)
+        throws IOException, URISyntaxException {
+      super(conf, null);
+      this.created = created;
+    }
+
+    @Override
+    protected URI getTargetFileSystem(final URI uri) {
+      created.add(uri);
+      return uri;
+    }
+
+    @Override
+    protected URI getTargetFileSystem(final INodeDir<URI> dir) {
+      return null;
+    }
+
+    @Override
+    protected URI getTargetFileSystem(final String settings,
+        final URI[] mergeFsURIList) {
+      return null;
+    }
+  }
+
+  @Test
+  public void testLazyTargets() throws Exception {
+    Configuration conf = new Configuration();
+    for (int i = 0; i < 100; i++) {
+      ConfigUtil.addLink(conf, "/dir" + (i % 10) + "/link" + i,
+          new URI("hdfs://nn" + i + "/data"));
+    }
+    final List<URI> created = new ArrayList<URI>();
+    CountingTree tree = new CountingTree(conf, created);
+    assertTrue(created.isEmpty());
+
+    ResolveResult<URI> res = tree.resolve("/dir2/link42/a/b", true);
+    assertEquals(new URI("hdfs://nn42/data"), res.targetFileSystem);
+    assertEquals(new Path("/a/b"), res.remainingPath);
+    assertEquals("/dir2/link42", res.resolvedPath);
+    // cached, and the target is created once
+    assertSame(res, tree.resolve("/dir2/link42/a/b", true));
+    tree.resolve("/dir2/link42/c", true);
+    assertEquals(1, created.size());
+
+    // resolving without the last component is cached apart
+    res = tree.resolve("/dir2/link42", false);
+    assertTrue(res.isInternalDir());
+    assertEquals(new Path("/link42"), res.remainingPath);
+    assertEquals(1, created.size());
+  }
+
+  @Test
+  public void testResolveWithoutCache() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setInt(Constants.CONFIG_VIEWFS_RESOLVE_CACHE_SIZE, 0);
+    ConfigUtil.addLink(conf, "/link", new URI("hdfs://nn/data"));
+    final List<URI> created = new ArrayList<URI>();
+    CountingTree tree = new CountingTree(conf, created);
+    ResolveResult<URI> res = tree.resolve("/link/a", true);
+    assertNotSame(res, tree.resolve("/link/a", true));
+    assertEquals(new Path("/a"), tree.resolve("/link/a", true).remainingPath);
+    assertEquals(1, created.size());
+  }
+
+  @Test
+  public void testUnsupportedTargetOnFirstUse() throws Exception {
+    Configuration conf = new Configuration();
+    final Path target =
+        new Path(GenericTestUtils.getTestDir("TestViewFsConfig").toURI());
+    ConfigUtil.addLink(conf, "/local", target.toUri());
+    ConfigUtil.addLink(conf, "/unknown", new URI("unknownfs://host/dir"));
+    conf.setBoolean("fs.viewfs.impl.disable.cache", true);
+    // the unknown scheme does not fail the creation of the file system
+    FileSystem fsView = FileSystem.get(FsConstants.VIEWFS_URI, conf);
+    try {
+      fsView.mkdirs(new Path("/local/dir"));
+      assertTrue(fsView.exists(new Path("/local/dir")));
+      LambdaTestUtils.intercept(UnsupportedFileSystemException.class,
+          () -> fsView.exists(new Path("/unknown/dir")));
+      // nor are the file systems of the mount points left out
+      RuntimeException e = LambdaTestUtils.intercept(RuntimeException.class,
+          () -> fsView.getChildFileSystems());
+      assertTrue(e.getCause() instanceof UnsupportedFileSystemException);
+    } finally {
+      fsView.close();
+    }
+  }
 }
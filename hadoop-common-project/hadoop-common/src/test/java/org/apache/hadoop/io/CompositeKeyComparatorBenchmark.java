@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.CompositeKeyComparator.Field;
+import org.apache.hadoop.util.IndexedSortable;
+import org.apache.hadoop.util.QuickSort;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Benchmark of sorting serialized composite keys the way the map side of a
+ * MapReduce job sorts its output: {@link QuickSort} over the offsets of the
+ * keys in a buffer. The keys, made of an int, a {@link Text} and a long,
+ * are compared with the default {@link WritableComparator}, which
+ * deserializes them, and with a {@link CompositeKeyComparator}.
+ * Run with --help option for usage.
+ */
+public class CompositeKeyComparatorBenchmark implements Tool {
+  private Configuration conf;
+
+  private static class MyOptions {
+    private boolean failed = false;
+    private int records = 100000;
+    private int secondsToRun = 5;
+
+    private MyOptions(String[] args) {
+      try {
+        Options opts = buildOptions();
+        CommandLineParser parser = new GnuParser();
+        CommandLine line = parser.parse(opts, args, true);
+        processOptions(line, opts);
+      } catch (ParseException e) {
+        System.err.println(e.getMessage());
+        System.err.println("Try \"--help\" option for details.");
+        failed = true;
+      }
+    }
+
+    @SuppressWarnings("static-access")
+    private Options buildOptions() {
+      Options opts = new Options();
+      opts.addOption(
+          OptionBuilder.withLongOpt("records").hasArg(true)
+          .withArgName("count")
+          .withDescription("number of keys sorted at a time")
+          .create("r"));
+      opts.addOption(
+          OptionBuilder.withLongOpt("time").hasArg(true)
+          .withArgName("seconds")
+          .withDescription("number of seconds to run each comparator for")
+          .create("t"));
+      opts.addOption(
+          OptionBuilder.withLongOpt("help")
+          .withDescription("show this screen")
+          .create('?'));
+      return opts;
+    }
+
+    private void processOptions(CommandLine line, Options opts)
+        throws ParseException {
+      if (line.hasOption("help") || line.hasOption('?')) {
+        HelpFormatter formatter = new HelpFormatter();
+        System.out.println("Benchmark for sorting composite keys");
+        formatter.printHelp(100,
+            "java ... CompositeKeyComparatorBenchmark [options]",
+            "\nSupported options:", opts, "");
+        failed = true;
+        return;
+      }
+      if (line.hasOption('r')) {
+        records = Integer.parseInt(line.getOptionValue('r'));
+      }
+      if (line.hasOption('t')) {
+        secondsToRun = Integer.parseInt(line.getOptionValue('t'));
+      }
+      if (secondsToRun <= 0) {
+        throw new ParseException("Time must be > 0");
+      }
+      if (records <= 0) {
+        throw new ParseException("Records must be > 0");
+      }
+    }
+  }
+
+  /** A key of a partition, a name and a timestamp. */
+  public static class BenchmarkKey implements WritableComparable<BenchmarkKey> {
+    private final IntWritable partition = new IntWritable();
+    private final Text name = new Text();
+    private final LongWritable timestamp = new LongWritable();
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+      partition.write(out);
+      name.write(out);
+      timestamp.write(out);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+      partition.readFields(in);
+      name.readFields(in);
+      timestamp.readFields(in);
+    }
+
+    @Override
+    public int compareTo(BenchmarkKey o) {
+      int c = partition.compareTo(o.partition);
+      if (c == 0) {
+        c = name.compareTo(o.name);
+      }
+      return c != 0 ? c : timestamp.compareTo(o.timestamp);
+    }
+  }
+
+  /** The serialized keys, sorted by their offsets. */
+  private static class SerializedKeys implements IndexedSortable {
+    private final byte[] data;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final int[] order;
+    private final RawComparator<?> comparator;
+
+    SerializedKeys(byte[] data, int[] offsets, int[] lengths,
+        RawComparator<?> comparator) {
+      this.data = data;
+      this.offsets = offsets;
+      this.lengths = lengths;
+      this.order = new int[offsets.length];
+      this.comparator = comparator;
+    }
+
+    void reset() {
+      for (int i = 0; i < order.length; i++) {
+        order[i] = i;
+      }
+    }
+
+    @Override
+    public int compare(int i, int j) {
+      final int a = order[i];
+      final int b = order[j];
+      return comparator.compare(data, offsets[a], lengths[a],
+          data, offsets[b], lengths[b]);
+    }
+
+    @Override
+    public void swap(int i, int j) {
+      final int tmp = order[i];
+      order[i] = order[j];
+      order[j] = tmp;
+    }
+  }
+
+  /** @return the number of keys sorted per second. */
+  private static double measure(SerializedKeys keys, int seconds) {
+    final QuickSort sorter = new QuickSort();
+    final int n = keys.order.length;
+    // warm up
+    keys.reset();
+    sorter.sort(keys, 0, n);
+    final long start = System.nanoTime();
+    final long end = start + seconds * 1_000_000_000L;
+    long sorted = 0;
+    long now;
+    do {
+      keys.reset();
+      sorter.sort(keys, 0, n);
+      sorted += n;
+      now = System.nanoTime();
+    } while (now < end);
+    return sorted / ((now - start) / 1e9);
+  }
+
+  @Override
+  public int run(String[] args) throws Exception {
+    MyOptions opts = new MyOptions(args);
+    if (opts.failed) {
+      return -1;
+    }
+    final Random random = new Random(0);
+    final DataOutputBuffer out = new DataOutputBuffer();
+    final int[] offsets = new int[opts.records];
+    final int[] lengths = new int[opts.records];
+    final BenchmarkKey key = new BenchmarkKey();
+    for (int i = 0; i < opts.records; i++) {
+      key.partition.set(random.nextInt(16));
+      key.name.set("user" + random.nextInt(1000) + "/session"
+          + random.nextInt(100));
+      key.timestamp.set(1500000000000L + random.nextInt(1000000));
+      offsets[i] = out.getLength();
+      key.write(out);
+      lengths[i] = out.getLength() - offsets[i];
+    }
+    final byte[] data = out.getData();
+
+    final WritableComparator deserializing =
+        new WritableComparator(BenchmarkKey.class, conf, true) { };
+    final CompositeKeyComparator composite =
+        new CompositeKeyComparator.Builder(BenchmarkKey.class)
+            .add(Field.INT).add(Field.TEXT).add(Field.LONG).build();
+
+    System.out.println("Sorting " + opts.records
+        + " keys of an int, a text and a long, in keys per second");
+    System.out.printf("| %-24s | %14s |%n", "comparator", "keys/s");
+    System.out.printf("| %-24s | %14.0f |%n", "deserializing",
+        measure(new SerializedKeys(data, offsets, lengths, deserializing),
+            opts.secondsToRun));
+    System.out.printf("| %-24s | %14.0f |%n", "CompositeKeyComparator",
+        measure(new SerializedKeys(data, offsets, lengths, composite),
+            opts.secondsToRun));
+    return 0;
+  }
+
+  @Override
+  public void setConf(Configuration conf) {
+    this.conf = conf;
+  }
+
+  @Override
+  public Configuration getConf() {
+    return conf;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int rc = ToolRunner.run(new CompositeKeyComparatorBenchmark(), args);
+    System.exit(rc);
+  }
+}
@@ -28,6 +28,7 @@
 import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.LocalFileSystem;
 import org.apache.hadoop.fs.Path;
@@ -45,6 +46,8 @@
 import static org.junit.Assert.fail;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -346,4 +349,51 @@ public Compressor createCompressor() {
       return null;
     }
   };
+
+  /**
+   * Test that the readers of a file share its Bloom filter through the
+   * index cache, and that a rewritten file is read again.
+   */
+  @Test
+  public void testSharedBloomFilter() throws Exception {
+    Configuration cacheConf = new Configuration(conf);
+    cacheConf.setLong(
+        CommonConfigurationKeysPublic.IO_MAP_INDEX_CACHE_SIZE_KEY, 1 << 20);
+    MapFileIndexCache.reset();
+    try {
+      writeIntFile(10);
+      try (BloomMapFile.Reader reader1 =
+               new BloomMapFile.Reader(TEST_FILE, cacheConf);
+           BloomMapFile.Reader reader2 =
+               new BloomMapFile.Reader(TEST_FILE, cacheConf)) {
+        assertNotNull(reader1.getBloomFilter());
+        assertSame(reader1.getBloomFilter(), reader2.getBloomFilter());
+        assertSame(reader1.getSerializedIndex(),
+            reader2.getSerializedIndex());
+        assertNotNull(reader2.get(new IntWritable(5), new Text()));
+        assertNull(reader2.get(new IntWritable(15), new Text()));
+
+        // a file written again is not read from the cache
+        FileSystem.getLocal(conf).delete(TEST_FILE, true);
+        writeIntFile(20);
+        try (BloomMapFile.Reader reader3 =
+                 new BloomMapFile.Reader(TEST_FILE, cacheConf)) {
+          assertNotSame(reader1.getBloomFilter(), reader3.getBloomFilter());
+          assertNotNull(reader3.get(new IntWritable(15), new Text()));
+        }
+      }
+    } finally {
+      MapFileIndexCache.reset();
+    }
+  }
+
+  private void writeIntFile(int size) throws IOException {
+    try (BloomMapFile.Writer writer = new BloomMapFile.Writer(conf, TEST_FILE,
+        MapFile.Writer.keyClass(IntWritable.class),
+        MapFile.Writer.valueClass(Text.class))) {
+      for (int i = 0; i < size; i++) {
+        writer.append(new IntWritable(i), new Text("Value:" + i));
+      }
+    }
+  }
 }
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.hadoop.io.CompositeKeyComparator.Field;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCompositeKeyComparator {
+  private static final Field[] ALL_FIELDS = Field.values();
+
+  /** A key made of one Writable per field. */
+  static class TupleKey implements WritableComparable<TupleKey> {
+    private final WritableComparable[] values;
+
+    TupleKey(WritableComparable... values) {
+      this.values = values;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+      for (Writable value : values) {
+        value.write(out);
+      }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+      for (Writable value : values) {
+        value.readFields(in);
+      }
+    }
+
+    @Override
+    public int compareTo(TupleKey o) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /** Random values in small ranges, so that keys often share fields. */
+  @SuppressWarnings("rawtypes")
+  private static WritableComparable randomValue(Field field, Random r) {
+    final int v = r.nextInt(7) - 3;
+    switch (field) {
+    case BOOLEAN:
+      return new BooleanWritable(v > 0);
+    case BYTE:
+      return new ByteWritable((byte) (v * 40));
+    case SHORT:
+      return new ShortWritable((short) (v * 10000));
+    case INT:
+      return new IntWritable(v * 1000000);
+    case LONG:
+      return new LongWritable(v * 1000000000000L);
+    case FLOAT:
+      return new FloatWritable(v * 1.5f);
+    case DOUBLE:
+      return new DoubleWritable(v * 1e100);
+    case VINT:
+      return new VIntWritable(v * 100000);
+    case VLONG:
+      return new VLongWritable(v * 10000000000L);
+    case TEXT:
+      return new Text(v < 0 ? "" : "aé中".substring(0, v % 3)
+          + "xyz".substring(0, v));
+    case BYTES:
+      byte[] b = new byte[Math.max(0, v + 1)];
+      for (int i = 0; i < b.length; i++) {
+        b[i] = (byte) (v * 50 + i);
+      }
+      return new BytesWritable(b);
+    default:
+      throw new IllegalArgumentException(field.toString());
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static int expected(TupleKey a, TupleKey b, boolean[] descending) {
+    for (int i = 0; i < a.values.length; i++) {
+      int c = a.values[i].compareTo(b.values[i]);
+      if (c != 0) {
+        return descending[i] ? -c : c;
+      }
+    }
+    return 0;
+  }
+
+  private static byte[] serialize(Writable w) throws IOException {
+    DataOutputBuffer out = new DataOutputBuffer();
+    w.write(out);
+    return java.util.Arrays.copyOf(out.getData(), out.getLength());
+  }
+
+  @Test
+  public void testAllFields() throws Exception {
+    Random r = new Random(42);
+    for (int round = 0; round < 20; round++) {
+      // a random schema of up to 4 fields
+      int n = 1 + r.nextInt(4);
+      Field[] fields = new Field[n];
+      boolean[] descending = new boolean[n];
+      CompositeKeyComparator.Builder builder =
+          new CompositeKeyComparator.Builder(TupleKey.class);
+      for (int i = 0; i < n; i++) {
+        fields[i] = ALL_FIELDS[r.nextInt(ALL_FIELDS.length)];
+        descending[i] = r.nextBoolean();
+        if (descending[i]) {
+          builder.addDescending(fields[i]);
+        } else {
+          builder.add(fields[i]);
+        }
+      }
+      CompositeKeyComparator comparator = builder.build();
+
+      TupleKey[] keys = new TupleKey[30];
+      byte[][] serialized = new byte[keys.length][];
+      for (int k = 0; k < keys.length; k++) {
+        WritableComparable[] values = new WritableComparable[n];
+        for (int i = 0; i < n; i++) {
+          values[i] = randomValue(fields[i], r);
+        }
+        keys[k] = new TupleKey(values);
+        serialized[k] = serialize(keys[k]);
+      }
+      for (int i = 0; i < keys.length; i++) {
+        for (int j = 0; j < keys.length; j++) {
+          int expected = Integer.signum(
+              expected(keys[i], keys[j], descending));
+          // at an offset in a larger array
+          byte[] b2 = new byte[serialized[j].length + 3];
+          System.arraycopy(serialized[j], 0, b2, 3, serialized[j].length);
+          assertEquals(expected, Integer.signum(comparator.compare(
+              serialized[i], 0, serialized[i].length,
+              b2, 3, serialized[j].length)));
+          assertEquals(expected,
+              Integer.signum(comparator.compare(keys[i], keys[j])));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testPrefix() throws Exception {
+    CompositeKeyComparator comparator =
+        new CompositeKeyComparator.Builder(null).add(Field.INT).build();
+    byte[] a = serialize(new TupleKey(new IntWritable(1),
+        new BytesWritable(new byte[] {1, 2})));
+    byte[] b = serialize(new TupleKey(new IntWritable(1),
+        new BytesWritable(new byte[] {1, 3})));
+    byte[] c = serialize(new TupleKey(new IntWritable(-1),
+        new BytesWritable(new byte[] {1, 4})));
+    assertTrue(comparator.compare(a, 0, a.length, b, 0, b.length) < 0);
+    assertTrue(comparator.compare(b, 0, b.length, a, 0, a.length) > 0);
+    assertTrue(comparator.compare(c, 0, c.length, a, 0, a.length) < 0);
+    assertEquals(0, comparator.compare(a, 0, a.length, a, 0, a.length));
+    // the rest is compared as bytes: a shorter key sorts first
+    assertTrue(comparator.compare(a, 0, 4, a, 0, a.length) < 0);
+  }
+
+  @Test
+  public void testDefine() throws Exception {
+    CompositeKeyComparator comparator =
+        new CompositeKeyComparator.Builder(TupleKey.class)
+            .add(Field.TEXT).addDescending(Field.VLONG).build();
+    WritableComparator.define(TupleKey.class, comparator);
+    assertSame(comparator, WritableComparator.get(TupleKey.class));
+    TupleKey a = new TupleKey(new Text("a"), new VLongWritable(1));
+    TupleKey b = new TupleKey(new Text("a"), new VLongWritable(2));
+    assertTrue(WritableComparator.get(TupleKey.class).compare(a, b) > 0);
+  }
+}
@@ -27,6 +27,7 @@
 import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.LocalFileSystem;
 import org.apache.hadoop.fs.Path;
@@ -843,4 +844,88 @@ public void testMerge() throws Exception {
           path.getFileSystem(conf).exists(path));
     }
   }
+
+  /**
+   * Test that the serialized index, used with comparators of serialized
+   * keys, finds the same entries as the deserialized one.
+   */
+  @Test
+  public void testSerializedIndex() throws Exception {
+    final String TEST_METHOD_KEY = "testSerializedIndex.mapfile";
+    try (MapFile.Writer writer =
+        createWriter(TEST_METHOD_KEY, Text.class, IntWritable.class)) {
+      for (int i = 0; i < 1000; i += 2) {
+        writer.append(new Text(String.format("%05d", i)), new IntWritable(i));
+      }
+    }
+    Path dir = new Path(TEST_DIR, TEST_METHOD_KEY);
+    for (int skip = 0; skip < 3; skip++) {
+      Configuration skipConf = new Configuration(conf);
+      skipConf.setInt(CommonConfigurationKeysPublic.IO_MAP_INDEX_SKIP_KEY,
+          skip);
+      try (MapFile.Reader serialized = new MapFile.Reader(dir, skipConf);
+           MapFile.Reader deserialized = new MapFile.Reader(dir, skipConf,
+               MapFile.Reader.comparator(new WritableComparator(Text.class)))) {
+        assertEquals(deserialized.midKey(), serialized.midKey());
+        assertNotNull(serialized.getSerializedIndex());
+        assertNull(deserialized.getSerializedIndex());
+
+        Text last = new Text();
+        serialized.finalKey(last);
+        assertEquals(new Text("00998"), last);
+
+        IntWritable value = new IntWritable();
+        IntWritable expected = new IntWritable();
+        for (int i = -1; i <= 1000; i++) {
+          Text key = new Text(String.format("%05d", i));
+          assertEquals(key.toString(),
+              deserialized.get(key, expected) != null,
+              serialized.get(key, value) != null);
+          if (i >= 0 && i < 1000 && i % 2 == 0) {
+            assertEquals(i, value.get());
+          }
+          assertEquals(key.toString(),
+              deserialized.getClosest(key, expected),
+              serialized.getClosest(key, value));
+          assertEquals(key.toString(),
+              deserialized.getClosest(key, expected, true),
+              serialized.getClosest(key, value, true));
+        }
+      }
+    }
+  }
+
+  /**
+   * Test that the readers of a file share its index through the cache.
+   */
+  @Test
+  public void testSharedIndexCache() throws Exception {
+    final String TEST_METHOD_KEY = "testSharedIndexCache.mapfile";
+    Configuration cacheConf = new Configuration(conf);
+    cacheConf.setLong(
+        CommonConfigurationKeysPublic.IO_MAP_INDEX_CACHE_SIZE_KEY, 1 << 20);
+    MapFileIndexCache.reset();
+    try {
+      try (MapFile.Writer writer =
+          createWriter(TEST_METHOD_KEY, IntWritable.class, Text.class)) {
+        for (int i = 0; i < 100; i++) {
+          writer.append(new IntWritable(i), new Text("Value:" + i));
+        }
+      }
+      Path dir = new Path(TEST_DIR, TEST_METHOD_KEY);
+      Text value = new Text();
+      try (MapFile.Reader reader1 = new MapFile.Reader(dir, cacheConf);
+           MapFile.Reader reader2 = new MapFile.Reader(dir, cacheConf)) {
+        assertNotNull(reader1.get(new IntWritable(42), value));
+        assertEquals(new Text("Value:42"), value);
+        assertNotNull(reader2.get(new IntWritable(43), value));
+        assertEquals(new Text("Value:43"), value);
+        assertSame(reader1.getSerializedIndex(),
+            reader2.getSerializedIndex());
+        assertEquals(1, MapFileIndexCache.get(cacheConf).getHitCount());
+      }
+    } finally {
+      MapFileIndexCache.reset();
+    }
+  }
 }
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io;
+
+import static org.junit.Assert.*;
+
+import java.io.FileDescriptor;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
+import org.apache.hadoop.io.ReadaheadPool.ReadaheadMetrics;
+import org.apache.hadoop.io.ReadaheadPool.ReadaheadRequest;
+import org.junit.Test;
+
+public class TestReadaheadPool {
+  private static final long LENGTH = 1024 * 1024;
+  private static final long STEP = 64 * 1024;
+  private static final FileDescriptor FD = new FileDescriptor();
+
+  private static ReadaheadPool newPool(boolean adaptive) {
+    Configuration conf = new Configuration(false);
+    conf.setBoolean(CommonConfigurationKeysPublic.IO_READAHEAD_ADAPTIVE_KEY,
+        adaptive);
+    conf.setInt(
+        CommonConfigurationKeysPublic.IO_READAHEAD_ADAPTIVE_MAX_MULTIPLIER_KEY,
+        4);
+    return new ReadaheadPool(conf);
+  }
+
+  /**
+   * Read sequentially from pos to end.
+   * @return the last request.
+   */
+  private static ReadaheadRequest read(ReadaheadPool pool, long pos,
+      long end, ReadaheadRequest req) {
+    for (; pos < end; pos += STEP) {
+      req = pool.readaheadStream("test", FD, pos, LENGTH, Long.MAX_VALUE, req);
+    }
+    return req;
+  }
+
+  @Test
+  public void testSequentialWindowGrows() {
+    ReadaheadPool pool = newPool(true);
+    ReadaheadRequest req = read(pool, 0, STEP, null);
+    assertEquals(0, req.getOffset());
+    assertEquals(LENGTH, req.getLength());
+
+    // doubled once halfway through each readahead, up to 4 times the length
+    req = read(pool, STEP, LENGTH / 2 + STEP, req);
+    assertEquals(LENGTH / 2, req.getOffset());
+    assertEquals(2 * LENGTH, req.getLength());
+    req = read(pool, LENGTH / 2 + STEP, 3 * LENGTH / 2 + STEP, req);
+    assertEquals(3 * LENGTH / 2, req.getOffset());
+    assertEquals(4 * LENGTH, req.getLength());
+    req = read(pool, 3 * LENGTH / 2 + STEP, 8 * LENGTH, req);
+    assertEquals(4 * LENGTH, req.getLength());
+
+    // nothing is read past the end
+    req = pool.readaheadStream("test", FD, 19 * LENGTH / 2, LENGTH,
+        19 * LENGTH / 2 + 100, req);
+    assertEquals(19 * LENGTH / 2, req.getOffset());
+    assertEquals(100, req.getLength());
+
+    // requests at 0, 1/2, 3/2, 7/2, 11/2, 15/2 and 19/2 times the length,
+    // reading ahead up to 23/2 times the length, of which 19/2 were read
+    ReadaheadMetrics metrics = pool.getMetrics();
+    assertEquals(7, metrics.requests.value());
+    assertEquals(23 * LENGTH / 2, metrics.bytes.value());
+    assertEquals(19 * LENGTH / 2, metrics.hitBytes.value());
+    assertEquals(100f * 19 / 23, metrics.getHitPercent(), 0.001);
+  }
+
+  @Test
+  public void testRandomReads() {
+    ReadaheadPool pool = newPool(true);
+    ReadaheadRequest req = read(pool, 0, LENGTH, null);
+    assertEquals(2 * LENGTH, req.getLength());
+
+    // a first random read starts over with the configured length
+    req = pool.readaheadStream("test", FD, 100 * LENGTH, LENGTH,
+        Long.MAX_VALUE, req);
+    assertEquals(100 * LENGTH, req.getOffset());
+    assertEquals(LENGTH, req.getLength());
+
+    // and a second one stops reading ahead
+    req = pool.readaheadStream("test", FD, 10 * LENGTH, LENGTH,
+        Long.MAX_VALUE, req);
+    assertEquals(0, req.getLength());
+    req = pool.readaheadStream("test", FD, 50 * LENGTH, LENGTH,
+        Long.MAX_VALUE, req);
+    assertEquals(0, req.getLength());
+    assertEquals(1, pool.getMetrics().randomStreams.value());
+    final long requests = pool.getMetrics().requests.value();
+
+    // until the stream reads sequentially again
+    req = read(pool, 50 * LENGTH + STEP, 50 * LENGTH + 2 * STEP, req);
+    assertEquals(50 * LENGTH + STEP, req.getOffset());
+    assertEquals(LENGTH, req.getLength());
+    assertEquals(requests + 1, pool.getMetrics().requests.value());
+  }
+
+  @Test
+  public void testFixedReadahead() {
+    ReadaheadPool pool = newPool(false);
+    ReadaheadRequest req = read(pool, 0, 8 * LENGTH, null);
+    assertEquals(LENGTH, req.getLength());
+    req = pool.readaheadStream("test", FD, 100 * LENGTH, LENGTH,
+        Long.MAX_VALUE, req);
+    assertEquals(LENGTH, req.getLength());
+    req = pool.readaheadStream("test", FD, 10 * LENGTH, LENGTH,
+        Long.MAX_VALUE, req);
+    assertEquals(LENGTH, req.getLength());
+    assertEquals(0, pool.getMetrics().requests.value());
+  }
+
+  @Test
+  public void testFixedByDefault() {
+    ReadaheadPool pool = new ReadaheadPool(new Configuration());
+    ReadaheadRequest req = read(pool, 0, 8 * LENGTH, null);
+    assertEquals(LENGTH, req.getLength());
+    assertEquals(0, pool.getMetrics().requests.value());
+  }
+}
@@ -57,6 +57,25 @@ public void testZlibSequenceFile() throws Exception {
     LOG.info("Successfully tested SequenceFile with DefaultCodec");
   }
 
+  @Test
+  public void testParallelBlockCompression() throws Exception {
+    conf.setInt(CommonConfigurationKeys.IO_COMPRESSION_PARALLEL_THREADS_KEY, 3);
+    conf.setInt(CommonConfigurationKeys.IO_SEQFILE_COMPRESS_BLOCKSIZE_KEY,
+        16 * 1024);
+    int count = 1024 * 10;
+    int seed = new Random().nextInt();
+    LOG.info("Seed = " + seed);
+    Path file = new Path(GenericTestUtils.getTempPath("test.pbc.seq"));
+    FileSystem fs = FileSystem.getLocal(conf);
+    try {
+      writeTest(fs, count, seed, file, CompressionType.BLOCK,
+          new DefaultCodec());
+      readTest(fs, count, seed, file);
+    } finally {
+      fs.close();
+    }
+  }
+
   @SuppressWarnings("deprecation")
   public void testSorterProperties() throws IOException {
     // Test to ensure that deprecated properties have no default
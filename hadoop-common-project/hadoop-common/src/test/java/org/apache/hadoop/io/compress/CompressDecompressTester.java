@@ -25,6 +25,7 @@
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -521,4 +522,60 @@ abstract static class TesterCompressionStrategy {
     abstract void assertCompression(String name, Compressor compressor,
         Decompressor decompressor, byte[] originalRawData);
   }
+
+  /**
+   * Compress the data with the {@link DirectCompressor} of the codec, in a
+   * buffer of its maximum compressed length, then decompress it with its
+   * {@link DirectDecompressor}, and check the data is unchanged.
+   *
+   * @return the compressed length.
+   */
+  public static int directCompressDecompress(CompressionCodec codec,
+      byte[] rawData) throws IOException {
+    DirectCompressor compressor =
+        ((DirectCompressionCodec) codec).createDirectCompressor();
+    DirectDecompressor decompressor =
+        ((DirectDecompressionCodec) codec).createDirectDecompressor();
+
+    // leave some room around the data, to check positions are honoured
+    ByteBuffer src = ByteBuffer.allocateDirect(rawData.length + 8);
+    src.position(4);
+    src.put(rawData);
+    src.limit(src.position());
+    src.position(4);
+    ByteBuffer compressed = ByteBuffer.allocateDirect(
+        compressor.maxCompressedLength(rawData.length) + 4);
+    compressed.position(4);
+    compressor.compress(src, compressed);
+    assertEquals(src.limit(), src.position());
+    int compressedLength = compressed.position() - 4;
+    assertTrue(compressedLength > 0);
+
+    compressed.flip();
+    compressed.position(4);
+    ByteBuffer dst = ByteBuffer.allocateDirect(rawData.length + 4);
+    dst.position(4);
+    while (compressed.hasRemaining() && dst.hasRemaining()) {
+      decompressor.decompress(compressed, dst);
+    }
+    assertEquals(rawData.length + 4, dst.position());
+    dst.flip();
+    dst.position(4);
+    byte[] result = new byte[rawData.length];
+    dst.get(result);
+    assertArrayEquals(rawData, result);
+
+    // a buffer too small to hold the compressed data is rejected
+    src.position(4);
+    ByteBuffer small = ByteBuffer.allocateDirect(rawData.length / 2);
+    try {
+      compressor.compress(src, small);
+      fail("Compressed into a buffer too small");
+    } catch (IOException e) {
+      // expected
+    }
+    ((Compressor) compressor).end();
+    ((Decompressor) decompressor).end();
+    return compressedLength;
+  }
 }
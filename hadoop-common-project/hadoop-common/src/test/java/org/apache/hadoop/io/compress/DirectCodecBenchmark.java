@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.compress;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Benchmark comparing, for each codec and block size, the throughput of the
+ * compression streams, which copy the data through the buffers of the
+ * compressors, with the {@link DirectCompressor} and
+ * {@link DirectDecompressor} of the codec working on the caller buffers.
+ * Codecs without a native library are skipped.
+ * Run with --help option for usage.
+ */
+public class DirectCodecBenchmark implements Tool {
+  private static final int MB = 1024 * 1024;
+
+  private Configuration conf;
+
+  private static class MyOptions {
+    private boolean failed = false;
+    private String[] codecs = {
+        SnappyCodec.class.getName(),
+        Lz4Codec.class.getName(),
+        ZStandardCodec.class.getName() };
+    private int[] blockSizes = {4 * 1024, 64 * 1024, 1024 * 1024};
+    private int secondsToRun = 2;
+
+    private MyOptions(String[] args) {
+      try {
+        Options opts = buildOptions();
+        CommandLineParser parser = new GnuParser();
+        CommandLine line = parser.parse(opts, args, true);
+        processOptions(line, opts);
+      } catch (ParseException e) {
+        System.err.println(e.getMessage());
+        System.err.println("Try \"--help\" option for details.");
+        failed = true;
+      }
+    }
+
+    @SuppressWarnings("static-access")
+    private Options buildOptions() {
+      Options opts = new Options();
+      opts.addOption(
+          OptionBuilder.withLongOpt("codecs").hasArg(true)
+          .withArgName("class,...")
+          .withDescription("comma separated codec classes")
+          .create("c"));
+      opts.addOption(
+          OptionBuilder.withLongOpt("blockSizes").hasArg(true)
+          .withArgName("bytes,...")
+          .withDescription("comma separated block sizes")
+          .create("b"));
+      opts.addOption(
+          OptionBuilder.withLongOpt("time").hasArg(true)
+          .withArgName("seconds")
+          .withDescription("number of seconds to run each measurement for")
+          .create("t"));
+      opts.addOption(
+          OptionBuilder.withLongOpt("help")
+          .withDescription("show this screen")
+          .create('?'));
+      return opts;
+    }
+
+    private void processOptions(CommandLine line, Options opts)
+        throws ParseException {
+      if (line.hasOption("help") || line.hasOption('?')) {
+        HelpFormatter formatter = new HelpFormatter();
+        System.out.println("Benchmark for the direct codec API");
+        formatter.printHelp(100,
+            "java ... DirectCodecBenchmark [options]",
+            "\nSupported options:", opts, "");
+        failed = true;
+        return;
+      }
+      if (line.hasOption('c')) {
+        codecs = line.getOptionValue('c').split(",");
+      }
+      if (line.hasOption('b')) {
+        String[] sizes = line.getOptionValue('b').split(",");
+        blockSizes = new int[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+          blockSizes[i] = Integer.parseInt(sizes[i].trim());
+        }
+      }
+      if (line.hasOption('t')) {
+        secondsToRun = Integer.parseInt(line.getOptionValue('t'));
+      }
+      if (secondsToRun <= 0) {
+        throw new ParseException("Time must be > 0");
+      }
+    }
+  }
+
+  /** One operation to measure, on a block of data. */
+  private interface Op {
+    void run() throws IOException;
+  }
+
+  /** @return the throughput of the operation in MB of raw data per second. */
+  private static double measure(Op op, int blockSize, int seconds)
+      throws IOException {
+    // warm up
+    final long warmupEnd = System.nanoTime() + 200_000_000L;
+    while (System.nanoTime() < warmupEnd) {
+      op.run();
+    }
+    final long start = System.nanoTime();
+    final long end = start + seconds * 1_000_000_000L;
+    long ops = 0;
+    long now;
+    do {
+      op.run();
+      ops++;
+      now = System.nanoTime();
+    } while (now < end);
+    return (double) ops * blockSize / MB / ((now - start) / 1e9);
+  }
+
+  /** @return compressible data: words drawn from a small vocabulary. */
+  private static byte[] newData(int size) {
+    final Random random = new Random(size);
+    final String[] words = new String[256];
+    for (int i = 0; i < words.length; i++) {
+      words[i] = Long.toString(random.nextLong() & 0xffffffL, 36) + " ";
+    }
+    final byte[] data = new byte[size];
+    int filled = 0;
+    while (filled < size) {
+      byte[] word = words[random.nextInt(words.length)].getBytes();
+      int n = Math.min(word.length, size - filled);
+      System.arraycopy(word, 0, data, filled, n);
+      filled += n;
+    }
+    return data;
+  }
+
+  private void run(MyOptions opts, String codecName, int blockSize)
+      throws Exception {
+    final CompressionCodec codec = (CompressionCodec) ReflectionUtils
+        .newInstance(conf.getClassByName(codecName.trim()), conf);
+    final String name = codec.getClass().getSimpleName();
+    final DirectCompressor directCompressor;
+    final DirectDecompressor directDecompressor;
+    try {
+      directCompressor = ((DirectCompressionCodec) codec)
+          .createDirectCompressor();
+      directDecompressor = ((DirectDecompressionCodec) codec)
+          .createDirectDecompressor();
+    } catch (RuntimeException | LinkageError e) {
+      System.out.printf("| %-15s | %8d | skipped: %s%n", name, blockSize, e);
+      return;
+    }
+    if (directCompressor == null || directDecompressor == null) {
+      System.out.printf("| %-15s | %8d | skipped: no native library%n",
+          name, blockSize);
+      return;
+    }
+
+    final byte[] data = newData(blockSize);
+    final byte[] uncompressed = new byte[blockSize];
+
+    // the streams, with pooled compressors as SequenceFile uses them
+    final Compressor compressor = CodecPool.getCompressor(codec);
+    final Decompressor decompressor = CodecPool.getDecompressor(codec);
+    final DataOutputBuffer compressedOut = new DataOutputBuffer();
+    final CompressionOutputStream out =
+        codec.createOutputStream(compressedOut, compressor);
+    final Op streamCompress = () -> {
+      compressedOut.reset();
+      out.resetState();
+      out.write(data);
+      out.finish();
+    };
+    streamCompress.run();
+    final byte[] streamCompressed = new byte[compressedOut.getLength()];
+    System.arraycopy(compressedOut.getData(), 0, streamCompressed, 0,
+        streamCompressed.length);
+    final Op streamDecompress = () -> {
+      decompressor.reset();
+      try (CompressionInputStream in = codec.createInputStream(
+          new ByteArrayInputStream(streamCompressed), decompressor)) {
+        IOUtils.readFully(in, uncompressed, 0, blockSize);
+      }
+    };
+
+    // the direct API, on direct buffers owned by the caller
+    final ByteBuffer src = ByteBuffer.allocateDirect(blockSize);
+    src.put(data);
+    final ByteBuffer compressed = ByteBuffer.allocateDirect(
+        directCompressor.maxCompressedLength(blockSize));
+    final ByteBuffer dst = ByteBuffer.allocateDirect(blockSize);
+    final Op directCompress = () -> {
+      src.clear();
+      compressed.clear();
+      directCompressor.compress(src, compressed);
+    };
+    directCompress.run();
+    final int compressedLength = compressed.position();
+    final Op directDecompress = () -> {
+      ((Decompressor) directDecompressor).reset();
+      compressed.position(0);
+      compressed.limit(compressedLength);
+      dst.clear();
+      while (compressed.hasRemaining() && dst.hasRemaining()) {
+        directDecompressor.decompress(compressed, dst);
+      }
+      if (dst.position() != blockSize) {
+        throw new IOException("Decompressed " + dst.position()
+            + " bytes instead of " + blockSize);
+      }
+    };
+
+    try {
+      final int t = opts.secondsToRun;
+      System.out.printf("| %-15s | %8d | %9.1f | %9.1f | %9.1f | %9.1f |"
+          + " %5.2f |%n", name, blockSize,
+          measure(streamCompress, blockSize, t),
+          measure(directCompress, blockSize, t),
+          measure(streamDecompress, blockSize, t),
+          measure(directDecompress, blockSize, t),
+          (double) blockSize / compressedLength);
+    } finally {
+      CodecPool.returnCompressor(compressor);
+      CodecPool.returnDecompressor(decompressor);
+      ((Compressor) directCompressor).end();
+      ((Decompressor) directDecompressor).end();
+    }
+  }
+
+  @Override
+  public int run(String[] args) throws Exception {
+    MyOptions opts = new MyOptions(args);
+    if (opts.failed) {
+      return -1;
+    }
+    System.out.println("Throughput in MB/s of uncompressed data");
+    System.out.println("| codec           |    block | stream in |"
+        + " direct in | stream out| direct out| ratio |");
+    for (String codec : opts.codecs) {
+      for (int blockSize : opts.blockSizes) {
+        run(opts, codec, blockSize);
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public void setConf(Configuration conf) {
+    this.conf = conf;
+  }
+
+  @Override
+  public Configuration getConf() {
+    return conf;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int rc = ToolRunner.run(new DirectCodecBenchmark(), args);
+    System.exit(rc);
+  }
+}
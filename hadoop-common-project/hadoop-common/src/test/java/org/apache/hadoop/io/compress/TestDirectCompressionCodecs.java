@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.compress;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.util.NativeCodeLoader;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.junit.Test;
+
+/**
+ * Check that the data compressed by the {@link DirectCompressor} of a codec
+ * reads back through the codec's own {@link CompressionInputStream}, so that
+ * it can be written in the format of the codec streams.
+ */
+public class TestDirectCompressionCodecs {
+  /** Within the default buffer size of the stream decompressors. */
+  private static final int[] SIZES = {1, 4 * 1024, 200 * 1024};
+
+  private final Configuration conf = new Configuration();
+
+  /** Compressible data: runs of a few random bytes. */
+  private static byte[] generate(int size) {
+    byte[] data = new byte[size];
+    Random random = new Random(size);
+    for (int i = 0; i < size; i++) {
+      data[i] = (byte) (random.nextInt(16) + 'a');
+    }
+    return data;
+  }
+
+  /**
+   * Compress the data with the direct compressor of the codec, from a direct
+   * buffer into another one.
+   */
+  private static byte[] directCompress(DirectCompressionCodec codec,
+      byte[] data) throws IOException {
+    DirectCompressor compressor = codec.createDirectCompressor();
+    ByteBuffer src = ByteBuffer.allocateDirect(data.length);
+    src.put(data);
+    src.flip();
+    ByteBuffer dst =
+        ByteBuffer.allocateDirect(compressor.maxCompressedLength(data.length));
+    try {
+      compressor.compress(src, dst);
+    } finally {
+      ((Compressor) compressor).end();
+    }
+    dst.flip();
+    byte[] compressed = new byte[dst.remaining()];
+    dst.get(compressed);
+    return compressed;
+  }
+
+  private byte[] readStream(CompressionCodec codec, byte[] stream,
+      int length) throws IOException {
+    byte[] result = new byte[length];
+    try (InputStream in =
+             codec.createInputStream(new ByteArrayInputStream(stream))) {
+      IOUtils.readFully(in, result, 0, length);
+    }
+    return result;
+  }
+
+  /**
+   * Check the codecs written with a {@link BlockCompressorStream}: a block
+   * is the uncompressed length, then the length and data of each compressed
+   * chunk, here the single one written by the direct compressor.
+   */
+  private void checkBlockCodec(Class<? extends DirectCompressionCodec> clazz)
+      throws IOException {
+    DirectCompressionCodec codec = ReflectionUtils.newInstance(clazz, conf);
+    for (int size : SIZES) {
+      byte[] data = generate(size);
+      byte[] compressed = directCompress(codec, data);
+      ByteArrayOutputStream stream = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(stream);
+      out.writeInt(data.length);
+      out.writeInt(compressed.length);
+      out.write(compressed);
+      out.close();
+      assertArrayEquals(data, readStream(codec, stream.toByteArray(), size));
+    }
+  }
+
+  @Test
+  public void testSnappy() throws IOException {
+    assumeTrue(NativeCodeLoader.isNativeCodeLoaded()
+        && NativeCodeLoader.buildSupportsSnappy());
+    checkBlockCodec(SnappyCodec.class);
+  }
+
+  @Test
+  public void testLz4() throws IOException {
+    // LZ4 is always built in libhadoop
+    assumeTrue(NativeCodeLoader.isNativeCodeLoaded());
+    checkBlockCodec(Lz4Codec.class);
+  }
+
+  /** The ZStandard streams are a sequence of frames. */
+  @Test
+  public void testZStandard() throws IOException {
+    assumeTrue(NativeCodeLoader.isNativeCodeLoaded()
+        && NativeCodeLoader.buildSupportsZstd());
+    ZStandardCodec codec = ReflectionUtils.newInstance(ZStandardCodec.class,
+        conf);
+    for (int size : SIZES) {
+      byte[] data = generate(size);
+      assertArrayEquals(data,
+          readStream(codec, directCompress(codec, data), size));
+    }
+  }
+}
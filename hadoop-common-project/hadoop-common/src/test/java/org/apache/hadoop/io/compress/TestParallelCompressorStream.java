@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.io.compress;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.junit.Test;
+
+public class TestParallelCompressorStream {
+
+  private static final int BLOCK_SIZE = 64 * 1024;
+
+  private final Configuration conf = new Configuration();
+
+  /** Compressible data: random words out of a small dictionary. */
+  private static byte[] generate(int length, long seed) {
+    final Random r = new Random(seed);
+    final String[] words = new String[256];
+    for (int i = 0; i < words.length; i++) {
+      words[i] = Long.toString(r.nextLong() & 0xffffff, 36) + ' ';
+    }
+    final ByteArrayOutputStream data = new ByteArrayOutputStream(length);
+    while (data.size() < length) {
+      final byte[] w = words[r.nextInt(words.length)].getBytes();
+      data.write(w, 0, Math.min(w.length, length - data.size()));
+    }
+    return data.toByteArray();
+  }
+
+  private byte[] compress(CompressionCodec codec, byte[] data, int threads,
+      int writeSize) throws IOException {
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    final CompressionOutputStream out = new ParallelCompressorStream(
+        compressed, codec, conf, threads, BLOCK_SIZE);
+    for (int off = 0; off < data.length; off += writeSize) {
+      final int len = Math.min(writeSize, data.length - off);
+      if (len == 1) {
+        out.write(data[off]);
+      } else {
+        out.write(data, off, len);
+      }
+    }
+    out.close();
+    return compressed.toByteArray();
+  }
+
+  private static byte[] decompress(CompressionCodec codec, byte[] compressed)
+      throws IOException {
+    final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    try (InputStream in =
+        codec.createInputStream(new ByteArrayInputStream(compressed))) {
+      IOUtils.copyBytes(in, data, 4096);
+    }
+    return data.toByteArray();
+  }
+
+  private void testRoundTrip(Class<? extends CompressionCodec> codecClass)
+      throws IOException {
+    final CompressionCodec codec =
+        ReflectionUtils.newInstance(codecClass, conf);
+    final int[] lengths = {0, 1, BLOCK_SIZE - 1, BLOCK_SIZE, 10 * BLOCK_SIZE + 7};
+    for (int length : lengths) {
+      final byte[] data = generate(length, length);
+      for (int writeSize : new int[] {1, 1000, BLOCK_SIZE * 3}) {
+        if (writeSize == 1 && length > BLOCK_SIZE) {
+          continue;
+        }
+        for (int threads : new int[] {1, 4}) {
+          final byte[] compressed = compress(codec, data, threads, writeSize);
+          assertArrayEquals(codecClass.getSimpleName() + " length=" + length
+              + " writeSize=" + writeSize + " threads=" + threads,
+              data, decompress(codec, compressed));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testDefaultCodec() throws IOException {
+    testRoundTrip(DefaultCodec.class);
+  }
+
+  @Test
+  public void testGzipCodec() throws IOException {
+    testRoundTrip(GzipCodec.class);
+  }
+
+  @Test
+  public void testBZip2Codec() throws IOException {
+    testRoundTrip(BZip2Codec.class);
+  }
+
+  @Test
+  public void testSameOutputAsSerialBlocks() throws IOException {
+    // the output is the concatenation of the blocks compressed one by one
+    final CompressionCodec codec =
+        ReflectionUtils.newInstance(DefaultCodec.class, conf);
+    final byte[] data = generate(3 * BLOCK_SIZE + 100, 0);
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    for (int off = 0; off < data.length; off += BLOCK_SIZE) {
+      final CompressionOutputStream out = codec.createOutputStream(expected);
+      out.write(data, off, Math.min(BLOCK_SIZE, data.length - off));
+      out.finish();
+    }
+    assertArrayEquals(expected.toByteArray(), compress(codec, data, 3, 5000));
+  }
+
+  @Test
+  public void testCreate() throws IOException {
+    final CompressionCodec codec =
+        ReflectionUtils.newInstance(DefaultCodec.class, conf);
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertTrue(!(ParallelCompressorStream.create(codec, conf, out)
+        instanceof ParallelCompressorStream));
+
+    conf.setInt(CommonConfigurationKeys.IO_COMPRESSION_PARALLEL_THREADS_KEY, 2);
+    conf.setInt(CommonConfigurationKeys.IO_COMPRESSION_PARALLEL_BLOCK_SIZE_KEY,
+        1024);
+    final CompressionOutputStream stream =
+        ParallelCompressorStream.create(codec, conf, out);
+    assertTrue(stream instanceof ParallelCompressorStream);
+    final byte[] data = generate(10000, 1);
+    stream.write(data);
+    stream.finish();
+    // finish writes everything out, without closing the stream
+    final int length = out.size();
+    assertArrayEquals(data, decompress(codec, out.toByteArray()));
+    stream.write(data);
+    stream.close();
+    assertTrue(out.size() > length);
+    final byte[] both = new byte[2 * data.length];
+    System.arraycopy(data, 0, both, 0, data.length);
+    System.arraycopy(data, 0, both, data.length, data.length);
+    assertEquals(both.length, decompress(codec, out.toByteArray()).length);
+    assertArrayEquals(both, decompress(codec, out.toByteArray()));
+  }
+}
@@ -27,10 +27,13 @@
 import java.io.IOException;
 import java.util.Random;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
 import org.apache.hadoop.io.DataInputBuffer;
 import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.compress.BlockCompressorStream;
 import org.apache.hadoop.io.compress.BlockDecompressorStream;
+import org.apache.hadoop.io.compress.CompressDecompressTester;
 import org.apache.hadoop.io.compress.CompressionInputStream;
 import org.apache.hadoop.io.compress.CompressionOutputStream;
 import org.apache.hadoop.io.compress.Lz4Codec;
@@ -50,6 +53,22 @@ public void before() {
     assumeTrue(Lz4Codec.isNativeCodeLoaded());
   }
 
+  @Test
+  public void testLz4DirectCompressor() throws IOException {
+    Configuration conf = new Configuration();
+    Lz4Codec codec = new Lz4Codec();
+    for (boolean useLz4HC : new boolean[] {false, true}) {
+      conf.setBoolean(
+          CommonConfigurationKeys.IO_COMPRESSION_CODEC_LZ4_USELZ4HC_KEY,
+          useLz4HC);
+      codec.setConf(conf);
+      for (int size : new int[] {1, 4 * 1024, 1024 * 1024}) {
+        CompressDecompressTester.directCompressDecompress(codec,
+            generate(size));
+      }
+    }
+  }
+
   //test on NullPointerException in {@code compressor.setInput()} 
   @Test
   public void testCompressorSetInputNullPointerException() {
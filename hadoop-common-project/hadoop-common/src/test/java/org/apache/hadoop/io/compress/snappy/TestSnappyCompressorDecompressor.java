@@ -32,10 +32,12 @@
 import java.nio.ByteBuffer;
 import java.util.Random;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.DataInputBuffer;
 import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.compress.BlockCompressorStream;
 import org.apache.hadoop.io.compress.BlockDecompressorStream;
+import org.apache.hadoop.io.compress.CompressDecompressTester;
 import org.apache.hadoop.io.compress.CompressionInputStream;
 import org.apache.hadoop.io.compress.CompressionOutputStream;
 import org.apache.hadoop.io.compress.SnappyCodec;
@@ -329,6 +331,16 @@ public void testSnappyDirectBlockCompression() {
     }
   }
 
+  @Test
+  public void testSnappyDirectCompressor() throws IOException {
+    SnappyCodec codec = new SnappyCodec();
+    codec.setConf(new Configuration());
+    for (int size : new int[] {1, 4 * 1024, 1024 * 1024}) {
+      CompressDecompressTester.directCompressDecompress(codec,
+          BytesGenerator.get(size));
+    }
+  }
+
   @Test
   public void testSnappyCompressorDecopressorLogicWithCompressionStreams() {
     int BYTE_SIZE = 1024 * 100;
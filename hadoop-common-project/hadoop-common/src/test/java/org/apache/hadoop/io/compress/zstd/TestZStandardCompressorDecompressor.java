@@ -20,6 +20,7 @@
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.DataInputBuffer;
 import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.compress.CompressDecompressTester;
 import org.apache.hadoop.io.compress.CompressionInputStream;
 import org.apache.hadoop.io.compress.CompressionOutputStream;
 import org.apache.hadoop.io.compress.Compressor;
@@ -73,6 +74,16 @@ public void before() throws Exception {
     assumeTrue(ZStandardCodec.isNativeCodeLoaded());
   }
 
+  @Test
+  public void testZStandardDirectCompressor() throws Exception {
+    ZStandardCodec codec = new ZStandardCodec();
+    codec.setConf(new Configuration());
+    for (int size : new int[] {1, 4 * 1024, 1024 * 1024}) {
+      CompressDecompressTester.directCompressDecompress(codec,
+          generate(size));
+    }
+  }
+
   @Test
   public void testCompressionCompressesCorrectly() throws Exception {
     int uncompressedSize = (int) FileUtils.sizeOf(uncompressedFile);
@@ -0,0 +1,354 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.ipc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Benchmark for the RPC call queues. Reader threads put calls into a
+ * {@link CallQueueManager} and handler threads take them, as in the RPC
+ * server, and the throughput and the time calls spend in the queue are
+ * reported for each handler count.
+ * Run with --help option for usage.
+ */
+public class CallQueueBenchmark implements Tool {
+  private static final String NS = CommonConfigurationKeys.IPC_NAMESPACE
+      + ".benchmark";
+  /** Latencies kept by each handler. */
+  private static final int MAX_SAMPLES = 1 << 16;
+
+  private Configuration conf;
+
+  private static class MyOptions {
+    private boolean failed = false;
+    private String queueClass = "java.util.concurrent.LinkedBlockingQueue";
+    private boolean lockFree = false;
+    private int readerThreads = 4;
+    private int[] handlerCounts = {10};
+    private int queueSize = 0;
+    private int users = 10;
+    private int secondsToRun = 10;
+
+    private MyOptions(String[] args) {
+      try {
+        Options opts = buildOptions();
+        CommandLineParser parser = new GnuParser();
+        CommandLine line = parser.parse(opts, args, true);
+        processOptions(line, opts);
+      } catch (ParseException e) {
+        System.err.println(e.getMessage());
+        System.err.println("Try \"--help\" option for details.");
+        failed = true;
+      }
+    }
+
+    @SuppressWarnings("static-access")
+    private Options buildOptions() {
+      Options opts = new Options();
+      opts.addOption(
+          OptionBuilder.withLongOpt("queue").hasArg(true)
+          .withArgName("class")
+          .withDescription("call queue class, e.g. "
+              + "java.util.concurrent.LinkedBlockingQueue, "
+              + "org.apache.hadoop.ipc.LockFreeCallQueue or "
+              + "org.apache.hadoop.ipc.FairCallQueue")
+          .create("q"));
+      opts.addOption(
+          OptionBuilder.withLongOpt("lockFree")
+          .withDescription("use lock-free FairCallQueue sub-queues")
+          .create("l"));
+      opts.addOption(
+          OptionBuilder.withLongOpt("readerThreads").hasArg(true)
+          .withArgName("threads")
+          .withDescription("number of threads putting calls")
+          .create("r"));
+      opts.addOption(
+          OptionBuilder.withLongOpt("handlerThreads").hasArg(true)
+          .withArgName("threads,...")
+          .withDescription("comma separated numbers of threads taking calls")
+          .create("c"));
+      opts.addOption(
+          OptionBuilder.withLongOpt("queueSize").hasArg(true)
+          .withArgName("calls")
+          .withDescription("queue capacity, 100 calls per handler by default")
+          .create("s"));
+      opts.addOption(
+          OptionBuilder.withLongOpt("users").hasArg(true)
+          .withArgName("users")
+          .withDescription("number of distinct callers")
+          .create("u"));
+      opts.addOption(
+          OptionBuilder.withLongOpt("time").hasArg(true)
+          .withArgName("seconds")
+          .withDescription("number of seconds to run each handler count for")
+          .create("t"));
+      opts.addOption(
+          OptionBuilder.withLongOpt("help")
+          .withDescription("show this screen")
+          .create('?'));
+      return opts;
+    }
+
+    private void processOptions(CommandLine line, Options opts)
+        throws ParseException {
+      if (line.hasOption("help") || line.hasOption('?')) {
+        HelpFormatter formatter = new HelpFormatter();
+        System.out.println("Benchmark for the RPC call queues");
+        formatter.printHelp(100,
+            "java ... CallQueueBenchmark [options]",
+            "\nSupported options:", opts, "");
+        failed = true;
+        return;
+      }
+      if (line.hasOption('q')) {
+        queueClass = line.getOptionValue('q');
+      }
+      lockFree = line.hasOption('l');
+      if (line.hasOption('r')) {
+        readerThreads = Integer.parseInt(line.getOptionValue('r'));
+      }
+      if (line.hasOption('c')) {
+        String[] counts = line.getOptionValue('c').split(",");
+        handlerCounts = new int[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+          handlerCounts[i] = Integer.parseInt(counts[i].trim());
+        }
+      }
+      if (line.hasOption('s')) {
+        queueSize = Integer.parseInt(line.getOptionValue('s'));
+      }
+      if (line.hasOption('u')) {
+        users = Integer.parseInt(line.getOptionValue('u'));
+      }
+      if (line.hasOption('t')) {
+        secondsToRun = Integer.parseInt(line.getOptionValue('t'));
+      }
+      if (readerThreads <= 0 || users <= 0 || secondsToRun <= 0) {
+        throw new ParseException("Thread, user and time counts must be > 0");
+      }
+    }
+  }
+
+  /** A call remembering when it was queued. */
+  private static class BenchmarkCall implements Schedulable {
+    private final UserGroupInformation ugi;
+    private int priorityLevel;
+    private long queuedNanos;
+
+    BenchmarkCall(UserGroupInformation ugi) {
+      this.ugi = ugi;
+    }
+
+    @Override
+    public UserGroupInformation getUserGroupInformation() {
+      return ugi;
+    }
+
+    @Override
+    public int getPriorityLevel() {
+      return priorityLevel;
+    }
+  }
+
+  /** Takes calls and records how long they have been queued. */
+  private static class Handler extends Thread {
+    private final CallQueueManager<BenchmarkCall> queue;
+    private final AtomicBoolean running;
+    private final long[] latencies = new long[MAX_SAMPLES];
+    private long taken;
+
+    Handler(CallQueueManager<BenchmarkCall> queue, AtomicBoolean running) {
+      this.queue = queue;
+      this.running = running;
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (running.get()) {
+          BenchmarkCall call = queue.take();
+          latencies[(int) (taken++ % MAX_SAMPLES)] =
+              System.nanoTime() - call.queuedNanos;
+        }
+      } catch (InterruptedException e) {
+        // done
+      }
+    }
+  }
+
+  /** Puts calls as fast as the queue accepts them. */
+  private static class Reader extends Thread {
+    private final CallQueueManager<BenchmarkCall> queue;
+    private final AtomicBoolean running;
+    private final BenchmarkCall[] callers;
+
+    Reader(CallQueueManager<BenchmarkCall> queue, AtomicBoolean running,
+        int users) {
+      this.queue = queue;
+      this.running = running;
+      this.callers = new BenchmarkCall[users];
+      for (int i = 0; i < users; i++) {
+        callers[i] = new BenchmarkCall(
+            UserGroupInformation.createRemoteUser("user" + i));
+      }
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      try {
+        for (long i = 0; running.get(); i++) {
+          BenchmarkCall caller = callers[(int) (i % callers.length)];
+          BenchmarkCall call = new BenchmarkCall(caller.ugi);
+          call.priorityLevel = queue.getPriorityLevel(call);
+          call.queuedNanos = System.nanoTime();
+          queue.put(call);
+        }
+      } catch (InterruptedException e) {
+        // done
+      }
+    }
+  }
+
+  private void run(MyOptions opts, int handlerCount) throws Exception {
+    Configuration benchConf = new Configuration(getConf());
+    benchConf.set(NS + "." + CommonConfigurationKeys.IPC_CALLQUEUE_IMPL_KEY,
+        opts.queueClass);
+    benchConf.setBoolean(NS + "." + FairCallQueue.IPC_CALLQUEUE_LOCK_FREE_KEY,
+        opts.lockFree);
+    int queueSize = opts.queueSize > 0 ? opts.queueSize : handlerCount * 100;
+    Class<? extends BlockingQueue<BenchmarkCall>> queueClass =
+        CallQueueManager.convertQueueClass(
+            benchConf.getClass(NS + "."
+                + CommonConfigurationKeys.IPC_CALLQUEUE_IMPL_KEY, null),
+            BenchmarkCall.class);
+    CallQueueManager<BenchmarkCall> queue =
+        new CallQueueManager<BenchmarkCall>(queueClass,
+            Server.getSchedulerClass(NS, benchConf), false, queueSize, NS,
+            benchConf);
+
+    AtomicBoolean running = new AtomicBoolean(true);
+    List<Thread> threads = new ArrayList<Thread>();
+    List<Handler> handlers = new ArrayList<Handler>();
+    for (int i = 0; i < handlerCount; i++) {
+      Handler handler = new Handler(queue, running);
+      handlers.add(handler);
+      threads.add(handler);
+    }
+    for (int i = 0; i < opts.readerThreads; i++) {
+      threads.add(new Reader(queue, running, opts.users));
+    }
+    for (Thread t : threads) {
+      t.start();
+    }
+    // warm up, then measure from a clean state
+    Thread.sleep(Math.min(1000, opts.secondsToRun * 100));
+    long[] takenAtStart = new long[handlerCount];
+    for (int i = 0; i < handlerCount; i++) {
+      takenAtStart[i] = handlers.get(i).taken;
+    }
+    long start = System.nanoTime();
+    Thread.sleep(TimeUnit.SECONDS.toMillis(opts.secondsToRun));
+    running.set(false);
+    long elapsed = System.nanoTime() - start;
+    for (Thread t : threads) {
+      t.interrupt();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+
+    long total = 0;
+    int samples = 0;
+    for (int i = 0; i < handlerCount; i++) {
+      Handler h = handlers.get(i);
+      total += h.taken - takenAtStart[i];
+      samples += (int) Math.min(h.taken, MAX_SAMPLES);
+    }
+    long[] latencies = new long[samples];
+    int pos = 0;
+    for (Handler h : handlers) {
+      int n = (int) Math.min(h.taken, MAX_SAMPLES);
+      System.arraycopy(h.latencies, 0, latencies, pos, n);
+      pos += n;
+    }
+    Arrays.sort(latencies);
+    System.out.println(String.format(
+        "%-45s handlers=%4d readers=%3d calls/s=%12.0f"
+        + " p50=%8dns p99=%10dns p99.9=%10dns",
+        opts.queueClass + (opts.lockFree ? " (lock-free)" : ""),
+        handlerCount, opts.readerThreads,
+        total * 1e9 / elapsed,
+        percentile(latencies, 0.5), percentile(latencies, 0.99),
+        percentile(latencies, 0.999)));
+  }
+
+  private static long percentile(long[] sorted, double p) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    return sorted[(int) Math.min(sorted.length - 1,
+        Math.floor(p * sorted.length))];
+  }
+
+  @Override
+  public int run(String[] args) throws Exception {
+    MyOptions opts = new MyOptions(args);
+    if (opts.failed) {
+      return -1;
+    }
+    for (int handlerCount : opts.handlerCounts) {
+      run(opts, handlerCount);
+    }
+    return 0;
+  }
+
+  @Override
+  public void setConf(Configuration conf) {
+    this.conf = conf;
+  }
+
+  @Override
+  public Configuration getConf() {
+    return conf;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int rc = ToolRunner.run(new CallQueueBenchmark(), args);
+    System.exit(rc);
+  }
+}
@@ -0,0 +1,61 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.ipc;
+
+import static org.junit.Assert.*;
+
+import org.apache.hadoop.util.ToolRunner;
+import org.junit.Test;
+
+
+public class TestCallQueueBenchmark {
+
+  @Test(timeout=30000)
+  public void testBenchmarkLinkedBlockingQueue() throws Exception {
+    int rc = ToolRunner.run(new CallQueueBenchmark(),
+        new String[] {
+      "--queue", "java.util.concurrent.LinkedBlockingQueue",
+      "--readerThreads", "2",
+      "--handlerThreads", "4,16",
+      "--time", "1"});
+    assertEquals(0, rc);
+  }
+
+  @Test(timeout=30000)
+  public void testBenchmarkLockFreeCallQueue() throws Exception {
+    int rc = ToolRunner.run(new CallQueueBenchmark(),
+        new String[] {
+      "--queue", "org.apache.hadoop.ipc.LockFreeCallQueue",
+      "--readerThreads", "2",
+      "--handlerThreads", "4,16",
+      "--time", "1"});
+    assertEquals(0, rc);
+  }
+
+  @Test(timeout=30000)
+  public void testBenchmarkLockFreeFairCallQueue() throws Exception {
+    int rc = ToolRunner.run(new CallQueueBenchmark(),
+        new String[] {
+      "--queue", "org.apache.hadoop.ipc.FairCallQueue",
+      "--lockFree",
+      "--readerThreads", "2",
+      "--handlerThreads", "4,16",
+      "--time", "1"});
+    assertEquals(0, rc);
+  }
+}
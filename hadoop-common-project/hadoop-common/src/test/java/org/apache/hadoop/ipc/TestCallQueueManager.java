@@ -192,6 +192,16 @@ public void testEmptyConsume() throws InterruptedException {
     assertCanTake(manager, 0, 1); // Fails since it's empty
   }
 
+  @Test
+  public void testLockFreeCallQueue() throws InterruptedException {
+    manager = new CallQueueManager<FakeCall>(
+        CallQueueManager.convertQueueClass(LockFreeCallQueue.class,
+            FakeCall.class), schedulerClass, false, 10, "", conf);
+
+    assertCanPut(manager, 10, 20); // Will stop at 10 due to capacity
+    assertCanTake(manager, 10, 20); // Will stop at 10 since it's empty
+  }
+
   static Class<? extends BlockingQueue<FakeCall>> getQueueClass(
       String prefix, Configuration conf) {
     String name = prefix + "." + CommonConfigurationKeys.IPC_CALLQUEUE_IMPL_KEY;
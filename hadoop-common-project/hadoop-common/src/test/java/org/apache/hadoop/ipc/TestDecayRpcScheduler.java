@@ -29,6 +29,7 @@
 import org.apache.hadoop.fs.CommonConfigurationKeys;
 import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
 import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.test.GenericTestUtils;
 import org.apache.hadoop.conf.Configuration;
 
 import javax.management.MBeanServer;
@@ -352,6 +353,50 @@ public void testUsingWeightedTimeCostProviderNoRequests() {
     assertEquals(0, scheduler.getPriorityLevel(mockCall("A")));
   }
 
+  @Test
+  public void testCallTimeSummary() throws Exception {
+    scheduler = getSchedulerWithWeightedTimeCostProvider(2);
+
+    ProcessingDetails details = new ProcessingDetails(TimeUnit.MILLISECONDS);
+    details.set(ProcessingDetails.Timing.PROCESSING, 30);
+    details.set(ProcessingDetails.Timing.LOCKSHARED, 10);
+    details.set(ProcessingDetails.Timing.LOCKEXCLUSIVE, 10);
+    scheduler.addResponseTime("ignored", mockCall("A"), details);
+    scheduler.addResponseTime("ignored", mockCall("A"), details);
+
+    assertEquals("{\"A\":{\"ProcessingTimeMs\":60,\"LockHoldTimeMs\":40}}",
+        scheduler.getCallTimeSummary());
+    scheduler.forceDecay();
+    assertEquals("{\"A\":{\"ProcessingTimeMs\":30,\"LockHoldTimeMs\":20}}",
+        scheduler.getCallTimeSummary());
+  }
+
+  @Test
+  public void testUserCostRate() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setLong("ns."
+        + DecayRpcScheduler.IPC_SCHEDULER_DECAYSCHEDULER_PERIOD_KEY, 999999);
+    conf.setLong("ns." + DecayRpcScheduler.IPC_DECAYSCHEDULER_USER_COST_RATE_KEY,
+        1000);
+    conf.setLong("ns." + DecayRpcScheduler.IPC_DECAYSCHEDULER_USER_COST_BURST_KEY,
+        2);
+    scheduler = new DecayRpcScheduler(2, "ns", conf);
+
+    // Each call costs 1 with the DefaultCostProvider
+    assertFalse(scheduler.shouldBackOff(mockCall("A")));
+    for (int i = 0; i < 1000; i++) {
+      getPriorityIncrementCallCount("A");
+    }
+    getPriorityIncrementCallCount("B");
+    assertTrue(scheduler.shouldBackOff(mockCall("A")));
+    assertFalse(scheduler.shouldBackOff(mockCall("B")));
+    assertEquals(1, scheduler.getRateLimitedCallCount());
+
+    // The budget is refilled at 1 per millisecond
+    final Schedulable call = mockCall("A");
+    GenericTestUtils.waitFor(() -> !scheduler.shouldBackOff(call), 10, 10000);
+  }
+
   /**
    * Get a scheduler that uses {@link WeightedTimeCostProvider} and has
    * normal decaying disabled.
@@ -297,6 +297,38 @@ private void checkOverflowException(Exception ex, RpcStatusProto status) {
 
   //
   // Ensure that FairCallQueue properly implements BlockingQueue
+  @Test
+  public void testLockFreeSubQueues() throws InterruptedException {
+    Configuration conf = new Configuration();
+    conf.setBoolean("ns." + FairCallQueue.IPC_CALLQUEUE_LOCK_FREE_KEY, true);
+    FairCallQueue<Schedulable> lockFreeFcq =
+        new FairCallQueue<Schedulable>(2, 10, "ns", conf);
+    assertEquals(10, lockFreeFcq.remainingCapacity());
+
+    // queue 0 holds 5 calls, then calls overflow into queue 1
+    List<Schedulable> calls = new ArrayList<Schedulable>();
+    for (int i = 0; i < 10; i++) {
+      Schedulable call = mockCall("c" + i);
+      calls.add(call);
+      lockFreeFcq.put(call);
+    }
+    assertEquals(10, lockFreeFcq.size());
+    assertEquals(0, lockFreeFcq.remainingCapacity());
+    assertFalse(lockFreeFcq.offer(mockCall("full")));
+    assertArrayEquals(new int[] {5, 5}, lockFreeFcq.getQueueSizes());
+
+    // every call comes out exactly once
+    List<Schedulable> taken = new ArrayList<Schedulable>();
+    for (int i = 0; i < 5; i++) {
+      taken.add(lockFreeFcq.take());
+    }
+    lockFreeFcq.drainTo(taken);
+    assertEquals(10, taken.size());
+    assertTrue(taken.containsAll(calls));
+    assertNull(lockFreeFcq.poll());
+    assertEquals(0, lockFreeFcq.size());
+  }
+
   @Test
   public void testPollReturnsNullWhenEmpty() {
     assertNull(fcq.poll());
@@ -128,6 +128,11 @@ public void setupConf() {
     UserGroupInformation.setConfiguration(conf);
   }
 
+  /** @return the configuration set up for the current test. */
+  protected static Configuration getConf() {
+    return conf;
+  }
+
   static final Random RANDOM = new Random();
 
   private static final String ADDRESS = "0.0.0.0";
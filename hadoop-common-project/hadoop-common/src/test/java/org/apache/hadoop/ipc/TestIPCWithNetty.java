@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.ipc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.net.NetUtils;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Run the IPC tests with the server accepting and reading connections on
+ * Netty event loops.
+ */
+public class TestIPCWithNetty extends TestIPC {
+  @Before
+  @Override
+  public void setupConf() {
+    super.setupConf();
+    getConf().setBoolean(
+        CommonConfigurationKeys.IPC_SERVER_NETTY_ENABLED_KEY, true);
+  }
+
+  /** A server whose handlers block until released. */
+  private static class BlockingServer extends Server {
+    private final CountDownLatch firstCallLatch = new CountDownLatch(1);
+    private final CountDownLatch callBlockLatch = new CountDownLatch(1);
+
+    BlockingServer(int callQ, Configuration conf) throws IOException {
+      super("0.0.0.0", 0, LongWritable.class, 1, 1, callQ, conf, null, null);
+    }
+
+    @Override
+    public Writable call(RPC.RpcKind rpcKind, String protocol, Writable param,
+        long receiveTime) throws IOException {
+      firstCallLatch.countDown();
+      try {
+        callBlockLatch.await();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      return param;
+    }
+  }
+
+  /**
+   * With a single event loop, a call that finds the call queue full must not
+   * stop the loop from accepting and serving other connections.
+   */
+  @Test(timeout=60000)
+  public void testFullCallQueueDoesNotBlockEventLoop() throws Exception {
+    final Configuration conf = getConf();
+    final BlockingServer server = new BlockingServer(1, conf);
+    final InetSocketAddress addr = NetUtils.getConnectAddress(server);
+    server.start();
+
+    // one call in the handler, one in the call queue, the rest waiting
+    final int clients = 4;
+    final AtomicInteger failures = new AtomicInteger(0);
+    final CountDownLatch callFinishedLatch = new CountDownLatch(clients);
+    Thread[] threads = new Thread[clients];
+    for (int i = 0; i < clients; i++) {
+      threads[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          Client client = new Client(LongWritable.class, conf);
+          try {
+            call(client, new LongWritable(Thread.currentThread().getId()),
+                addr, 60000, conf);
+          } catch (Throwable e) {
+            LOG.error(e.toString());
+            failures.incrementAndGet();
+          } finally {
+            callFinishedLatch.countDown();
+            client.stop();
+          }
+        }
+      });
+    }
+    try {
+      threads[0].start();
+      server.firstCallLatch.await();
+      threads[1].start();
+      GenericTestUtils.waitFor(() -> server.getCallQueueLen() == 1, 100, 10000);
+      threads[2].start();
+      GenericTestUtils.waitFor(() -> server.getNumOpenConnections() == 3,
+          100, 10000);
+      // the third call is waiting for room in the call queue; the event
+      // loop must still register a new connection
+      threads[3].start();
+      GenericTestUtils.waitFor(() -> server.getNumOpenConnections() == 4,
+          100, 10000);
+      assertEquals(clients, callFinishedLatch.getCount());
+    } finally {
+      server.callBlockLatch.countDown();
+    }
+    callFinishedLatch.await();
+    for (Thread t : threads) {
+      t.join();
+    }
+    assertEquals(0, failures.get());
+    server.stop();
+  }
+}
@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/** Tests for {@link LockFreeCallQueue}. */
+public class TestLockFreeCallQueue {
+
+  @Test
+  public void testFifoAndCapacity() {
+    LockFreeCallQueue<Integer> q = new LockFreeCallQueue<Integer>(3);
+    assertNull(q.poll());
+    assertNull(q.peek());
+    assertEquals(3, q.remainingCapacity());
+    // wrap around the ring a few times
+    for (int round = 0; round < 5; round++) {
+      assertTrue(q.offer(1));
+      assertTrue(q.offer(2));
+      assertTrue(q.offer(3));
+      assertFalse(q.offer(4));
+      assertEquals(3, q.size());
+      assertEquals(0, q.remainingCapacity());
+      assertEquals(Integer.valueOf(1), q.peek());
+      assertEquals(Integer.valueOf(1), q.poll());
+      assertTrue(q.offer(4));
+      List<Integer> drained = new ArrayList<Integer>();
+      assertEquals(2, q.drainTo(drained, 2));
+      assertEquals(Integer.valueOf(4), q.poll());
+      assertEquals(2, drained.size());
+      assertEquals(Integer.valueOf(2), drained.get(0));
+      assertEquals(Integer.valueOf(3), drained.get(1));
+      assertTrue(q.isEmpty());
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testTimeouts() throws InterruptedException {
+    LockFreeCallQueue<Integer> q = new LockFreeCallQueue<Integer>(1);
+    assertNull(q.poll(10, TimeUnit.MILLISECONDS));
+    assertTrue(q.offer(1, 10, TimeUnit.MILLISECONDS));
+    assertFalse(q.offer(2, 10, TimeUnit.MILLISECONDS));
+    assertEquals(Integer.valueOf(1), q.poll(10, TimeUnit.MILLISECONDS));
+  }
+
+  @Test(timeout = 10000)
+  public void testBlockingTakeAndPut() throws Exception {
+    final LockFreeCallQueue<Integer> q = new LockFreeCallQueue<Integer>(1);
+    final AtomicReference<Integer> taken = new AtomicReference<Integer>();
+    final CountDownLatch started = new CountDownLatch(1);
+    Thread consumer = new Thread() {
+      @Override
+      public void run() {
+        started.countDown();
+        try {
+          taken.set(q.take());
+        } catch (InterruptedException e) {
+          // ignored, checked below
+        }
+      }
+    };
+    consumer.start();
+    started.await();
+    Thread.sleep(50);
+    q.put(1);
+    consumer.join();
+    assertEquals(Integer.valueOf(1), taken.get());
+
+    // put blocks on a full queue until a call is taken
+    q.put(2);
+    Thread producer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          q.put(3);
+        } catch (InterruptedException e) {
+          // ignored, checked below
+        }
+      }
+    };
+    producer.start();
+    Thread.sleep(50);
+    assertTrue(producer.isAlive());
+    assertEquals(Integer.valueOf(2), q.take());
+    producer.join();
+    assertEquals(Integer.valueOf(3), q.take());
+  }
+
+  @Test(timeout = 10000)
+  public void testInterruptedTake() throws Exception {
+    final LockFreeCallQueue<Integer> q = new LockFreeCallQueue<Integer>(1);
+    final AtomicReference<Throwable> thrown = new AtomicReference<Throwable>();
+    Thread consumer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          q.take();
+        } catch (Throwable t) {
+          thrown.set(t);
+        }
+      }
+    };
+    consumer.start();
+    Thread.sleep(50);
+    consumer.interrupt();
+    consumer.join();
+    assertTrue(thrown.get() instanceof InterruptedException);
+  }
+
+  /** Every call is handed out exactly once, in spite of contention. */
+  @Test(timeout = 60000)
+  public void testConcurrentProducersAndConsumers() throws Exception {
+    final int producers = 8;
+    final int consumers = 8;
+    final int callsPerProducer = 50000;
+    final LockFreeCallQueue<Long> q = new LockFreeCallQueue<Long>(64);
+    final AtomicLong sum = new AtomicLong();
+    final AtomicLong count = new AtomicLong();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int p = 0; p < producers; p++) {
+      final long base = (long) p * callsPerProducer;
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (long i = 1; i <= callsPerProducer; i++) {
+              q.put(base + i);
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+    }
+    final long total = (long) producers * callsPerProducer;
+    for (int c = 0; c < consumers; c++) {
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          try {
+            while (count.get() < total) {
+              Long e = q.poll(10, TimeUnit.MILLISECONDS);
+              if (e != null) {
+                sum.addAndGet(e);
+                count.incrementAndGet();
+              }
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+    }
+    for (Thread t : threads) {
+      t.start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    assertEquals(total, count.get());
+    assertEquals(total * (total + 1) / 2, sum.get());
+    assertTrue(q.isEmpty());
+  }
+}
@@ -1103,6 +1103,75 @@ public TestRpcService run() {
     }
   }
 
+  /**
+   * Test that the rpc latency percentiles include the 99.9th and 99.99th
+   * ones when they are computed with histograms.
+   */
+  @Test(timeout = 30000)
+  public void testRpcMetricsHistogramQuantiles() throws Exception {
+    conf.setBoolean(CommonConfigurationKeys.RPC_METRICS_QUANTILE_ENABLE, true);
+    conf.setBoolean(
+        CommonConfigurationKeys.RPC_METRICS_QUANTILE_HISTOGRAM_ENABLE, true);
+    conf.set(CommonConfigurationKeys.RPC_METRICS_PERCENTILES_INTERVALS_KEY,
+        "1");
+    Server server = setupTestServer(conf, 5);
+    TestRpcService proxy = null;
+    try {
+      proxy = getClient(addr, conf);
+      for (int i = 0; i < 100; i++) {
+        proxy.ping(null, newEmptyRequest());
+      }
+      // let the window roll over
+      Thread.sleep(1500);
+      MetricsRecordBuilder rpcMetrics =
+          getMetrics(server.getRpcMetrics().name());
+      MetricsAsserts.assertQuantileGauges("RpcQueueTime1s", rpcMetrics);
+      for (String percentile : new String[] {"999", "9999"}) {
+        assertTrue(MetricsAsserts.getLongGauge("RpcProcessingTime1s"
+            + percentile + "thPercentileLatency", rpcMetrics) >= 0);
+      }
+    } finally {
+      stop(server, proxy);
+    }
+  }
+
+  /**
+   * Test that the server reuses pooled buffers for requests and responses,
+   * and hands all of them back once the responses have been sent.
+   */
+  @Test(timeout = 30000)
+  public void testRpcBufferPool() throws Exception {
+    conf.setBoolean(CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_ENABLED_KEY,
+        true);
+    conf.setInt(CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_MAX_SIZE_KEY,
+        64 * 1024);
+    final Server server = setupTestServer(conf, 5);
+    TestRpcService proxy = null;
+    try {
+      proxy = getClient(addr, conf);
+      for (int i = 0; i < 100; i++) {
+        proxy.ping(null, newEmptyRequest());
+        assertEquals("" + i,
+            proxy.echo(null, newEchoRequest("" + i)).getMessage());
+      }
+      // larger than the biggest pooled buffer
+      final char[] chars = new char[128 * 1024];
+      Arrays.fill(chars, 'x');
+      final String large = new String(chars);
+      assertEquals(large, proxy.echo(null, newEchoRequest(large)).getMessage());
+
+      GenericTestUtils.waitFor(
+          () -> server.getBufferPoolOutstanding() == 0, 10, 10000);
+      assertTrue("Expected buffers to be reused",
+          server.getBufferPoolHits() > 0);
+      MetricsRecordBuilder rpcMetrics =
+          getMetrics(server.getRpcMetrics().name());
+      assertGauge("RpcBufferPoolOutstanding", 0, rpcMetrics);
+    } finally {
+      stop(server, proxy);
+    }
+  }
+
   /**
    *  Test RPC backoff by queue full.
    */
@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/** Tests for {@link RpcBufferPool}. */
+public class TestRpcBufferPool {
+
+  @Test
+  public void testReuse() {
+    RpcBufferPool pool = new RpcBufferPool(4096, 2);
+    RpcBufferPool.Buffer b1 = pool.acquire(100);
+    assertEquals(100, b1.length());
+    assertEquals(RpcBufferPool.MIN_BUFFER_SIZE, b1.array().length);
+    assertEquals(100, b1.getByteBuffer().remaining());
+    assertEquals(1, pool.getOutstanding());
+    byte[] array = b1.array();
+    b1.release();
+    assertEquals(0, pool.getOutstanding());
+
+    RpcBufferPool.Buffer b2 = pool.acquire(RpcBufferPool.MIN_BUFFER_SIZE);
+    assertSame(array, b2.array());
+    assertEquals(1, pool.getHits());
+    assertEquals(1, pool.getMisses());
+
+    // a different size class does not share arrays
+    RpcBufferPool.Buffer b3 = pool.acquire(RpcBufferPool.MIN_BUFFER_SIZE + 1);
+    assertEquals(2 * RpcBufferPool.MIN_BUFFER_SIZE, b3.array().length);
+    assertNotSame(array, b3.array());
+    b2.release();
+    b3.release();
+    assertEquals(0, pool.getOutstanding());
+  }
+
+  @Test
+  public void testOversizedBuffersAreNotPooled() {
+    RpcBufferPool pool = new RpcBufferPool(4096, 2);
+    RpcBufferPool.Buffer b1 = pool.acquire(5000);
+    assertEquals(5000, b1.array().length);
+    byte[] array = b1.array();
+    b1.release();
+    RpcBufferPool.Buffer b2 = pool.acquire(5000);
+    assertNotSame(array, b2.array());
+    assertEquals(0, pool.getHits());
+    assertEquals(2, pool.getMisses());
+    b2.release();
+  }
+
+  @Test
+  public void testReferenceCounting() {
+    RpcBufferPool pool = new RpcBufferPool(4096, 2);
+    RpcBufferPool.Buffer b = pool.acquire(1000);
+    b.retain();
+    b.release();
+    assertEquals(1, pool.getOutstanding());
+    b.release();
+    assertEquals(0, pool.getOutstanding());
+    try {
+      b.release();
+      fail("Expected release of a released buffer to fail");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    try {
+      b.retain();
+      fail("Expected retain of a released buffer to fail");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testBoundedSizeClass() {
+    RpcBufferPool pool = new RpcBufferPool(4096, 1);
+    RpcBufferPool.Buffer b1 = pool.acquire(100);
+    RpcBufferPool.Buffer b2 = pool.acquire(100);
+    b1.release();
+    b2.release();
+    pool.acquire(100);
+    pool.acquire(100);
+    // only one array was kept
+    assertEquals(1, pool.getHits());
+    assertEquals(3, pool.getMisses());
+  }
+}
@@ -20,6 +20,7 @@
 
 import static org.apache.hadoop.metrics2.lib.Interns.info;
 import static org.apache.hadoop.test.MetricsAsserts.*;
+import static org.mockito.AdditionalMatchers.and;
 import static org.mockito.AdditionalMatchers.eq;
 import static org.mockito.AdditionalMatchers.geq;
 import static org.mockito.AdditionalMatchers.leq;
@@ -36,6 +37,7 @@
 
 import org.apache.hadoop.metrics2.MetricsRecordBuilder;
 import org.apache.hadoop.metrics2.util.Quantile;
+import org.apache.hadoop.metrics2.util.SampleQuantiles;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -409,4 +411,88 @@ public void testMutableQuantilesEmptyRollover() throws Exception {
     verify(mb, times(2)).addGauge(
         info("FooNumOps", "Number of ops for stat with 5s interval"), (long) 0);
   }
+
+  /**
+   * Test that {@link MutableHistogramQuantiles} reports the high percentiles
+   * of values added from several threads, and starts over at rollover.
+   */
+  @Test(timeout = 30000)
+  public void testMutableHistogramQuantiles() throws Exception {
+    MetricsRecordBuilder mb = mockMetricsRecordBuilder();
+    MetricsRegistry registry = new MetricsRegistry("test");
+    // Roll over manually
+    final MutableHistogramQuantiles quantiles =
+        registry.newHistogramQuantiles("foo", "stat", "Ops", "Latency", 3600);
+
+    final int threads = 4;
+    Thread[] adders = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      final int first = t + 1;
+      adders[t] = new Thread() {
+        @Override
+        public void run() {
+          for (long i = first; i <= 100000; i += threads) {
+            quantiles.add(i);
+          }
+        }
+      };
+      adders[t].start();
+    }
+    for (Thread t : adders) {
+      t.join();
+    }
+    quantiles.rollover();
+    quantiles.setChanged();
+    registry.snapshot(mb, false);
+
+    verify(mb).addGauge(
+        info("FooNumOps", "Number of ops for stat with 3600s interval"),
+        100000L);
+    String name = "Foo%sthPercentileLatency";
+    String desc = "%s percentile latency with 3600 second interval for stat";
+    String[][] percentiles = {{"50", "50"}, {"90", "90"}, {"99", "99"},
+        {"999", "99.9"}, {"9999", "99.99"}};
+    for (String[] p : percentiles) {
+      long expected = (long) (Double.parseDouble(p[1]) * 1000);
+      verify(mb).addGauge(eq(info(String.format(name, p[0]),
+          String.format(desc, p[1]))), and(geq(expected),
+          leq(expected + expected / 64)));
+    }
+
+    // the next window starts empty
+    quantiles.rollover();
+    assertEquals(0, quantiles.getEstimator().getCount());
+    quantiles.add(7);
+    assertEquals(1, quantiles.getEstimator().getCount());
+  }
+
+  /**
+   * Test that the estimator of a {@link MutableHistogramQuantiles} can be
+   * replaced, and is then rolled over in place.
+   */
+  @Test(timeout = 30000)
+  public void testMutableHistogramQuantilesSetEstimator() throws Exception {
+    MetricsRecordBuilder mb = mockMetricsRecordBuilder();
+    MetricsRegistry registry = new MetricsRegistry("test");
+    final MutableHistogramQuantiles quantiles =
+        registry.newHistogramQuantiles("foo", "stat", "Ops", "Latency", 3600);
+    SampleQuantiles estimator =
+        new SampleQuantiles(MutableHistogramQuantiles.HISTOGRAM_QUANTILES);
+    quantiles.setEstimator(estimator);
+    assertSame(estimator, quantiles.getEstimator());
+    for (long i = 1; i <= 1000; i++) {
+      quantiles.add(i);
+    }
+    assertEquals(1000, estimator.getCount());
+    quantiles.rollover();
+    quantiles.setChanged();
+    registry.snapshot(mb, false);
+    verify(mb).addGauge(
+        info("FooNumOps", "Number of ops for stat with 3600s interval"),
+        1000L);
+    verify(mb).addGauge(info("Foo50thPercentileLatency",
+        "50 percentile latency with 3600 second interval for stat"), 500L);
+    assertSame(estimator, quantiles.getEstimator());
+    assertEquals(0, estimator.getCount());
+  }
 }
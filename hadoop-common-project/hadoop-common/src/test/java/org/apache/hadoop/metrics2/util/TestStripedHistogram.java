@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metrics2.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestStripedHistogram {
+
+  static final Quantile[] quantiles = { new Quantile(0.50, 0),
+      new Quantile(0.90, 0), new Quantile(0.99, 0), new Quantile(0.999, 0),
+      new Quantile(0.9999, 0) };
+
+  /**
+   * Every value falls in a bucket whose largest value is at most 1/64 above
+   * it, and the buckets are contiguous.
+   */
+  @Test
+  public void testBuckets() {
+    for (long v = 0; v < 128; v++) {
+      assertEquals(v, StripedHistogram.index(v));
+      assertEquals(v, StripedHistogram.highestValue((int) v));
+    }
+    assertEquals(0, StripedHistogram.index(-5));
+    for (int i = 1; i < StripedHistogram.BUCKET_COUNT; i++) {
+      long lowest = StripedHistogram.highestValue(i - 1) + 1;
+      long highest = StripedHistogram.highestValue(i);
+      assertTrue(highest >= lowest);
+      assertEquals(i, StripedHistogram.index(lowest));
+      assertEquals(i, StripedHistogram.index(highest));
+      assertTrue("bucket " + i + " is too wide",
+          highest - lowest <= lowest / 64);
+    }
+    assertEquals(Long.MAX_VALUE,
+        StripedHistogram.highestValue(StripedHistogram.BUCKET_COUNT - 1));
+  }
+
+  @Test
+  public void testCountAndClear() {
+    StripedHistogram histogram = new StripedHistogram(quantiles);
+    assertEquals(0, histogram.getCount());
+    assertNull(histogram.snapshot());
+    // the stripes are only allocated once used
+    assertEquals(0, histogram.getAllocatedStripeCount());
+
+    histogram.insert(1337);
+    assertEquals(1, histogram.getAllocatedStripeCount());
+    histogram.insert(Long.MAX_VALUE);
+    assertEquals(2, histogram.getCount());
+
+    histogram.clear();
+    assertEquals(0, histogram.getCount());
+    assertNull(histogram.snapshot());
+  }
+
+  /**
+   * Check that the high quantiles of a shuffled stream are within 1/64 of
+   * the actual values.
+   */
+  @Test
+  public void testQuantiles() {
+    final int count = 1000000;
+    List<Long> values = new ArrayList<Long>(count);
+    for (long i = 1; i <= count; i++) {
+      values.add(i);
+    }
+    Collections.shuffle(values, new Random(0xDEADBEEF));
+    StripedHistogram histogram = new StripedHistogram(quantiles, 4);
+    for (long v : values) {
+      histogram.insert(v);
+    }
+    Map<Quantile, Long> snapshot = histogram.snapshot();
+    for (Quantile q : quantiles) {
+      long actual = (long) (q.quantile * count);
+      long estimate = snapshot.get(q);
+      assertTrue(q + " estimate " + estimate + " below " + actual,
+          estimate >= actual);
+      assertTrue(q + " estimate " + estimate + " too far from " + actual,
+          estimate <= actual + actual / 64);
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testConcurrentInserts() throws Exception {
+    final StripedHistogram histogram = new StripedHistogram(quantiles, 4);
+    assertEquals(4, histogram.getStripeCount());
+    final int threads = 8;
+    final int perThread = 100000;
+    List<Thread> inserters = new ArrayList<Thread>();
+    for (int t = 0; t < threads; t++) {
+      inserters.add(new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < perThread; i++) {
+            histogram.insert(i % 100);
+          }
+        }
+      });
+    }
+    for (Thread t : inserters) {
+      t.start();
+    }
+    for (Thread t : inserters) {
+      t.join();
+    }
+    assertEquals((long) threads * perThread, histogram.getCount());
+    assertTrue(histogram.getAllocatedStripeCount() <= 4);
+    assertEquals(Long.valueOf(49), histogram.snapshot().get(quantiles[0]));
+    assertEquals(Long.valueOf(99), histogram.snapshot().get(quantiles[4]));
+  }
+}
@@ -21,10 +21,14 @@
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeoutException;
 
@@ -38,6 +42,7 @@
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import org.apache.hadoop.conf.Configuration;
@@ -57,6 +62,7 @@ public class TestGroupsCaching {
   @Before
   public void setup() throws IOException {
     FakeGroupMapping.clearAll();
+    FakeBatchGroupMapping.BATCHES.clear();
     ExceptionalGroupMapping.resetRequestCount();
 
     conf = new Configuration();
@@ -188,6 +194,24 @@ public static void resume() {
     }
   }
 
+  public static class FakeBatchGroupMapping extends FakeGroupMapping
+      implements BatchGroupMappingServiceProvider {
+    // the users of each batch
+    private static final List<Collection<String>> BATCHES =
+        new CopyOnWriteArrayList<>();
+
+    @Override
+    public Map<String, List<String>> getGroupsForUsers(
+        Collection<String> users) throws IOException {
+      BATCHES.add(new ArrayList<>(users));
+      Map<String, List<String>> groups = new HashMap<>();
+      for (String user : users) {
+        groups.put(user, getGroups(user));
+      }
+      return groups;
+    }
+  }
+
   public static class ExceptionalGroupMapping extends ShellBasedUnixGroupsMapping {
     private static int requestCount = 0;
 
@@ -710,6 +734,112 @@ public Boolean get() {
     }
   }
 
+  @Test
+  public void testGroupListsShared() throws Exception {
+    Groups groups = new Groups(conf);
+    groups.cacheGroupsAdd(Arrays.asList(myGroups));
+    groups.refresh();
+    // the same groups are kept once, whichever the user
+    assertSame(groups.getGroups("user1"), groups.getGroups("user2"));
+    assertSame(groups.getGroups("user1").get(0),
+        groups.getGroups("user2").get(0));
+  }
+
+  @Test
+  public void testConcurrentLookupsBatched() throws Exception {
+    conf.setClass(CommonConfigurationKeys.HADOOP_SECURITY_GROUP_MAPPING,
+        FakeBatchGroupMapping.class, GroupMappingServiceProvider.class);
+    conf.setInt(
+        CommonConfigurationKeys.HADOOP_SECURITY_GROUPS_LOOKUP_BATCH_SIZE, 3);
+    final Groups groups = new Groups(conf);
+    groups.cacheGroupsAdd(Arrays.asList(myGroups));
+    groups.refresh();
+
+    // hold the first lookup, while the next users queue up
+    FakeGroupMapping.pause();
+    List<Thread> threads = new ArrayList<>();
+    final List<List<String>> results = new CopyOnWriteArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      final String user = "user" + i;
+      Thread t = new Thread(() -> {
+        try {
+          results.add(groups.getGroups(user));
+        } catch (IOException e) {
+          TESTLOG.error("Failed to get the groups of " + user, e);
+        }
+      });
+      threads.add(t);
+      t.start();
+      if (i == 0) {
+        GenericTestUtils.waitFor(() -> !FakeBatchGroupMapping.BATCHES.isEmpty(),
+            10, 10000);
+      }
+    }
+    GenericTestUtils.waitFor(() -> {
+      for (Thread t : threads) {
+        if (t.getState() != Thread.State.WAITING) {
+          return false;
+        }
+      }
+      return true;
+    }, 10, 10000);
+    FakeGroupMapping.resume();
+    for (Thread t : threads) {
+      t.join();
+    }
+
+    assertEquals(6, results.size());
+    for (List<String> result : results) {
+      assertEquals(2, result.size());
+    }
+    // one lookup for the first user, then the other five in batches of 3
+    assertEquals(3, FakeBatchGroupMapping.BATCHES.size());
+    assertEquals(1, FakeBatchGroupMapping.BATCHES.get(0).size());
+    assertEquals(3, FakeBatchGroupMapping.BATCHES.get(1).size());
+    assertEquals(2, FakeBatchGroupMapping.BATCHES.get(2).size());
+  }
+
+  @Test
+  public void testBackgroundRefreshBatched() throws Exception {
+    conf.setClass(CommonConfigurationKeys.HADOOP_SECURITY_GROUP_MAPPING,
+        FakeBatchGroupMapping.class, GroupMappingServiceProvider.class);
+    conf.setLong(
+        CommonConfigurationKeys.HADOOP_SECURITY_GROUPS_CACHE_SECS, 1);
+    conf.setBoolean(
+        CommonConfigurationKeys.HADOOP_SECURITY_GROUPS_CACHE_BACKGROUND_RELOAD,
+        true);
+    conf.setInt(
+        CommonConfigurationKeys.HADOOP_SECURITY_GROUPS_LOOKUP_BATCH_SIZE, 10);
+    FakeTimer timer = new FakeTimer();
+    final Groups groups = new Groups(conf, timer);
+    groups.cacheGroupsAdd(Arrays.asList(myGroups));
+    groups.refresh();
+
+    String[] users = {"one", "two", "three", "four", "five"};
+    for (String user : users) {
+      groups.getGroups(user);
+    }
+    assertEquals(users.length, FakeBatchGroupMapping.BATCHES.size());
+    FakeBatchGroupMapping.BATCHES.clear();
+
+    // expire the cache; the old groups are returned while refreshing
+    timer.advance(2 * 1000);
+    FakeGroupMapping.pause();
+    for (String user : users) {
+      assertEquals(2, groups.getGroups(user).size());
+    }
+    FakeGroupMapping.resume();
+    waitForGroupCounters(groups, 0, 0, 5, 0);
+
+    // the users queued behind the first lookup are refreshed together
+    int refreshed = 0;
+    for (Collection<String> batch : FakeBatchGroupMapping.BATCHES) {
+      refreshed += batch.size();
+    }
+    assertEquals(users.length, refreshed);
+    assertTrue(FakeBatchGroupMapping.BATCHES.size() <= 2);
+  }
+
   @Test
   public void testExceptionCallingLoadWithoutBackgroundRefreshReturnsOldValue()
       throws Exception {
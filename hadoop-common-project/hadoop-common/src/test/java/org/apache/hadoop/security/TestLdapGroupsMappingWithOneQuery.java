@@ -19,11 +19,15 @@
 package org.apache.hadoop.security;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
 import javax.naming.directory.Attribute;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.BasicAttributes;
 import javax.naming.directory.SearchControls;
 import javax.naming.directory.SearchResult;
 
@@ -74,6 +78,51 @@ public void testGetGroups() throws NamingException {
     doTestGetGroups(Arrays.asList(testGroups));
   }
 
+  @Test
+  public void testGetGroupsForUsers() throws NamingException {
+    // users are matched back case-insensitively, and the users not found
+    // have no groups
+    SearchResult alice = userResult("ALICE",
+        "CN=abc,DC=foo,DC=bar,DC=com", "CN=xyz,DC=foo,DC=bar,DC=com");
+    SearchResult bob = userResult("bob", "CN=sss,CN=foo,DC=bar,DC=com");
+    NamingEnumeration<SearchResult> results = mock(NamingEnumeration.class);
+    when(results.hasMoreElements()).thenReturn(true, true, false);
+    when(results.nextElement()).thenReturn(alice, bob);
+    when(getContext().search(anyString(), anyString(), any(Object[].class),
+        any(SearchControls.class))).thenReturn(results);
+
+    Configuration conf = getBaseConf("ldap://test");
+    conf.set(LdapGroupsMapping.MEMBEROF_ATTR_KEY, "memberOf");
+    LdapGroupsMapping groupsMapping = getGroupsMapping();
+    groupsMapping.setConf(conf);
+
+    Map<String, List<String>> groups = groupsMapping.getGroupsForUsers(
+        Arrays.asList("alice", "bob", "carol"));
+    Assert.assertEquals(Arrays.asList("abc", "xyz"), groups.get("alice"));
+    Assert.assertEquals(Arrays.asList("sss"), groups.get("bob"));
+    Assert.assertEquals(Collections.emptyList(), groups.get("carol"));
+
+    // a single query, for all the users
+    String userFilter = LdapGroupsMapping.USER_SEARCH_FILTER_DEFAULT;
+    verify(getContext(), times(1)).search(anyString(),
+        eq("(|" + userFilter
+            + userFilter.replace("{0}", "{1}")
+            + userFilter.replace("{0}", "{2}") + ")"),
+        eq(new Object[] {"alice", "bob", "carol"}),
+        any(SearchControls.class));
+  }
+
+  private static SearchResult userResult(String name, String... groupDNs) {
+    BasicAttributes attributes = new BasicAttributes();
+    attributes.put(new BasicAttribute("sAMAccountName", name));
+    Attribute memberOf = new BasicAttribute("memberOf");
+    for (String dn : groupDNs) {
+      memberOf.add(dn);
+    }
+    attributes.put(memberOf);
+    return new SearchResult(name, null, attributes);
+  }
+
   private void doTestGetGroups(List<String> expectedGroups)
       throws NamingException {
     String ldapUrl = "ldap://test";
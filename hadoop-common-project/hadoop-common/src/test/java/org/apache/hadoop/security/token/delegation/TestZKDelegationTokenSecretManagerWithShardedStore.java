@@ -0,0 +1,306 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.security.token.delegation;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+import com.google.common.base.Supplier;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.security.token.SecretManager;
+import org.apache.hadoop.security.token.Token;
+import org.apache.hadoop.security.token.delegation.web.DelegationTokenIdentifier;
+import org.apache.hadoop.security.token.delegation.web.DelegationTokenManager;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.zookeeper.data.Stat;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Runs the tests of {@link TestZKDelegationTokenSecretManager} with the
+ * tokens stored in shards.
+ */
+public class TestZKDelegationTokenSecretManagerWithShardedStore
+    extends TestZKDelegationTokenSecretManager {
+
+  private static final String SHARDS_PATH =
+      "/testPath/ZKDTSMRoot/ZKDTSMTokenShardsRoot";
+  private static final String TOKENS_PATH =
+      "/testPath/ZKDTSMRoot/ZKDTSMTokensRoot";
+
+  @Override
+  protected Configuration getSecretConf(String connectString) {
+    Configuration conf = super.getSecretConf(connectString);
+    conf.setBoolean(ZKDelegationTokenSecretManager.ZK_DTSM_SHARDED_TOKEN_STORE,
+        true);
+    conf.setInt(ZKDelegationTokenSecretManager.ZK_DTSM_TOKENS_PER_SHARD, 2);
+    return conf;
+  }
+
+  private static AbstractDelegationTokenIdentifier decode(
+      DelegationTokenManager tm, Token<DelegationTokenIdentifier> token)
+      throws Exception {
+    return tm.getDelegationTokenSecretManager().decodeTokenIdentifier(token);
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  @Test
+  public void testShards() throws Exception {
+    Configuration conf = getSecretConf(zkServer.getConnectString());
+    DelegationTokenManager tm1 = new DelegationTokenManager(conf,
+        new Text("bla"));
+    tm1.init();
+    List<Token<DelegationTokenIdentifier>> tokens =
+        new ArrayList<Token<DelegationTokenIdentifier>>();
+    for (int i = 0; i < 10; i++) {
+      tokens.add((Token<DelegationTokenIdentifier>) tm1.createToken(
+          UserGroupInformation.getCurrentUser(), "foo"));
+    }
+
+    CuratorFramework curator = CuratorFrameworkFactory.newClient(
+        zkServer.getConnectString(), new ExponentialBackoffRetry(1000, 3));
+    curator.start();
+    try {
+      // the tokens are written in znodes of two tokens
+      Set<Integer> shards = new HashSet<Integer>();
+      for (Token<DelegationTokenIdentifier> token : tokens) {
+        shards.add(decode(tm1, token).getSequenceNumber() / 2);
+      }
+      Assert.assertEquals(shards.size(),
+          curator.getChildren().forPath(SHARDS_PATH).size());
+
+      // a new secret manager loads the shards
+      DelegationTokenManager tm2 = new DelegationTokenManager(conf,
+          new Text("bla"));
+      tm2.init();
+      ZKDelegationTokenSecretManager zksm2 =
+          (ZKDelegationTokenSecretManager)
+          tm2.getDelegationTokenSecretManager();
+      for (Token<DelegationTokenIdentifier> token : tokens) {
+        Assert.assertNotNull(zksm2.getTokenInfoFromMemory(decode(tm2, token)));
+        tm2.verifyToken(token);
+      }
+
+      // cancelling both tokens of a shard removes its znode
+      int seqNum = decode(tm1, tokens.get(0)).getSequenceNumber();
+      for (Token<DelegationTokenIdentifier> token : tokens) {
+        if (decode(tm1, token).getSequenceNumber() / 2 == seqNum / 2) {
+          tm1.cancelToken(token, "foo");
+        }
+      }
+      Assert.assertNull(curator.checkExists().forPath(SHARDS_PATH + "/DTS_"
+          + (seqNum / 2)));
+      final AbstractDelegationTokenIdentifier cancelled =
+          decode(tm2, tokens.get(0));
+      GenericTestUtils.waitFor(new Supplier<Boolean>() {
+        @Override
+        public Boolean get() {
+          return zksm2.getTokenInfoFromMemory(cancelled) == null;
+        }
+      }, 100, 5000);
+      try {
+        tm2.verifyToken(tokens.get(0));
+        Assert.fail("Expected InvalidToken");
+      } catch (SecretManager.InvalidToken it) {
+        // Ignore
+      }
+      tm2.verifyToken(tokens.get(9));
+      verifyDestroy(tm2, conf);
+    } finally {
+      curator.close();
+    }
+    verifyDestroy(tm1, conf);
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  @Test
+  public void testMoveUnshardedTokens() throws Exception {
+    // tokens written one per znode, before switching to the shards
+    Configuration unshardedConf =
+        super.getSecretConf(zkServer.getConnectString());
+    DelegationTokenManager tm0 = new DelegationTokenManager(unshardedConf,
+        new Text("bla"));
+    tm0.init();
+    List<Token<DelegationTokenIdentifier>> tokens =
+        new ArrayList<Token<DelegationTokenIdentifier>>();
+    for (int i = 0; i < 5; i++) {
+      tokens.add((Token<DelegationTokenIdentifier>) tm0.createToken(
+          UserGroupInformation.getCurrentUser(), "foo"));
+    }
+    verifyDestroy(tm0, unshardedConf);
+
+    CuratorFramework curator = CuratorFrameworkFactory.newClient(
+        zkServer.getConnectString(), new ExponentialBackoffRetry(1000, 3));
+    curator.start();
+    try {
+      Assert.assertEquals(5,
+          curator.getChildren().forPath(TOKENS_PATH).size());
+
+      // the sharded store moves them to the shards on startup
+      Configuration conf = getSecretConf(zkServer.getConnectString());
+      DelegationTokenManager tm1 = new DelegationTokenManager(conf,
+          new Text("bla"));
+      tm1.init();
+      Assert.assertTrue(curator.getChildren().forPath(TOKENS_PATH).isEmpty());
+      Assert.assertFalse(
+          curator.getChildren().forPath(SHARDS_PATH).isEmpty());
+      for (Token<DelegationTokenIdentifier> token : tokens) {
+        tm1.verifyToken(token);
+      }
+      tm1.cancelToken(tokens.get(0), "foo");
+      verifyDestroy(tm1, conf);
+
+      // the next secret manager reads them from the shards only
+      DelegationTokenManager tm2 = new DelegationTokenManager(conf,
+          new Text("bla"));
+      tm2.init();
+      try {
+        tm2.verifyToken(tokens.get(0));
+        Assert.fail("Expected InvalidToken");
+      } catch (SecretManager.InvalidToken it) {
+        // Ignore
+      }
+      for (Token<DelegationTokenIdentifier> token
+          : tokens.subList(1, tokens.size())) {
+        tm2.verifyToken(token);
+      }
+      verifyDestroy(tm2, conf);
+    } finally {
+      curator.close();
+    }
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  @Test
+  public void testAsyncWrites() throws Exception {
+    Configuration conf = getSecretConf(zkServer.getConnectString());
+    conf.setBoolean(ZKDelegationTokenSecretManager.ZK_DTSM_TOKEN_SYNC_WRITES,
+        false);
+    conf.setLong(ZKDelegationTokenSecretManager.ZK_DTSM_TOKEN_FLUSH_INTERVAL,
+        100);
+    DelegationTokenManager tm1 = new DelegationTokenManager(conf,
+        new Text("bla"));
+    tm1.init();
+    DelegationTokenManager tm2 = new DelegationTokenManager(conf,
+        new Text("bla"));
+    tm2.init();
+    final List<Token<DelegationTokenIdentifier>> tokens =
+        new ArrayList<Token<DelegationTokenIdentifier>>();
+    for (int i = 0; i < 5; i++) {
+      tokens.add((Token<DelegationTokenIdentifier>) tm1.createToken(
+          UserGroupInformation.getCurrentUser(), "foo"));
+      tm1.verifyToken(tokens.get(i));
+    }
+    final ZKDelegationTokenSecretManager zksm2 =
+        (ZKDelegationTokenSecretManager)
+        tm2.getDelegationTokenSecretManager();
+    final AbstractDelegationTokenIdentifier last = decode(tm2, tokens.get(4));
+    GenericTestUtils.waitFor(new Supplier<Boolean>() {
+      @Override
+      public Boolean get() {
+        return zksm2.getTokenInfoFromMemory(last) != null;
+      }
+    }, 100, 5000);
+    for (Token<DelegationTokenIdentifier> token : tokens) {
+      tm2.verifyToken(token);
+    }
+    // the changes queued are written when stopping
+    tm1.cancelToken(tokens.get(0), "foo");
+    verifyDestroy(tm1, conf);
+    final AbstractDelegationTokenIdentifier cancelled =
+        decode(tm2, tokens.get(0));
+    GenericTestUtils.waitFor(new Supplier<Boolean>() {
+      @Override
+      public Boolean get() {
+        return zksm2.getTokenInfoFromMemory(cancelled) == null;
+      }
+    }, 100, 5000);
+    verifyDestroy(tm2, conf);
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  @Test
+  public void testCancelAfterRenewByAnotherManager() throws Exception {
+    Configuration conf = getSecretConf(zkServer.getConnectString());
+    conf.setInt(ZKDelegationTokenSecretManager.ZK_DTSM_TOKENS_PER_SHARD, 1);
+    DelegationTokenManager tm1 = new DelegationTokenManager(conf,
+        new Text("bla"));
+    tm1.init();
+    DelegationTokenManager tm2 = new DelegationTokenManager(conf,
+        new Text("bla"));
+    tm2.init();
+    Token<DelegationTokenIdentifier> token =
+        (Token<DelegationTokenIdentifier>) tm1.createToken(
+            UserGroupInformation.getCurrentUser(), "foo");
+    tm2.verifyToken(token);
+    ZKDelegationTokenSecretManager zksm1 =
+        (ZKDelegationTokenSecretManager)
+        tm1.getDelegationTokenSecretManager();
+    AbstractDelegationTokenIdentifier ident = decode(tm1, token);
+    String path = SHARDS_PATH + "/DTS_" + ident.getSequenceNumber();
+
+    CuratorFramework curator = CuratorFrameworkFactory.newClient(
+        zkServer.getConnectString(), new ExponentialBackoffRetry(1000, 3));
+    curator.start();
+    try {
+      Stat created = curator.checkExists().forPath(path);
+      tm1.renewToken(token, "foo");
+
+      // hold back the shard events of the first secret manager
+      final CountDownLatch latch = new CountDownLatch(1);
+      zksm1.getListenerThreadPool().submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          latch.await();
+          return null;
+        }
+      });
+      try {
+        // cancelling the only token of the shard removes its znode
+        tm2.cancelToken(token, "foo");
+        Assert.assertNull(curator.checkExists().forPath(path));
+        // the removal as seen by a cache which missed the renewal is older
+        // than the renewal, but still removes the token
+        zksm1.processTokenShard(new ChildData(path, created, null), true);
+        Assert.assertNull(zksm1.getTokenInfoFromMemory(ident));
+      } finally {
+        latch.countDown();
+      }
+      try {
+        tm1.verifyToken(token);
+        Assert.fail("Expected InvalidToken");
+      } catch (SecretManager.InvalidToken it) {
+        // Ignore
+      }
+    } finally {
+      curator.close();
+    }
+    verifyDestroy(tm2, conf);
+    verifyDestroy(tm1, conf);
+  }
+}
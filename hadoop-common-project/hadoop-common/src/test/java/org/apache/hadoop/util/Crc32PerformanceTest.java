@@ -164,6 +164,31 @@ public DataChecksum.Type crcType() {
         return DataChecksum.Type.CRC32C;
       }
     }
+
+    /** The path taken by all the callers of DataChecksum. */
+    abstract class AbstractBulk implements Crc32 {
+      @Override
+      public void verifyChunked(ByteBuffer data, int bytesPerCrc,
+          ByteBuffer sums, String filename, long basePos)
+              throws ChecksumException {
+        DataChecksum.newDataChecksum(crcType(), bytesPerCrc)
+            .verifyChunkedSums(data, sums, filename, basePos);
+      }
+    }
+
+    final class Bulk extends AbstractBulk {
+      @Override
+      public DataChecksum.Type crcType() {
+        return DataChecksum.Type.CRC32;
+      }
+    }
+
+    final class BulkC extends AbstractBulk {
+      @Override
+      public DataChecksum.Type crcType() {
+        return DataChecksum.Type.CRC32C;
+      }
+    }
   }
 
   final int dataLengthMB;
@@ -186,6 +211,8 @@ public DataChecksum.Type crcType() {
     }
     crcs.add(Crc32.PureJava.class);
     crcs.add(Crc32.PureJavaC.class);
+    crcs.add(Crc32.Bulk.class);
+    crcs.add(Crc32.BulkC.class);
 
     if (NativeCrc32.isAvailable()) {
       if (direct) {
@@ -123,6 +123,36 @@ void testCorrectness() throws ChecksumException {
     }
   }
 
+  @Test
+  public void testDirectAndArraySumsMatch() throws Exception {
+    for (DataChecksum.Type type : CHECKSUM_TYPES) {
+      DataChecksum checksum = DataChecksum.newDataChecksum(
+          type, BYTES_PER_CHUNK);
+      Harness array = new Harness(checksum, 1025, false);
+      Harness direct = new Harness(checksum, 1025, true);
+      direct.dataBuf.put(array.dataBuf.duplicate());
+      direct.dataBuf.position(DATA_OFFSET_IN_BUFFER);
+
+      checksum.calculateChunkedSums(array.dataBuf, array.checksumBuf);
+      checksum.calculateChunkedSums(direct.dataBuf, direct.checksumBuf);
+      assertEquals(array.checksumBuf, direct.checksumBuf);
+
+      // verify the array-backed data with the byte array entry point
+      byte[] data = array.dataBuf.array();
+      byte[] sums = array.checksumBuf.array();
+      checksum.verifyChunkedSums(data, DATA_OFFSET_IN_BUFFER, 1025,
+          sums, SUMS_OFFSET_IN_BUFFER, "fake file", 0);
+      data[DATA_OFFSET_IN_BUFFER + BYTES_PER_CHUNK]++;
+      try {
+        checksum.verifyChunkedSums(data, DATA_OFFSET_IN_BUFFER, 1025,
+            sums, SUMS_OFFSET_IN_BUFFER, "fake file", 0);
+        fail("Did not throw on bad data");
+      } catch (ChecksumException ce) {
+        assertEquals(BYTES_PER_CHUNK, ce.getPos());
+      }
+    }
+  }
+
   private void doBulkTest(DataChecksum checksum, int dataLength,
       boolean useDirect) throws Exception {
     System.err.println("Testing bulk checksums of length " +
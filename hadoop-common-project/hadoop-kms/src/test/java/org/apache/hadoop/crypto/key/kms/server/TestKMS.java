@@ -848,6 +848,18 @@ public Void call() throws Exception {
               ekv.getEncryptionKeyVersionName());
         }
 
+        // test decrypt batch
+        List<KeyVersion> kvs = kpExt.decryptEncryptedKeys(ekvs);
+        assertEquals(ekvs.size(), kvs.size());
+        for (int i = 0; i < kvs.size(); i++) {
+          assertEquals(KeyProviderCryptoExtension.EK,
+              kvs.get(i).getVersionName());
+          assertArrayEquals(kpExt.decryptEncryptedKey(ekvs.get(i))
+              .getMaterial(), kvs.get(i).getMaterial());
+        }
+        assertArrayEquals(k1.getMaterial(), kvs.get(0).getMaterial());
+        assertArrayEquals(k2.getMaterial(), kvs.get(1).getMaterial());
+
         // deleteKey()
         kp.deleteKey("k1");
 
@@ -1709,6 +1721,7 @@ public Void run() throws Exception {
               KeyProviderCryptoExtension kpCE = KeyProviderCryptoExtension.
                       createKeyProviderCryptoExtension(kp);
               kpCE.decryptEncryptedKey(encKv);
+              kpCE.decryptEncryptedKeys(Arrays.asList(encKv, encKv));
             } catch (Exception ex) {
               Assert.fail(ex.getMessage());
             }
@@ -1716,6 +1729,22 @@ public Void run() throws Exception {
           }
         });
 
+        doAs("GENERATE_EEK", new PrivilegedExceptionAction<Void>() {
+          @Override
+          public Void run() throws Exception {
+            KeyProvider kp = createProvider(uri, conf);
+            try {
+              KeyProviderCryptoExtension kpCE = KeyProviderCryptoExtension.
+                  createKeyProviderCryptoExtension(kp);
+              kpCE.decryptEncryptedKeys(Arrays.asList(encKv, encKv));
+              fail("Should not have been able to decryptEncryptedKeys");
+            } catch (AuthorizationException ex) {
+              LOG.info("decryptEncryptedKeys caught expected exception.", ex);
+            }
+            return null;
+          }
+        });
+
         doAs("GET_KEYS", new PrivilegedExceptionAction<Void>() {
           @Override
           public Void run() throws Exception {
@@ -23,6 +23,8 @@
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_CONTEXT;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_CONTEXT_DEFAULT;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_LOCAL_INTERFACES;
+import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_PREFETCH_ENCRYPTION_KEYS_ON_LIST_DEFAULT;
+import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_PREFETCH_ENCRYPTION_KEYS_ON_LIST_KEY;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_SERVER_DEFAULTS_VALIDITY_PERIOD_MS_DEFAULT;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_SERVER_DEFAULTS_VALIDITY_PERIOD_MS_KEY;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_TEST_DROP_NAMENODE_RESPONSE_NUM_DEFAULT;
@@ -242,6 +244,7 @@ public class DFSClient implements java.io.Closeable, RemotePeerFactory,
   private static volatile ThreadPoolExecutor STRIPED_READ_THREAD_POOL;
   private final int smallBufferSize;
   private final long serverDefaultsValidityPeriod;
+  private final boolean prefetchEncryptionKeysOnList;
 
   public DfsClientConf getConf() {
     return dfsClientConf;
@@ -376,6 +379,9 @@ public DFSClient(URI nameNodeUri, ClientProtocol rpcNamenode,
     this.serverDefaultsValidityPeriod =
             conf.getLong(DFS_CLIENT_SERVER_DEFAULTS_VALIDITY_PERIOD_MS_KEY,
       DFS_CLIENT_SERVER_DEFAULTS_VALIDITY_PERIOD_MS_DEFAULT);
+    this.prefetchEncryptionKeysOnList = conf.getBoolean(
+        DFS_CLIENT_PREFETCH_ENCRYPTION_KEYS_ON_LIST_KEY,
+        DFS_CLIENT_PREFETCH_ENCRYPTION_KEYS_ON_LIST_DEFAULT);
     Boolean writeDropBehind =
         (conf.get(DFS_CLIENT_CACHE_DROP_BEHIND_WRITES) == null) ?
             null : conf.getBoolean(DFS_CLIENT_CACHE_DROP_BEHIND_WRITES, false);
@@ -1661,13 +1667,44 @@ public DirectoryListing listPaths(String src,  byte[] startAfter)
   public DirectoryListing listPaths(String src,  byte[] startAfter,
       boolean needLocation) throws IOException {
     checkOpen();
+    final DirectoryListing listing;
     try (TraceScope ignored = newPathTraceScope("listPaths", src)) {
-      return namenode.getListing(src, startAfter, needLocation);
+      listing = namenode.getListing(src, startAfter, needLocation);
     } catch (RemoteException re) {
       throw re.unwrapRemoteException(AccessControlException.class,
           FileNotFoundException.class,
           UnresolvedPathException.class);
     }
+    if (prefetchEncryptionKeysOnList && listing != null) {
+      prefetchEncryptionKeys(listing.getPartialListing());
+    }
+    return listing;
+  }
+
+  /**
+   * Decrypt the EDEKs of the encrypted files of a listing with batch calls
+   * to the KeyProvider, so that opening these files is served from the
+   * decrypted key cache of the KMS client. A failure is only logged, since
+   * it is reported again when the file is opened.
+   */
+  private void prefetchEncryptionKeys(HdfsFileStatus[] statuses) {
+    List<FileEncryptionInfo> feInfos = new ArrayList<>();
+    for (HdfsFileStatus status : statuses) {
+      FileEncryptionInfo feInfo = status.getFileEncryptionInfo();
+      if (feInfo != null) {
+        feInfos.add(feInfo);
+      }
+    }
+    if (feInfos.isEmpty()) {
+      return;
+    }
+    try {
+      HdfsKMSUtil.decryptEncryptedDataEncryptionKeys(feInfos,
+          getKeyProvider());
+    } catch (IOException e) {
+      LOG.warn("Failed to prefetch the encryption keys of {} files",
+          feInfos.size(), e);
+    }
   }
 
   /**
@@ -25,6 +25,11 @@
 import java.io.InputStream;
 import java.net.URI;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
@@ -218,4 +223,37 @@ static KeyVersion decryptEncryptedDataEncryptionKey(FileEncryptionInfo
       throw new IOException(e);
     }
   }
+
+  /**
+   * Decrypts the EDEKs of several files by consulting the KeyProvider, with
+   * one batch request per encryption zone key rather than one per file.
+   */
+  static void decryptEncryptedDataEncryptionKeys(
+      Collection<FileEncryptionInfo> feInfos, KeyProvider keyProvider)
+      throws IOException {
+    if (keyProvider == null) {
+      throw new IOException("No KeyProvider is configured, cannot access" +
+          " an encrypted file");
+    }
+    Map<String, List<EncryptedKeyVersion>> ekvsByKey = new LinkedHashMap<>();
+    for (FileEncryptionInfo feInfo : feInfos) {
+      List<EncryptedKeyVersion> ekvs = ekvsByKey.get(feInfo.getKeyName());
+      if (ekvs == null) {
+        ekvs = new ArrayList<>();
+        ekvsByKey.put(feInfo.getKeyName(), ekvs);
+      }
+      ekvs.add(EncryptedKeyVersion.createForDecryption(
+          feInfo.getKeyName(), feInfo.getEzKeyVersionName(), feInfo.getIV(),
+          feInfo.getEncryptedDataEncryptionKey()));
+    }
+    try {
+      KeyProviderCryptoExtension cryptoProvider = KeyProviderCryptoExtension
+          .createKeyProviderCryptoExtension(keyProvider);
+      for (List<EncryptedKeyVersion> ekvs : ekvsByKey.values()) {
+        cryptoProvider.decryptEncryptedKeys(ekvs);
+      }
+    } catch (GeneralSecurityException e) {
+      throw new IOException(e);
+    }
+  }
 }
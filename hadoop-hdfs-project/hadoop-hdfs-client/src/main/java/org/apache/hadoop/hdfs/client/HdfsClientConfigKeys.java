@@ -121,6 +121,9 @@ public interface HdfsClientConfigKeys {
       "dfs.client.server-defaults.validity.period.ms";
   long    DFS_CLIENT_SERVER_DEFAULTS_VALIDITY_PERIOD_MS_DEFAULT =
       TimeUnit.HOURS.toMillis(1);
+  String  DFS_CLIENT_PREFETCH_ENCRYPTION_KEYS_ON_LIST_KEY =
+      "dfs.client.prefetch.encryption.keys.on.list";
+  boolean DFS_CLIENT_PREFETCH_ENCRYPTION_KEYS_ON_LIST_DEFAULT = false;
   String  DFS_CHECKSUM_TYPE_KEY = "dfs.checksum.type";
   String  DFS_CHECKSUM_TYPE_DEFAULT = "CRC32C";
   String  DFS_BYTES_PER_CHECKSUM_KEY = "dfs.bytes-per-checksum";
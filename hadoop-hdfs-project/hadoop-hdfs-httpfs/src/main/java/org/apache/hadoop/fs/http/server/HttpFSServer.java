@@ -94,6 +94,9 @@
 import java.util.List;
 import java.util.Map;
 
+import static org.apache.hadoop.hdfs.DFSConfigKeys.HTTPFS_BUFFER_SIZE_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.HTTP_BUFFER_SIZE_DEFAULT;
+
 /**
  * Main class of HttpFSServer server.
  * <p>
@@ -252,7 +255,10 @@ public InputStream run() throws Exception {
         Long len = params.get(LenParam.NAME, LenParam.class);
         AUDIT_LOG.info("[{}] offset [{}] len [{}]",
             new Object[] { path, offset, len });
-        InputStreamEntity entity = new InputStreamEntity(is, offset, len);
+        int bufferSize = fs.getConf().getInt(
+            HTTPFS_BUFFER_SIZE_KEY, HTTP_BUFFER_SIZE_DEFAULT);
+        InputStreamEntity entity =
+            new InputStreamEntity(is, offset, len, bufferSize);
         response = Response.ok(entity).type(MediaType.APPLICATION_OCTET_STREAM)
             .build();
       }
@@ -19,6 +19,8 @@
 package org.apache.hadoop.lib.wsrs;
 
 import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.fs.PositionedReadable;
+import org.apache.hadoop.fs.Seekable;
 import org.apache.hadoop.io.IOUtils;
 
 import javax.ws.rs.core.StreamingOutput;
@@ -28,14 +30,23 @@
 
 @InterfaceAudience.Private
 public class InputStreamEntity implements StreamingOutput {
+  private static final int DEFAULT_BUFFER_SIZE = 4096;
+
   private InputStream is;
   private long offset;
   private long len;
+  private int bufferSize;
 
-  public InputStreamEntity(InputStream is, long offset, long len) {
+  public InputStreamEntity(InputStream is, long offset, long len,
+      int bufferSize) {
     this.is = is;
     this.offset = offset;
     this.len = len;
+    this.bufferSize = bufferSize;
+  }
+
+  public InputStreamEntity(InputStream is, long offset, long len) {
+    this(is, offset, len, DEFAULT_BUFFER_SIZE);
   }
 
   public InputStreamEntity(InputStream is) {
@@ -44,11 +55,62 @@ public InputStreamEntity(InputStream is) {
 
   @Override
   public void write(OutputStream os) throws IOException {
-    IOUtils.skipFully(is, offset);
+    if (len >= 0 && len <= bufferSize && is instanceof PositionedReadable) {
+      // Small ranges are fetched with a single positional read, which avoids
+      // positioning the stream and reading ahead past the requested range.
+      try {
+        writeRange(os);
+      } finally {
+        is.close();
+        os.close();
+      }
+      return;
+    }
+    if (offset > 0 && is instanceof Seekable) {
+      ((Seekable) is).seek(offset);
+    } else {
+      IOUtils.skipFully(is, offset);
+    }
     if (len == -1) {
-      IOUtils.copyBytes(is, os, 4096, true);
+      IOUtils.copyBytes(is, os, bufferSize, true);
     } else {
-      IOUtils.copyBytes(is, os, len, true);
+      copyBytes(os);
+    }
+  }
+
+  private void writeRange(OutputStream os) throws IOException {
+    byte[] buf = new byte[(int) len];
+    int total = 0;
+    while (total < len) {
+      int n = ((PositionedReadable) is).read(offset + total, buf, total,
+          buf.length - total);
+      if (n < 0) {
+        break;
+      }
+      total += n;
+    }
+    os.write(buf, 0, total);
+  }
+
+  private void copyBytes(OutputStream os) throws IOException {
+    byte[] buf = new byte[(int) Math.min(bufferSize, Math.max(len, 1))];
+    long remaining = len;
+    try {
+      while (remaining > 0) {
+        int n = is.read(buf, 0, (int) Math.min(buf.length, remaining));
+        if (n < 0) {
+          break;
+        }
+        os.write(buf, 0, n);
+        remaining -= n;
+      }
+      os.close();
+      os = null;
+      is.close();
+      is = null;
+    } finally {
+      IOUtils.closeStream(os);
+      IOUtils.closeStream(is);
     }
   }
 }
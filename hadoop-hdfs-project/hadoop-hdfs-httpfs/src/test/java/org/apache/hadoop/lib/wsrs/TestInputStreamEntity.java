@@ -43,6 +43,20 @@ public void test() throws Exception {
     i.write(baos);
     baos.close();
     assertEquals(baos.toByteArray()[0], 'b');
+
+    is = new ByteArrayInputStream("abcdef".getBytes());
+    baos = new ByteArrayOutputStream();
+    i = new InputStreamEntity(is, 2, 3, 2);
+    i.write(baos);
+    baos.close();
+    assertEquals("cde", new String(baos.toByteArray()));
+
+    is = new ByteArrayInputStream("abc".getBytes());
+    baos = new ByteArrayOutputStream();
+    i = new InputStreamEntity(is, 1, 10, 2);
+    i.write(baos);
+    baos.close();
+    assertEquals("bc", new String(baos.toByteArray()));
   }
 
 }
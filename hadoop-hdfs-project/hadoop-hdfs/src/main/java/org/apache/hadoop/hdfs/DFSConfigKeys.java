@@ -74,6 +74,9 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_WEBHDFS_NETTY_HIGH_WATERMARK =
       "dfs.webhdfs.netty.high.watermark";
   public static final int  DFS_WEBHDFS_NETTY_HIGH_WATERMARK_DEFAULT = 65535;
+  public static final String  DFS_WEBHDFS_READ_CHUNK_SIZE_KEY =
+      "dfs.webhdfs.read.chunk.size";
+  public static final int  DFS_WEBHDFS_READ_CHUNK_SIZE_DEFAULT = 64 * 1024;
   public static final String  DFS_WEBHDFS_UGI_EXPIRE_AFTER_ACCESS_KEY =
       "dfs.webhdfs.ugi.expire.after.access";
   public static final int     DFS_WEBHDFS_UGI_EXPIRE_AFTER_ACCESS_DEFAULT =
@@ -445,6 +448,11 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final int
       DFS_NAMENODE_SNAPSHOT_DIFF_LISTING_LIMIT_DEFAULT = 1000;
 
+  public static final String DFS_NAMENODE_SNAPSHOT_DIFF_INDEX_ENABLED =
+      "dfs.namenode.snapshotdiff.index.enabled";
+  public static final boolean DFS_NAMENODE_SNAPSHOT_DIFF_INDEX_ENABLED_DEFAULT =
+      false;
+
   public static final String DFS_NAMENODE_SNAPSHOT_MAX_LIMIT =
       "dfs.namenode.snapshot.max.limit";
 
@@ -569,6 +577,10 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_METRICS_SESSION_ID_KEY =
       HdfsClientConfigKeys.DeprecatedKeys.DFS_METRICS_SESSION_ID_KEY;
   public static final String  DFS_METRICS_PERCENTILES_INTERVALS_KEY = "dfs.metrics.percentiles.intervals";
+  public static final String  DFS_METRICS_PERCENTILES_HISTOGRAM_ENABLED_KEY =
+      "dfs.metrics.percentiles.histogram.enabled";
+  public static final boolean DFS_METRICS_PERCENTILES_HISTOGRAM_ENABLED_DEFAULT =
+      false;
 
   public static final String  DFS_DATANODE_PEER_STATS_ENABLED_KEY =
       "dfs.datanode.peer.stats.enabled";
@@ -623,6 +635,16 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final int     DFS_BALANCER_MAX_NO_MOVE_INTERVAL_DEFAULT = 60*1000; // One minute
   public static final String  DFS_BALANCER_MAX_ITERATION_TIME_KEY = "dfs.balancer.max-iteration-time";
   public static final long    DFS_BALANCER_MAX_ITERATION_TIME_DEFAULT = 20 * 60 * 1000L; // 20 mins
+  public static final String  DFS_BALANCER_BLOCK_SELECTION_BY_BENEFIT_KEY = "dfs.balancer.block-selection.by-benefit";
+  public static final boolean DFS_BALANCER_BLOCK_SELECTION_BY_BENEFIT_DEFAULT = false;
+  public static final String  DFS_BALANCER_ADAPTIVE_CONCURRENCY_ENABLED_KEY = "dfs.balancer.adaptive-concurrency.enabled";
+  public static final boolean DFS_BALANCER_ADAPTIVE_CONCURRENCY_ENABLED_DEFAULT = false;
+  public static final String  DFS_BALANCER_ADAPTIVE_CONCURRENCY_TARGET_LATENCY_KEY = "dfs.balancer.adaptive-concurrency.target-latency";
+  public static final long    DFS_BALANCER_ADAPTIVE_CONCURRENCY_TARGET_LATENCY_DEFAULT = 60 * 1000L; // 1 min
+  public static final String  DFS_BALANCER_ADAPTIVE_CONCURRENCY_BUSY_XCEIVERS_KEY = "dfs.balancer.adaptive-concurrency.busy-xceivers";
+  public static final int     DFS_BALANCER_ADAPTIVE_CONCURRENCY_BUSY_XCEIVERS_DEFAULT = 1024;
+  public static final String  DFS_BALANCER_PROGRESS_REPORT_INTERVAL_KEY = "dfs.balancer.progress-report.interval";
+  public static final long    DFS_BALANCER_PROGRESS_REPORT_INTERVAL_DEFAULT = 60 * 1000L; // 1 min
 
 
   public static final String  DFS_MOVER_MOVEDWINWIDTH_KEY = "dfs.mover.movedWinWidth";
@@ -671,6 +693,12 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String DFS_SPS_MAX_OUTSTANDING_PATHS_KEY =
       "dfs.storage.policy.satisfier.max.outstanding.paths";
   public static final int DFS_SPS_MAX_OUTSTANDING_PATHS_DEFAULT = 10000;
+  public static final String DFS_SPS_SCAN_BATCH_SIZE_KEY =
+      "dfs.storage.policy.satisfier.scan.batch.size";
+  public static final int DFS_SPS_SCAN_BATCH_SIZE_DEFAULT = 100;
+  public static final String DFS_SPS_SCAN_LISTING_INTERVAL_MS_KEY =
+      "dfs.storage.policy.satisfier.scan.listing.interval.ms";
+  public static final long DFS_SPS_SCAN_LISTING_INTERVAL_MS_DEFAULT = 0L;
   // SPS datanode cache config, defaulting to 5mins.
   public static final String DFS_SPS_DATANODE_CACHE_REFRESH_INTERVAL_MS =
       "dfs.storage.policy.satisfier.datanode.cache.refresh.interval.ms";
@@ -774,6 +802,10 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final int     DFS_NAMENODE_DECOMMISSION_BLOCKS_PER_INTERVAL_DEFAULT = 500000;
   public static final String  DFS_NAMENODE_DECOMMISSION_MAX_CONCURRENT_TRACKED_NODES = "dfs.namenode.decommission.max.concurrent.tracked.nodes";
   public static final int     DFS_NAMENODE_DECOMMISSION_MAX_CONCURRENT_TRACKED_NODES_DEFAULT = 100;
+  public static final String  DFS_NAMENODE_DECOMMISSION_INCREMENTAL_TRACKING_ENABLED_KEY = "dfs.namenode.decommission.incremental.tracking.enabled";
+  public static final boolean DFS_NAMENODE_DECOMMISSION_INCREMENTAL_TRACKING_ENABLED_DEFAULT = false;
+  public static final String  DFS_NAMENODE_DECOMMISSION_INCREMENTAL_FULL_PRUNE_INTERVAL_KEY = "dfs.namenode.decommission.incremental.full.prune.interval";
+  public static final int     DFS_NAMENODE_DECOMMISSION_INCREMENTAL_FULL_PRUNE_INTERVAL_DEFAULT = 20;
   public static final String  DFS_NAMENODE_HANDLER_COUNT_KEY = "dfs.namenode.handler.count";
   public static final int     DFS_NAMENODE_HANDLER_COUNT_DEFAULT = 10;
   public static final String  DFS_NAMENODE_LIFELINE_HANDLER_RATIO_KEY =
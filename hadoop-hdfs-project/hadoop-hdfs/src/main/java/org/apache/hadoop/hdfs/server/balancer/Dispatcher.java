@@ -32,6 +32,7 @@
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -45,6 +46,8 @@
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -141,6 +144,18 @@ public class Dispatcher {
 
   private long maxIterationTime;
 
+  /** Move the blocks reducing the imbalance the most first. */
+  private final boolean blockSelectionByBenefit;
+  /** Adapt the concurrent moves per datanode to the observed latency. */
+  private final boolean adaptiveConcurrency;
+  private final long adaptiveConcurrencyTargetLatency;
+  private final int busyXceivers;
+  private final long progressReportInterval;
+
+  /** The start time and the bytes moved when the iteration started. */
+  private volatile long iterationStartTime;
+  private volatile long iterationStartBytesMoved;
+
   static class Allocator {
     private final int max;
     private int count = 0;
@@ -262,11 +277,24 @@ public String toString() {
      * Choose a good block/blockGroup from source & Get reportedBlock from
      * the block & Choose a proxy source for the reportedBlock.
      * 
+     * @param sizeToMove the remaining bytes to move from source to target
      * @return true if a block and its proxy are chosen; false otherwise
      */
-    private boolean chooseBlockAndProxy() {
+    private boolean chooseBlockAndProxy(long sizeToMove) {
       // source and target must have the same storage type
       final StorageType t = source.getStorageType();
+      if (blockSelectionByBenefit) {
+        // the source's blocks are sorted by size in descending order, so the
+        // first good block fitting in sizeToMove has the largest benefit
+        for (Iterator<DBlock> i = source.getBlockIterator(); i.hasNext();) {
+          final DBlock block = i.next();
+          if (source.getSizeToMove(block) <= sizeToMove
+              && markMovedIfGoodBlock(block, t)) {
+            i.remove();
+            return true;
+          }
+        }
+      }
       // iterate all source's blocks until find a good one
       for (Iterator<DBlock> i = source.getBlockIterator(); i.hasNext();) {
         if (markMovedIfGoodBlock(i.next(), t)) {
@@ -352,6 +380,7 @@ private void dispatch() {
       Socket sock = new Socket();
       DataOutputStream out = null;
       DataInputStream in = null;
+      final long startTime = Time.monotonicNow();
       try {
         if (source.isIterationOver()){
           LOG.info("Cancel moving " + this +
@@ -394,10 +423,15 @@ private void dispatch() {
         receiveResponse(in);
         nnc.getBytesMoved().addAndGet(reportedBlock.getNumBytes());
         target.getDDatanode().setHasSuccess();
+        final long latency = Time.monotonicNow() - startTime;
+        proxySource.adaptConcurrentMoves(latency);
+        target.getDDatanode().adaptConcurrentMoves(latency);
         LOG.info("Successfully moved " + this);
       } catch (IOException e) {
         LOG.warn("Failed to move " + this, e);
         target.getDDatanode().setHasFailure();
+        proxySource.reduceConcurrentMoves();
+        target.getDDatanode().reduceConcurrentMoves();
         // Check that the failure is due to block pinning errors.
         if (e instanceof BlockPinningException) {
           // Pinned block can't be moved. Add this block into failure list.
@@ -644,6 +678,13 @@ public boolean equals(Object obj) {
     private Map<Long, Set<DatanodeInfo>> blockPinningFailures = new HashMap<>();
     private volatile boolean hasSuccess = false;
     private ExecutorService moveExecutor;
+    private final int maxConcurrentMoves;
+    /**
+     * The adaptive limit of concurrent moves at this datanode, or 0 if the
+     * number of concurrent moves is not limited.
+     */
+    private int concurrentMovesLimit = 0;
+    private long targetMoveLatency;
 
     @Override
     public String toString() {
@@ -652,9 +693,59 @@ public String toString() {
 
     private DDatanode(DatanodeInfo datanode, int maxConcurrentMoves) {
       this.datanode = datanode;
+      this.maxConcurrentMoves = maxConcurrentMoves;
       this.pendings = new ArrayList<PendingMove>(maxConcurrentMoves);
     }
 
+    /**
+     * Limit the number of concurrent moves at this datanode. The initial limit
+     * is scaled down from the max concurrent moves by the transfer thread
+     * count reported by the datanode.
+     *
+     * @param busyXceivers the transfer thread count of a fully loaded node
+     * @param targetLatency the move latency above which the limit is reduced
+     */
+    synchronized void initConcurrentMovesLimit(int busyXceivers,
+        long targetLatency) {
+      final int xceivers = Math.min(datanode.getXceiverCount(), busyXceivers);
+      final int limit = (int) ((long) maxConcurrentMoves
+          * (busyXceivers - xceivers) / busyXceivers);
+      this.concurrentMovesLimit = Math.max(1, limit);
+      this.targetMoveLatency = targetLatency;
+      LOG.debug("{} initial concurrent moves limit {} with {} xceivers",
+          this, concurrentMovesLimit, xceivers);
+    }
+
+    /** @return the limit of concurrent moves, or 0 if not limited. */
+    @VisibleForTesting
+    synchronized int getConcurrentMovesLimit() {
+      return concurrentMovesLimit;
+    }
+
+    /**
+     * Increase the concurrent moves limit by one if a move completed within
+     * the target latency; otherwise, halve it.
+     */
+    synchronized void adaptConcurrentMoves(long latency) {
+      if (concurrentMovesLimit <= 0) {
+        return;
+      }
+      if (latency > targetMoveLatency) {
+        reduceConcurrentMoves();
+      } else if (concurrentMovesLimit < maxConcurrentMoves) {
+        concurrentMovesLimit++;
+      }
+    }
+
+    /** Halve the concurrent moves limit after a slow or failed move. */
+    synchronized void reduceConcurrentMoves() {
+      if (concurrentMovesLimit > 1) {
+        concurrentMovesLimit /= 2;
+        LOG.debug("{} reduced concurrent moves limit to {}", this,
+            concurrentMovesLimit);
+      }
+    }
+
     public DatanodeInfo getDatanodeInfo() {
       return datanode;
     }
@@ -712,6 +803,9 @@ synchronized boolean isPendingQEmpty() {
 
     /** Add a scheduled block move to the node */
     synchronized boolean addPendingBlock(PendingMove pendingBlock) {
+      if (concurrentMovesLimit > 0 && pendings.size() >= concurrentMovesLimit) {
+        return false;
+      }
       if (!isDelayActive()) {
         return pendings.add(pendingBlock);
       }
@@ -794,7 +888,8 @@ Iterator<DBlock> getBlockIterator() {
      * 
      * @return the total size of the received blocks in the number of bytes.
      */
-    private long getBlockList() throws IOException {
+    @VisibleForTesting
+    long getBlockList() throws IOException {
       final long size = Math.min(getBlocksSize, blocksToReceive);
       final BlocksWithLocations newBlksLocs =
           nnc.getBlocks(getDatanodeInfo(), size, getBlocksMinBlockSize);
@@ -850,9 +945,31 @@ private long getBlockList() throws IOException {
           }
         }
       }
+      if (blockSelectionByBenefit) {
+        Collections.sort(srcBlocks, new Comparator<DBlock>() {
+          @Override
+          public int compare(DBlock b1, DBlock b2) {
+            return Long.compare(getSizeToMove(b2), getSizeToMove(b1));
+          }
+        });
+      }
       return bytesReceived;
     }
 
+    /**
+     * @return the bytes moved by moving the given block from this source, i.e.
+     *         the internal block size for a block group.
+     */
+    private long getSizeToMove(DBlock block) {
+      if (block instanceof DBlockStriped) {
+        final DBlock internal = ((DBlockStriped) block).getInternalBlock(this);
+        if (internal != null) {
+          return internal.getNumBytes();
+        }
+      }
+      return block.getNumBytes();
+    }
+
     /** Decide if the given block is a good candidate to move or not */
     private boolean isGoodBlockCandidate(DBlock block) {
       // source and target must have the same storage type
@@ -877,14 +994,15 @@ private boolean isGoodBlockCandidate(DBlock block) {
      * 
      * @return a move that's good for the source to dispatch immediately.
      */
-    private PendingMove chooseNextMove() {
+    @VisibleForTesting
+    PendingMove chooseNextMove() {
       for (Iterator<Task> i = tasks.iterator(); i.hasNext();) {
         final Task task = i.next();
         final DDatanode target = task.target.getDDatanode();
         final PendingMove pendingBlock = new PendingMove(this, task.target);
         if (target.addPendingBlock(pendingBlock)) {
           // target is not busy, so do a tentative block allocation
-          if (pendingBlock.chooseBlockAndProxy()) {
+          if (pendingBlock.chooseBlockAndProxy(task.size)) {
             long blockSize = pendingBlock.reportedBlock.getNumBytes(this);
             incScheduledSize(-blockSize);
             task.size -= blockSize;
@@ -1058,6 +1176,23 @@ public Dispatcher(NameNodeConnector nnc, Set<String> includedNodes,
         HdfsClientConfigKeys.DFS_CLIENT_USE_DN_HOSTNAME_DEFAULT);
     placementPolicies = new BlockPlacementPolicies(conf, null, cluster, null);
     this.maxIterationTime = maxIterationTime;
+    this.blockSelectionByBenefit = conf.getBoolean(
+        DFSConfigKeys.DFS_BALANCER_BLOCK_SELECTION_BY_BENEFIT_KEY,
+        DFSConfigKeys.DFS_BALANCER_BLOCK_SELECTION_BY_BENEFIT_DEFAULT);
+    this.adaptiveConcurrency = conf.getBoolean(
+        DFSConfigKeys.DFS_BALANCER_ADAPTIVE_CONCURRENCY_ENABLED_KEY,
+        DFSConfigKeys.DFS_BALANCER_ADAPTIVE_CONCURRENCY_ENABLED_DEFAULT);
+    this.adaptiveConcurrencyTargetLatency = conf.getTimeDuration(
+        DFSConfigKeys.DFS_BALANCER_ADAPTIVE_CONCURRENCY_TARGET_LATENCY_KEY,
+        DFSConfigKeys.DFS_BALANCER_ADAPTIVE_CONCURRENCY_TARGET_LATENCY_DEFAULT,
+        TimeUnit.MILLISECONDS);
+    this.busyXceivers = Math.max(1, conf.getInt(
+        DFSConfigKeys.DFS_BALANCER_ADAPTIVE_CONCURRENCY_BUSY_XCEIVERS_KEY,
+        DFSConfigKeys.DFS_BALANCER_ADAPTIVE_CONCURRENCY_BUSY_XCEIVERS_DEFAULT));
+    this.progressReportInterval = Math.max(1, conf.getTimeDuration(
+        DFSConfigKeys.DFS_BALANCER_PROGRESS_REPORT_INTERVAL_KEY,
+        DFSConfigKeys.DFS_BALANCER_PROGRESS_REPORT_INTERVAL_DEFAULT,
+        TimeUnit.MILLISECONDS));
   }
 
   public DistributedFileSystem getDistributedFileSystem() {
@@ -1076,6 +1211,36 @@ long getBytesMoved() {
     return nnc.getBytesMoved().get();
   }
 
+  /** @return the bytes per second moved in the current iteration. */
+  long getIterationThroughput() {
+    final long elapsed = Time.monotonicNow() - iterationStartTime;
+    if (elapsed <= 0) {
+      return 0L;
+    }
+    return (getBytesMoved() - iterationStartBytesMoved) * 1000L / elapsed;
+  }
+
+  /**
+   * @return the estimated milliseconds to move the remaining scheduled bytes
+   *         of the current iteration, or -1 if nothing has been moved yet.
+   */
+  long getIterationEta() {
+    final long throughput = getIterationThroughput();
+    if (throughput <= 0) {
+      return -1L;
+    }
+    return bytesToMove() * 1000L / throughput;
+  }
+
+  private void logProgress() {
+    final long eta = getIterationEta();
+    LOG.info("Moved " + StringUtils.byteDesc(
+        getBytesMoved() - iterationStartBytesMoved) + " in this iteration at "
+        + StringUtils.byteDesc(getIterationThroughput()) + "/s, "
+        + StringUtils.byteDesc(bytesToMove()) + " left to schedule, ETA "
+        + (eta < 0 ? "unknown" : StringUtils.formatTime(eta)));
+  }
+
   long bytesToMove() {
     Preconditions.checkState(
         storageGroupMap.size() >= sources.size() + targets.size(),
@@ -1134,7 +1299,12 @@ public List<DatanodeStorageReport> init() throws IOException {
   }
 
   public DDatanode newDatanode(DatanodeInfo datanode) {
-    return new DDatanode(datanode, maxConcurrentMovesPerNode);
+    final DDatanode dn = new DDatanode(datanode, maxConcurrentMovesPerNode);
+    if (adaptiveConcurrency) {
+      dn.initConcurrentMovesLimit(busyXceivers,
+          adaptiveConcurrencyTargetLatency);
+    }
+    return dn;
   }
 
 
@@ -1182,6 +1352,8 @@ public boolean dispatchAndCheckContinue() throws InterruptedException {
    */
   private long dispatchBlockMoves() throws InterruptedException {
     final long bytesLastMoved = getBytesMoved();
+    iterationStartBytesMoved = bytesLastMoved;
+    iterationStartTime = Time.monotonicNow();
     final Future<?>[] futures = new Future<?>[sources.size()];
 
     int concurrentThreads = Math.min(sources.size(),
@@ -1231,12 +1403,18 @@ public void run() {
       }
     }
 
-    // wait for all dispatcher threads to finish
+    // wait for all dispatcher threads to finish and report the progress
     for (Future<?> future : futures) {
-      try {
-        future.get();
-      } catch (ExecutionException e) {
-        LOG.warn("Dispatcher thread failed", e.getCause());
+      for (;;) {
+        try {
+          future.get(progressReportInterval, TimeUnit.MILLISECONDS);
+          break;
+        } catch (ExecutionException e) {
+          LOG.warn("Dispatcher thread failed", e.getCause());
+          break;
+        } catch (TimeoutException e) {
+          logProgress();
+        }
       }
     }
 
@@ -3335,6 +3335,7 @@ private Block addStoredBlock(final BlockInfo block,
 
     // add block to the datanode
     AddBlockResult result = storageInfo.addBlock(storedBlock, reportedBlock);
+    datanodeManager.getDatanodeAdminManager().blockUpdated(storedBlock);
 
     int curReplicaDelta;
     if (result == AddBlockResult.ADDED) {
@@ -4419,6 +4420,7 @@ public void removeBlock(BlockInfo block) {
     // file already removes them from the block map below.
     block.setNumBytes(BlockCommand.NO_ACK);
     addToInvalidates(block);
+    datanodeManager.getDatanodeAdminManager().blockUpdated(block);
     removeBlockFromMap(block);
     // Remove the block from pendingReconstruction and neededReconstruction
     pendingReconstruction.remove(block);
@@ -20,9 +20,10 @@
 import static com.google.common.base.Preconditions.checkArgument;
 import static org.apache.hadoop.util.Time.monotonicNow;
 
-import java.util.AbstractList;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -118,10 +119,23 @@ public class DatanodeAdminManager {
    * However, this map can become out-of-date since it is not updated by block
    * reports or other events. Before being finally marking as decommissioned,
    * another check is done with the actual block map.
+   * <p/>
+   * With incremental tracking, the blocks are kept in a set instead, and
+   * the blocks changed by replica events are recorded in
+   * updatedNodeBlocks so that a monitor tick only re-checks those.
    */
-  private final TreeMap<DatanodeDescriptor, AbstractList<BlockInfo>>
+  private final TreeMap<DatanodeDescriptor, Collection<BlockInfo>>
       outOfServiceNodeBlocks;
 
+  /**
+   * Map containing the tracked blocks of a node in outOfServiceNodeBlocks
+   * whose replicas have changed since they were last checked. Only used with
+   * incremental tracking.
+   */
+  private final Map<DatanodeDescriptor, LightWeightHashSet<BlockInfo>>
+      updatedNodeBlocks;
+  private boolean incrementalTracking = false;
+
   /**
    * Tracking a node in outOfServiceNodeBlocks consumes additional memory. To
    * limit the impact on NN memory consumption, we limit the number of nodes in
@@ -140,6 +154,7 @@ public class DatanodeAdminManager {
         new ThreadFactoryBuilder().setNameFormat("DatanodeAdminMonitor-%d")
             .setDaemon(true).build());
     outOfServiceNodeBlocks = new TreeMap<>();
+    updatedNodeBlocks = new HashMap<>();
     pendingNodes = new ArrayDeque<>();
   }
 
@@ -181,14 +196,29 @@ void activate(Configuration conf) {
         "value for "
         + DFSConfigKeys.DFS_NAMENODE_DECOMMISSION_MAX_CONCURRENT_TRACKED_NODES);
 
-    monitor = new Monitor(blocksPerInterval, maxConcurrentTrackedNodes);
+    incrementalTracking = conf.getBoolean(
+        DFSConfigKeys.DFS_NAMENODE_DECOMMISSION_INCREMENTAL_TRACKING_ENABLED_KEY,
+        DFSConfigKeys
+            .DFS_NAMENODE_DECOMMISSION_INCREMENTAL_TRACKING_ENABLED_DEFAULT);
+    final int fullPruneInterval = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_DECOMMISSION_INCREMENTAL_FULL_PRUNE_INTERVAL_KEY,
+        DFSConfigKeys
+            .DFS_NAMENODE_DECOMMISSION_INCREMENTAL_FULL_PRUNE_INTERVAL_DEFAULT);
+    checkArgument(fullPruneInterval > 0, "Must set a positive value for "
+        + DFSConfigKeys
+            .DFS_NAMENODE_DECOMMISSION_INCREMENTAL_FULL_PRUNE_INTERVAL_KEY);
+
+    monitor = new Monitor(blocksPerInterval, maxConcurrentTrackedNodes,
+        fullPruneInterval);
     executor.scheduleAtFixedRate(monitor, intervalSecs, intervalSecs,
         TimeUnit.SECONDS);
 
     LOG.debug("Activating DatanodeAdminManager with interval {} seconds, " +
             "{} max blocks per interval, " +
-            "{} max concurrently tracked nodes.", intervalSecs,
-        blocksPerInterval, maxConcurrentTrackedNodes);
+            "{} max concurrently tracked nodes, " +
+            "incremental tracking {}.", intervalSecs,
+        blocksPerInterval, maxConcurrentTrackedNodes,
+        incrementalTracking ? "enabled" : "disabled");
   }
 
   /**
@@ -242,6 +272,7 @@ public void stopDecommission(DatanodeDescriptor node) {
       // Remove from tracking in DatanodeAdminManager
       pendingNodes.remove(node);
       outOfServiceNodeBlocks.remove(node);
+      updatedNodeBlocks.remove(node);
     } else {
       LOG.trace("stopDecommission: Node {} in {}, nothing to do.",
           node, node.getAdminState());
@@ -321,12 +352,43 @@ public void stopMaintenance(DatanodeDescriptor node) {
       // Remove from tracking in DatanodeAdminManager
       pendingNodes.remove(node);
       outOfServiceNodeBlocks.remove(node);
+      updatedNodeBlocks.remove(node);
     } else {
       LOG.trace("stopMaintenance: Node {} in {}, nothing to do.",
           node, node.getAdminState());
     }
   }
 
+  /**
+   * Record that the replicas of a block have changed, e.g. a replica was
+   * added by a block report or a completed replication, or the block was
+   * deleted. With incremental tracking, the block is re-checked on the next
+   * monitor tick for each tracked node on which it is insufficiently stored.
+   * <p/>
+   * Must be called with the namesystem write lock held.
+   */
+  void blockUpdated(BlockInfo block) {
+    if (!incrementalTracking || outOfServiceNodeBlocks.isEmpty()) {
+      return;
+    }
+    for (DatanodeStorageInfo storage :
+        blockManager.blocksMap.getStorages(block)) {
+      final DatanodeDescriptor dn = storage.getDatanodeDescriptor();
+      if (!dn.isDecommissionInProgress() && !dn.isEnteringMaintenance()) {
+        continue;
+      }
+      final Collection<BlockInfo> blocks = outOfServiceNodeBlocks.get(dn);
+      if (blocks != null && blocks.contains(block)) {
+        LightWeightHashSet<BlockInfo> updated = updatedNodeBlocks.get(dn);
+        if (updated == null) {
+          updated = new LightWeightHashSet<>();
+          updatedNodeBlocks.put(dn, updated);
+        }
+        updated.add(block);
+      }
+    }
+  }
+
   private void setDecommissioned(DatanodeDescriptor dn) {
     dn.setDecommissioned();
     LOG.info("Decommissioning complete for node {}", dn);
@@ -436,6 +498,11 @@ public int getNumNodesChecked() {
     return monitor.numNodesChecked;
   }
 
+  @VisibleForTesting
+  public int getNumBlocksChecked() {
+    return monitor.numBlocksChecked;
+  }
+
   /**
    * Checks to see if datanodes have finished DECOMMISSION_INPROGRESS or
    * ENTERING_MAINTENANCE state.
@@ -471,10 +538,21 @@ private class Monitor implements Runnable {
      */
     private DatanodeDescriptor iterkey = new DatanodeDescriptor(
         new DatanodeID("", "", "", 0, 0, 0, 0));
+    /**
+     * With incremental tracking, the number of ticks after which all the
+     * tracked blocks of the nodes are re-checked.
+     */
+    private final int fullPruneInterval;
+    /**
+     * The number of ticks run so far.
+     */
+    private long numTicks = 0;
 
-    Monitor(int numBlocksPerCheck, int maxConcurrentTrackedNodes) {
+    Monitor(int numBlocksPerCheck, int maxConcurrentTrackedNodes,
+        int fullPruneInterval) {
       this.numBlocksPerCheck = numBlocksPerCheck;
       this.maxConcurrentTrackedNodes = maxConcurrentTrackedNodes;
+      this.fullPruneInterval = fullPruneInterval;
     }
 
     private boolean exceededNumBlocksPerCheck() {
@@ -493,6 +571,7 @@ public void run() {
       numBlocksChecked = 0;
       numBlocksCheckedPerLock = 0;
       numNodesChecked = 0;
+      numTicks++;
       // Check decommission or maintenance progress.
       namesystem.writeLock();
       try {
@@ -520,7 +599,7 @@ private void processPendingNodes() {
     }
 
     private void check() {
-      final Iterator<Map.Entry<DatanodeDescriptor, AbstractList<BlockInfo>>>
+      final Iterator<Map.Entry<DatanodeDescriptor, Collection<BlockInfo>>>
           it = new CyclicIteration<>(outOfServiceNodeBlocks,
               iterkey).iterator();
       final List<DatanodeDescriptor> toRemove = new ArrayList<>();
@@ -528,10 +607,10 @@ private void check() {
       while (it.hasNext() && !exceededNumBlocksPerCheck() && namesystem
           .isRunning()) {
         numNodesChecked++;
-        final Map.Entry<DatanodeDescriptor, AbstractList<BlockInfo>>
+        final Map.Entry<DatanodeDescriptor, Collection<BlockInfo>>
             entry = it.next();
         final DatanodeDescriptor dn = entry.getKey();
-        AbstractList<BlockInfo> blocks = entry.getValue();
+        Collection<BlockInfo> blocks = entry.getValue();
         boolean fullScan = false;
         if (dn.isMaintenance() && dn.maintenanceExpired()) {
           // If maintenance expires, stop tracking it.
@@ -551,6 +630,7 @@ private void check() {
               "insufficiently-replicated blocks.", dn);
           blocks = handleInsufficientlyStored(dn);
           outOfServiceNodeBlocks.put(dn, blocks);
+          updatedNodeBlocks.remove(dn);
           fullScan = true;
         } else {
           // This is a known datanode, check if its # of insufficiently
@@ -571,6 +651,7 @@ private void check() {
                 + "blocks, checking with the full block map.", dn);
             blocks = handleInsufficientlyStored(dn);
             outOfServiceNodeBlocks.put(dn, blocks);
+            updatedNodeBlocks.remove(dn);
           }
           // If the full scan is clean AND the node liveness is okay,
           // we can finally mark as DECOMMISSIONED or IN_MAINTENANCE.
@@ -609,15 +690,34 @@ private void check() {
         Preconditions.checkState(dn.isDecommissioned() || dn.isInService(),
             "Removing a node that is not yet decommissioned or in service!");
         outOfServiceNodeBlocks.remove(dn);
+        updatedNodeBlocks.remove(dn);
       }
     }
 
     /**
-     * Removes reliable blocks from the block list of a datanode.
+     * Removes reliable blocks from the block list of a datanode. With
+     * incremental tracking, only the blocks updated since the last check are
+     * re-checked, except every fullPruneInterval ticks.
      */
     private void pruneReliableBlocks(final DatanodeDescriptor datanode,
-        AbstractList<BlockInfo> blocks) {
-      processBlocksInternal(datanode, blocks.iterator(), null, true);
+        Collection<BlockInfo> blocks) {
+      if (!incrementalTracking || numTicks % fullPruneInterval == 0) {
+        updatedNodeBlocks.remove(datanode);
+        processBlocksInternal(datanode, blocks.iterator(), null, true);
+        return;
+      }
+      final LightWeightHashSet<BlockInfo> updated =
+          updatedNodeBlocks.remove(datanode);
+      if (updated == null) {
+        LOG.debug("No tracked block of {} has been updated", datanode);
+        return;
+      }
+      LOG.debug("Checking {} updated blocks of {}", updated.size(), datanode);
+      processBlocksInternal(datanode,
+          new TrackedBlockIterator(blocks, updated.iterator()), null, true,
+          false);
+      datanode.getLeavingServiceStatus().setUnderReplicatedBlocks(
+          blocks.size());
     }
 
     /**
@@ -629,9 +729,11 @@ private void pruneReliableBlocks(final DatanodeDescriptor datanode,
      *
      * @return List of blocks requiring recovery
      */
-    private AbstractList<BlockInfo> handleInsufficientlyStored(
+    private Collection<BlockInfo> handleInsufficientlyStored(
         final DatanodeDescriptor datanode) {
-      AbstractList<BlockInfo> insufficient = new ChunkedArrayList<>();
+      Collection<BlockInfo> insufficient = incrementalTracking
+          ? new LightWeightHashSet<BlockInfo>()
+          : new ChunkedArrayList<BlockInfo>();
       processBlocksInternal(datanode, datanode.getBlockIterator(),
           insufficient, false);
       return insufficient;
@@ -655,8 +757,24 @@ private AbstractList<BlockInfo> handleInsufficientlyStored(
     private void processBlocksInternal(
         final DatanodeDescriptor datanode,
         final Iterator<BlockInfo> it,
-        final List<BlockInfo> insufficientList,
+        final Collection<BlockInfo> insufficientList,
         boolean pruneReliableBlocks) {
+      processBlocksInternal(datanode, it, insufficientList,
+          pruneReliableBlocks, true);
+    }
+
+    /**
+     * @param updateLeavingServiceStatus  whether the iterator covers all the
+     *                                    insufficiently stored blocks of the
+     *                                    datanode, so that the counts can be
+     *                                    set in its leaving service status
+     */
+    private void processBlocksInternal(
+        final DatanodeDescriptor datanode,
+        final Iterator<BlockInfo> it,
+        final Collection<BlockInfo> insufficientList,
+        boolean pruneReliableBlocks,
+        boolean updateLeavingServiceStatus) {
       boolean firstReplicationLog = true;
       // Low redundancy in UC Blocks only
       int lowRedundancyBlocksInOpenFiles = 0;
@@ -765,9 +883,43 @@ private void processBlocksInternal(
         }
       }
 
-      datanode.getLeavingServiceStatus().set(lowRedundancyBlocksInOpenFiles,
-          lowRedundancyOpenFiles, lowRedundancyBlocks,
-          outOfServiceOnlyReplicas);
+      if (updateLeavingServiceStatus) {
+        datanode.getLeavingServiceStatus().set(lowRedundancyBlocksInOpenFiles,
+            lowRedundancyOpenFiles, lowRedundancyBlocks,
+            outOfServiceOnlyReplicas);
+      }
+    }
+  }
+
+  /**
+   * Iterates over the updated blocks of a datanode, removing a block from the
+   * tracked blocks of the datanode on {@link #remove()}.
+   */
+  private static class TrackedBlockIterator implements Iterator<BlockInfo> {
+    private final Collection<BlockInfo> tracked;
+    private final Iterator<BlockInfo> updated;
+    private BlockInfo current;
+
+    TrackedBlockIterator(Collection<BlockInfo> tracked,
+        Iterator<BlockInfo> updated) {
+      this.tracked = tracked;
+      this.updated = updated;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return updated.hasNext();
+    }
+
+    @Override
+    public BlockInfo next() {
+      current = updated.next();
+      return current;
+    }
+
+    @Override
+    public void remove() {
+      tracked.remove(current);
     }
   }
 
@@ -853,6 +853,13 @@ synchronized void set(int lowRedundancyBlocksInOpenFiles,
       outOfServiceOnlyReplicas = outOfServiceOnlyRep;
     }
 
+    synchronized void setUnderReplicatedBlocks(int underRepBlocks) {
+      if (!isDecommissionInProgress() && !isEnteringMaintenance()) {
+        return;
+      }
+      underReplicatedBlocks = underRepBlocks;
+    }
+
     /** @return the number of under-replicated blocks */
     public synchronized int getUnderReplicatedBlocks() {
       if (!isDecommissionInProgress() && !isEnteringMaintenance()) {
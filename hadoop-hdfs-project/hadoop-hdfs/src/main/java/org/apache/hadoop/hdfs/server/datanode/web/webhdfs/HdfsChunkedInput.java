@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.web.webhdfs;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+import org.slf4j.Logger;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.client.HdfsDataInputStream;
+import org.apache.hadoop.io.IOUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link ChunkedInput} that streams the content of an HDFS file into
+ * buffers obtained from the channel's allocator.
+ *
+ * Unlike {@link io.netty.handler.stream.ChunkedStream}, the data is read
+ * through {@link HdfsDataInputStream#read(ByteBuffer)} directly into pooled
+ * direct buffers, so that no intermediate heap array is allocated and copied
+ * for every chunk. Ranges that fit in a single chunk are served with one
+ * positional read, which lets the client fetch only the requested bytes
+ * instead of setting up a block reader for the rest of the block.
+ */
+class HdfsChunkedInput implements ChunkedInput<ByteBuf> {
+  private static final Logger LOG = WebHdfsHandler.LOG;
+
+  private final DFSClient client;
+  private final HdfsDataInputStream in;
+  private final int chunkSize;
+  /** Number of bytes left to send, or -1 if unknown. */
+  private long remaining;
+  /** Whether the whole range is fetched with a positional read. */
+  private final boolean positional;
+  /** Offset in the file of the next byte to send. */
+  private long position;
+  private boolean endOfInput;
+
+  HdfsChunkedInput(DFSClient client, HdfsDataInputStream in, long offset,
+      long length, int chunkSize) {
+    this.client = client;
+    this.in = in;
+    this.position = offset;
+    this.remaining = length;
+    this.chunkSize = chunkSize;
+    this.positional = length >= 0 && length <= chunkSize;
+    this.endOfInput = length == 0;
+  }
+
+  @Override
+  public boolean isEndOfInput() throws Exception {
+    return endOfInput;
+  }
+
+  @Override
+  public void close() throws Exception {
+    IOUtils.cleanupWithLogger(LOG, in);
+    client.close();
+  }
+
+  @Override
+  public ByteBuf readChunk(ChannelHandlerContext ctx) throws Exception {
+    if (endOfInput) {
+      return null;
+    }
+    final int toRead = remaining >= 0 ?
+        (int) Math.min(chunkSize, remaining) : chunkSize;
+    final ByteBuf buf = ctx.alloc().directBuffer(toRead);
+    boolean release = true;
+    try {
+      final ByteBuffer dst = buf.nioBuffer(0, toRead);
+      final int n = positional ? readPositional(dst) : readSequential(dst);
+      if (n <= 0) {
+        endOfInput = true;
+        return null;
+      }
+      buf.writerIndex(n);
+      position += n;
+      if (remaining >= 0) {
+        remaining -= n;
+        if (remaining == 0) {
+          endOfInput = true;
+        }
+      }
+      release = false;
+      return buf;
+    } finally {
+      if (release) {
+        buf.release();
+      }
+    }
+  }
+
+  /**
+   * Fill the buffer from the current stream position, stopping early only at
+   * the end of the file.
+   */
+  private int readSequential(ByteBuffer dst) throws IOException {
+    int total = 0;
+    while (dst.hasRemaining()) {
+      int n = in.read(dst);
+      if (n <= 0) {
+        break;
+      }
+      total += n;
+    }
+    return total;
+  }
+
+  /**
+   * Fetch the whole range with positional reads. The stream position is
+   * left untouched.
+   */
+  private int readPositional(ByteBuffer dst) throws IOException {
+    int total = 0;
+    while (dst.hasRemaining()) {
+      int n = in.read(position + total, dst);
+      if (n <= 0) {
+        break;
+      }
+      total += n;
+    }
+    return total;
+  }
+}
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hdfs.server.datanode.web.webhdfs;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
@@ -37,12 +38,20 @@ class HdfsWriter extends SimpleChannelInboundHandler<HttpContent> {
   private final DFSClient client;
   private final OutputStream out;
   private final DefaultHttpResponse response;
+  private final int bufferSize;
+  /**
+   * Reused to copy the content of direct buffers to the output stream, which
+   * only accepts arrays. Allocated on the first direct buffer.
+   */
+  private byte[] copyBuffer;
   private static final Logger LOG = WebHdfsHandler.LOG;
 
-  HdfsWriter(DFSClient client, OutputStream out, DefaultHttpResponse response) {
+  HdfsWriter(DFSClient client, OutputStream out, DefaultHttpResponse response,
+      int bufferSize) {
     this.client = client;
     this.out = out;
     this.response = response;
+    this.bufferSize = bufferSize;
   }
 
   @Override
@@ -53,7 +62,7 @@ public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
   @Override
   protected void channelRead0(ChannelHandlerContext ctx, HttpContent chunk)
     throws IOException {
-    chunk.content().readBytes(out, chunk.content().readableBytes());
+    write(chunk.content());
     if (chunk instanceof LastHttpContent) {
       try {
         releaseDfsResourcesAndThrow();
@@ -65,6 +74,31 @@ protected void channelRead0(ChannelHandlerContext ctx, HttpContent chunk)
     }
   }
 
+  /**
+   * Write the readable bytes of the buffer to the output stream. Heap
+   * buffers are written from their backing array. Direct buffers are copied
+   * through a reused array, rather than through ByteBuf#readBytes, which
+   * allocates a new array of the full length for every chunk received.
+   */
+  private void write(ByteBuf content) throws IOException {
+    int len = content.readableBytes();
+    if (content.hasArray()) {
+      out.write(content.array(), content.arrayOffset() + content.readerIndex(),
+          len);
+      content.skipBytes(len);
+      return;
+    }
+    if (copyBuffer == null) {
+      copyBuffer = new byte[Math.max(bufferSize, len)];
+    }
+    while (len > 0) {
+      int n = Math.min(len, copyBuffer.length);
+      content.readBytes(copyBuffer, 0, n);
+      out.write(copyBuffer, 0, n);
+      len -= n;
+    }
+  }
+
   @Override
   public void channelInactive(ChannelHandlerContext ctx) {
     releaseDfsResources();
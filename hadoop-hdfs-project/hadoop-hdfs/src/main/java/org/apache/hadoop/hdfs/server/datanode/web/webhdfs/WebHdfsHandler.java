@@ -28,7 +28,6 @@
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.QueryStringDecoder;
-import io.netty.handler.stream.ChunkedStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.conf.Configuration;
@@ -37,6 +36,7 @@
 import org.apache.hadoop.fs.permission.FsCreateModes;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.hdfs.client.HdfsDataInputStream;
 import org.apache.hadoop.hdfs.security.token.delegation.DelegationTokenIdentifier;
@@ -50,10 +50,8 @@
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.security.token.Token;
-import org.apache.hadoop.util.LimitInputStream;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.URI;
@@ -101,6 +99,7 @@ public class WebHdfsHandler extends SimpleChannelInboundHandler<HttpRequest> {
 
   private final Configuration conf;
   private final Configuration confForCreate;
+  private final int readChunkSize;
 
   private String path;
   private ParameterParser params;
@@ -111,6 +110,9 @@ public WebHdfsHandler(Configuration conf, Configuration confForCreate)
     throws IOException {
     this.conf = conf;
     this.confForCreate = confForCreate;
+    this.readChunkSize = conf.getInt(
+        DFSConfigKeys.DFS_WEBHDFS_READ_CHUNK_SIZE_KEY,
+        DFSConfigKeys.DFS_WEBHDFS_READ_CHUNK_SIZE_DEFAULT);
     /** set user pattern based on configuration file */
     UserParam.setUserPattern(
         conf.get(HdfsClientConfigKeys.DFS_WEBHDFS_USER_PATTERN_KEY,
@@ -228,7 +230,7 @@ private void onCreate(ChannelHandlerContext ctx)
     resp.headers().set(ACCESS_CONTROL_ALLOW_ORIGIN, "*");
 
     ctx.pipeline().replace(this, HdfsWriter.class.getSimpleName(),
-      new HdfsWriter(dfsClient, out, resp));
+      new HdfsWriter(dfsClient, out, resp, bufferSize));
   }
 
   private void onAppend(ChannelHandlerContext ctx) throws IOException {
@@ -242,7 +244,7 @@ private void onAppend(ChannelHandlerContext ctx) throws IOException {
     resp = new DefaultHttpResponse(HTTP_1_1, OK);
     resp.headers().set(CONTENT_LENGTH, 0);
     ctx.pipeline().replace(this, HdfsWriter.class.getSimpleName(),
-      new HdfsWriter(dfsClient, out, resp));
+      new HdfsWriter(dfsClient, out, resp, bufferSize));
   }
 
   private void onOpen(ChannelHandlerContext ctx) throws IOException {
@@ -262,28 +264,25 @@ private void onOpen(ChannelHandlerContext ctx) throws IOException {
     final DFSClient dfsclient = newDfsClient(nnId, conf);
     HdfsDataInputStream in = dfsclient.createWrappedInputStream(
       dfsclient.open(path, bufferSize, true));
-    in.seek(offset);
 
     long contentLength = in.getVisibleLength() - offset;
     if (length >= 0) {
       contentLength = Math.min(contentLength, length);
     }
-    final InputStream data;
     if (contentLength >= 0) {
       headers.set(CONTENT_LENGTH, contentLength);
-      data = new LimitInputStream(in, contentLength);
     } else {
-      data = in;
+      contentLength = -1;
+    }
+    if (contentLength < 0 || contentLength > readChunkSize) {
+      // Ranges larger than one chunk are streamed sequentially, so position
+      // the stream up front; single-chunk ranges use a positional read.
+      in.seek(offset);
     }
 
     ctx.write(resp);
-    ctx.writeAndFlush(new ChunkedStream(data) {
-      @Override
-      public void close() throws Exception {
-        super.close();
-        dfsclient.close();
-      }
-    }).addListener(ChannelFutureListener.CLOSE);
+    ctx.writeAndFlush(new HdfsChunkedInput(dfsclient, in, offset,
+        contentLength, readChunkSize)).addListener(ChannelFutureListener.CLOSE);
   }
 
   private void onGetFileChecksum(ChannelHandlerContext ctx) throws IOException {
@@ -246,8 +246,9 @@ public void writeUnlock(String opName) {
    * for long time will be logged in logs and metrics.
    */
   public void writeUnlock(String opName, boolean suppressWriteLockReport) {
-    final boolean needReport = !suppressWriteLockReport && coarseLock
-        .getWriteHoldCount() == 1 && coarseLock.isWriteLockedByCurrentThread();
+    final boolean releasing = coarseLock.getWriteHoldCount() == 1 &&
+        coarseLock.isWriteLockedByCurrentThread();
+    final boolean needReport = !suppressWriteLockReport && releasing;
     final long currentTimeNanos = timer.monotonicNowNanos();
     final long writeLockIntervalNanos =
         currentTimeNanos - writeLockHeldTimeStampNanos;
@@ -274,6 +275,9 @@ public void writeUnlock(String opName, boolean suppressWriteLockReport) {
 
     if (needReport) {
       addMetric(opName, writeLockIntervalNanos, true);
+    } else if (releasing) {
+      // the hold time is not reported, but is still charged to the caller
+      updateProcessingDetails(Timing.LOCKEXCLUSIVE, writeLockIntervalNanos);
     }
 
     if (logAction.shouldLog()) {
@@ -157,10 +157,12 @@ public long totalFileOps(){
   MutableRate putImage;
 
   JvmMetrics jvmMetrics = null;
+  private final boolean histogramQuantiles;
   
   NameNodeMetrics(String processName, String sessionId, int[] intervals,
-      final JvmMetrics jvmMetrics) {
+      boolean histogramQuantiles, final JvmMetrics jvmMetrics) {
     this.jvmMetrics = jvmMetrics;
+    this.histogramQuantiles = histogramQuantiles;
     registry.tag(ProcessName, processName).tag(SessionId, sessionId);
     
     final int len = intervals.length;
@@ -178,43 +180,52 @@ public long totalFileOps(){
 
     for (int i = 0; i < len; i++) {
       int interval = intervals[i];
-      syncsQuantiles[i] = registry.newQuantiles(
+      syncsQuantiles[i] = newQuantiles(
           "syncs" + interval + "s",
           "Journal syncs", "ops", "latency", interval);
-      numTransactionsBatchedInSync[i] = registry.newQuantiles(
+      numTransactionsBatchedInSync[i] = newQuantiles(
           "numTransactionsBatchedInSync" + interval + "s",
           "Number of Transactions batched in sync", "ops",
           "count", interval);
-      storageBlockReportQuantiles[i] = registry.newQuantiles(
+      storageBlockReportQuantiles[i] = newQuantiles(
           "storageBlockReport" + interval + "s",
           "Storage block report", "ops", "latency", interval);
-      cacheReportQuantiles[i] = registry.newQuantiles(
+      cacheReportQuantiles[i] = newQuantiles(
           "cacheReport" + interval + "s",
           "Cache report", "ops", "latency", interval);
-      generateEDEKTimeQuantiles[i] = registry.newQuantiles(
+      generateEDEKTimeQuantiles[i] = newQuantiles(
           "generateEDEKTime" + interval + "s",
           "Generate EDEK time", "ops", "latency", interval);
-      warmUpEDEKTimeQuantiles[i] = registry.newQuantiles(
+      warmUpEDEKTimeQuantiles[i] = newQuantiles(
           "warmupEDEKTime" + interval + "s",
           "Warm up EDEK time", "ops", "latency", interval);
-      resourceCheckTimeQuantiles[i] = registry.newQuantiles(
+      resourceCheckTimeQuantiles[i] = newQuantiles(
           "resourceCheckTime" + interval + "s",
           "resource check time", "ops", "latency", interval);
-      editLogTailTimeQuantiles[i] = registry.newQuantiles(
+      editLogTailTimeQuantiles[i] = newQuantiles(
           "editLogTailTime" + interval + "s",
           "Edit log tailing time", "ops", "latency", interval);
-      editLogFetchTimeQuantiles[i] = registry.newQuantiles(
+      editLogFetchTimeQuantiles[i] = newQuantiles(
           "editLogFetchTime" + interval + "s",
           "Edit log fetch time", "ops", "latency", interval);
-      numEditLogLoadedQuantiles[i] = registry.newQuantiles(
+      numEditLogLoadedQuantiles[i] = newQuantiles(
           "numEditLogLoaded" + interval + "s",
           "Number of edits loaded", "ops", "count", interval);
-      editLogTailIntervalQuantiles[i] = registry.newQuantiles(
+      editLogTailIntervalQuantiles[i] = newQuantiles(
           "editLogTailInterval" + interval + "s",
           "Edit log tailing interval", "ops", "latency", interval);
     }
   }
 
+  private MutableQuantiles newQuantiles(String name, String desc,
+      String sampleName, String valueName, int interval) {
+    if (histogramQuantiles) {
+      return registry.newHistogramQuantiles(name, desc, sampleName, valueName,
+          interval);
+    }
+    return registry.newQuantiles(name, desc, sampleName, valueName, interval);
+  }
+
   public static NameNodeMetrics create(Configuration conf, NamenodeRole r) {
     String sessionId = conf.get(DFSConfigKeys.DFS_METRICS_SESSION_ID_KEY);
     String processName = r.toString();
@@ -224,8 +235,11 @@ public static NameNodeMetrics create(Configuration conf, NamenodeRole r) {
     // Percentile measurement is off by default, by watching no intervals
     int[] intervals = 
         conf.getInts(DFSConfigKeys.DFS_METRICS_PERCENTILES_INTERVALS_KEY);
+    boolean histogramQuantiles = conf.getBoolean(
+        DFSConfigKeys.DFS_METRICS_PERCENTILES_HISTOGRAM_ENABLED_KEY,
+        DFSConfigKeys.DFS_METRICS_PERCENTILES_HISTOGRAM_ENABLED_DEFAULT);
     return ms.register(new NameNodeMetrics(processName, sessionId,
-        intervals, jm));
+        intervals, histogramQuantiles, jm));
   }
 
   public JvmMetrics getJvmMetrics() {
@@ -107,7 +107,9 @@ public final void deleteSnapshotDiff(INode.ReclaimContext reclaimContext,
 
   /** Add an {@link AbstractINodeDiff} for the given snapshot. */
   final D addDiff(int latestSnapshotId, N currentINode) {
-    return addLast(createDiff(latestSnapshotId, currentINode));
+    final D diff = addLast(createDiff(latestSnapshotId, currentINode));
+    SnapshotDiffIndex.recordModification(currentINode, latestSnapshotId);
+    return diff;
   }
 
   /** Append the diff at the end of the list. */
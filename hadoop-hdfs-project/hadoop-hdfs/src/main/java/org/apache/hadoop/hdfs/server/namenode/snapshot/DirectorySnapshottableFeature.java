@@ -69,6 +69,8 @@ public class DirectorySnapshottableFeature extends DirectoryWithSnapshotFeature
   private final List<Snapshot> snapshotsByNames = new ArrayList<Snapshot>();
   /** Number of snapshots allowed. */
   private int snapshotQuota = SNAPSHOT_QUOTA_DEFAULT;
+  /** Index of the modified inodes, null if not enabled. */
+  private SnapshotDiffIndex diffIndex;
 
   public DirectorySnapshottableFeature(DirectoryWithSnapshotFeature feature) {
     super(feature == null ? null : feature.getDiffs());
@@ -166,6 +168,21 @@ void addSnapshot(Snapshot snapshot) {
     this.snapshotsByNames.add(snapshot);
   }
 
+  SnapshotDiffIndex getDiffIndex() {
+    return diffIndex;
+  }
+
+  /**
+   * Start indexing the modified inodes under this directory, if not already
+   * done. The index covers the snapshots with an id greater than or equal to
+   * the given one.
+   */
+  void enableDiffIndex(int firstSnapshotId) {
+    if (diffIndex == null) {
+      diffIndex = new SnapshotDiffIndex(firstSnapshotId);
+    }
+  }
+
   /** Add a snapshot. */
   public Snapshot addSnapshot(INodeDirectory snapshotRoot, int id, String name,
       final LeaseManager leaseManager, final boolean captureOpenFiles,
@@ -241,6 +258,9 @@ public Snapshot removeSnapshot(
       snapshotRoot.cleanSubtree(reclaimContext, snapshot.getId(), prior);
       // remove from snapshotsByNames after successfully cleaning the subtree
       snapshotsByNames.remove(i);
+      if (diffIndex != null) {
+        diffIndex.removeSnapshot(snapshot.getId(), prior);
+      }
       return snapshot;
     }
   }
@@ -282,11 +302,13 @@ SnapshotDiffInfo computeDiff(final INodeDirectory snapshotRootDir,
     }
     SnapshotDiffInfo diffs = new SnapshotDiffInfo(snapshotRootDir,
         snapshotDiffScopeDir, fromSnapshot, toSnapshot);
+    final Snapshot earlier = diffs.isFromEarlier() ?
+        diffs.getFrom() : diffs.getTo();
     // The snapshot diff scope dir is passed in as the snapshot dir
     // so that the file paths in the diff report are relative to the
     // snapshot scope dir.
     computeDiffRecursively(snapshotDiffScopeDir, snapshotDiffScopeDir,
-        new ArrayList<>(), diffs);
+        new ArrayList<>(), diffs, getModifiedSince(earlier));
     return diffs;
   }
 
@@ -334,10 +356,23 @@ SnapshotDiffListingInfo computeDiff(final INodeDirectory snapshotRootDir,
             fromSnapshot, toSnapshot, snapshotDiffReportEntriesLimit);
     diffs.setLastIndex(index);
     computeDiffRecursively(snapshotDiffScopeDir, snapshotDiffScopeDir,
-        new ArrayList<byte[]>(), diffs, resumePath, 0, toProcess);
+        new ArrayList<byte[]>(), diffs, resumePath, 0, toProcess,
+        getModifiedSince(diffs.getEarlier()));
     return diffs;
   }
 
+  /**
+   * @return the ids of the inodes which may have changed since the given
+   *         snapshot, or null if the diff index cannot tell and the whole
+   *         tree has to be walked.
+   */
+  private Set<Long> getModifiedSince(Snapshot earlier) {
+    if (diffIndex == null || !diffIndex.covers(earlier)) {
+      return null;
+    }
+    return diffIndex.getModifiedSince(earlier);
+  }
+
   /**
    * Find the snapshot matching the given name.
    *
@@ -371,9 +406,12 @@ private Snapshot getSnapshotByName(INodeDirectory snapshotRoot,
    * @param parentPath Relative path (corresponding to the snapshot root) of
    *                   the node's parent.
    * @param diffReport data structure used to store the diff.
+   * @param modified ids of the inodes which may have changed, null if all
+   *                 the subtree needs to be compared.
    */
   private void computeDiffRecursively(final INodeDirectory snapshotDir,
-      INode node, List<byte[]> parentPath, SnapshotDiffInfo diffReport) {
+      INode node, List<byte[]> parentPath, SnapshotDiffInfo diffReport,
+      Set<Long> modified) {
     final Snapshot earlierSnapshot = diffReport.isFromEarlier() ?
         diffReport.getFrom() : diffReport.getTo();
     final Snapshot laterSnapshot = diffReport.isFromEarlier() ?
@@ -409,9 +447,15 @@ private void computeDiffRecursively(final INodeDirectory snapshotDir,
             diffReport.setRenameTarget(child.getId(), renameTargetPath);
           }
         }
+        if (toProcess && modified != null
+            && !modified.contains(child.getId())) {
+          // neither the child nor any of its descendants changed
+          toProcess = false;
+        }
         if (toProcess) {
           parentPath.add(name);
-          computeDiffRecursively(snapshotDir, child, parentPath, diffReport);
+          computeDiffRecursively(snapshotDir, child, parentPath, diffReport,
+              modified);
           parentPath.remove(parentPath.size() - 1);
         }
       }
@@ -442,10 +486,13 @@ private void computeDiffRecursively(final INodeDirectory snapshotDir,
    *                    snapshotRoot.
    * @param processFlag indicates that the dir/file where the snapshotdiff
    *                    computation has to start is processed or not.
+   * @param modified    ids of the inodes which may have changed, null if all
+   *                    the subtree needs to be compared.
    */
   private boolean computeDiffRecursively(final INodeDirectory snapshotDir,
        INode node, List<byte[]> parentPath, SnapshotDiffListingInfo diffReport,
-       final byte[][] resume, int level, boolean processFlag) {
+       final byte[][] resume, int level, boolean processFlag,
+       Set<Long> modified) {
     final Snapshot earlier = diffReport.getEarlier();
     final Snapshot later = diffReport.getLater();
     byte[][] relativePath = parentPath.toArray(new byte[parentPath.size()][]);
@@ -487,10 +534,15 @@ private boolean computeDiffRecursively(final INodeDirectory snapshotDir,
             toProcess = true;
           }
         }
+        if (toProcess && processFlag && modified != null
+            && !modified.contains(child.getId())) {
+          // neither the child nor any of its descendants changed
+          toProcess = false;
+        }
         if (toProcess) {
           parentPath.add(name);
           processFlag = computeDiffRecursively(snapshotDir, child, parentPath,
-              diffReport, resume, level, processFlag);
+              diffReport, resume, level, processFlag, modified);
           parentPath.remove(parentPath.size() - 1);
           if (!processFlag) {
             return false;
@@ -0,0 +1,133 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.snapshot;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.server.namenode.INode;
+
+/**
+ * Index of the inodes modified under a snapshottable directory, keyed by the
+ * id of the latest snapshot at the time of the modification.
+ *
+ * Whenever an inode records a new snapshot diff, the inode and all its
+ * ancestors up to the snapshottable directory are added to the index. A
+ * snapshot diff computation starting from snapshot s then only needs to
+ * descend into the inodes indexed under ids greater than or equal to s; any
+ * other subtree is known to be unchanged.
+ *
+ * The index is kept in memory and only covers the snapshots created after it
+ * has been enabled on the directory. Diffs against older snapshots fall back
+ * to the full tree walk. All accesses are guarded by the namesystem lock.
+ */
+@InterfaceAudience.Private
+class SnapshotDiffIndex {
+  /** Snapshot id -> ids of the inodes modified while it was the latest. */
+  private final NavigableMap<Integer, Set<Long>> modified = new TreeMap<>();
+  /** The first snapshot whose modifications are fully indexed. */
+  private final int firstIndexedSnapshotId;
+
+  SnapshotDiffIndex(int firstIndexedSnapshotId) {
+    this.firstIndexedSnapshotId = firstIndexedSnapshotId;
+  }
+
+  /**
+   * Record that the given inode added a diff for the given snapshot, in the
+   * index of every snapshottable ancestor having one.
+   */
+  static void recordModification(INode inode, int snapshotId) {
+    if (snapshotId == Snapshot.CURRENT_STATE_ID
+        || snapshotId == Snapshot.NO_SNAPSHOT_ID) {
+      return;
+    }
+    final List<Long> path = new ArrayList<>();
+    for (INode node = inode; node != null; node = node.getParent()) {
+      path.add(node.getId());
+      if (node.isDirectory()) {
+        final DirectorySnapshottableFeature sf =
+            node.asDirectory().getDirectorySnapshottableFeature();
+        if (sf != null && sf.getDiffIndex() != null) {
+          sf.getDiffIndex().add(snapshotId, path);
+        }
+      }
+    }
+  }
+
+  private void add(int snapshotId, List<Long> inodeIds) {
+    Set<Long> ids = modified.get(snapshotId);
+    if (ids == null) {
+      ids = new HashSet<>();
+      modified.put(snapshotId, ids);
+    }
+    ids.addAll(inodeIds);
+  }
+
+  /** @return whether the index holds every change made since the snapshot. */
+  boolean covers(Snapshot earlier) {
+    return earlier != null && earlier.getId() >= firstIndexedSnapshotId;
+  }
+
+  /**
+   * @return the ids of the inodes which may differ from their state in the
+   *         given snapshot, together with their ancestors.
+   */
+  Set<Long> getModifiedSince(Snapshot earlier) {
+    final Set<Long> ids = new HashSet<>();
+    for (Set<Long> s : modified.tailMap(earlier.getId(), true).values()) {
+      ids.addAll(s);
+    }
+    return ids;
+  }
+
+  /**
+   * Fold the entries of a deleted snapshot into its prior snapshot, whose
+   * diffs absorb the ones of the deleted snapshot.
+   */
+  void removeSnapshot(int snapshotId, int prior) {
+    final Set<Long> ids = modified.remove(snapshotId);
+    if (ids != null && prior != Snapshot.NO_SNAPSHOT_ID) {
+      final Set<Long> priorIds = modified.get(prior);
+      if (priorIds == null) {
+        modified.put(prior, ids);
+      } else {
+        priorIds.addAll(ids);
+      }
+    }
+  }
+
+  int size() {
+    int size = 0;
+    for (Map.Entry<Integer, Set<Long>> e : modified.entrySet()) {
+      size += e.getValue().size();
+    }
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{firstIndexedSnapshotId="
+        + firstIndexedSnapshotId + ", size=" + size() + "}";
+  }
+}
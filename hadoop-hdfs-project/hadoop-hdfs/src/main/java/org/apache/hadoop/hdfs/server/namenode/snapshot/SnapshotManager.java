@@ -94,6 +94,12 @@ public class SnapshotManager implements SnapshotStatsMXBean {
    * directory.
    */
   private final boolean snapshotDiffAllowSnapRootDescendant;
+  /**
+   * If snapshotDiffIndexEnabled is set to true, the inodes modified under a
+   * snapshottable directory are indexed from its first snapshot taken by this
+   * NameNode on, so that snapshot diffs only visit the changed subtrees.
+   */
+  private final boolean snapshotDiffIndexEnabled;
 
   private final AtomicInteger numSnapshots = new AtomicInteger();
   private static final int SNAPSHOT_ID_BIT_WIDTH = 24;
@@ -121,13 +127,18 @@ public SnapshotManager(final Configuration conf, final FSDirectory fsdir) {
     this.maxSnapshotLimit = conf.getInt(
         DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_MAX_LIMIT,
         DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_MAX_LIMIT_DEFAULT);
+    this.snapshotDiffIndexEnabled = conf.getBoolean(
+        DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_DIFF_INDEX_ENABLED,
+        DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_DIFF_INDEX_ENABLED_DEFAULT);
     LOG.info("Loaded config captureOpenFiles: " + captureOpenFiles
         + ", skipCaptureAccessTimeOnlyChange: "
         + skipCaptureAccessTimeOnlyChange
         + ", snapshotDiffAllowSnapRootDescendant: "
         + snapshotDiffAllowSnapRootDescendant
         + ", maxSnapshotLimit: "
-        + maxSnapshotLimit);
+        + maxSnapshotLimit
+        + ", snapshotDiffIndexEnabled: "
+        + snapshotDiffIndexEnabled);
 
     final int maxLevels = conf.getInt(
         DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_SKIPLIST_MAX_LEVELS,
@@ -315,6 +326,10 @@ public String createSnapshot(final LeaseManager leaseManager,
           "snapshot IDs and ID rollover is not supported.");
     }
 
+    if (snapshotDiffIndexEnabled) {
+      srcRoot.getDirectorySnapshottableFeature().enableDiffIndex(
+          snapshotCounter);
+    }
     srcRoot.addSnapshot(snapshotCounter, snapshotName, leaseManager,
         this.captureOpenFiles, maxSnapshotLimit);
       
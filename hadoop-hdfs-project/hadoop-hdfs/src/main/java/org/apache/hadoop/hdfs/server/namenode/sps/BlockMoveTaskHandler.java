@@ -19,6 +19,7 @@
 package org.apache.hadoop.hdfs.server.namenode.sps;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
@@ -40,4 +41,12 @@ public interface BlockMoveTaskHandler {
    */
   void submitMoveTask(BlockMovingInfo blkMovingInfo) throws IOException;
 
+  /**
+   * Handles a batch of move tasks sharing the same target datanode as a
+   * single task. The batch is submitted as a whole: if an exception is
+   * thrown, none of its moves has been scheduled.
+   */
+  void submitMoveTasks(List<BlockMovingInfo> blkMovingInfos)
+      throws IOException;
+
 }
\ No newline at end of file
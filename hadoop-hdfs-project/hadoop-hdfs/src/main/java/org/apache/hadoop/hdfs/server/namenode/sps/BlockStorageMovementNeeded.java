@@ -26,6 +26,8 @@
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.util.Daemon;
+import org.apache.hadoop.util.StringUtils;
+import org.apache.hadoop.util.Time;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,6 +67,9 @@ public class BlockStorageMovementNeeded {
   // NOT_AVAILABLE.
   private static long statusClearanceElapsedTimeMs = 300000;
 
+  // Number of completed files between two progress reports of a directory.
+  private static final int PROGRESS_REPORT_INTERVAL = 1000;
+
   public BlockStorageMovementNeeded(Context context) {
     this.ctxt = context;
     pathIDProcessor = new SPSPathIdProcessor();
@@ -99,7 +104,18 @@ public synchronized void add(ItemInfo trackInfo) {
   public synchronized void addAll(long startPath, List<ItemInfo> itemInfoList,
       boolean scanCompleted) {
     storageMovementNeeded.addAll(itemInfoList);
-    updatePendingDirScanStats(startPath, itemInfoList.size(), scanCompleted);
+    int numScannedFiles = 0;
+    for (ItemInfo itemInfo : itemInfoList) {
+      // The sps start id of a file is the file itself, which needs no pending
+      // dir stats.
+      if (itemInfo.getStartPath() != itemInfo.getFile()) {
+        numScannedFiles++;
+      }
+    }
+    if (numScannedFiles == 0 && !itemInfoList.isEmpty()) {
+      return;
+    }
+    updatePendingDirScanStats(startPath, numScannedFiles, scanCompleted);
   }
 
   /**
@@ -176,8 +192,14 @@ public synchronized void removeItemTrackInfo(ItemInfo trackInfo,
         if (pendingWork != null) {
           pendingWork.decrementPendingWorkCount();
           if (pendingWork.isDirWorkDone()) {
+            LOG.info("Satisfied storage policy for {}", pendingWork
+                .getProgressReport(startId));
             ctxt.removeSPSHint(startId);
             pendingWorkForDirectory.remove(startId);
+          } else if (pendingWork.getCompletedWorkCount()
+              % PROGRESS_REPORT_INTERVAL == 0) {
+            LOG.info("Satisfying storage policy for {}", pendingWork
+                .getProgressReport(startId));
           }
         }
       }
@@ -273,6 +295,14 @@ public void run() {
     }
   }
 
+  /**
+   * Returns the progress of satisfying the policy for the given directory, or
+   * null if the directory is not being satisfied.
+   */
+  public synchronized DirPendingWorkInfo getPendingWorkInfo(long startId) {
+    return pendingWorkForDirectory.get(startId);
+  }
+
   /**
    * Info for directory recursive scan.
    */
@@ -280,12 +310,16 @@ public static class DirPendingWorkInfo {
 
     private int pendingWorkCount = 0;
     private boolean fullyScanned = false;
+    private long scannedWorkCount = 0;
+    private long completedWorkCount = 0;
+    private final long startTime = Time.monotonicNow();
 
     /**
      * Increment the pending work count for directory.
      */
     public synchronized void addPendingWorkCount(int count) {
       this.pendingWorkCount = this.pendingWorkCount + count;
+      this.scannedWorkCount += count;
     }
 
     /**
@@ -294,6 +328,43 @@ public synchronized void addPendingWorkCount(int count) {
      */
     public synchronized void decrementPendingWorkCount() {
       this.pendingWorkCount--;
+      this.completedWorkCount++;
+    }
+
+    /**
+     * Returns the number of files scanned so far.
+     */
+    public synchronized long getScannedWorkCount() {
+      return scannedWorkCount;
+    }
+
+    /**
+     * Returns the number of files satisfied so far.
+     */
+    public synchronized long getCompletedWorkCount() {
+      return completedWorkCount;
+    }
+
+    /**
+     * Returns the estimated time in milliseconds to satisfy the files scanned
+     * so far at the current rate, or -1 if no file is satisfied yet.
+     */
+    public synchronized long getEstimatedRemainingTime() {
+      if (completedWorkCount <= 0) {
+        return -1;
+      }
+      long elapsed = Time.monotonicNow() - startTime;
+      return Math.max(0, pendingWorkCount) * elapsed / completedWorkCount;
+    }
+
+    synchronized String getProgressReport(long startId) {
+      long eta = getEstimatedRemainingTime();
+      return "inode " + startId + ": " + completedWorkCount + " of "
+          + scannedWorkCount + " files satisfied"
+          + (fullyScanned ? "" : " (scan in progress)") + " in "
+          + StringUtils.formatTime(Time.monotonicNow() - startTime)
+          + ", remaining time "
+          + (eta < 0 ? "unknown" : StringUtils.formatTime(eta));
     }
 
     /**
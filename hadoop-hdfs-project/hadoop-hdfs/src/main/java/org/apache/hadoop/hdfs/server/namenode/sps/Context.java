@@ -19,6 +19,8 @@
 package org.apache.hadoop.hdfs.server.namenode.sps;
 
 import java.io.IOException;
+import java.util.List;
+
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
@@ -130,6 +132,17 @@ void scanAndCollectFiles(long filePath)
    */
   void submitMoveTask(BlockMovingInfo blkMovingInfo) throws IOException;
 
+  /**
+   * Handles a batch of block move tasks to the same target datanode. The
+   * batch is submitted as a whole: if an exception is thrown, none of its
+   * moves has been scheduled.
+   *
+   * @param blkMovingInfos
+   *          block moves sharing the same target datanode
+   */
+  void submitMoveTasks(List<BlockMovingInfo> blkMovingInfos)
+      throws IOException;
+
   /**
    * This can be used to notify to the SPS about block movement attempt
    * finished. Then SPS will re-check whether it needs retry or not.
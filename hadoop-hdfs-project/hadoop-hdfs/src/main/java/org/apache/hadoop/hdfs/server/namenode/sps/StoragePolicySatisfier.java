@@ -22,11 +22,13 @@
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -432,10 +434,18 @@ private BlocksMovingAnalysis analyseBlocksStorageMovementsAndAssignToDN(
       status = BlocksMovingAnalysis.Status.FEW_LOW_REDUNDANCY_BLOCKS;
     }
     Map<Block, Set<StorageTypeNodePair>> assignedBlocks = new HashMap<>();
-    for (BlockMovingInfo blkMovingInfo : blockMovingInfos) {
+    for (List<BlockMovingInfo> batch : groupByTarget(blockMovingInfos)) {
       // Check for at least one block storage movement has been chosen
       try {
-        ctxt.submitMoveTask(blkMovingInfo);
+        ctxt.submitMoveTasks(batch);
+      } catch (IOException e) {
+        LOG.warn("Exception while scheduling movement tasks", e);
+        // failed to move the blocks. The batch is submitted as a whole, so
+        // none of its blocks has been scheduled.
+        status = BlocksMovingAnalysis.Status.BLOCKS_FAILED_TO_MOVE;
+        continue;
+      }
+      for (BlockMovingInfo blkMovingInfo : batch) {
         LOG.debug("BlockMovingInfo: {}", blkMovingInfo);
         StorageTypeNodePair nodeStorage = new StorageTypeNodePair(
             blkMovingInfo.getTargetStorageType(), blkMovingInfo.getTarget());
@@ -447,15 +457,29 @@ private BlocksMovingAnalysis analyseBlocksStorageMovementsAndAssignToDN(
         }
         nodesWithStorage.add(nodeStorage);
         blockCount++;
-      } catch (IOException e) {
-        LOG.warn("Exception while scheduling movement task", e);
-        // failed to move the block.
-        status = BlocksMovingAnalysis.Status.BLOCKS_FAILED_TO_MOVE;
       }
     }
     return new BlocksMovingAnalysis(status, assignedBlocks);
   }
 
+  /**
+   * Group the block movements by target datanode, keeping the order in which
+   * the targets were chosen.
+   */
+  private static Collection<List<BlockMovingInfo>> groupByTarget(
+      List<BlockMovingInfo> blockMovingInfos) {
+    Map<DatanodeInfo, List<BlockMovingInfo>> batches = new LinkedHashMap<>();
+    for (BlockMovingInfo blkMovingInfo : blockMovingInfos) {
+      List<BlockMovingInfo> batch = batches.get(blkMovingInfo.getTarget());
+      if (batch == null) {
+        batch = new ArrayList<>();
+        batches.put(blkMovingInfo.getTarget(), batch);
+      }
+      batch.add(blkMovingInfo);
+    }
+    return batches.values();
+  }
+
   /**
    * The given block is considered as low redundancy when the block locations
    * length is less than expected replication factor. For EC blocks, redundancy
@@ -20,10 +20,14 @@
 
 import java.io.IOException;
 import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -59,6 +63,8 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.Futures;
+
 /**
  * This class handles the external SPS block movements. This will move the
  * given block to a target datanode by directly establishing socket connection
@@ -73,6 +79,12 @@ public class ExternalSPSBlockMoveTaskHandler implements BlockMoveTaskHandler {
       .getLogger(ExternalSPSBlockMoveTaskHandler.class);
 
   private final ExecutorService moveExecutor;
+  /**
+   * Finished moves, taken by the movement tracker through mCompletionServ.
+   * Batched moves are added here directly as each of them finishes.
+   */
+  private final BlockingQueue<Future<BlockMovementAttemptFinished>>
+      finishedMoves = new LinkedBlockingQueue<>();
   private final CompletionService<BlockMovementAttemptFinished> mCompletionServ;
   private final NameNodeConnector nnc;
   private final SaslDataTransferClient saslClient;
@@ -86,7 +98,8 @@ public ExternalSPSBlockMoveTaskHandler(Configuration conf,
     int moverThreads = conf.getInt(DFSConfigKeys.DFS_MOVER_MOVERTHREADS_KEY,
         DFSConfigKeys.DFS_MOVER_MOVERTHREADS_DEFAULT);
     moveExecutor = initializeBlockMoverThreadPool(moverThreads);
-    mCompletionServ = new ExecutorCompletionService<>(moveExecutor);
+    mCompletionServ = new ExecutorCompletionService<>(moveExecutor,
+        finishedMoves);
     this.nnc = nnc;
     this.saslClient = new SaslDataTransferClient(conf,
         DataTransferSaslUtil.getSaslPropertiesResolver(conf),
@@ -158,6 +171,14 @@ public void submitMoveTask(BlockMovingInfo blkMovingInfo) throws IOException {
     mCompletionServ.submit(blockMovingTask);
   }
 
+  @Override
+  public void submitMoveTasks(List<BlockMovingInfo> blkMovingInfos)
+      throws IOException {
+    LOG.debug("Received {} BlockMovingTasks to {}", blkMovingInfos.size(),
+        blkMovingInfos.get(0).getTarget());
+    mCompletionServ.submit(new BatchedBlockMovingTask(blkMovingInfos));
+  }
+
   private class ExternalBlocksMovementsStatusHandler
       implements BlocksMovementsStatusHandler {
     @Override
@@ -213,6 +234,31 @@ private BlockMovementStatus moveBlock() {
     }
   }
 
+  /**
+   * Moves a batch of block replicas to the same target, one after another in
+   * a single mover thread, so that a target works on one batch at a time.
+   * Every move but the last is handed to the movement tracker as soon as it
+   * finishes; the last one is the result of the task itself.
+   */
+  private class BatchedBlockMovingTask
+      implements Callable<BlockMovementAttemptFinished> {
+    private final List<BlockMovingInfo> blkMovingInfos;
+
+    BatchedBlockMovingTask(List<BlockMovingInfo> blkMovingInfos) {
+      this.blkMovingInfos = blkMovingInfos;
+    }
+
+    @Override
+    public BlockMovementAttemptFinished call() {
+      final int last = blkMovingInfos.size() - 1;
+      for (int i = 0; i < last; i++) {
+        finishedMoves.add(Futures.immediateFuture(
+            new BlockMovingTask(blkMovingInfos.get(i)).call()));
+      }
+      return new BlockMovingTask(blkMovingInfos.get(last)).call();
+    }
+  }
+
   /**
    * Cleanup the resources.
    */
@@ -184,6 +184,12 @@ public void submitMoveTask(BlockMovingInfo blkMovingInfo) throws IOException {
     externalHandler.submitMoveTask(blkMovingInfo);
   }
 
+  @Override
+  public void submitMoveTasks(List<BlockMovingInfo> blkMovingInfos)
+      throws IOException {
+    externalHandler.submitMoveTasks(blkMovingInfos);
+  }
+
   @Override
   public void notifyMovementTriedBlocks(Block[] moveAttemptFinishedBlks) {
     // External listener if it is plugged-in
@@ -19,6 +19,7 @@
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.conf.Configuration;
@@ -39,7 +40,9 @@
  * This class is to scan the paths recursively. If file is directory, then it
  * will scan for files recursively. If the file is non directory, then it will
  * just submit the same file to process. This will use file string path
- * representation.
+ * representation. The scanned files are submitted to the SPS service in
+ * batches, and the directory listings can be throttled to give way to other
+ * operations on the Namenode while scanning large directories.
  */
 @InterfaceAudience.Private
 public class ExternalSPSFilePathCollector implements FileCollector {
@@ -48,12 +51,20 @@ public class ExternalSPSFilePathCollector implements FileCollector {
   private DistributedFileSystem dfs;
   private SPSService service;
   private int maxQueueLimitToScan;
+  private int scanBatchSize;
+  private long listingInterval;
 
   public ExternalSPSFilePathCollector(SPSService service) {
     this.service = service;
     this.maxQueueLimitToScan = service.getConf().getInt(
         DFSConfigKeys.DFS_STORAGE_POLICY_SATISFIER_QUEUE_LIMIT_KEY,
         DFSConfigKeys.DFS_STORAGE_POLICY_SATISFIER_QUEUE_LIMIT_DEFAULT);
+    this.scanBatchSize = Math.max(1, Math.min(maxQueueLimitToScan,
+        service.getConf().getInt(DFSConfigKeys.DFS_SPS_SCAN_BATCH_SIZE_KEY,
+            DFSConfigKeys.DFS_SPS_SCAN_BATCH_SIZE_DEFAULT)));
+    this.listingInterval = service.getConf().getLong(
+        DFSConfigKeys.DFS_SPS_SCAN_LISTING_INTERVAL_MS_KEY,
+        DFSConfigKeys.DFS_SPS_SCAN_LISTING_INTERVAL_MS_DEFAULT);
     try {
       // TODO: probably we could get this dfs from external context? but this is
       // too specific to external.
@@ -70,13 +81,15 @@ private DistributedFileSystem getFS(Configuration conf) throws IOException {
   }
 
   /**
-   * Recursively scan the given path and add the file info to SPS service for
-   * processing.
+   * Recursively scan the given path and collect the file info into the given
+   * batch, which is submitted to SPS service for processing once full.
    */
-  private long processPath(Long startID, String childPath) {
+  private long processPath(Long startID, String childPath,
+      List<ItemInfo> batch) throws InterruptedException {
     long pendingWorkCount = 0; // to be satisfied file counter
     for (byte[] lastReturnedName = HdfsFileStatus.EMPTY_NAME;;) {
       final DirectoryListing children;
+      throttleListing();
       try {
         children = dfs.getClient().listPaths(childPath,
             lastReturnedName, false);
@@ -95,9 +108,10 @@ private long processPath(Long startID, String childPath) {
 
       for (HdfsFileStatus child : children.getPartialListing()) {
         if (child.isFile()) {
-          service.addFileToProcess(new ItemInfo(startID, child.getFileId()),
-              false);
-          checkProcessingQueuesFree();
+          batch.add(new ItemInfo(startID, child.getFileId()));
+          if (batch.size() >= scanBatchSize) {
+            submitBatch(startID, batch);
+          }
           pendingWorkCount++; // increment to be satisfied file count
         } else {
           String childFullPathName = child.getFullName(childPath);
@@ -105,7 +119,7 @@ private long processPath(Long startID, String childPath) {
             if (!childFullPathName.endsWith(Path.SEPARATOR)) {
               childFullPathName = childFullPathName + Path.SEPARATOR;
             }
-            pendingWorkCount += processPath(startID, childFullPathName);
+            pendingWorkCount += processPath(startID, childFullPathName, batch);
           }
         }
       }
@@ -118,10 +132,30 @@ private long processPath(Long startID, String childPath) {
     }
   }
 
-  private void checkProcessingQueuesFree() {
+  /** Sleep between two listings if the scan is throttled. */
+  private void throttleListing() throws InterruptedException {
+    if (listingInterval > 0) {
+      Thread.sleep(listingInterval);
+    }
+  }
+
+  /**
+   * Wait until the processing queue can take the given batch, then submit the
+   * batch to SPS service at once and clear it.
+   */
+  private void submitBatch(long startID, List<ItemInfo> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    checkProcessingQueuesFree(batch.size());
+    service.addAllFilesToProcess(startID, new ArrayList<>(batch), false);
+    batch.clear();
+  }
+
+  private void checkProcessingQueuesFree(int required) {
     int remainingCapacity = remainingCapacity();
     // wait for queue to be free
-    while (remainingCapacity <= 0) {
+    while (remainingCapacity < required) {
       if (LOG.isDebugEnabled()) {
         LOG.debug("Waiting for storageMovementNeeded queue to be free!");
       }
@@ -151,12 +185,16 @@ public int remainingCapacity() {
   }
 
   @Override
-  public void scanAndCollectFiles(long pathId) throws IOException {
+  public void scanAndCollectFiles(long pathId)
+      throws IOException, InterruptedException {
     if (dfs == null) {
       dfs = getFS(service.getConf());
     }
     Path filePath = DFSUtilClient.makePathFromFileId(pathId);
-    long pendingSatisfyItemsCount = processPath(pathId, filePath.toString());
+    List<ItemInfo> batch = new ArrayList<>(scanBatchSize);
+    long pendingSatisfyItemsCount = processPath(pathId, filePath.toString(),
+        batch);
+    submitBatch(pathId, batch);
     // Check whether the given path contains any item to be tracked
     // or the no to be satisfied paths. In case of empty list, add the given
     // inodeId to the 'pendingWorkForDirectory' with empty list so that later
@@ -177,6 +177,19 @@ public void testDecommission() throws IOException {
     testDecommission(1, 6);
   }
 
+  /**
+   * Tests decommission with incremental tracking of the insufficiently
+   * replicated blocks in the monitor.
+   */
+  @Test(timeout=360000)
+  public void testDecommissionWithIncrementalTracking() throws IOException {
+    getConf().setBoolean(DFSConfigKeys
+        .DFS_NAMENODE_DECOMMISSION_INCREMENTAL_TRACKING_ENABLED_KEY, true);
+    getConf().setInt(DFSConfigKeys
+        .DFS_NAMENODE_DECOMMISSION_INCREMENTAL_FULL_PRUNE_INTERVAL_KEY, 3);
+    testDecommission(1, 6);
+  }
+
   /**
    * Tests decommission with replicas on the target datanode cannot be migrated
    * to other datanodes and satisfy the replication factor. Make sure the
@@ -1181,6 +1194,68 @@ private void doDecomCheck(DatanodeManager datanodeManager,
     }
   }
 
+  /**
+   * Tests that with incremental tracking, a monitor tick only re-checks the
+   * tracked blocks whose replicas changed, and that the tracked blocks are
+   * updated by the replicas reported to the namenode.
+   */
+  @Test(timeout=120000)
+  public void testIncrementalTracking() throws Exception {
+    getConf().setBoolean(DFSConfigKeys
+        .DFS_NAMENODE_DECOMMISSION_INCREMENTAL_TRACKING_ENABLED_KEY, true);
+    // No full prune of the tracked blocks during the test
+    getConf().setInt(DFSConfigKeys
+        .DFS_NAMENODE_DECOMMISSION_INCREMENTAL_FULL_PRUNE_INTERVAL_KEY,
+        Integer.MAX_VALUE);
+    // Disable the normal monitor runs
+    getConf().setInt(DFSConfigKeys.DFS_NAMENODE_DECOMMISSION_INTERVAL_KEY,
+        Integer.MAX_VALUE);
+    startCluster(1, 3);
+    final FileSystem fs = getCluster().getFileSystem();
+    final DatanodeManager datanodeManager =
+        getCluster().getNamesystem().getBlockManager().getDatanodeManager();
+    final DatanodeAdminManager decomManager =
+        datanodeManager.getDatanodeAdminManager();
+
+    // Each node has a replica of each block
+    final int numBlocks = 10;
+    for (int i = 0; i < numBlocks; i++) {
+      DFSTestUtil.createFile(fs, new Path("/file" + i), 64, (short) 3,
+          0xBAD1DEA);
+    }
+    // No other node can take the replicas of the decommissioning node
+    final DataNode d = getCluster().getDataNodes().get(0);
+    final DatanodeInfo dn = takeNodeOutofService(0, d.getDatanodeUuid(), 0,
+        null, AdminStates.DECOMMISSION_INPROGRESS);
+
+    // The first tick scans all the blocks of the node
+    BlockManagerTestUtil.recheckDecommissionState(datanodeManager);
+    assertTrackedAndPending(decomManager, 1, 0);
+    assertEquals(numBlocks, decomManager.getNumBlocksChecked());
+    // The next ones do not re-check the unchanged blocks
+    BlockManagerTestUtil.recheckDecommissionState(datanodeManager);
+    assertEquals(0, decomManager.getNumBlocksChecked());
+    assertEquals(AdminStates.DECOMMISSION_INPROGRESS,
+        datanodeManager.getDatanode(dn).getAdminState());
+
+    // A new node gets the replicas, which removes them from the tracked
+    // blocks, so that the node is decommissioned without a full prune
+    getCluster().startDataNodes(getConf(), 1, true, null, null);
+    getCluster().waitActive();
+    final DatanodeDescriptor newNode = datanodeManager.getDatanode(
+        getCluster().getDataNodes().get(3).getDatanodeId());
+    GenericTestUtils.waitFor(new Supplier<Boolean>() {
+      @Override
+      public Boolean get() {
+        return newNode.numBlocks() == numBlocks;
+      }
+    }, 100, 60000);
+    BlockManagerTestUtil.recheckDecommissionState(datanodeManager);
+    assertTrackedAndPending(decomManager, 0, 0);
+    assertEquals(AdminStates.DECOMMISSIONED,
+        datanodeManager.getDatanode(dn).getAdminState());
+  }
+
   @Test(timeout=120000)
   public void testPendingNodes() throws Exception {
     org.apache.log4j.Logger.getLogger(DatanodeAdminManager.class)
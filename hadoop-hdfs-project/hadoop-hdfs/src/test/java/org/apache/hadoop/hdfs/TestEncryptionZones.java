@@ -70,6 +70,7 @@
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hdfs.client.CreateEncryptionZoneFlag;
 import org.apache.hadoop.hdfs.client.HdfsAdmin;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.hdfs.protocol.ClientProtocol;
 import org.apache.hadoop.hdfs.protocol.EncryptionZone;
 import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
@@ -1355,6 +1356,44 @@ public void testDelegationToken() throws Exception {
     Assert.assertEquals(2, creds.numberOfTokens());
   }
 
+  /**
+   * Test that listing an encryption zone decrypts the keys of its files with
+   * one batch call when prefetching is enabled.
+   */
+  @Test
+  public void testPrefetchEncryptionKeysOnList() throws Exception {
+    final Path zone = new Path("/zone");
+    fsWrapper.mkdir(zone, FsPermission.getDirDefault(), true);
+    dfsAdmin.createEncryptionZone(zone, TEST_KEY, NO_TRASH);
+    for (int i = 0; i < 3; i++) {
+      DFSTestUtil.createFile(fs, new Path(zone, "file" + i), 1024, (short) 1,
+          0xFEED);
+    }
+
+    Configuration clientConf = new Configuration(conf);
+    clientConf.setBoolean(
+        HdfsClientConfigKeys.DFS_CLIENT_PREFETCH_ENCRYPTION_KEYS_ON_LIST_KEY,
+        true);
+    KeyProvider keyProvider = Mockito.mock(KeyProvider.class,
+        withSettings().extraInterfaces(CryptoExtension.class));
+    Mockito.when(keyProvider.getConf()).thenReturn(conf);
+    try (DistributedFileSystem listFs = (DistributedFileSystem)
+        FileSystem.newInstance(cluster.getURI(), clientConf)) {
+      listFs.getClient().setKeyProvider(keyProvider);
+      assertEquals(3, listFs.listStatus(zone).length);
+    }
+    Mockito.verify((CryptoExtension) keyProvider).decryptEncryptedKeys(
+        Mockito.argThat(ekvs -> ekvs.size() == 3));
+    Mockito.verify((CryptoExtension) keyProvider, Mockito.never())
+        .decryptEncryptedKey(any());
+
+    // Without prefetching, a listing does not decrypt any key.
+    fs.getClient().setKeyProvider(keyProvider);
+    fs.listStatus(zone);
+    Mockito.verify((CryptoExtension) keyProvider)
+        .decryptEncryptedKeys(any());
+  }
+
   /**
    * Test running fsck on a system with encryption zones.
    */
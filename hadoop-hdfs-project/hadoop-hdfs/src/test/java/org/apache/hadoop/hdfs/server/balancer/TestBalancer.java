@@ -1237,6 +1237,19 @@ public void testBalancerWithNonZeroThreadsForMove() throws Exception {
     testBalancer1Internal(conf);
   }
 
+  @Test(timeout=100000)
+  public void testBalancerWithBenefitOrderingAndAdaptiveConcurrency()
+      throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(
+        DFSConfigKeys.DFS_BALANCER_BLOCK_SELECTION_BY_BENEFIT_KEY, true);
+    conf.setBoolean(
+        DFSConfigKeys.DFS_BALANCER_ADAPTIVE_CONCURRENCY_ENABLED_KEY, true);
+    conf.setLong(
+        DFSConfigKeys.DFS_BALANCER_PROGRESS_REPORT_INTERVAL_KEY, 100L);
+    testBalancer1Internal(conf);
+  }
+
   @Test(timeout=100000)
   public void testBalancer2() throws Exception {
     testBalancer2Internal(new HdfsConfiguration());
@@ -0,0 +1,175 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.balancer;
+
+import java.util.Collections;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.server.balancer.Dispatcher.DDatanode;
+import org.apache.hadoop.hdfs.server.balancer.Dispatcher.DDatanode.StorageGroup;
+import org.apache.hadoop.hdfs.server.balancer.Dispatcher.Source;
+import org.apache.hadoop.hdfs.server.balancer.Dispatcher.Task;
+import org.apache.hadoop.hdfs.server.protocol.BlocksWithLocations;
+import org.apache.hadoop.hdfs.server.protocol.BlocksWithLocations.BlockWithLocations;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the block selection and the move concurrency of {@link Dispatcher}
+ * without a cluster.
+ */
+public class TestDispatcher {
+  @Rule
+  public Timeout globalTimeout = new Timeout(120000);
+
+  private static final int MAX_CONCURRENT_MOVES = 4;
+
+  private final DatanodeInfo sourceInfo =
+      DFSTestUtil.getDatanodeInfo("1.1.1.1", "source", 9866);
+  private final DatanodeInfo targetInfo =
+      DFSTestUtil.getDatanodeInfo("2.2.2.2", "target", 9866);
+  private Source source;
+  private DDatanode targetNode;
+  private StorageGroup target;
+
+  /**
+   * Create a dispatcher moving blocks of the given sizes from a source to a
+   * target. The blocks are returned by the namenode in the given order.
+   */
+  private Dispatcher createDispatcher(Configuration conf, long... blockSizes)
+      throws Exception {
+    final BlockWithLocations[] blocks =
+        new BlockWithLocations[blockSizes.length];
+    for (int i = 0; i < blockSizes.length; i++) {
+      blocks[i] = new BlockWithLocations(
+          new Block(i + 1, blockSizes[i], 1001),
+          new String[] {sourceInfo.getDatanodeUuid()},
+          new String[] {"source-storage"},
+          new StorageType[] {StorageType.DISK});
+    }
+    final NameNodeConnector nnc = mock(NameNodeConnector.class);
+    when(nnc.getBlocks(any(DatanodeInfo.class), anyLong(), anyLong()))
+        .thenReturn(new BlocksWithLocations(blocks));
+
+    final Dispatcher dispatcher = new Dispatcher(nnc,
+        Collections.<String> emptySet(), Collections.<String> emptySet(),
+        1000, 1, 0, MAX_CONCURRENT_MOVES, Long.MAX_VALUE, 0L, 0, 10000, -1L,
+        conf);
+    final DDatanode sourceNode = dispatcher.newDatanode(sourceInfo);
+    source = sourceNode.addSource(StorageType.DISK, Long.MAX_VALUE,
+        dispatcher);
+    targetNode = dispatcher.newDatanode(targetInfo);
+    target = targetNode.addTarget(StorageType.DISK, Long.MAX_VALUE);
+    dispatcher.getStorageGroupMap().put(source);
+    dispatcher.getStorageGroupMap().put(target);
+    return dispatcher;
+  }
+
+  @Test
+  public void testBlockSelectionByBenefit() throws Exception {
+    final Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(
+        DFSConfigKeys.DFS_BALANCER_BLOCK_SELECTION_BY_BENEFIT_KEY, true);
+    createDispatcher(conf, 10, 30, 20, 5);
+    final Task task = new Task(target, 25);
+    source.addTask(task);
+    source.getBlockList();
+
+    // the largest block fitting in the bytes to move goes first
+    assertNotNull(source.chooseNextMove());
+    assertEquals(5, task.getSize());
+    assertNotNull(source.chooseNextMove());
+    assertEquals(0, task.getSize());
+  }
+
+  @Test
+  public void testBlockSelectionInListingOrder() throws Exception {
+    createDispatcher(new HdfsConfiguration(), 10, 30, 20, 5);
+    final Task task = new Task(target, 25);
+    source.addTask(task);
+    source.getBlockList();
+
+    assertNotNull(source.chooseNextMove());
+    assertEquals(15, task.getSize());
+  }
+
+  @Test
+  public void testAdaptiveConcurrency() throws Exception {
+    final Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(
+        DFSConfigKeys.DFS_BALANCER_ADAPTIVE_CONCURRENCY_ENABLED_KEY, true);
+    conf.setInt(
+        DFSConfigKeys.DFS_BALANCER_ADAPTIVE_CONCURRENCY_BUSY_XCEIVERS_KEY, 10);
+    conf.setLong(
+        DFSConfigKeys.DFS_BALANCER_ADAPTIVE_CONCURRENCY_TARGET_LATENCY_KEY,
+        1000);
+    // a half loaded target starts with half the concurrent moves
+    targetInfo.setXceiverCount(5);
+    createDispatcher(conf, 10, 10, 10, 10);
+    assertEquals(2, targetNode.getConcurrentMovesLimit());
+
+    // fast moves raise the limit up to the max concurrent moves
+    targetNode.adaptConcurrentMoves(10);
+    assertEquals(3, targetNode.getConcurrentMovesLimit());
+    for (int i = 0; i < MAX_CONCURRENT_MOVES; i++) {
+      targetNode.adaptConcurrentMoves(10);
+    }
+    assertEquals(MAX_CONCURRENT_MOVES, targetNode.getConcurrentMovesLimit());
+
+    // slow or failed moves halve it, down to one move
+    targetNode.adaptConcurrentMoves(5000);
+    assertEquals(2, targetNode.getConcurrentMovesLimit());
+    targetNode.reduceConcurrentMoves();
+    targetNode.reduceConcurrentMoves();
+    assertEquals(1, targetNode.getConcurrentMovesLimit());
+
+    // the target takes no more moves than its limit
+    source.addTask(new Task(target, 40));
+    source.getBlockList();
+    assertNotNull(source.chooseNextMove());
+    assertNull(source.chooseNextMove());
+  }
+
+  @Test
+  public void testFixedConcurrency() throws Exception {
+    targetInfo.setXceiverCount(5);
+    createDispatcher(new HdfsConfiguration(), 10, 10, 10, 10);
+    assertEquals(0, targetNode.getConcurrentMovesLimit());
+
+    source.addTask(new Task(target, 40));
+    source.getBlockList();
+    for (int i = 0; i < MAX_CONCURRENT_MOVES; i++) {
+      assertNotNull(source.chooseNextMove());
+    }
+  }
+}
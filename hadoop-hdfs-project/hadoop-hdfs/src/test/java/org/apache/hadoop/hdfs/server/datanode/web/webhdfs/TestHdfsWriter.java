@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.web.webhdfs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+
+import java.io.ByteArrayOutputStream;
+
+import org.apache.hadoop.hdfs.DFSClient;
+import org.junit.Test;
+
+/**
+ * Test that {@link HdfsWriter} writes the uploaded content unchanged,
+ * whether it arrives in heap or direct buffers.
+ */
+public class TestHdfsWriter {
+  @Test
+  public void testWriteHeapAndDirectContent() {
+    final byte[] data = new byte[1000];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final DefaultHttpResponse response =
+        new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+    // A buffer smaller than the chunks, so that direct content is copied
+    // in several passes.
+    final EmbeddedChannel channel = new EmbeddedChannel(
+        new HdfsWriter(mock(DFSClient.class), out, response, 64));
+
+    channel.writeInbound(new DefaultHttpContent(
+        Unpooled.wrappedBuffer(data, 0, 300)));
+    final ByteBuf direct = Unpooled.directBuffer(500);
+    direct.writeBytes(data, 300, 500);
+    channel.writeInbound(new DefaultHttpContent(direct));
+    final ByteBuf slice = Unpooled.wrappedBuffer(data).slice(800, 200);
+    channel.writeInbound(new DefaultLastHttpContent(slice));
+
+    assertArrayEquals(data, out.toByteArray());
+    assertEquals(response, channel.readOutbound());
+    assertEquals(0, direct.refCnt());
+  }
+}
@@ -21,6 +21,9 @@
 import com.google.common.base.Supplier;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.ipc.ProcessingDetails.Timing;
+import org.apache.hadoop.ipc.RPC;
+import org.apache.hadoop.ipc.Server;
 import org.apache.hadoop.metrics2.MetricsRecordBuilder;
 import org.apache.hadoop.metrics2.lib.MetricsRegistry;
 import org.apache.hadoop.metrics2.lib.MutableRatesWithAggregation;
@@ -436,4 +439,38 @@ public void testFSWriteLockReportSuppressed() throws Exception {
         "Number of suppressed write-lock reports:"));
   }
 
-}
\ No newline at end of file
+  /**
+   * The lock hold time is charged to the RPC call holding the lock, even when
+   * the lock report is suppressed.
+   */
+  @Test
+  public void testLockHoldTimeChargedToCall() throws Exception {
+    Configuration conf = new Configuration();
+    FakeTimer timer = new FakeTimer();
+    FSNamesystemLock fsLock = new FSNamesystemLock(conf, null, timer);
+    Server.Call call = new Server.Call(
+        1, 1, null, null, RPC.RpcKind.RPC_BUILTIN, new byte[] {1, 2, 3});
+    Server.getCurCall().set(call);
+    try {
+      fsLock.readLock();
+      fsLock.readLock();
+      timer.advanceNanos(1000);
+      fsLock.readUnlock();
+      timer.advanceNanos(1000);
+      fsLock.readUnlock();
+
+      fsLock.writeLock();
+      timer.advanceNanos(3000);
+      fsLock.writeUnlock("foo", false);
+      fsLock.writeLock();
+      timer.advanceNanos(4000);
+      fsLock.writeUnlock("foo", true);
+    } finally {
+      Server.getCurCall().set(null);
+    }
+    assertEquals(2000, call.getProcessingDetails().get(
+        Timing.LOCKSHARED, TimeUnit.NANOSECONDS));
+    assertEquals(7000, call.getProcessingDetails().get(
+        Timing.LOCKEXCLUSIVE, TimeUnit.NANOSECONDS));
+  }
+}
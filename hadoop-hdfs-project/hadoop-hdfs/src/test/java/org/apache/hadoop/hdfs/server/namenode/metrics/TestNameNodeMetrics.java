@@ -35,6 +35,7 @@
 import static org.apache.hadoop.test.MetricsAsserts.assertCounterGt;
 import static org.apache.hadoop.test.MetricsAsserts.assertGauge;
 import static org.apache.hadoop.test.MetricsAsserts.assertQuantileGauges;
+import static org.apache.hadoop.test.MetricsAsserts.getLongGauge;
 import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -1076,6 +1077,35 @@ public void testResourceCheck() throws Exception {
     }
   }
 
+  @Test
+  public void testHistogramQuantiles() throws Exception {
+    HdfsConfiguration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_METRICS_PERCENTILES_INTERVALS_KEY, 1);
+    conf.setBoolean(
+        DFSConfigKeys.DFS_METRICS_PERCENTILES_HISTOGRAM_ENABLED_KEY, true);
+    MiniDFSCluster dfsCluster = null;
+    try {
+      dfsCluster = new MiniDFSCluster.Builder(conf).numDataNodes(0).build();
+      dfsCluster.waitActive();
+      DistributedFileSystem dfs = dfsCluster.getFileSystem();
+      for (int i = 0; i < 10; i++) {
+        dfs.mkdir(new Path("/testdir" + i), FsPermission.getDefault());
+      }
+      // let the window roll over
+      Thread.sleep(1500);
+
+      // The metrics of the NN of this cluster, not the one from setUp()
+      MetricsRecordBuilder rb = getMetrics(NN_METRICS + "-1");
+      assertQuantileGauges("Syncs1s", rb);
+      assertTrue(getLongGauge("Syncs1s999thPercentileLatency", rb) >= 0);
+      assertTrue(getLongGauge("Syncs1s9999thPercentileLatency", rb) >= 0);
+    } finally {
+      if (dfsCluster != null) {
+        dfsCluster.shutdown();
+      }
+    }
+  }
+
   @Test
   public void testEditLogTailing() throws Exception {
     HdfsConfiguration conf = new HdfsConfiguration();
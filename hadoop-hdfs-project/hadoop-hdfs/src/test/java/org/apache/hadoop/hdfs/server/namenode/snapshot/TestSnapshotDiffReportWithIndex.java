@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DFSUtil;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport.DiffReportEntry;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport.DiffType;
+import org.apache.hadoop.hdfs.server.namenode.FSDirectory;
+import org.apache.hadoop.hdfs.server.namenode.INodeDirectory;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Run the snapshot diff report tests with the modified inode index enabled.
+ */
+public class TestSnapshotDiffReportWithIndex extends TestSnapshotDiffReport {
+  @Before
+  @Override
+  public void setUp() throws Exception {
+    conf = new Configuration();
+    conf.setBoolean(
+        DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_CAPTURE_OPENFILES, true);
+    conf.setLong(DFSConfigKeys.DFS_NAMENODE_ACCESSTIME_PRECISION_KEY, 1);
+    conf.setBoolean(
+        DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_SKIP_CAPTURE_ACCESSTIME_ONLY_CHANGE,
+        true);
+    conf.setBoolean(
+        DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_DIFF_ALLOW_SNAP_ROOT_DESCENDANT,
+        true);
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_DIFF_LISTING_LIMIT, 3);
+    conf.setBoolean(DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_DIFF_INDEX_ENABLED,
+        true);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(3)
+        .format(true).build();
+    cluster.waitActive();
+    hdfs = cluster.getFileSystem();
+  }
+
+  /**
+   * Only the subtrees holding a change since the earlier snapshot are
+   * indexed, and the diff report is still complete.
+   */
+  @Test(timeout = 60000)
+  public void testDiffIndexSkipsUnchangedSubtrees() throws Exception {
+    final Path root = new Path("/indexed");
+    final Path changed = new Path(root, "changed");
+    final Path unchanged = new Path(root, "unchanged");
+    DFSTestUtil.createFile(hdfs, new Path(changed, "f1"), 1024, (short) 1, 0);
+    DFSTestUtil.createFile(hdfs, new Path(unchanged, "f2"), 1024, (short) 1,
+        0);
+    hdfs.allowSnapshot(root);
+    hdfs.createSnapshot(root, "s0");
+
+    DFSTestUtil.appendFile(hdfs, new Path(changed, "f1"), 100);
+    hdfs.delete(new Path(changed, "f1"), false);
+    DFSTestUtil.createFile(hdfs, new Path(changed, "f3"), 1024, (short) 1, 0);
+    hdfs.createSnapshot(root, "s1");
+
+    final FSDirectory fsdir = cluster.getNamesystem().getFSDirectory();
+    final INodeDirectory rootDir =
+        fsdir.getINode(root.toString()).asDirectory();
+    final DirectorySnapshottableFeature sf =
+        rootDir.getDirectorySnapshottableFeature();
+    final SnapshotDiffIndex index = sf.getDiffIndex();
+    assertNotNull(index);
+    final Snapshot s0 = sf.getSnapshot(DFSUtil.string2Bytes("s0"));
+    assertTrue(index.covers(s0));
+    final Set<Long> modified = index.getModifiedSince(s0);
+    assertTrue(modified.contains(
+        fsdir.getINode(changed.toString()).getId()));
+    assertFalse(modified.contains(
+        fsdir.getINode(unchanged.toString()).getId()));
+
+    final DiffReportEntry[] expected = new DiffReportEntry[] {
+        new DiffReportEntry(DiffType.MODIFY, DFSUtil.string2Bytes("changed")),
+        new DiffReportEntry(DiffType.DELETE,
+            DFSUtil.string2Bytes("changed/f1")),
+        new DiffReportEntry(DiffType.CREATE,
+            DFSUtil.string2Bytes("changed/f3"))};
+    DFSTestUtil.verifySnapshotDiffReport(hdfs, root, "s0", "s1", expected);
+    DFSTestUtil.verifySnapshotDiffReport(hdfs, root, "s0", "", expected);
+
+    // deleting the later snapshot folds its entries into the prior one
+    hdfs.deleteSnapshot(root, "s1");
+    assertTrue(index.getModifiedSince(s0).contains(
+        fsdir.getINode(changed.toString()).getId()));
+    assertEquals(expected.length,
+        hdfs.getSnapshotDiffReport(root, "s0", "").getDiffList().size());
+  }
+}
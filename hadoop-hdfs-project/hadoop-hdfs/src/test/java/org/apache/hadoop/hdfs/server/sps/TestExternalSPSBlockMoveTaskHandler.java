@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.sps;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.server.balancer.KeyManager;
+import org.apache.hadoop.hdfs.server.balancer.NameNodeConnector;
+import org.apache.hadoop.hdfs.server.namenode.sps.SPSService;
+import org.apache.hadoop.hdfs.server.protocol.BlockStorageMovementCommand.BlockMovingInfo;
+import org.junit.Test;
+
+/**
+ * Tests the block move submission of {@link ExternalSPSBlockMoveTaskHandler}.
+ */
+public class TestExternalSPSBlockMoveTaskHandler {
+
+  /**
+   * Test that every move of a batch is reported as finished to the SPS
+   * service, and not only the last one.
+   */
+  @Test(timeout = 60000)
+  public void testEveryBatchedMoveIsReported() throws Exception {
+    NameNodeConnector nnc = mock(NameNodeConnector.class);
+    KeyManager km = mock(KeyManager.class);
+    when(nnc.getFallbackToSimpleAuth()).thenReturn(new AtomicBoolean(false));
+    when(nnc.getKeyManager()).thenReturn(km);
+    when(nnc.getBlockpoolID()).thenReturn("BP-1");
+    // Fail every move before any connection to the target is made.
+    doThrow(new IOException("no token")).when(km)
+        .getAccessToken(any(), any(), any());
+    SPSService service = mock(SPSService.class);
+    Configuration conf = new HdfsConfiguration();
+    ExternalSPSBlockMoveTaskHandler handler =
+        new ExternalSPSBlockMoveTaskHandler(conf, nnc, service);
+    try {
+      DatanodeInfo source = DFSTestUtil.getDatanodeInfo("1.1.1.1");
+      DatanodeInfo target = DFSTestUtil.getDatanodeInfo("2.2.2.2");
+      List<BlockMovingInfo> batch = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        batch.add(new BlockMovingInfo(new Block(i), source, target,
+            StorageType.DISK, StorageType.ARCHIVE));
+      }
+      handler.submitMoveTasks(batch);
+      for (BlockMovingInfo move : batch) {
+        verify(service, timeout(30000)).notifyStorageMovementAttemptFinishedBlk(
+            target, StorageType.ARCHIVE, move.getBlock());
+      }
+    } finally {
+      handler.cleanUp();
+    }
+  }
+}
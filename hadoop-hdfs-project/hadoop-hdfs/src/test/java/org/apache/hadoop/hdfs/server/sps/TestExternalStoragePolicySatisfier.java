@@ -37,6 +37,7 @@
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_DATA_TRANSFER_PROTECTION_KEY;
 import static org.apache.hadoop.hdfs.server.common.HdfsServerConstants.XATTR_SATISFY_STORAGE_POLICY;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
 import java.io.File;
@@ -446,6 +447,23 @@ private void doTestWhenStoragePolicySetToCOLD() throws Exception {
         dfs);
   }
 
+  /**
+   * Test that satisfying the policy of a single file does not leave a pending
+   * directory work entry behind for the file.
+   */
+  @Test(timeout = 300000)
+  public void testNoPendingDirWorkForFile() throws Exception {
+    try {
+      createCluster();
+      doTestWhenStoragePolicySetToCOLD();
+      long fileId = dfs.getClient().getFileInfo(FILE).getFileId();
+      assertNull(externalSps.getStorageMovementQueue()
+          .getPendingWorkInfo(fileId));
+    } finally {
+      shutdownCluster();
+    }
+  }
+
   @Test(timeout = 300000)
   public void testWhenStoragePolicySetToALLSSD()
       throws Exception {
@@ -1371,6 +1389,37 @@ public void testMultipleLevelDirectoryForSatisfyStoragePolicy()
     }
   }
 
+  /**
+   * Test SPS for multilevel directories scanned in small, throttled batches.
+   */
+  @Test(timeout = 300000)
+  public void testBatchedAndThrottledDirectoryScan() throws Exception {
+    try {
+      StorageType[][] diskTypes = new StorageType[][] {
+          {StorageType.DISK, StorageType.ARCHIVE},
+          {StorageType.ARCHIVE, StorageType.SSD},
+          {StorageType.DISK, StorageType.DISK}};
+      config.setLong("dfs.block.size", DEFAULT_BLOCK_SIZE);
+      config.setInt(DFSConfigKeys.DFS_SPS_SCAN_BATCH_SIZE_KEY, 2);
+      config.setLong(DFSConfigKeys.DFS_SPS_SCAN_LISTING_INTERVAL_MS_KEY, 10);
+      hdfsCluster = startCluster(config, diskTypes, diskTypes.length,
+          STORAGES_PER_DATANODE, CAPACITY);
+      dfs = hdfsCluster.getFileSystem();
+      createDirectoryTree(dfs);
+
+      List<String> files = getDFSListOfTree();
+      dfs.setStoragePolicy(new Path("/root"), COLD);
+      dfs.satisfyStoragePolicy(new Path("/root"));
+      for (String fileName : files) {
+        // Wait till the block is moved to ARCHIVE
+        DFSTestUtil.waitExpectedStorageType(fileName, StorageType.ARCHIVE, 2,
+            30000, dfs);
+      }
+    } finally {
+      shutdownCluster();
+    }
+  }
+
   /**
    * Test storage move blocks while under replication block tasks exists in the
    * system. So, both will share the max transfer streams.
@@ -981,8 +981,22 @@ public void testDTInInsecureCluster() throws Exception {
 
   @Test
   public void testWebHdfsOffsetAndLength() throws Exception{
-    MiniDFSCluster cluster = null;
+    checkWebHdfsOffsetAndLength(WebHdfsTestUtil.createConf());
+  }
+
+  @Test
+  public void testWebHdfsOffsetAndLengthWithSmallReadChunks()
+      throws Exception {
     final Configuration conf = WebHdfsTestUtil.createConf();
+    // Force the datanode to stream the range in several chunks rather than
+    // serving it with a single positional read.
+    conf.setInt(DFSConfigKeys.DFS_WEBHDFS_READ_CHUNK_SIZE_KEY, 100);
+    checkWebHdfsOffsetAndLength(conf);
+  }
+
+  private void checkWebHdfsOffsetAndLength(Configuration conf)
+      throws Exception {
+    MiniDFSCluster cluster = null;
     final int OFFSET = 42;
     final int LENGTH = 512;
     final String PATH = "/foo";
@@ -32,6 +32,7 @@
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.io.compress.ParallelCompressorStream;
 import org.apache.hadoop.util.*;
 
 /** 
@@ -124,7 +125,8 @@ public RecordWriter<K, V> getRecordWriter(FileSystem ignored,
       FileSystem fs = file.getFileSystem(job);
       FSDataOutputStream fileOut = fs.create(file, progress);
       return new LineRecordWriter<K, V>(new DataOutputStream
-                                        (codec.createOutputStream(fileOut)),
+                                        (ParallelCompressorStream.create(
+                                            codec, job, fileOut)),
                                         keyValueSeparator);
     }
   }
@@ -33,6 +33,7 @@
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.io.compress.ParallelCompressorStream;
 import org.apache.hadoop.mapreduce.OutputFormat;
 import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
@@ -126,7 +127,8 @@ void close(TaskAttemptContext context) throws IOException {
     FSDataOutputStream fileOut = fs.create(file, false);
     if (isCompressed) {
       return new LineRecordWriter<>(
-          new DataOutputStream(codec.createOutputStream(fileOut)),
+          new DataOutputStream(
+              ParallelCompressorStream.create(codec, conf, fileOut)),
           keyValueSeparator);
     } else {
       return new LineRecordWriter<>(fileOut, keyValueSeparator);